@@ -0,0 +1,98 @@
+package flingball;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import physics.Vect;
+
+/**
+ * Benchmarks the collision kernels of each type of gadget: predicting when a ball falling onto the gadget hits it,
+ * and applying the hit to the ball. The hit is applied with localCollision(), the part of a collision that the
+ * engine applies to the ball, so that absorbers do not pile up balls across invocations.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class GadgetBenchmark {
+
+    @Param({ "CircleBumper", "SquareBumper", "TriangleBumper", "Absorber", "OuterWall" })
+    public String gadget;
+
+    private GameExpression target;
+    private Ball ball;
+    private final Contact scratch = new Contact();
+    private final Contact contact = new Contact();
+    private final Vect velocity = new Vect(0.5, 10);
+    private Vect hitLocation;
+
+    /**
+     * Place the gadget, and a ball above it falling onto it, and find where the ball hits it.
+     */
+    @Setup
+    public void setUp() {
+        switch (this.gadget) {
+        case "CircleBumper":
+            this.target = new CircleBumper("gadget", 10, 10);
+            break;
+        case "SquareBumper":
+            this.target = new SquareBumper("gadget", 10, 10);
+            break;
+        case "TriangleBumper":
+            this.target = new TriangleBumper("gadget", 10, 10, 0);
+            break;
+        case "Absorber":
+            this.target = new Absorber("gadget", 5, 10, 10, 2);
+            break;
+        case "OuterWall":
+            this.target = new OuterWall();
+            break;
+        default:
+            throw new IllegalArgumentException("unknown gadget " + this.gadget);
+        }
+        Vect start = new Vect(10.6, 6);
+        this.ball = new Ball("ball", start.x(), start.y(), this.velocity.x(), this.velocity.y());
+        double time = this.target.timeUntilCollision(this.ball, this.contact);
+        if (Double.isInfinite(time) || time > 10) {
+            throw new IllegalStateException("the ball misses the " + this.gadget);
+        }
+        this.hitLocation = start.plus(this.velocity.times(time));
+    }
+
+    /**
+     * @return time until the ball hits the gadget
+     */
+    @Benchmark
+    public double timeUntilCollision() {
+        return this.target.timeUntilCollision(this.ball, this.scratch);
+    }
+
+    /**
+     * @return velocity of the ball after it hits the gadget
+     */
+    @Benchmark
+    public Vect collision() {
+        Ball hit = this.ball;
+        hit.setLocation(this.hitLocation);
+        hit.setVelocity(this.velocity);
+        hit.setAbsorbed(false);
+        this.target.localCollision(hit, this.contact);
+        Vect after = hit.getVelocity();
+        hit.setLocation(this.hitLocation.minus(this.velocity)); // back above the gadget for timeUntilCollision
+        hit.setVelocity(this.velocity);
+        return after;
+    }
+}
@@ -0,0 +1,89 @@
+package flingball;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import edu.mit.eecs.parserlib.UnableToParseException;
+
+/**
+ * Benchmarks parsing a board file with the ParserLib BoardParser, and with the StreamingBoardParser for
+ * comparison, on the small default board and on a large board made by BoardGenerator.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ParserBenchmark {
+
+    /** Number of gadgets and balls of the large board. */
+    private static final int LARGE_GADGETS = 2500;
+    private static final int LARGE_BALLS = 100;
+
+    @Param({ "small", "large" })
+    public String size;
+
+    private File file;
+    private boolean generated = false;
+
+    /**
+     * Find or write the board to parse.
+     * @throws IOException if the large board cannot be written
+     */
+    @Setup
+    public void setUp() throws IOException {
+        if (this.size.equals("small")) {
+            this.file = new File("boards/default.fb");
+            return;
+        }
+        this.file = File.createTempFile("flingball-large", ".fb");
+        this.generated = true;
+        int size = BoardGenerator.defaultSize(LARGE_GADGETS, LARGE_BALLS);
+        BoardGenerator.write(this.file.toPath(), 0, size, size, LARGE_GADGETS, new int[] { 4, 3, 2, 1 }, LARGE_BALLS,
+                0.1);
+    }
+
+    /**
+     * Delete the generated board.
+     */
+    @TearDown
+    public void tearDown() {
+        if (this.generated) {
+            this.file.delete();
+        }
+    }
+
+    /**
+     * @return the board parsed by BoardParser
+     * @throws UnableToParseException if the board is not valid
+     */
+    @Benchmark
+    public GameExpression boardParser() throws UnableToParseException {
+        return BoardParser.parse(this.file);
+    }
+
+    /**
+     * @return the board parsed by StreamingBoardParser
+     * @throws IOException if the board cannot be read
+     * @throws UnableToParseException if the board is not valid
+     */
+    @Benchmark
+    public Board streamingBoardParser() throws IOException, UnableToParseException {
+        return StreamingBoardParser.parse(this.file);
+    }
+}
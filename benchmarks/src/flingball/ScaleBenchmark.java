@@ -0,0 +1,68 @@
+package flingball;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import edu.mit.eecs.parserlib.UnableToParseException;
+
+/**
+ * Benchmarks a full fixed timestep of SimulationEngine on boards made by BoardGenerator, from a handful to a hundred
+ * thousand gadgets and balls, each on a board of BoardGenerator.defaultSize(). The largest boards take seconds per
+ * step; run a subset with, for example, -p gadgets=10,1000 -p balls=1,1000.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 1)
+public class ScaleBenchmark {
+
+    @Param({ "10", "1000", "100000" })
+    public int gadgets;
+
+    @Param({ "1", "1000", "100000" })
+    public int balls;
+
+    private SimulationEngine engine;
+
+    /**
+     * Generate the board and load it.
+     * @throws IOException if the board cannot be written or read
+     * @throws UnableToParseException if the generated board is not valid
+     */
+    @Setup
+    public void setUp() throws IOException, UnableToParseException {
+        File file = File.createTempFile("flingball-scale", ".fb");
+        try {
+            int size = BoardGenerator.defaultSize(this.gadgets, this.balls);
+            BoardGenerator.write(file.toPath(), 0, size, size, this.gadgets, new int[] { 4, 3, 2, 1 }, this.balls,
+                    0.1);
+            this.engine = new SimulationEngine(StreamingBoardParser.parse(file));
+        } finally {
+            file.delete();
+        }
+    }
+
+    /**
+     * @return simulated time after the step
+     */
+    @Benchmark
+    public double step() {
+        this.engine.step(this.engine.getTimestep());
+        return this.engine.getTime();
+    }
+}
@@ -0,0 +1,62 @@
+package flingball;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import edu.mit.eecs.parserlib.UnableToParseException;
+
+/**
+ * Benchmarks a full fixed timestep of SimulationEngine on the example boards, in each prediction mode. Every
+ * measurement iteration starts again from the board as its file describes it, so every iteration simulates the
+ * same stretch of the game.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class StepBenchmark {
+
+    @Param({ "boards/default.fb", "boards/absorber.fb" })
+    public String board;
+
+    @Param({ "LINEAR", "PARABOLIC" })
+    public SimulationEngine.Prediction prediction;
+
+    private SimulationEngine engine;
+
+    /**
+     * Load the board afresh.
+     * @throws IOException if the board cannot be read
+     * @throws UnableToParseException if the board is not valid
+     */
+    @Setup(Level.Iteration)
+    public void setUp() throws IOException, UnableToParseException {
+        this.engine = new SimulationEngine(StreamingBoardParser.parse(new File(this.board)),
+                SimulationEngine.DEFAULT_TIMESTEP, this.prediction);
+    }
+
+    /**
+     * @return simulated time after the step
+     */
+    @Benchmark
+    public double step() {
+        this.engine.step(this.engine.getTimestep());
+        return this.engine.getTime();
+    }
+}
@@ -1,76 +1,103 @@
 package flingball;
 
 import java.awt.Color;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
-import java.util.LinkedList;
-import java.util.Queue;
+import java.util.List;
 import java.util.Set;
 
 import physics.Circle;
 import physics.LineSegment;
-import physics.Physics;
 import physics.Vect;
 
 /**
  * A mutable absorber gadget representing a flingball board component that can absorb balls that collide
  * with it, hold them in a given position within the absorber's area, and shoot them upward when
  * triggered. Absorber must be mutable in order to keep track of the balls it's absorbing and releasing.
+ *
+ * The held balls are kept in a ring buffer that grows by doubling, so boards that funnel thousands of balls into
+ * one absorber queue them without allocating per ball. The absorber fires nothing while the ball it fired last is
+ * still inside it. timeUntilCollision() predicts when that ball will leave, as a passage, and a SimulationEngine
+ * calls exit() when that time comes, so the absorber is ready again at the exact time the ball leaves. Clients that
+ * move balls themselves need not call exit(): action() also checks whether the ball fired last is still inside,
+ * and treats it as having left if it is not. An absorber with a burst greater than 1 fires up to that many balls
+ * per trigger, staggered so that each one is fired as the one before it leaves.
  */
 public class Absorber implements GameExpression {
     
     private final String name;
     private final Set<LineSegment> sides;
     private final Set<Vect> endpoints;
+    private final Set<Circle> corners;
     private final Vect origin;
-    private GameExpression triggerTarget = null;
-    private final Queue<Ball> absorbedBalls = new LinkedList<Ball>();
+    private final List<GameExpression> triggerTargets = new ArrayList<>();
+    private Ball[] held = new Ball[INITIAL_CAPACITY];
+    private int heldHead = 0;
+    private int heldCount = 0;
     private final Vect absorbedBallPosition;
     private final Vect ejectedBallVelocity = new Vect(0, -50);
     private final Color color = Color.green;
     private final LineSegment topSide;
     private final LineSegment leftSide;
+    private final int burst;
     private Ball released = null;
-    private boolean triggerable = true;
+    private int burstLeft = 0;
     
     // Abstraction function:
-    // AF(name, sides, endpoints, origin, absorbedBalls, absorbedBallPosition, ejectedBallVelocity, triggerTarget, color) 
+    // AF(name, sides, endpoints, corners, origin, held, heldHead, heldCount, absorbedBallPosition, ejectedBallVelocity,
+    //    triggerTargets, color, burst, released, burstLeft)
     // = an absorber with the unique identifier name, sides corresponding to the LineSegments in sides, which have endpoints
-    // corresponding to the Vects in endpoints. Its top left corner is at origin. It has absorbed the balls in absorbedBalls,
-    // and these balls are stored at absorbedBallPosition. When triggered and if it has at least one absorbed ball, the absorber 
-    // fires a ball with the velocity ejectedBallVelocity. It has the color color. 
+    // corresponding to the Vects in endpoints. Its top left corner is at origin. It has absorbed the balls
+    // held[heldHead], held[(heldHead+1) % held.length], ..., held[(heldHead+heldCount-1) % held.length], in the order
+    // it will fire them, and these balls are stored at absorbedBallPosition. When triggered and if it has at least one
+    // absorbed ball and released is null, the absorber fires a ball with the velocity ejectedBallVelocity, followed
+    // by up to burst-1 more, each fired when the one before it leaves. released is the ball fired last if it has
+    // not left the absorber yet, and burstLeft is the number of balls still to fire when it leaves. When it absorbs a ball, it
+    // triggers the gadgets in triggerTargets, in order. It has the color color. 
     // 
     // Rep invariant:
     // - name is not the empty string
     // - sides is of size 4
     // - endpoints is of size 4
+    // - corners holds a zero-radius circle at each of the Vects in endpoints
     // - the endpoints of the LineSegments in size all correspond to Vects in endpoints
-    // - origin is on the board
+    // - origin has non-negative coordinates (the board the gadget is placed on checks that it fits within the
+    //   walls)
+    // - held.length is a power of two, >= INITIAL_CAPACITY; 0 <= heldHead < held.length, 0 <= heldCount <= held.length
+    // - burst >= 1, 0 <= burstLeft < burst, and burstLeft == 0 if released is null
     //
     // Safety from rep exposure argument:
-    // - all instance fields are private and final, apart from triggerTarget, which must be resettable to compatible
-    //   with our parser
+    // - all instance fields are private and final, apart from the ring buffer, which is replaced when it grows, and
+    //   released and burstLeft, which change as the absorber fires; triggerTargets must stay mutable so that
+    //   targets can be added and cleared, but only an unmodifiable view of it is returned
     // - name and origin are immutable, so public getter methods cannot mutate them
     // - getter method for sides returns an unmodifiable view of that set
-    // - absorbedBalls is private and final, but must remain mutable since this is essential to the absorber's functionality
-    //   only need to be called by code within this package
+    // - held must remain mutable since this is essential to the absorber's functionality; it is never returned, and
+    //   getAbsorbedBalls() returns a new list
     // - ejectedBallVelocity has an immutable type
     // - return defensive copy of mutable objects sides and origin.
     
+    private static final int INITIAL_CAPACITY = 4;
     private final int numberOfSides = 4;
-    private final int boardSize = 20; // constant
     private final double ballSize = 0.25;
     
     private void checkRep() {
         assert !this.name.equals("");
         assert this.sides.size()==numberOfSides;
         assert this.endpoints.size()==numberOfSides;
-        assert 0 <= this.origin.x() && this.origin.x() <= boardSize;
-        assert 0 <= this.origin.y() && this.origin.y() <= boardSize;
+        assert this.corners.size()==this.endpoints.size();
+        assert 0 <= this.origin.x() && 0 <= this.origin.y();
         for (LineSegment l : this.sides) {
             assert this.endpoints.contains(l.p1());
             assert this.endpoints.contains(l.p2());
         }
+        assert this.held.length >= INITIAL_CAPACITY && Integer.bitCount(this.held.length) == 1;
+        assert 0 <= this.heldHead && this.heldHead < this.held.length;
+        assert 0 <= this.heldCount && this.heldCount <= this.held.length;
+        assert this.burst >= 1 && 0 <= this.burstLeft && this.burstLeft < this.burst;
+        assert this.released != null || this.burstLeft == 0;
     }
 
     /**
@@ -83,7 +110,23 @@ public class Absorber implements GameExpression {
      * @param height height of absorber
      */
     public Absorber(String name, int x, int y, int width, int height) {
+        this(name, x, y, width, height, 1);
+    }
+
+    /**
+     * Construct an absorber that fires a staggered burst of balls each time it is triggered.
+     * @param name unique identifying name of this absorber
+     * @param x x coordinate of origin reference point of absorber (top left corner of its bounding box in
+     *        the flingball board)
+     * @param y y coordinate of origin reference point
+     * @param width width of absorber
+     * @param height height of absorber
+     * @param burst largest number of balls fired per trigger, must be >= 1; after the first, each ball is fired
+     *        as soon as the one before it has left the absorber
+     */
+    public Absorber(String name, int x, int y, int width, int height, int burst) {
         this.name = name;
+        this.burst = burst;
         this.origin = new Vect((double) x, (double) y);
         this.absorbedBallPosition = new Vect(((double) x) + width - ballSize, ((double) y) +height - ballSize);
         LineSegment top = new LineSegment(origin.x(), origin.y(), origin.x()+width, origin.y());
@@ -100,44 +143,131 @@ public class Absorber implements GameExpression {
             this.endpoints.add(side.p1());
             this.endpoints.add(side.p2());
         }
-        checkRep();
-    }
-    
-    public void checkTriggerable() {
-        if(this.released != null) {
-            if (this.contains(this.released)) {
-                triggerable = false;
-            } else {
-                triggerable = true;
-                this.released = null;
-            }
-        } else {
-            triggerable = true;
+        this.corners = new HashSet<>();
+        for (Vect endpoint : this.endpoints) { // built once, rather than for every collision test
+            this.corners.add(new Circle(endpoint, 0));
         }
+        checkRep();
     }
     
     @Override public boolean action() {
         // must call collision() before action() so that ball is added to queue first
         
+        // a fired ball that has been moved out without exit() being called has left all the same
+        if (this.released != null && !this.contains(this.released)) {
+            exit(this.released);
+        }
         //only call action of absorber if previously released ball has left the absorber
-        if (triggerable) {
-            Ball nextBall = absorbedBalls.poll();
-            checkRep();
-            try {
-                nextBall.setVelocity(this.ejectedBallVelocity);
-                nextBall.setAbsorbed(false);
-                this.released = nextBall;
-            } catch (NullPointerException e) {
-                checkRep();
-                return false;
-            }
-            // if the code makes it here, successfully called the action of the absorber
-            checkRep();
-            return true;
-        } else {
+        if (this.released != null || this.heldCount == 0) {
             return false;
         }
+        fire();
+        this.burstLeft = this.released == null ? 0 : this.burst - 1;
+        checkRep();
+        return true;
+    }
+
+    /**
+     * Fire the ball this absorber has held longest, if it holds any, and remember it as released.
+     */
+    private void fire() {
+        if (this.heldCount == 0) {
+            this.burstLeft = 0;
+            return;
+        }
+        Ball nextBall = this.held[this.heldHead];
+        this.held[this.heldHead] = null;
+        this.heldHead = (this.heldHead + 1) & (this.held.length - 1);
+        this.heldCount--;
+        nextBall.setVelocity(this.ejectedBallVelocity);
+        nextBall.setAbsorbed(false);
+        this.released = nextBall;
+    }
+
+    /**
+     * Add ball to the end of the queue of balls to fire, growing the ring buffer if it is full.
+     */
+    private void hold(Ball ball) {
+        if (this.heldCount == this.held.length) {
+            Ball[] grown = new Ball[2*this.held.length];
+            for (int i = 0; i < this.heldCount; i++) {
+                grown[i] = this.held[(this.heldHead + i) & (this.held.length - 1)];
+            }
+            this.held = grown;
+            this.heldHead = 0;
+        }
+        this.held[(this.heldHead + this.heldCount) & (this.held.length - 1)] = ball;
+        this.heldCount++;
+    }
+
+    /**
+     * Record that the ball fired last has left this absorber, at the passage predicted by
+     * timeUntilCollision(ball, contact), and fire the next ball of the burst if there is one.
+     * @param ball the ball that left this absorber
+     */
+    @Override public void exit(Ball ball) {
+        if (ball != this.released) {
+            return; // a stale passage of a ball that has already been seen to leave
+        }
+        this.released = null;
+        if (this.burstLeft > 0) {
+            int left = this.burstLeft - 1;
+            this.burstLeft = 0;
+            fire();
+            this.burstLeft = this.released == null ? 0 : left;
+        }
+        checkRep();
+    }
+
+    /**
+     * @return the balls this absorber holds, in the order it will fire them
+     */
+    List<Ball> getAbsorbedBalls() {
+        List<Ball> balls = new ArrayList<>(this.heldCount);
+        for (int i = 0; i < this.heldCount; i++) {
+            balls.add(this.held[(this.heldHead + i) & (this.held.length - 1)]);
+        }
+        return balls;
+    }
+
+    /**
+     * @return the ball this absorber fired last, if it may still be inside the absorber, or null
+     */
+    Ball getReleased() {
+        return this.released;
+    }
 
+    /**
+     * @return number of balls still to fire in the current burst once the ball fired last leaves
+     */
+    int getBurstLeft() {
+        return this.burstLeft;
+    }
+
+    /**
+     * @return largest number of balls this absorber fires per trigger
+     */
+    public int getBurst() {
+        return this.burst;
+    }
+
+    /**
+     * Replace the state of this absorber, as when restoring a snapshot of a board.
+     * @param absorbedBalls the balls to hold, in the order to fire them
+     * @param released the ball fired last, if it may still be inside the absorber, or null
+     * @param burstLeft number of balls still to fire once released leaves, must be >= 0 and < getBurst(), and 0
+     *        if released is null
+     */
+    void restore(List<Ball> absorbedBalls, Ball released, int burstLeft) {
+        this.held = new Ball[INITIAL_CAPACITY];
+        this.heldHead = 0;
+        this.heldCount = 0;
+        for (Ball ball : absorbedBalls) {
+            hold(ball);
+        }
+        this.released = released;
+        this.burstLeft = burstLeft;
+        checkRep();
     }
 
     @Override public String getName() {
@@ -152,56 +282,95 @@ public class Absorber implements GameExpression {
     }
 
     @Override public double timeUntilCollision(Ball ball) {
-        checkTriggerable();
-        double minTime = Double.MAX_VALUE/2;
+        return timeUntilCollision(ball, new Contact());
+    }
+
+    @Override public double timeUntilCollision(Ball ball, Contact contact) {
+        contact.clear();
         if (this.contains(ball)) {
-            return minTime;
+            if (ball == this.released) { // the absorber can't fire again until this ball leaves
+                contact.testExit(this.origin.x(), this.origin.y(), this.origin.x() + getWidth(),
+                        this.origin.y() + getHeight(), ball.getLocation(), ball.getVelocity());
+            }
+            return contact.getTime();
         }
+        Circle ballCircle = ball.getBallCircle();
+        Vect velocity = ball.getVelocity();
         for (LineSegment side : this.sides) {
-            double collisionTime = Physics.timeUntilWallCollision(side, ball.getBallCircle(), ball.getVelocity());
-            if (collisionTime < minTime) {
-                minTime = collisionTime;
-            }
+            contact.testSide(side, ballCircle, velocity);
         }
-        for (Vect endpoint : this.endpoints) {
-            double collisionTime = Physics.timeUntilCircleCollision(new Circle(endpoint,0), ball.getBallCircle(), ball.getVelocity());
-            if (collisionTime < minTime) {
-                minTime = collisionTime;
-            }
+        for (Circle corner : this.corners) {
+            contact.testCorner(corner, ballCircle, velocity);
         }
-        return minTime;
+        return contact.resolve(ballCircle, velocity);
     }
     
     /**
      * Updates ball's velocity with its initial velocity after colliding with this
      * absorber. Absorb ball (i.e. set its velocity to zero and move it to the bottom right corner 
-     * of this absorber). Otherwise, if no collision is possible, then do nothing.
+     * of this absorber), and then trigger this absorber's targets. Otherwise, if no collision is possible, then do
+     * nothing.
      * @param ball the ball that may or may not collide with this gadget
      */
     @Override public void collision(Ball ball) {
+        ball.setLocation(this.absorbedBallPosition);
+        hold(ball);
+        ball.setVelocity(new Vect(0, 0));
+        ball.setAbsorbed(true);
         trigger();
+        checkRep();
+    }
+
+    /**
+     * Absorb ball without adding it to the queue of this absorber, which collisionEffects() does afterwards.
+     * A passage of the ball out of this absorber leaves the ball alone.
+     * @param ball the ball that collides with this absorber
+     * @param contact the contact between ball and this absorber
+     */
+    @Override public void localCollision(Ball ball, Contact contact) {
+        if (contact.isPassage()) {
+            return;
+        }
         ball.setLocation(this.absorbedBallPosition);
-        this.absorbedBalls.offer(ball);
         ball.setVelocity(new Vect(0, 0));
         ball.setAbsorbed(true);
+    }
+
+    /**
+     * Add ball to the queue of balls to fire, as collision() does before it triggers this absorber's targets.
+     * @param ball the ball that collided with this absorber
+     */
+    @Override public void collisionEffects(Ball ball) {
+        hold(ball);
         checkRep();
     }
 
     @Override public boolean setTrigger(GameExpression target) {
-        if (this.triggerTarget == null) {
-            this.triggerTarget = target;
-            checkRep();
-            return true;
+        for (GameExpression existing : this.triggerTargets) {
+            if (existing == target) { // by identity, since equals() assumes gadgets of the same type
+                return false;
+            }
         }
+        this.triggerTargets.add(target);
+        checkRep();
+        return true;
+    }
+
+    @Override public List<GameExpression> getTriggerTargets() {
+        return Collections.unmodifiableList(this.triggerTargets);
+    }
+
+    @Override public void clearTrigger() {
+        this.triggerTargets.clear();
         checkRep();
-        return false; 
     }
 
     @Override public boolean trigger() { 
         // trigger this gadget's target gadget's action if it has a target
-        checkTriggerable();
-        if (this.triggerTarget != null) {
-            this.triggerTarget.action();
+        if (!this.triggerTargets.isEmpty()) {
+            for (GameExpression target : this.triggerTargets) {
+                target.action();
+            }
             checkRep();
             return true;
         }
@@ -213,6 +382,20 @@ public class Absorber implements GameExpression {
         return new Vect(this.origin.x(), this.origin.y());
     }
     
+    /**
+     * @return width of this absorber, in L
+     */
+    public int getWidth() {
+        return (int) this.topSide.length();
+    }
+    
+    /**
+     * @return height of this absorber, in L
+     */
+    public int getHeight() {
+        return (int) this.leftSide.length();
+    }
+    
     /**
      * Gets a set of all the top-left corners of every 1Lx1L unit box spanned by this absorber. Helper method
      * for Board.java's checkRep(), to ensure no gadget overlaps 
@@ -241,7 +424,7 @@ public class Absorber implements GameExpression {
     @Override public boolean equals(Object that) {
         Absorber thatAbsorber = (Absorber) that;
         return that instanceof Absorber && this.name.equals(thatAbsorber.getName())
-                && this.origin.equals(thatAbsorber.getLocation());
+                && this.origin.equals(thatAbsorber.getLocation()) && this.burst == thatAbsorber.burst;
     }
 
     @Override public int hashCode() {
@@ -0,0 +1,101 @@
+package flingball;
+
+/**
+ * A mutable first-in, first-out queue of gadget actions waiting to be performed, each identified by the id of the
+ * gadget whose action it is. The ids are kept in a ring buffer of ints that doubles in size when it fills up, so
+ * posting and polling an action allocate nothing once the queue has grown to the largest burst of actions it
+ * holds. A SimulationEngine posts the targets of every trigger fired by a collision here, and performs them
+ * together once the collisions of the step have been applied, so no action runs inside a collision.
+ */
+public class ActionQueue {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private int[] ids = new int[INITIAL_CAPACITY];
+    private int head = 0;
+    private int size = 0;
+
+    // Abstraction function:
+    // AF(ids, head, size) = the sequence ids[head], ids[(head+1) % ids.length], ...,
+    // ids[(head+size-1) % ids.length] of gadget ids whose actions are waiting, oldest first
+    //
+    // Rep invariant:
+    // - ids.length is a power of two, >= INITIAL_CAPACITY
+    // - 0 <= head < ids.length
+    // - 0 <= size <= ids.length
+    // - every id in the sequence is >= 0
+    //
+    // Safety from rep exposure argument:
+    // - all fields are private, and ids is never returned; only the ints in it are
+
+    private void checkRep() {
+        assert this.ids.length >= INITIAL_CAPACITY && Integer.bitCount(this.ids.length) == 1;
+        assert this.head >= 0 && this.head < this.ids.length;
+        assert this.size >= 0 && this.size <= this.ids.length;
+    }
+
+    /**
+     * Make an empty queue.
+     */
+    public ActionQueue() {
+        checkRep();
+    }
+
+    /**
+     * Add the action of a gadget to the end of the queue.
+     * @param id id of the gadget whose action is waiting, must be >= 0
+     */
+    public void post(int id) {
+        assert id >= 0;
+        if (this.size == this.ids.length) {
+            int[] grown = new int[2*this.ids.length];
+            for (int i = 0; i < this.size; i++) {
+                grown[i] = this.ids[(this.head + i) & (this.ids.length - 1)];
+            }
+            this.ids = grown;
+            this.head = 0;
+        }
+        this.ids[(this.head + this.size) & (this.ids.length - 1)] = id;
+        this.size++;
+        checkRep();
+    }
+
+    /**
+     * Remove the oldest action from the queue.
+     * @return id of the gadget whose action was posted earliest of those waiting
+     * @throws IllegalStateException if the queue is empty
+     */
+    public int poll() {
+        if (this.size == 0) {
+            throw new IllegalStateException("no actions are waiting");
+        }
+        int id = this.ids[this.head];
+        this.head = (this.head + 1) & (this.ids.length - 1);
+        this.size--;
+        checkRep();
+        return id;
+    }
+
+    /**
+     * @return true iff no actions are waiting
+     */
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    /**
+     * @return number of actions waiting
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Remove every waiting action, keeping the buffer for reuse.
+     */
+    public void clear() {
+        this.head = 0;
+        this.size = 0;
+        checkRep();
+    }
+}
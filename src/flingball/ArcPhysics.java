@@ -0,0 +1,268 @@
+package flingball;
+
+import physics.Circle;
+import physics.LineSegment;
+import physics.Physics;
+import physics.Physics.DoublePair;
+import physics.Vect;
+
+/**
+ * Collision times for a ball that falls under constant gravity between collisions, so that its center follows
+ * the parabola c(t) = c + v*t + (0, g*t^2/2) rather than a straight line. Walls are solved in closed form, since
+ * the distance from a line is a quadratic in t. Circles give a quartic, whose roots are isolated exactly: its turning
+ * points are the roots of its derivative, a cubic, whose own turning points are the roots of a quadratic. Between
+ * two turning points the quartic is monotonic, so it has a root there exactly when it changes sign, and the root is
+ * refined with a safeguarded Newton iteration. No collision is missed, however briefly the ball grazes the circle.
+ */
+public class ArcPhysics {
+
+    private static final double NO_COLLISION = Double.MAX_VALUE/2;
+    private static final int MAX_ITERATIONS = 50;
+    private static final double TOLERANCE = 1e-12;
+
+    private ArcPhysics() {
+        // nobody should be constructing an ArcPhysics
+    }
+
+    /**
+     * Compute the location of a ball after falling along its arc for time t.
+     * @param center center of the ball at time 0
+     * @param velocity velocity of the ball at time 0
+     * @param gravity downward acceleration of the ball, in L/s^2
+     * @param t time since time 0, in seconds
+     * @return center of the ball at time t
+     */
+    public static Vect locationAt(Vect center, Vect velocity, double gravity, double t) {
+        return new Vect(center.x() + velocity.x()*t, center.y() + velocity.y()*t + gravity*t*t/2);
+    }
+
+    /**
+     * Compute the velocity of a ball after falling along its arc for time t.
+     * @param velocity velocity of the ball at time 0
+     * @param gravity downward acceleration of the ball, in L/s^2
+     * @param t time since time 0, in seconds
+     * @return velocity of the ball at time t
+     */
+    public static Vect velocityAt(Vect velocity, double gravity, double t) {
+        return new Vect(velocity.x(), velocity.y() + gravity*t);
+    }
+
+    /**
+     * Compute the time until a ball falling along its arc hits a wall, like Physics.timeUntilWallCollision().
+     * @param side the wall
+     * @param ball the ball at time 0
+     * @param velocity velocity of the ball at time 0
+     * @param gravity downward acceleration of the ball, in L/s^2
+     * @param horizon latest time to consider, in seconds
+     * @return time until the ball first touches side while moving towards it, or Double.MAX_VALUE/2 if it does
+     *         not do so within horizon
+     */
+    public static double timeUntilWallCollision(LineSegment side, Circle ball, Vect velocity, double gravity,
+            double horizon) {
+        double length = side.length();
+        if (length == 0) {
+            return timeUntilCircleCollision(new Circle(side.p1(), 0), ball, velocity, gravity, horizon);
+        }
+        double dx = (side.p2().x() - side.p1().x()) / length;
+        double dy = (side.p2().y() - side.p1().y()) / length;
+        double nx = -dy;
+        double ny = dx;
+        double px = ball.getCenter().x() - side.p1().x();
+        double py = ball.getCenter().y() - side.p1().y();
+
+        // signed distance from the wall's line is f(t) = f0 + f1*t + f2*t^2, with the ball on the side s of the line
+        double f0 = nx*px + ny*py;
+        double f1 = nx*velocity.x() + ny*velocity.y();
+        double f2 = ny*gravity/2;
+        double s = f0 >= 0 ? 1 : -1;
+        if (s*f0 < ball.getRadius() - TOLERANCE) {
+            return NO_COLLISION; // already overlapping the wall's line
+        }
+        DoublePair roots = Physics.quadraticSolution(s*f2, s*f1, s*f0 - ball.getRadius());
+        for (double t : new double[] { Math.min(roots.d1, roots.d2), Math.max(roots.d1, roots.d2) }) {
+            if (Double.isNaN(t) || t < 0 || t > horizon) {
+                continue;
+            }
+            if (s*(f1 + 2*f2*t) >= 0) {
+                continue; // moving away from the wall at this root
+            }
+            Vect location = locationAt(ball.getCenter(), velocity, gravity, t);
+            double along = dx*(location.x() - side.p1().x()) + dy*(location.y() - side.p1().y());
+            return 0 <= along && along < length ? t : NO_COLLISION;
+        }
+        return NO_COLLISION;
+    }
+
+    /**
+     * Compute the time until a ball falling along its arc hits a fixed circle, like
+     * Physics.timeUntilCircleCollision().
+     * @param circle the fixed circle
+     * @param ball the ball at time 0
+     * @param velocity velocity of the ball at time 0
+     * @param gravity downward acceleration of the ball, in L/s^2
+     * @param horizon latest time to consider, in seconds, must be finite
+     * @return time until the ball first touches circle while moving towards it, or Double.MAX_VALUE/2 if it does
+     *         not do so within horizon
+     */
+    public static double timeUntilCircleCollision(Circle circle, Circle ball, Vect velocity, double gravity,
+            double horizon) {
+        double px = ball.getCenter().x() - circle.getCenter().x();
+        double py = ball.getCenter().y() - circle.getCenter().y();
+        double distance = circle.getRadius() + ball.getRadius();
+        double vx = velocity.x();
+        double vy = velocity.y();
+
+        // gap(t) = c0 + c1*t + c2*t^2 + c3*t^3 + c4*t^4, whose derivative is the cubic slope, whose own derivative
+        // is the quadratic 2*c2 + 6*c3*t + 12*c4*t^2
+        double a = gravity/2;
+        double c2 = vx*vx + vy*vy + 2*py*a;
+        double c3 = 2*vy*a;
+        double c4 = a*a;
+        double[] slope = { 2*(px*vx + py*vy), 2*c2, 3*c3, 4*c4 };
+
+        // slope is monotonic between the roots of its derivative, so each of those pieces of the horizon holds at
+        // most one root of slope, where it changes sign; these roots are the turning points of the gap
+        double[] bends = new double[2];
+        int bendCount = quadraticRoots(12*c4, 6*c3, 2*c2, horizon, bends);
+        double[] turns = new double[3];
+        int turnCount = 0;
+        double start = 0;
+        double slopeStart = evaluate(slope, 0);
+        for (int i = 0; i <= bendCount; i++) {
+            double end = i < bendCount ? bends[i] : horizon;
+            double slopeEnd = evaluate(slope, end);
+            if ((slopeStart < 0 && slopeEnd >= 0) || (slopeStart > 0 && slopeEnd <= 0)) {
+                turns[turnCount++] = polynomialRoot(slope, start, end);
+            }
+            start = end;
+            slopeStart = slopeEnd;
+        }
+
+        // the gap is monotonic between its turning points, so the first piece of the horizon along which it falls
+        // from positive to zero or below holds the time the ball comes into contact from outside
+        double before = 0;
+        double hBefore = gap(px, py, vx, vy, gravity, distance, 0);
+        for (int i = 0; i <= turnCount; i++) {
+            double after = i < turnCount ? turns[i] : horizon;
+            double hAfter = gap(px, py, vx, vy, gravity, distance, after);
+            if (hBefore > 0 && hAfter <= 0) {
+                return refine(px, py, vx, vy, gravity, distance, before, after);
+            }
+            before = after;
+            hBefore = hAfter;
+        }
+        return NO_COLLISION;
+    }
+
+    /**
+     * Find the roots of A*t^2 + B*t + C strictly between 0 and horizon.
+     * @param roots array of length >= 2 to store the roots in, in increasing order
+     * @return number of roots stored
+     */
+    private static int quadraticRoots(double A, double B, double C, double horizon, double[] roots) {
+        double first;
+        double second;
+        if (A == 0) {
+            if (B == 0) {
+                return 0;
+            }
+            first = -C/B;
+            second = first;
+        } else {
+            double discriminant = B*B - 4*A*C;
+            if (discriminant < 0) {
+                return 0;
+            }
+            // the stable form, which avoids subtracting nearly equal numbers
+            double q = -(B + Math.copySign(Math.sqrt(discriminant), B))/2;
+            first = q != 0 ? Math.min(q/A, C/q) : 0;
+            second = q != 0 ? Math.max(q/A, C/q) : 0;
+        }
+        int count = 0;
+        if (first > 0 && first < horizon) {
+            roots[count++] = first;
+        }
+        if (second != first && second > 0 && second < horizon) {
+            roots[count++] = second;
+        }
+        return count;
+    }
+
+    /**
+     * @param p coefficients of a polynomial, constant term first
+     * @return the value of the polynomial at t
+     */
+    private static double evaluate(double[] p, double t) {
+        double value = 0;
+        for (int k = p.length - 1; k >= 0; k--) {
+            value = value*t + p[k];
+        }
+        return value;
+    }
+
+    /**
+     * Find the root of the polynomial p in [low, high], where p(low) and p(high) differ in sign or p(high) is 0, by
+     * Newton's method, falling back to bisection whenever a Newton step leaves the bracket.
+     * @param p coefficients of a polynomial, constant term first
+     * @return the root, to within the tolerance
+     */
+    private static double polynomialRoot(double[] p, double low, double high) {
+        boolean rising = evaluate(p, low) < 0;
+        double t = (low + high)/2;
+        for (int i = 0; i < MAX_ITERATIONS && high - low > TOLERANCE; i++) {
+            double value = 0;
+            double derivative = 0;
+            for (int k = p.length - 1; k >= 0; k--) {
+                derivative = derivative*t + value;
+                value = value*t + p[k];
+            }
+            if (value == 0) {
+                return t;
+            }
+            if ((value < 0) == rising) {
+                low = t;
+            } else {
+                high = t;
+            }
+            double next = derivative != 0 ? t - value/derivative : Double.NaN;
+            t = next > low && next < high ? next : (low + high)/2;
+        }
+        return (low + high)/2;
+    }
+
+    /**
+     * @return squared distance between the centers at time t minus the squared contact distance
+     */
+    private static double gap(double px, double py, double vx, double vy, double gravity, double distance, double t) {
+        double x = px + vx*t;
+        double y = py + vy*t + gravity*t*t/2;
+        return x*x + y*y - distance*distance;
+    }
+
+    /**
+     * Find the root of gap() in [low, high], where gap(low) > 0 >= gap(high), by Newton's method, falling back
+     * to bisection whenever a Newton step leaves the bracket.
+     * @return the time of contact, to within the tolerance
+     */
+    private static double refine(double px, double py, double vx, double vy, double gravity, double distance,
+            double low, double high) {
+        double t = (low + high)/2;
+        for (int i = 0; i < MAX_ITERATIONS && high - low > TOLERANCE; i++) {
+            double x = px + vx*t;
+            double y = py + vy*t + gravity*t*t/2;
+            double h = x*x + y*y - distance*distance;
+            double derivative = 2*(x*vx + y*(vy + gravity*t));
+            if (Math.abs(h) < TOLERANCE) {
+                return t;
+            }
+            if (h > 0) {
+                low = t;
+            } else {
+                high = t;
+            }
+            double next = derivative != 0 ? t - h/derivative : Double.NaN;
+            t = next > low && next < high ? next : (low + high)/2;
+        }
+        return low;
+    }
+}
@@ -6,6 +6,8 @@ import java.util.Set;
 
 import physics.Circle;
 import physics.LineSegment;
+import physics.Physics;
+import physics.Physics.VectPair;
 import physics.Vect;
 
 /**
@@ -14,50 +16,52 @@ import physics.Vect;
  * must be constantly changing throughout the game, so it would be more computationally efficient
  * to make it mutable. We ensure through our rep safety argument that this implementation is safe from bugs.
  * See safety from rep exposure for details.
+ * 
+ * The mutable state of a ball lives in one slot of a BallStore, and a Ball is a view of that slot. A new ball has
+ * a store of its own until a board adopts it into the store shared by all the balls on that board.
  */
 public class Ball implements GameExpression {
 
     private final double radius = 0.25;
-    private final int boardSize = 20;
+    private final double mass = 1;
+    private static final double CONTACT_TOLERANCE = 1e-6;
     private final String name;
-    private Circle ballCircle;
-    private Vect velocity;
-    private GameExpression nextCollision = null;
-    private double nextCollisionTime = Long.MAX_VALUE/2;
     private final Color color = Color.blue;
-    private boolean absorbed = false;
+    private BallStore store;
+    private int slot;
     
     // Abstraction function:
-    // AF(radius, name, ballCircle, velocity, nextCollision, nextCollisionTime, color, absorbed) = a ball with
-    // radius equal to radius and unique identifier name, represented by the circle ballCircle, traveling at
-    // velocity on the flingball board. The next gadget or wall the ball will collide with is nextCollision, and it
-    // will collide at nextCollisionTime. It is currently absorbed by an absorber if absorbed is true. Its color is
-    // color.
+    // AF(radius, mass, name, color, store, slot) = a ball with radius equal to radius and unique identifier name,
+    // centered at (store.x(slot), store.y(slot)) and traveling at velocity (store.vx(slot), store.vy(slot)) on the
+    // flingball board. The next gadget or wall the ball will collide with is store.nextCollision(slot), and it
+    // will collide at store.nextCollisionTime(slot). It is currently absorbed by an absorber if
+    // store.absorbed(slot) is true. Its color is color. It collides with other balls as a ball of mass mass.
     //
     // Rep invariant:
     // - radius > 0
     // - name is not the empty string
-    // - nextCollisionTime cannot be negative 
-    // - ballCircle is located on the flingball board 
+    // - store.ball(slot) == this and store.radius(slot) == radius
+    // - store.nextCollisionTime(slot) cannot be negative 
+    // - the ball does not cross the top or left of a board (the board it is placed on checks that it lies within
+    //   the walls)
     //
     // Safety from rep exposure argument:
-    // - radius and name are private, final, and immutable
+    // - radius, mass, and name are private, final, and immutable
     // - color is private and final
-    // - nextCollisionTime, nextCollisionTime, and absorbed are private, but must be mutable to 
-    //   maintain the ball's functionality
-    // - ballCircle is private, but must be reassignable to maintain the ball's functionality
-    // - All observer and mutator methods (setLocation, getVelocity, and setVelocity) make defensive copies of
-    //   the input vector or the rep from this class as applicable depending on the method so client 
-    //   can't modify this class's rep
+    // - store and slot are private, but must be reassignable so that a board can adopt the ball into its own
+    //   store; they are only reassigned by BallStore within this package
+    // - the store is returned by getStore() only within this package, to the simulation that owns the ball
+    // - All observer methods return new immutable Vects built from the stored coordinates, and all mutator methods
+    //   copy the coordinates of their input vectors into the store, so client can't modify this class's rep
     
     private void checkRep() {
         assert this.radius > 0;
         assert !this.name.equals("");
-        assert this.nextCollisionTime >= 0;
-        assert this.ballCircle.getCenter().x() >= 0 + this.radius;
-        assert this.ballCircle.getCenter().x() <= boardSize - this.radius;
-        assert this.ballCircle.getCenter().y() >= 0 + this.radius;
-        assert this.ballCircle.getCenter().y() <= boardSize - this.radius;
+        assert this.store.ball(this.slot) == this;
+        assert this.store.radius(this.slot) == this.radius;
+        assert this.store.nextCollisionTime(this.slot) >= 0;
+        assert this.store.x(this.slot) >= 0 + this.radius;
+        assert this.store.y(this.slot) >= 0 + this.radius;
     }
     
     /**
@@ -70,11 +74,36 @@ public class Ball implements GameExpression {
      */
     public Ball(String name, double x, double y, double xVelocity, double yVelocity) {
         this.name = name;
-        this.velocity = new Vect(xVelocity, yVelocity);
-        Circle circle = new Circle(new Vect(x ,y), this.radius);
-        this.ballCircle = circle;
+        this.store = new BallStore(1);
+        this.slot = this.store.add(this, x, y, xVelocity, yVelocity, this.radius);
         checkRep();
     }
+    
+    /**
+     * Get the store that holds the state of this ball.
+     * @return store of this ball
+     */
+    BallStore getStore() {
+        return this.store;
+    }
+    
+    /**
+     * Get the slot of this ball in its store.
+     * @return slot of this ball in getStore()
+     */
+    int getSlot() {
+        return this.slot;
+    }
+    
+    /**
+     * Make this ball a view of a different slot, after its state has been moved there.
+     * @param store store that now holds the state of this ball
+     * @param slot slot of this ball in store
+     */
+    void setSlot(BallStore store, int slot) {
+        this.store = store;
+        this.slot = slot;
+    }
 
     /**
      * Set the next upcoming collision time (i.e. the amount of time until the next collision).
@@ -82,7 +111,7 @@ public class Ball implements GameExpression {
      * @param time next collision time
      */
     protected void setNextCollisionTime(double time) {
-        this.nextCollisionTime = time;
+        this.store.setNextCollisionTime(this.slot, time);
         checkRep();
     }
     
@@ -91,7 +120,7 @@ public class Ball implements GameExpression {
      * @return next collision time
      */
     protected double getNextCollisionTime() {
-        return this.nextCollisionTime;
+        return this.store.nextCollisionTime(this.slot);
     }
     
     /**
@@ -99,7 +128,7 @@ public class Ball implements GameExpression {
      * @param gadget the gadget this ball will hit next
      */
     protected void setNextCollision(GameExpression gadget) {
-        this.nextCollision = gadget;
+        this.store.setNextCollision(this.slot, gadget);
         checkRep();
     }
     
@@ -108,7 +137,7 @@ public class Ball implements GameExpression {
      * @return the gadget this ball will hit next
      */
     protected GameExpression getNextCollision() {
-        return this.nextCollision;
+        return this.store.nextCollision(this.slot);
     }
     
     /**
@@ -117,7 +146,7 @@ public class Ball implements GameExpression {
      */
     protected Circle getBallCircle() {
         checkRep();
-        return this.ballCircle;
+        return new Circle(this.store.x(this.slot), this.store.y(this.slot), this.radius);
     }
     
     /**
@@ -125,7 +154,7 @@ public class Ball implements GameExpression {
      * @param newVelocity the updated velocity of this ball
      */
     public void setVelocity(Vect newVelocity) {
-        this.velocity = new Vect(newVelocity.x(), newVelocity.y());
+        this.store.setVelocity(this.slot, newVelocity.x(), newVelocity.y());
         checkRep();
     }
     
@@ -135,7 +164,7 @@ public class Ball implements GameExpression {
      */
     public Vect getVelocity() {
         checkRep();
-        return new Vect(this.velocity.x(), this.velocity.y());
+        return new Vect(this.store.vx(this.slot), this.store.vy(this.slot));
     }
     
     /**
@@ -143,7 +172,7 @@ public class Ball implements GameExpression {
      */
     public boolean getAbsorbed() {
         checkRep();
-        return this.absorbed;
+        return this.store.absorbed(this.slot);
     }
         
     /**
@@ -151,7 +180,7 @@ public class Ball implements GameExpression {
      * @param absorbed boolean indicating whether or not ball is absorbed
      */
     public void setAbsorbed(Boolean absorbed) {
-        this.absorbed = absorbed;
+        this.store.setAbsorbed(this.slot, absorbed);
         checkRep();
     }
 
@@ -167,7 +196,7 @@ public class Ball implements GameExpression {
 
     @Override public Vect getLocation() {
         checkRep();
-        return new Vect(this.ballCircle.getCenter().x(), this.ballCircle.getCenter().y());
+        return new Vect(this.store.x(this.slot), this.store.y(this.slot));
     }
     
     @Override public Set<LineSegment> getSides() {
@@ -183,8 +212,7 @@ public class Ball implements GameExpression {
      * @param newLocation Vector pointing to the new location of this ball.
      */
     protected void setLocation(Vect newLocation) {
-        Vect nL = new Vect(newLocation.x(), newLocation.y());
-        this.ballCircle = new Circle(nL, this.radius);
+        this.store.setLocation(this.slot, newLocation.x(), newLocation.y());
         checkRep();
     }
 
@@ -197,12 +225,30 @@ public class Ball implements GameExpression {
 
     @Override public double timeUntilCollision(Ball ball) {
         checkRep();
-        return Double.MAX_VALUE/2;
+        if (ball == this) {
+            return Double.MAX_VALUE/2;
+        }
+        double time = Physics.timeUntilBallBallCollision(this.getBallCircle(), this.getVelocity(), 
+                ball.getBallCircle(), ball.getVelocity());
+        return Double.isInfinite(time) ? Double.MAX_VALUE/2 : time;
     }
 
+    /**
+     * Updates the velocities of this ball and ball after they collide with each other, treating the collision as
+     * perfectly elastic between balls of equal mass. If the two balls are not touching, then do nothing.
+     * @param ball the other ball that may or may not collide with this ball
+     */
     @Override public void collision(Ball ball) {
         checkRep();
-        return;
+        double contactDistance = this.radius + ball.getBallCircle().getRadius();
+        if (ball == this || Physics.distanceSquared(this.getLocation(), ball.getLocation()) 
+                > (contactDistance + CONTACT_TOLERANCE)*(contactDistance + CONTACT_TOLERANCE)) {
+            return;
+        }
+        VectPair velocities = Physics.reflectBalls(this.getLocation(), mass, this.getVelocity(), 
+                ball.getLocation(), mass, ball.getVelocity());
+        this.setVelocity(velocities.v1);
+        ball.setVelocity(velocities.v2);
     }
 
     @Override public boolean setTrigger(GameExpression target) {
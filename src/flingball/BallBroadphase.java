@@ -0,0 +1,328 @@
+package flingball;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import physics.Vect;
+
+/**
+ * A mutable sort-and-sweep broadphase for ball-to-ball collisions. Each ball is given the bounding box swept by
+ * its circle over a window of time, and the balls are kept sorted by the left edge of their boxes. Only pairs of
+ * balls whose boxes overlap are candidates for a collision within the window, and because the balls are sorted
+ * by x, finding them only compares each ball with its neighbors along the x axis instead of with every other ball.
+ * Balls may fall under gravity as they move, in which case each box covers the ball's arc.
+ *
+ * The boxes are kept in parallel arrays of doubles indexed by the slots of the balls in their BallStore, and the
+ * sorted order is an array of slots. rebuild() re-sorts the balls once per window by insertion sort, starting from
+ * the order of the last window, which takes close to linear time since balls move little between windows. A box
+ * that changes within the window keeps its place unless its left edge moves left, in which case it is shifted left
+ * past the few boxes it now starts before. Along with the order, the broadphase keeps the running maximum of the
+ * right edges of the boxes, so a query scans back only as far as the boxes that can still reach it, however wide
+ * some box elsewhere on the board may be.
+ */
+public class BallBroadphase {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final double gravity;
+    private Ball[] balls = new Ball[INITIAL_CAPACITY];
+    private boolean[] included = new boolean[INITIAL_CAPACITY];
+    private int[] position = new int[INITIAL_CAPACITY];
+    private double[] xMin = new double[INITIAL_CAPACITY];
+    private double[] yMin = new double[INITIAL_CAPACITY];
+    private double[] xMax = new double[INITIAL_CAPACITY];
+    private double[] yMax = new double[INITIAL_CAPACITY];
+    private int[] order = new int[INITIAL_CAPACITY];
+    private double[] key = new double[INITIAL_CAPACITY];
+    private double[] reach = new double[INITIAL_CAPACITY];
+    private int count = 0;
+    private long pairTests = 0;
+
+    // Abstraction function:
+    // AF(gravity, balls, included, position, xMin, yMin, xMax, yMax, order, key, reach, count, pairTests) = a set of
+    // balls falling with acceleration gravity, namely balls[s] for every slot s with included[s], each with the
+    // swept bounding box {xMin[s], yMin[s], xMax[s], yMax[s]}; pairTests pairs of balls have been reported as
+    // overlapping so far. order[0..count) lists the slots of the balls in sweep order, key[i] is the sort key of
+    // order[i], and reach[i] bounds the right edges of the boxes of order[0..i].
+    //
+    // Rep invariant:
+    // - 0 <= count <= order.length == key.length == reach.length
+    // - balls, included, position, xMin, yMin, xMax, and yMax all have the same length
+    // - position[order[i]] == i for every i < count, and position[s] == -1 for every slot s not in order[0..count)
+    // - every included slot is in order[0..count); slots in it that are not included are balls absorbed since the
+    //   last rebuild, which keep their place but overlap nothing
+    // - key is nondecreasing, and key[i] <= xMin[order[i]] for every i < count
+    // - reach is nondecreasing, and reach[i] >= xMax[order[j]] for every j <= i < count
+    // - pairTests >= 0
+    // - gravity >= 0
+    //
+    // Safety from rep exposure argument:
+    // - all fields are private, gravity is final and immutable, and the arrays are never returned to clients
+    // - the balls themselves are shared with the simulation that owns them, which is what clients want
+
+    private void checkRep() {
+        assert this.count >= 0 && this.count <= this.order.length;
+        assert this.key.length == this.order.length && this.reach.length == this.order.length;
+        assert this.included.length == this.balls.length && this.position.length == this.balls.length;
+        assert this.pairTests >= 0;
+        assert this.gravity >= 0;
+    }
+
+    /**
+     * Construct an empty broadphase for balls that move in straight lines.
+     */
+    public BallBroadphase() {
+        this(0);
+    }
+
+    /**
+     * Construct an empty broadphase for balls that fall under gravity as they move.
+     * @param gravity downward acceleration of the balls, in L/s^2, must be >= 0
+     */
+    public BallBroadphase(double gravity) {
+        this.gravity = gravity;
+        Arrays.fill(this.position, -1);
+        checkRep();
+    }
+
+    /**
+     * Recompute the swept boxes of the given balls and re-sort them. Balls keep their relative order from the
+     * last rebuild, so re-sorting nearly sorted balls takes close to linear time.
+     * @param balls balls to include, each located at its position for the start of the window; absorbed balls
+     *        are left out since they cannot collide
+     * @param window length of the window of time, in seconds, must be >= 0
+     */
+    public void rebuild(Collection<Ball> balls, double window) {
+        for (int i = 0; i < this.count; i++) {
+            this.included[this.order[i]] = false;
+        }
+        for (Ball ball : balls) {
+            if (!ball.getAbsorbed()) {
+                int slot = ball.getSlot();
+                ensureSlot(slot);
+                this.balls[slot] = ball;
+                this.included[slot] = true;
+                computeBox(ball, window);
+            }
+        }
+        // keep the previous order of the balls still included, then add the new ones after them
+        int kept = 0;
+        for (int i = 0; i < this.count; i++) {
+            int slot = this.order[i];
+            if (this.included[slot]) {
+                this.order[kept++] = slot;
+            } else {
+                this.position[slot] = -1;
+            }
+        }
+        for (int i = 0; i < kept; i++) {
+            this.position[this.order[i]] = i;
+        }
+        this.count = kept;
+        for (Ball ball : balls) {
+            int slot = ball.getSlot();
+            if (!ball.getAbsorbed() && this.position[slot] < 0) {
+                ensurePosition(this.count);
+                this.position[slot] = this.count;
+                this.order[this.count++] = slot;
+            }
+        }
+        // insertion sort by the left edges of the boxes, which does little work on nearly sorted balls
+        for (int i = 1; i < this.count; i++) {
+            int slot = this.order[i];
+            double left = this.xMin[slot];
+            int j = i;
+            while (j > 0 && this.xMin[this.order[j - 1]] > left) {
+                this.order[j] = this.order[j - 1];
+                j--;
+            }
+            this.order[j] = slot;
+        }
+        double right = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < this.count; i++) {
+            int slot = this.order[i];
+            this.position[slot] = i;
+            this.key[i] = this.xMin[slot];
+            right = Math.max(right, this.xMax[slot]);
+            this.reach[i] = right;
+        }
+        checkRep();
+    }
+
+    /**
+     * Recompute the swept box of ball after its velocity or absorbed state has changed.
+     * @param ball ball to update, located at its position for the start of the remaining window
+     * @param window length of the remaining window, in seconds, must be >= 0
+     */
+    public void update(Ball ball, double window) {
+        int slot = ball.getSlot();
+        ensureSlot(slot);
+        if (ball.getAbsorbed()) {
+            this.included[slot] = false; // keeps its place, but overlaps nothing
+            return;
+        }
+        this.balls[slot] = ball;
+        this.included[slot] = true;
+        computeBox(ball, window);
+        int p = this.position[slot];
+        if (p < 0) { // not swept since the last rebuild, so start from the end
+            ensurePosition(this.count);
+            p = this.count++;
+            this.order[p] = slot;
+            this.key[p] = Double.POSITIVE_INFINITY;
+            this.reach[p] = p > 0 ? this.reach[p - 1] : Double.NEGATIVE_INFINITY;
+        }
+        int last = p;
+        if (this.xMin[slot] < this.key[p]) { // shift left past the boxes it now starts before
+            double left = this.xMin[slot];
+            while (p > 0 && this.key[p - 1] > left) {
+                this.order[p] = this.order[p - 1];
+                this.key[p] = this.key[p - 1];
+                this.position[this.order[p]] = p;
+                p--;
+            }
+            this.order[p] = slot;
+            this.key[p] = left;
+            this.position[slot] = p;
+        }
+        // the boxes from its new place to its old one have been reordered, and later ones may now be reached
+        for (int i = p; i <= last; i++) {
+            double before = i > 0 ? this.reach[i - 1] : Double.NEGATIVE_INFINITY;
+            this.reach[i] = Math.max(before, this.xMax[this.order[i]]);
+        }
+        for (int i = last + 1; i < this.count && this.reach[i] < this.reach[last]; i++) {
+            this.reach[i] = this.reach[last];
+        }
+        checkRep();
+    }
+
+    /**
+     * Find the balls whose swept boxes overlap the swept box of ball.
+     * @param ball ball to query, must have been added by rebuild() or update()
+     * @return the other balls whose boxes overlap the box of ball, possibly empty
+     */
+    public List<Ball> overlapping(Ball ball) {
+        List<Ball> overlapping = new ArrayList<>();
+        int slot = ball.getSlot();
+        if (slot >= this.included.length || !this.included[slot]) {
+            return overlapping;
+        }
+        // every box that overlaps starts at or before this box's right edge, and reaches at least its left edge
+        for (int i = upperBound(this.xMax[slot]) - 1; i >= 0 && this.reach[i] >= this.xMin[slot]; i--) {
+            int other = this.order[i];
+            if (other != slot && this.included[other] && overlap(slot, other)) {
+                overlapping.add(this.balls[other]);
+            }
+        }
+        this.pairTests += overlapping.size();
+        return overlapping;
+    }
+
+    /**
+     * Sweep the sorted balls once and find every pair whose swept boxes overlap.
+     * @return list of overlapping pairs, each as a two-element array of balls
+     */
+    public List<Ball[]> overlappingPairs() {
+        List<Ball[]> pairs = new ArrayList<>();
+        for (int i = 0; i < this.count; i++) {
+            int slot = this.order[i];
+            if (!this.included[slot]) {
+                continue;
+            }
+            // sorted by a key no greater than each box's left edge, so no later box can overlap either
+            for (int j = i + 1; j < this.count && this.key[j] <= this.xMax[slot]; j++) {
+                int other = this.order[j];
+                if (this.included[other] && overlap(slot, other)) {
+                    pairs.add(new Ball[] { this.balls[slot], this.balls[other] });
+                }
+            }
+        }
+        this.pairTests += pairs.size();
+        return pairs;
+    }
+
+    /**
+     * @return total number of candidate pairs this broadphase has reported, for measuring how many narrowphase
+     *         ball-to-ball tests the simulation performed
+     */
+    public long getPairTests() {
+        return this.pairTests;
+    }
+
+    /**
+     * Set the swept box of the slot of ball, which must be within the arrays.
+     */
+    private void computeBox(Ball ball, double window) {
+        int slot = ball.getSlot();
+        Vect location = ball.getLocation();
+        Vect velocity = ball.getVelocity();
+        double radius = ball.getBallCircle().getRadius();
+        Vect end = ArcPhysics.locationAt(location, velocity, this.gravity, window);
+        double top = Math.min(location.y(), end.y());
+        double bottom = Math.max(location.y(), end.y());
+        double peak = -velocity.y()/this.gravity;
+        if (this.gravity > 0 && velocity.y() < 0 && peak < window) { // arc peaks in the window
+            top = Math.min(top, ArcPhysics.locationAt(location, velocity, this.gravity, peak).y());
+        }
+        this.xMin[slot] = Math.min(location.x(), end.x()) - radius;
+        this.yMin[slot] = top - radius;
+        this.xMax[slot] = Math.max(location.x(), end.x()) + radius;
+        this.yMax[slot] = bottom + radius;
+    }
+
+    /**
+     * Grow the arrays indexed by slot, if needed, so that they hold slot.
+     */
+    private void ensureSlot(int slot) {
+        if (slot < this.balls.length) {
+            return;
+        }
+        int capacity = Math.max(slot + 1, 2*this.balls.length);
+        int old = this.position.length;
+        this.balls = Arrays.copyOf(this.balls, capacity);
+        this.included = Arrays.copyOf(this.included, capacity);
+        this.position = Arrays.copyOf(this.position, capacity);
+        Arrays.fill(this.position, old, capacity, -1);
+        this.xMin = Arrays.copyOf(this.xMin, capacity);
+        this.yMin = Arrays.copyOf(this.yMin, capacity);
+        this.xMax = Arrays.copyOf(this.xMax, capacity);
+        this.yMax = Arrays.copyOf(this.yMax, capacity);
+    }
+
+    /**
+     * Grow the arrays indexed by position in the order, if needed, so that they hold index.
+     */
+    private void ensurePosition(int index) {
+        if (index < this.order.length) {
+            return;
+        }
+        int capacity = Math.max(index + 1, 2*this.order.length);
+        this.order = Arrays.copyOf(this.order, capacity);
+        this.key = Arrays.copyOf(this.key, capacity);
+        this.reach = Arrays.copyOf(this.reach, capacity);
+    }
+
+    /**
+     * @return the index of the first position in the order whose key is to the right of x
+     */
+    private int upperBound(double x) {
+        int low = 0;
+        int high = this.count;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (this.key[mid] <= x) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private boolean overlap(int slot, int other) {
+        return this.xMin[slot] <= this.xMax[other] && this.xMin[other] <= this.xMax[slot]
+                && this.yMin[slot] <= this.yMax[other] && this.yMin[other] <= this.yMax[slot];
+    }
+}
@@ -0,0 +1,454 @@
+package flingball;
+
+import java.util.Arrays;
+
+/**
+ * A mutable structure-of-arrays store for the state of a group of balls. The position, velocity, radius,
+ * absorbed flag, predicted next collision and its contact, and last-updated simulation time of every ball are kept in parallel
+ * primitive arrays indexed by the ball's slot, so a pass over all the balls streams linearly through memory and
+ * reading or updating a ball does not allocate. A Ball is a thin view of one slot of a store.
+ *
+ * The store also records which balls have changed velocity or absorbed state since the changes were last
+ * cleared, in the order they first changed, so that a simulation can recompute the predictions of only those
+ * balls.
+ */
+public class BallStore {
+
+    private static final int INITIAL_CAPACITY = 16;
+    private static final double NO_COLLISION_TIME = Long.MAX_VALUE/2;
+
+    private Ball[] balls;
+    private double[] x;
+    private double[] y;
+    private double[] vx;
+    private double[] vy;
+    private double[] radius;
+    private double[] time;
+    private boolean[] absorbed;
+    private GameExpression[] nextCollision;
+    private double[] nextCollisionTime;
+    private Contact[] contacts;
+    private boolean[] changed;
+    private int[] changedSlots;
+    private int changedCount = 0;
+    private int size = 0;
+
+    // Abstraction function:
+    // AF(balls, x, y, vx, vy, radius, time, absorbed, nextCollision, nextCollisionTime, contacts, changed,
+    //    changedSlots, changedCount, size) = the state of the balls balls[0..size-1], where the ball in slot i is
+    // centered at (x[i], y[i]) with radius radius[i] at simulation time time[i], moving at velocity (vx[i], vy[i]),
+    // is absorbed iff absorbed[i], and is predicted to hit nextCollision[i] at time nextCollisionTime[i] as recorded
+    // in contacts[i]. The balls in slots
+    // changedSlots[0..changedCount-1], in that order, have changed since the changes were last cleared.
+    //
+    // Rep invariant:
+    // - 0 <= size <= balls.length, and every array has the same length as balls
+    // - balls[i] is a view of slot i of this store for every 0 <= i < size
+    // - 0 <= changedCount <= size
+    // - changed[i] iff i is in changedSlots[0..changedCount-1], and changedSlots has no duplicates
+    // - radius[i] > 0 and nextCollisionTime[i] >= 0 for every 0 <= i < size
+    // - contacts[i] is not null for every 0 <= i < size, and no two slots share a contact
+    //
+    // Safety from rep exposure argument:
+    // - all fields are private, and no array is ever returned to clients
+    // - balls[i] is returned by ball(), but Ball is the intended view of this store's state and only mutates
+    //   its own slot through this store's methods
+
+    private void checkRep() {
+        assert 0 <= this.size && this.size <= this.balls.length;
+        assert 0 <= this.changedCount && this.changedCount <= this.size;
+    }
+
+    /**
+     * Construct an empty store.
+     */
+    public BallStore() {
+        this(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Construct an empty store with room for the given number of balls before it has to grow.
+     * @param capacity initial number of slots, must be >= 1
+     */
+    public BallStore(int capacity) {
+        this.balls = new Ball[capacity];
+        this.x = new double[capacity];
+        this.y = new double[capacity];
+        this.vx = new double[capacity];
+        this.vy = new double[capacity];
+        this.radius = new double[capacity];
+        this.time = new double[capacity];
+        this.absorbed = new boolean[capacity];
+        this.nextCollision = new GameExpression[capacity];
+        this.nextCollisionTime = new double[capacity];
+        this.contacts = new Contact[capacity];
+        this.changed = new boolean[capacity];
+        this.changedSlots = new int[capacity];
+        checkRep();
+    }
+
+    /**
+     * Add a new ball to this store in the next free slot.
+     * @param ball the view that will read this slot
+     * @param x x coordinate of the ball's center
+     * @param y y coordinate of the ball's center
+     * @param vx x component of the ball's velocity
+     * @param vy y component of the ball's velocity
+     * @param radius radius of the ball, must be > 0
+     * @return slot of the new ball
+     */
+    int add(Ball ball, double x, double y, double vx, double vy, double radius) {
+        if (this.size == this.balls.length) {
+            grow();
+        }
+        int slot = this.size++;
+        this.balls[slot] = ball;
+        this.x[slot] = x;
+        this.y[slot] = y;
+        this.vx[slot] = vx;
+        this.vy[slot] = vy;
+        this.radius[slot] = radius;
+        this.time[slot] = 0;
+        this.absorbed[slot] = false;
+        this.nextCollision[slot] = null;
+        this.nextCollisionTime[slot] = NO_COLLISION_TIME;
+        if (this.contacts[slot] == null) {
+            this.contacts[slot] = new Contact();
+        }
+        this.contacts[slot].clear();
+        this.changed[slot] = false;
+        checkRep();
+        return slot;
+    }
+
+    /**
+     * Move ball from the store it is currently a view of into this store, keeping all of its state. Afterwards
+     * ball reads and writes its state in this store. Does nothing if ball is already in this store.
+     * @param ball ball to adopt
+     */
+    public void adopt(Ball ball) {
+        BallStore from = ball.getStore();
+        if (from == this) {
+            return;
+        }
+        int oldSlot = ball.getSlot();
+        int slot = add(ball, from.x[oldSlot], from.y[oldSlot], from.vx[oldSlot], from.vy[oldSlot], from.radius[oldSlot]);
+        this.time[slot] = from.time[oldSlot];
+        this.absorbed[slot] = from.absorbed[oldSlot];
+        this.nextCollision[slot] = from.nextCollision[oldSlot];
+        this.nextCollisionTime[slot] = from.nextCollisionTime[oldSlot];
+        from.remove(oldSlot);
+        ball.setSlot(this, slot);
+        checkRep();
+    }
+
+    /**
+     * Remove the ball in slot from this store, moving the last ball into its place.
+     */
+    private void remove(int slot) {
+        int last = --this.size;
+        if (this.changed[slot]) {
+            unmarkChanged(slot);
+        }
+        if (slot != last) {
+            if (this.changed[last]) {
+                unmarkChanged(last);
+                this.changed[slot] = false;
+                copySlot(last, slot);
+                markChanged(slot);
+            } else {
+                copySlot(last, slot);
+            }
+            this.balls[slot].setSlot(this, slot);
+        }
+        this.balls[last] = null;
+        this.nextCollision[last] = null;
+        checkRep();
+    }
+
+    private void copySlot(int from, int to) {
+        this.balls[to] = this.balls[from];
+        this.x[to] = this.x[from];
+        this.y[to] = this.y[from];
+        this.vx[to] = this.vx[from];
+        this.vy[to] = this.vy[from];
+        this.radius[to] = this.radius[from];
+        this.time[to] = this.time[from];
+        this.absorbed[to] = this.absorbed[from];
+        this.nextCollision[to] = this.nextCollision[from];
+        this.nextCollisionTime[to] = this.nextCollisionTime[from];
+        Contact contact = this.contacts[to]; // swapped, so that no two slots share a contact
+        this.contacts[to] = this.contacts[from];
+        this.contacts[from] = contact;
+    }
+
+    private void grow() {
+        int capacity = 2*this.balls.length;
+        this.balls = Arrays.copyOf(this.balls, capacity);
+        this.x = Arrays.copyOf(this.x, capacity);
+        this.y = Arrays.copyOf(this.y, capacity);
+        this.vx = Arrays.copyOf(this.vx, capacity);
+        this.vy = Arrays.copyOf(this.vy, capacity);
+        this.radius = Arrays.copyOf(this.radius, capacity);
+        this.time = Arrays.copyOf(this.time, capacity);
+        this.absorbed = Arrays.copyOf(this.absorbed, capacity);
+        this.nextCollision = Arrays.copyOf(this.nextCollision, capacity);
+        this.nextCollisionTime = Arrays.copyOf(this.nextCollisionTime, capacity);
+        this.contacts = Arrays.copyOf(this.contacts, capacity);
+        this.changed = Arrays.copyOf(this.changed, capacity);
+        this.changedSlots = Arrays.copyOf(this.changedSlots, capacity);
+    }
+
+    /**
+     * @return number of balls in this store
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * @param slot slot of a ball, 0 <= slot < size()
+     * @return the ball in slot
+     */
+    public Ball ball(int slot) {
+        return this.balls[slot];
+    }
+
+    double x(int slot) {
+        return this.x[slot];
+    }
+
+    double y(int slot) {
+        return this.y[slot];
+    }
+
+    double vx(int slot) {
+        return this.vx[slot];
+    }
+
+    double vy(int slot) {
+        return this.vy[slot];
+    }
+
+    double radius(int slot) {
+        return this.radius[slot];
+    }
+
+    boolean absorbed(int slot) {
+        return this.absorbed[slot];
+    }
+
+    GameExpression nextCollision(int slot) {
+        return this.nextCollision[slot];
+    }
+
+    double nextCollisionTime(int slot) {
+        return this.nextCollisionTime[slot];
+    }
+
+    /**
+     * @param slot slot of a ball
+     * @return the contact of the predicted next collision of the ball in slot
+     */
+    Contact contact(int slot) {
+        return this.contacts[slot];
+    }
+
+    /**
+     * Replace the contact of the ball in slot, without allocating, by handing back the one it replaces.
+     * @param slot slot of a ball
+     * @param contact new contact of the ball's predicted next collision, not held by any other slot
+     * @return the previous contact of the ball, which the caller may reuse
+     */
+    Contact swapContact(int slot, Contact contact) {
+        Contact previous = this.contacts[slot];
+        this.contacts[slot] = contact;
+        return previous;
+    }
+
+    /**
+     * @param slot slot of a ball
+     * @return simulation time at which the ball in slot was at its stored location
+     */
+    double time(int slot) {
+        return this.time[slot];
+    }
+
+    void setLocation(int slot, double x, double y) {
+        this.x[slot] = x;
+        this.y[slot] = y;
+    }
+
+    /**
+     * Set the velocity of the ball in slot, marking it as changed.
+     */
+    void setVelocity(int slot, double vx, double vy) {
+        this.vx[slot] = vx;
+        this.vy[slot] = vy;
+        markChanged(slot);
+    }
+
+    /**
+     * Set the absorbed state of the ball in slot, marking it as changed.
+     */
+    void setAbsorbed(int slot, boolean absorbed) {
+        this.absorbed[slot] = absorbed;
+        markChanged(slot);
+    }
+
+    void setNextCollision(int slot, GameExpression gadget) {
+        this.nextCollision[slot] = gadget;
+    }
+
+    void setNextCollisionTime(int slot, double time) {
+        this.nextCollisionTime[slot] = time;
+    }
+
+    /**
+     * Set the simulation time at which the ball in slot is at its stored location, without moving it.
+     */
+    void setTime(int slot, double time) {
+        this.time[slot] = time;
+    }
+
+    /**
+     * Set the simulation time of every ball, without moving any of them.
+     * @param time simulation time of the balls' stored locations
+     */
+    void setAllTimes(double time) {
+        Arrays.fill(this.time, 0, this.size, time);
+    }
+
+    /**
+     * Move the ball in slot from its stored time to time t, keeping it inside a playing area of the given size.
+     * The ball falls with the given acceleration as it moves, which changes its velocity without marking it as
+     * changed; with no acceleration it moves in a straight line. Absorbed balls stay where they are.
+     * @param slot slot of the ball to move
+     * @param t simulation time to move the ball to
+     * @param width width of the playing area, in L
+     * @param height height of the playing area, in L
+     * @param gravity downward acceleration of the ball while it moves, in L/s^2
+     */
+    void moveTo(int slot, double t, double width, double height, double gravity) {
+        double dt = t - this.time[slot];
+        this.time[slot] = t;
+        if (this.absorbed[slot] || dt <= 0) {
+            return;
+        }
+        double r = this.radius[slot];
+        this.x[slot] = Math.max(r, Math.min(width - r, this.x[slot] + this.vx[slot]*dt));
+        this.y[slot] = Math.max(r, Math.min(height - r, this.y[slot] + this.vy[slot]*dt + gravity*dt*dt/2));
+        this.vy[slot] += gravity*dt;
+    }
+
+    /**
+     * Move every ball to time t and then update the velocity of every ball that is not absorbed according to
+     * gravity and friction over dt seconds, marking the balls whose velocities change. Does not allocate.
+     * @param t simulation time to move the balls to
+     * @param width width of the playing area, in L
+     * @param height height of the playing area, in L
+     * @param gravity gravity coefficient, in L/s^2
+     * @param parabolic true if the balls fall under gravity as they move, false if they move in straight lines
+     *        and gravity is applied to their velocities afterwards
+     * @param mu friction coefficient, per second
+     * @param mu2 friction coefficient, per L
+     * @param dt amount of time over which gravity and friction act, in seconds
+     */
+    void finishStep(double t, double width, double height, double gravity, boolean parabolic, double mu, double mu2,
+            double dt) {
+        for (int slot = 0; slot < this.size; slot++) {
+            moveTo(slot, t, width, height, parabolic ? gravity : 0);
+            if (this.absorbed[slot]) {
+                continue;
+            }
+            double newVx = this.vx[slot];
+            double newVy = parabolic ? this.vy[slot] : this.vy[slot] + gravity*dt;
+            double scale = 1 - mu*dt - mu2*Math.sqrt(newVx*newVx + newVy*newVy)*dt;
+            newVx *= scale;
+            newVy *= scale;
+            if (newVx != this.vx[slot] || newVy != this.vy[slot]) { // an unchanged velocity keeps its prediction
+                setVelocity(slot, newVx, newVy);
+            }
+        }
+    }
+
+    /**
+     * Compute a hash of the exact location, velocity, and absorbed state of every ball, in slot order, so that two
+     * runs of a simulation can be checked to agree bit for bit.
+     * @return hash of the state of the balls
+     */
+    long stateHash() {
+        long hash = this.size;
+        for (int slot = 0; slot < this.size; slot++) {
+            hash = 31*hash + Double.doubleToLongBits(this.x[slot]);
+            hash = 31*hash + Double.doubleToLongBits(this.y[slot]);
+            hash = 31*hash + Double.doubleToLongBits(this.vx[slot]);
+            hash = 31*hash + Double.doubleToLongBits(this.vy[slot]);
+            hash = 31*hash + (this.absorbed[slot] ? 1 : 0);
+        }
+        return hash;
+    }
+
+    /**
+     * Mark the ball in slot as changed, so that its prediction is recomputed even though its motion is the same.
+     */
+    void markChanged(int slot) {
+        if (!this.changed[slot]) {
+            this.changed[slot] = true;
+            this.changedSlots[this.changedCount++] = slot;
+        }
+    }
+
+    private void unmarkChanged(int slot) {
+        for (int i = 0; i < this.changedCount; i++) {
+            if (this.changedSlots[i] == slot) {
+                System.arraycopy(this.changedSlots, i + 1, this.changedSlots, i, this.changedCount - i - 1);
+                this.changedCount--;
+                break;
+            }
+        }
+        this.changed[slot] = false;
+    }
+
+    /**
+     * Mark every ball as changed, in slot order.
+     */
+    void markAllChanged() {
+        for (int slot = 0; slot < this.size; slot++) {
+            markChanged(slot);
+        }
+    }
+
+    /**
+     * @return number of balls that have changed since the changes were last cleared
+     */
+    int changedCount() {
+        return this.changedCount;
+    }
+
+    /**
+     * @param i index into the changed balls, 0 <= i < changedCount()
+     * @return slot of the i-th ball to change since the changes were last cleared
+     */
+    int changedSlot(int i) {
+        return this.changedSlots[i];
+    }
+
+    /**
+     * @param slot slot of a ball
+     * @return true iff the ball in slot has changed since the changes were last cleared
+     */
+    boolean isChanged(int slot) {
+        return this.changed[slot];
+    }
+
+    /**
+     * Forget which balls have changed.
+     */
+    void clearChanged() {
+        for (int i = 0; i < this.changedCount; i++) {
+            this.changed[this.changedSlots[i]] = false;
+        }
+        this.changedCount = 0;
+    }
+}
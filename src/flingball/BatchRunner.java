@@ -0,0 +1,226 @@
+package flingball;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import edu.mit.eecs.parserlib.UnableToParseException;
+
+/**
+ * A headless runner that simulates many flingball boards concurrently, for regression testing large sets of .fb
+ * files. Each board is parsed with StreamingBoardParser (or loaded with BoardCompiler, if it is compiled) and advanced by
+ * its own SimulationEngine for a fixed amount of simulated time, on a fixed-size thread pool so that a sweep uses
+ * every core without oversubscribing them. No window is ever opened.
+ */
+public class BatchRunner {
+
+    /** Default amount of simulated time to run each board for, in seconds. */
+    public static final double DEFAULT_SECONDS = 10;
+
+    /**
+     * The outcome of simulating one board.
+     */
+    public static class Result {
+        private final String file;
+        private final String error;
+        private final List<String> balls;
+        private final long collisions;
+        private final long steps;
+        private final long nanos;
+
+        // Abstraction function:
+        // AF(file, error, balls, collisions, steps, nanos) = the result of simulating the board in file: if error is
+        // not null, the board could not be simulated for the reason error; otherwise its balls ended in the states
+        // described by balls, in order of name, after steps steps with collisions collisions, which took nanos
+        // nanoseconds of wall-clock time.
+        //
+        // Rep invariant:
+        // - if error is not null, balls is empty and collisions, steps, and nanos are 0
+        // - collisions, steps, nanos >= 0
+        //
+        // Safety from rep exposure argument:
+        // - all fields are private and final, and have immutable types; balls is an unmodifiable list
+        //
+        // Thread safety argument:
+        // - Result is immutable, so it can be handed from the worker thread that made it to any other thread
+
+        private void checkRep() {
+            assert this.error == null || (this.balls.isEmpty() && this.collisions == 0 && this.steps == 0
+                    && this.nanos == 0);
+            assert this.collisions >= 0 && this.steps >= 0 && this.nanos >= 0;
+        }
+
+        private Result(String file, String error, List<String> balls, long collisions, long steps, long nanos) {
+            this.file = file;
+            this.error = error;
+            this.balls = Collections.unmodifiableList(new ArrayList<>(balls));
+            this.collisions = collisions;
+            this.steps = steps;
+            this.nanos = nanos;
+            checkRep();
+        }
+
+        /**
+         * @return path of the board file that was simulated
+         */
+        public String getFile() {
+            return this.file;
+        }
+
+        /**
+         * @return why the board could not be simulated, or null if it was simulated
+         */
+        public String getError() {
+            return this.error;
+        }
+
+        /**
+         * @return final state of each ball, in order of name, as "name x y vx vy absorbed"
+         */
+        public List<String> getBalls() {
+            return this.balls;
+        }
+
+        /**
+         * @return number of collisions during the simulation
+         */
+        public long getCollisions() {
+            return this.collisions;
+        }
+
+        /**
+         * @return number of fixed timesteps simulated
+         */
+        public long getSteps() {
+            return this.steps;
+        }
+
+        /**
+         * @return wall-clock throughput of the simulation, in steps per second
+         */
+        public double getStepsPerSecond() {
+            return this.nanos == 0 ? 0 : this.steps / (this.nanos / 1e9);
+        }
+
+        /**
+         * @return a report of this result: a header line for the board, followed by a line for each ball
+         */
+        @Override public String toString() {
+            if (this.error != null) {
+                return this.file + " error: " + this.error;
+            }
+            StringBuilder report = new StringBuilder(this.file + " steps=" + this.steps + " collisions="
+                    + this.collisions + " steps/s=" + String.format("%.0f", getStepsPerSecond()));
+            for (String ball : this.balls) {
+                report.append(System.lineSeparator()).append("  ").append(ball);
+            }
+            return report.toString();
+        }
+    }
+
+    private BatchRunner() {
+        // nobody should be constructing a BatchRunner
+    }
+
+    /**
+     * Simulate every board file named on the command line and print a report of each to standard output, in
+     * the order the files were given.
+     * Usage: BatchRunner [--seconds S] [--threads N] FILE...
+     * where S is the simulated time to run each board for (default DEFAULT_SECONDS) and N is the number of
+     * boards to simulate at once (default the number of available processors).
+     * @param args command-line arguments as above
+     * @throws InterruptedException if interrupted while waiting for the boards to finish
+     */
+    public static void main(String[] args) throws InterruptedException {
+        double seconds = DEFAULT_SECONDS;
+        int threads = Runtime.getRuntime().availableProcessors();
+        List<File> files = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--seconds") && i + 1 < args.length) {
+                seconds = Double.parseDouble(args[++i]);
+            } else if (args[i].equals("--threads") && i + 1 < args.length) {
+                threads = Integer.parseInt(args[++i]);
+            } else {
+                files.add(new File(args[i]));
+            }
+        }
+        long start = System.nanoTime();
+        List<Result> results = run(files, seconds, threads);
+        long totalSteps = 0;
+        for (Result result : results) {
+            System.out.println(result);
+            totalSteps += result.getSteps();
+        }
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        System.out.println(results.size() + " boards, " + totalSteps + " steps in "
+                + String.format("%.3f", elapsed) + "s on " + threads + " threads");
+    }
+
+    /**
+     * Simulate each board file for the given amount of simulated time, running up to threads boards at once.
+     * @param files board files to simulate
+     * @param seconds simulated time to run each board for, in seconds, must be >= 0
+     * @param threads maximum number of boards to simulate at once, must be >= 1
+     * @return the result for each file, in the same order as files; a board that cannot be read or parsed gives
+     *         a result with an error rather than stopping the batch
+     * @throws InterruptedException if interrupted while waiting for the boards to finish
+     */
+    public static List<Result> run(List<File> files, double seconds, int threads) throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Result>> futures = new ArrayList<>();
+            for (File file : files) {
+                futures.add(pool.submit(() -> simulate(file, seconds)));
+            }
+            List<Result> results = new ArrayList<>();
+            for (Future<Result> future : futures) {
+                try {
+                    results.add(future.get());
+                } catch (ExecutionException e) {
+                    // simulate() reports bad boards itself, so this is a bug in the simulation
+                    throw new RuntimeException("simulation failed", e.getCause());
+                }
+            }
+            return results;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Parse and simulate one board file.
+     * @param file board file to simulate
+     * @param seconds simulated time to run the board for, in seconds
+     * @return the result of simulating the board
+     */
+    private static Result simulate(File file, double seconds) {
+        Board board;
+        try {
+            board = BoardCompiler.load(file);
+        } catch (UnableToParseException | IOException | IllegalArgumentException e) {
+            return new Result(file.getPath(), String.valueOf(e.getMessage()), Collections.emptyList(), 0, 0, 0);
+        }
+        SimulationEngine engine = new SimulationEngine(board);
+        long steps = Math.round(seconds / engine.getTimestep());
+        long start = System.nanoTime();
+        for (long i = 0; i < steps; i++) {
+            engine.step(engine.getTimestep());
+        }
+        long nanos = System.nanoTime() - start;
+
+        List<String> balls = new ArrayList<>();
+        BallStore store = board.getBallStore();
+        for (int slot = 0; slot < store.size(); slot++) {
+            Ball ball = store.ball(slot);
+            balls.add(ball.getName() + " " + ball.getLocation().x() + " " + ball.getLocation().y() + " "
+                    + ball.getVelocity().x() + " " + ball.getVelocity().y() + " " + ball.getAbsorbed());
+        }
+        return new Result(file.getPath(), null, balls, engine.getCollisionCount(), steps, nanos);
+    }
+}
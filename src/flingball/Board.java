@@ -1,9 +1,15 @@
 package flingball;
 
 import java.awt.Color;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Set;
 
+import physics.Circle;
 import physics.LineSegment;
 import physics.Vect;
 
@@ -19,16 +25,21 @@ public class Board implements GameExpression {
     private final Set<GameExpression> gadgets;
     private final Set<GameExpression> balls;
     private final OuterWall walls; 
+    private SymbolTable symbols;
+    private GridIndex gridIndex;
+    private final BallStore ballStore;
     private final double gravity; 
     private final double friction1;
     private final double friction2;
     private final Color color = Color.black;
     
     // Abstraction function:
-    // AF(name, gadgets, balls, walls, gravity, friction1, friction2, color) = a flingball board with the unique identifier
+    // AF(name, gadgets, balls, walls, symbols, gridIndex, ballStore, gravity, friction1, friction2, color) = a flingball board with the unique identifier
     // name, containing the balls in a collection balls and gadgets in a collection gadgets and bound by the outer walls in walls. 
     // Within the board environment, gravity and friction are acting, with strengths corresponding to the coefficients gravity, 
-    // friction1, and friction2. The color of the board is color.
+    // friction1, and friction2. The color of the board is color. symbols gives each gadget an id, in order of name, and
+    // gridIndex indexes the gadgets by those ids and the grid cells they cover,
+    // and ballStore holds the state of the balls, in order of name.
     // 
     // Rep invariant:
     // - name is not the empty string
@@ -37,10 +48,16 @@ public class Board implements GameExpression {
     // - friction2 >= 0
     // - every ball in balls and gadget in gadgets has a unique name
     // - the bounding boxes of all gadgets are physically non-overlapping
+    // - every gadget and ball lies within walls
+    // - ballStore holds the balls in balls, except any that have since been placed on another board
+    // - symbols defines exactly the gadgets in gadgets
     //
     // Safety from rep exposure argument:
     // - name, gravity, friction1, friction2, and walls are private, final, and have immutable values
+    // - symbols and gridIndex are private and only replaced when the gadgets are; symbols is never returned, and
+    //   gridIndex is immutable
     // - gadgets and balls are private and final, but must remain mutable to maintain game functionality
+    // - ballStore is private and final, and only returned within this package to the simulation of this board
     
     private void checkRep() {
         assert !this.name.equals("");
@@ -59,6 +76,7 @@ public class Board implements GameExpression {
             gadgetNames.add(gadget.getName());
         }
         assert gadgetNames.size()==this.gadgets.size();
+        assert this.symbols.size()==this.gadgets.size();
         assert ballNames.size() + gadgetNames.size() == this.balls.size() + this.gadgets.size();
         
         Set<Vect> gridSpan = new HashSet<>();
@@ -80,26 +98,88 @@ public class Board implements GameExpression {
                 assert gridSpan.add(gadget.getLocation());
             }
         }
+        
+        for (GameExpression gadget : this.gadgets) {
+            assert fits(gadget, this.walls.getWidth(), this.walls.getHeight());
+        }
+        for (GameExpression ball : this.balls) {
+            assert fits(ball, this.walls.getWidth(), this.walls.getHeight());
+        }
     }
     
     /**
-     * Construct a flingball board with the given gravity and friction environment behavior and
-     * containing the given gadgets and balls.
+     * Check whether a ball or gadget lies within the walls of a board of the given size.
+     * @param expression a ball or stationary gadget
+     * @param width width of the board in L
+     * @param height height of the board in L
+     * @return true iff expression lies entirely within the walls of the board
+     */
+    static boolean fits(GameExpression expression, int width, int height) {
+        if (expression instanceof Ball) {
+            Circle circle = ((Ball) expression).getBallCircle();
+            Vect center = circle.getCenter();
+            return center.x() + circle.getRadius() <= width && center.y() + circle.getRadius() <= height;
+        }
+        if (expression.getSides().isEmpty()) { // circle bumper, located by its center, with diameter 1L
+            Vect center = expression.getLocation();
+            return center.x() + .5 <= width && center.y() + .5 <= height;
+        }
+        for (LineSegment side : expression.getSides()) {
+            for (Vect corner : new Vect[] { side.p1(), side.p2() }) {
+                if (corner.x() > width || corner.y() > height) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Construct a flingball board of the default size, 20Lx20L, with the given gravity and friction environment
+     * behavior and containing the given gadgets and balls.
      * @param name unique identifying name of this board
      * @param gravity gravity coefficient, must be >= 0
      * @param friction1 friction coefficient, must be >= 0
      * @param friction2 friction coefficient, must be >= 0
-     * @param gadgets set of gadgets to populate this board with
-     * @param balls set of balls to place onto this board
+     * @param gadgets set of gadgets to populate this board with, which must lie within its walls
+     * @param balls set of balls to place onto this board, which must lie within its walls
      */
     public Board(String name, double gravity, double friction1, double friction2, Set<GameExpression> gadgets, Set<GameExpression> balls) {
+        this(name, OuterWall.DEFAULT_SIZE, OuterWall.DEFAULT_SIZE, gravity, friction1, friction2, gadgets, balls);
+    }
+    
+    /**
+     * Construct a flingball board of the given size with the given gravity and friction environment behavior and
+     * containing the given gadgets and balls.
+     * @param name unique identifying name of this board
+     * @param width width of the board in L, must be > 0
+     * @param height height of the board in L, must be > 0
+     * @param gravity gravity coefficient, must be >= 0
+     * @param friction1 friction coefficient, must be >= 0
+     * @param friction2 friction coefficient, must be >= 0
+     * @param gadgets set of gadgets to populate this board with, which must lie within its walls
+     * @param balls set of balls to place onto this board, which must lie within its walls
+     */
+    public Board(String name, int width, int height, double gravity, double friction1, double friction2,
+            Set<GameExpression> gadgets, Set<GameExpression> balls) {
         this.name = name;
         this.gravity = gravity;
         this.friction1 = friction1;
         this.friction2 = friction2;
         this.gadgets = gadgets;
         this.balls = balls;
-        this.walls = new OuterWall();
+        this.walls = new OuterWall(width, height);
+        this.symbols = SymbolTable.byName(gadgets);
+        this.gridIndex = new GridIndex(this.symbols, this.walls.getWidth(), this.walls.getHeight());
+        List<Ball> sortedBalls = new ArrayList<>();
+        for (GameExpression ball : balls) {
+            sortedBalls.add((Ball) ball); //only Ball objects, a variant of GameExpression, are stored in the set of balls
+        }
+        sortedBalls.sort(Comparator.comparing(Ball::getName));
+        this.ballStore = new BallStore(Math.max(1, sortedBalls.size()));
+        for (Ball ball : sortedBalls) {
+            this.ballStore.adopt(ball);
+        }
         checkRep();
     }
 
@@ -133,6 +213,7 @@ public class Board implements GameExpression {
         }
         checkRep();
         return that instanceof Board && this.name.equals(thatBoard.getName()) && gadgetsEqual && ballsEqual
+                && this.walls.equals(thatBoard.getWalls())
                 && this.gravity==thatBoard.getGravity() && this.friction1==thatBoard.getFriction1() && this.friction2==thatBoard.getFriction2();
     }
 
@@ -205,6 +286,59 @@ public class Board implements GameExpression {
         checkRep();
         return this.walls;
     }
+    
+    /**
+     * Gets the id of a gadget on the board. Gadgets are numbered from 0 in order of name.
+     * @param name name of a gadget
+     * @return id of the gadget named name, or SymbolTable.UNDEFINED if there is no such gadget on the board
+     */
+    public int getGadgetId(String name) {
+        return this.symbols.id(name);
+    }
+
+    /**
+     * Gets the gadget with an id.
+     * @param id id of a gadget on the board, must be >= 0 and < the number of gadgets
+     * @return the gadget with that id
+     */
+    public GameExpression getGadget(int id) {
+        return this.symbols.get(id);
+    }
+
+    /**
+     * Gets the spatial index of the gadgets on the board, built when the board was constructed.
+     * @return index of the stationary gadgets of this board by grid cell, which identifies them by their ids
+     */
+    public GridIndex getGridIndex() {
+        return this.gridIndex;
+    }
+
+    /**
+     * Replace some of the gadgets on the board, keeping its balls and every other gadget, and index the new set
+     * of gadgets. The gadgets that remain must still satisfy the invariant of a board: unique names and
+     * non-overlapping bounding boxes.
+     * @param removed gadgets of this board to take off it
+     * @param added gadgets to place on the board
+     */
+    void replaceGadgets(Set<GameExpression> removed, Set<GameExpression> added) {
+        // by identity, since gadgets of different types can't be compared with equals()
+        Set<GameExpression> removedGadgets = Collections.newSetFromMap(new IdentityHashMap<>());
+        removedGadgets.addAll(removed);
+        this.gadgets.removeIf(removedGadgets::contains);
+        this.gadgets.addAll(added);
+        this.symbols = SymbolTable.byName(this.gadgets);
+        this.gridIndex = new GridIndex(this.symbols, this.walls.getWidth(), this.walls.getHeight());
+        checkRep();
+    }
+
+    /**
+     * Gets the store holding the state of the balls on the board, in order of name. A ball moves into this store
+     * when the board is constructed, so a ball should only be placed on one board at a time.
+     * @return store of the balls of this board
+     */
+    BallStore getBallStore() {
+        return this.ballStore;
+    }
 
     @Override public double timeUntilCollision(Ball ball) {
         return Double.MAX_VALUE/2;
@@ -0,0 +1,290 @@
+package flingball;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import edu.mit.eecs.parserlib.UnableToParseException;
+
+/**
+ * Compiles flingball boards to a compact binary format (.fbb), and loads boards from that format straight out of
+ * a ByteBuffer, without ParserLib. A compiled board describes exactly the same board as the .fb file it was
+ * compiled from: loading it gives a board equal to the parsed one, with the same triggers.
+ *
+ * All values are big-endian, and every string is an int length followed by that many bytes of UTF-8. A compiled
+ * board is:
+ * <pre>
+ *   header:   int MAGIC, short VERSION, string board name, int width, int height, double gravity,
+ *             double friction1, double friction2, int gadget count, int ball count, int trigger count
+ *   gadgets:  for each gadget in order of name, a byte type and string name, then
+ *                SQUARE, CIRCLE:  int x, int y
+ *                TRIANGLE:        int x, int y, short orientation
+ *                ABSORBER:        int x, int y, int width, int height, int burst
+ *   balls:    for each ball in order of name, string name, double x, double y, double xVelocity, double yVelocity
+ *   triggers: for each target of each gadget's trigger, with gadgets in order of name and the targets of a gadget
+ *             in the order they were set, int index of the gadget, int index of the target, as indices into the
+ *             gadget table
+ * </pre>
+ */
+public class BoardCompiler {
+
+    private static final int MAGIC = 0x46424231; // "FBB1"
+    private static final short VERSION = 3; // 2 added the width and height, 3 the burst of an absorber
+    private static final byte SQUARE = 1;
+    private static final byte CIRCLE = 2;
+    private static final byte TRIANGLE = 3;
+    private static final byte ABSORBER = 4;
+
+    private BoardCompiler() {
+        // nobody should be constructing a BoardCompiler
+    }
+
+    /**
+     * Compile each .fb file named on the command line to a .fbb file beside it.
+     * @param args paths of .fb files
+     * @throws UnableToParseException if a file cannot be parsed
+     * @throws IOException if a compiled file cannot be written
+     */
+    public static void main(String[] args) throws UnableToParseException, IOException {
+        for (String arg : args) {
+            Board board = StreamingBoardParser.parse(new File(arg));
+            String target = (arg.endsWith(".fb") ? arg.substring(0, arg.length() - ".fb".length()) : arg) + ".fbb";
+            write(board, new File(target).toPath());
+            System.out.println(arg + " -> " + target);
+        }
+    }
+
+    /**
+     * Load a board from a file, loading it as a compiled board if its name ends in .fbb and parsing it with
+     * StreamingBoardParser otherwise.
+     * @param file .fb or .fbb file
+     * @return the board described by file
+     * @throws UnableToParseException if a .fb file cannot be parsed
+     * @throws IOException if the file cannot be read
+     * @throws IllegalArgumentException if a .fbb file is not a valid compiled board
+     */
+    public static Board load(File file) throws UnableToParseException, IOException {
+        if (!file.getName().endsWith(".fbb")) {
+            return StreamingBoardParser.parse(file);
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            return load(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Write the compiled form of board to path, replacing any file already there.
+     * @param board board to compile, which must be in the state it was parsed in
+     * @param path file to write
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(Board board, Path path) throws IOException {
+        ByteBuffer buffer = compile(board);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    /**
+     * Compile board to the binary format.
+     * @param board board to compile, which must be in the state it was parsed in, since its balls are compiled
+     *        at their current locations and velocities
+     * @return a buffer holding the compiled board between its position and limit
+     */
+    public static ByteBuffer compile(Board board) {
+        List<GameExpression> gadgets = new ArrayList<>(); // in order of id, which is the order of name
+        int triggerCount = 0;
+        int gadgetCount = board.getGadgets().size();
+        for (int id = 0; id < gadgetCount; id++) {
+            GameExpression gadget = board.getGadget(id);
+            gadgets.add(gadget);
+            triggerCount += gadget.getTriggerTargets().size();
+        }
+        List<GameExpression> balls = sortedByName(board.getBalls());
+
+        int size = 4 + 2 + stringSize(board.getName()) + 2*4 + 3*8 + 3*4;
+        for (GameExpression gadget : gadgets) {
+            size += 1 + stringSize(gadget.getName()) + 2*4;
+            size += gadget instanceof TriangleBumper ? 2 : gadget instanceof Absorber ? 3*4 : 0;
+        }
+        for (GameExpression ball : balls) {
+            size += stringSize(ball.getName()) + 4*8;
+        }
+        size += triggerCount*2*4;
+
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putInt(MAGIC).putShort(VERSION);
+        putString(buffer, board.getName());
+        buffer.putInt(board.getWalls().getWidth()).putInt(board.getWalls().getHeight());
+        buffer.putDouble(board.getGravity()).putDouble(board.getFriction1()).putDouble(board.getFriction2());
+        buffer.putInt(gadgets.size()).putInt(balls.size()).putInt(triggerCount);
+        for (GameExpression gadget : gadgets) {
+            if (gadget instanceof SquareBumper) {
+                buffer.put(SQUARE);
+                putString(buffer, gadget.getName());
+                buffer.putInt((int) gadget.getLocation().x()).putInt((int) gadget.getLocation().y());
+            } else if (gadget instanceof CircleBumper) {
+                buffer.put(CIRCLE);
+                putString(buffer, gadget.getName());
+                // a circle bumper is located by its center, but written by the corner of its bounding box
+                buffer.putInt((int) Math.floor(gadget.getLocation().x()));
+                buffer.putInt((int) Math.floor(gadget.getLocation().y()));
+            } else if (gadget instanceof TriangleBumper) {
+                buffer.put(TRIANGLE);
+                putString(buffer, gadget.getName());
+                buffer.putInt((int) gadget.getLocation().x()).putInt((int) gadget.getLocation().y());
+                buffer.putShort((short) ((TriangleBumper) gadget).getOrientation());
+            } else if (gadget instanceof Absorber) {
+                Absorber absorber = (Absorber) gadget;
+                buffer.put(ABSORBER);
+                putString(buffer, gadget.getName());
+                buffer.putInt((int) gadget.getLocation().x()).putInt((int) gadget.getLocation().y());
+                buffer.putInt(absorber.getWidth()).putInt(absorber.getHeight()).putInt(absorber.getBurst());
+            } else {
+                throw new IllegalArgumentException("can't compile gadget " + gadget.getName());
+            }
+        }
+        for (GameExpression ball : balls) {
+            Ball b = (Ball) ball;
+            putString(buffer, b.getName());
+            buffer.putDouble(b.getLocation().x()).putDouble(b.getLocation().y());
+            buffer.putDouble(b.getVelocity().x()).putDouble(b.getVelocity().y());
+        }
+        for (int id = 0; id < gadgetCount; id++) {
+            for (GameExpression target : gadgets.get(id).getTriggerTargets()) {
+                buffer.putInt(id);
+                buffer.putInt(board.getGadgetId(target.getName()));
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Load a compiled board.
+     * @param buffer buffer holding a compiled board from its position onwards; its position is advanced past it
+     * @return the board described by buffer
+     * @throws IllegalArgumentException if buffer does not hold a valid compiled board in this version of the
+     *         format
+     */
+    public static Board load(ByteBuffer buffer) {
+        try {
+            if (buffer.getInt() != MAGIC) {
+                throw new IllegalArgumentException("not a compiled flingball board");
+            }
+            if (buffer.getShort() != VERSION) {
+                throw new IllegalArgumentException("unsupported compiled board version");
+            }
+            String name = getString(buffer);
+            int width = buffer.getInt();
+            int height = buffer.getInt();
+            if (width <= 0 || height <= 0) {
+                throw new IllegalArgumentException("corrupt compiled board");
+            }
+            double gravity = buffer.getDouble();
+            double friction1 = buffer.getDouble();
+            double friction2 = buffer.getDouble();
+            int gadgetCount = buffer.getInt();
+            int ballCount = buffer.getInt();
+            int triggerCount = buffer.getInt();
+            if (gadgetCount < 0 || ballCount < 0 || triggerCount < 0) {
+                throw new IllegalArgumentException("corrupt compiled board");
+            }
+
+            List<GameExpression> gadgets = new ArrayList<>();
+            for (int i = 0; i < gadgetCount; i++) {
+                byte type = buffer.get();
+                String gadgetName = getString(buffer);
+                int x = buffer.getInt();
+                int y = buffer.getInt();
+                switch (type) {
+                case SQUARE:
+                    gadgets.add(new SquareBumper(gadgetName, x, y));
+                    break;
+                case CIRCLE:
+                    gadgets.add(new CircleBumper(gadgetName, x, y));
+                    break;
+                case TRIANGLE:
+                    short orientation = buffer.getShort();
+                    if (orientation != 0 && orientation != 90 && orientation != 180 && orientation != 270) {
+                        throw new IllegalArgumentException("bad orientation " + orientation + " in compiled board");
+                    }
+                    gadgets.add(new TriangleBumper(gadgetName, x, y, orientation));
+                    break;
+                case ABSORBER:
+                    int absorberWidth = buffer.getInt();
+                    int absorberHeight = buffer.getInt();
+                    int burst = buffer.getInt();
+                    if (burst < 1) {
+                        throw new IllegalArgumentException("bad burst " + burst + " in compiled board");
+                    }
+                    gadgets.add(new Absorber(gadgetName, x, y, absorberWidth, absorberHeight, burst));
+                    break;
+                default:
+                    throw new IllegalArgumentException("unknown gadget type " + type + " in compiled board");
+                }
+            }
+            Set<GameExpression> balls = new HashSet<>();
+            for (int i = 0; i < ballCount; i++) {
+                balls.add(new Ball(getString(buffer), buffer.getDouble(), buffer.getDouble(), buffer.getDouble(),
+                        buffer.getDouble()));
+            }
+            List<GameExpression> placed = new ArrayList<>(gadgets);
+            placed.addAll(balls);
+            for (GameExpression expression : placed) {
+                if (!Board.fits(expression, width, height)) {
+                    throw new IllegalArgumentException(expression.getName() + " does not fit on the board");
+                }
+            }
+            for (int i = 0; i < triggerCount; i++) {
+                int trigger = buffer.getInt();
+                int target = buffer.getInt();
+                if (trigger < 0 || trigger >= gadgetCount || target < 0 || target >= gadgetCount) {
+                    throw new IllegalArgumentException("trigger refers to a gadget that does not exist");
+                }
+                gadgets.get(trigger).setTrigger(gadgets.get(target));
+            }
+            return new Board(name, width, height, gravity, friction1, friction2, new HashSet<>(gadgets), balls);
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("truncated compiled board", e);
+        }
+    }
+
+    private static List<GameExpression> sortedByName(Set<GameExpression> expressions) {
+        List<GameExpression> sorted = new ArrayList<>(expressions);
+        sorted.sort(Comparator.comparing(GameExpression::getName));
+        return sorted;
+    }
+
+    private static int stringSize(String string) {
+        return 4 + string.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    private static void putString(ByteBuffer buffer, String string) {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        buffer.putInt(bytes.length).put(bytes);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0 || length > buffer.remaining()) {
+            throw new IllegalArgumentException("corrupt string in compiled board");
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,155 @@
+package flingball;
+
+import java.awt.Color;
+import java.util.Arrays;
+
+/**
+ * An immutable snapshot of what a flingball board looks like at one moment of its simulation: its gadgets, and
+ * the locations, sizes, colors, and absorbed states of its balls. A simulation thread captures a frame after it
+ * steps, and a renderer on another thread can then draw the frame, or blend two of them, without touching the
+ * live board.
+ */
+public class BoardFrame {
+
+    private final double time;
+    private final GridIndex gadgets;
+    private final Color background;
+    private final double[] x;
+    private final double[] y;
+    private final double[] radius;
+    private final boolean[] absorbed;
+    private final Color[] colors;
+
+    // Abstraction function:
+    // AF(time, gadgets, background, x, y, radius, absorbed, colors) = the board at simulated time time, with the
+    // gadgets of gadgets on a background of color background, and a ball for each slot i of the arrays, centered
+    // at (x[i], y[i]) with radius radius[i] and color colors[i], hidden in an absorber iff absorbed[i]
+    //
+    // Rep invariant:
+    // - time >= 0
+    // - x, y, radius, absorbed, and colors all have the same length
+    //
+    // Safety from rep exposure argument:
+    // - all fields are private and final; the arrays are made by capture() and never returned
+    // - gadgets, background, and the colors are immutable; the gadgets of gadgets are mutable, but a frame only
+    //   exposes their ids, and they only change in ways that do not affect how they look
+    //
+    // Thread safety argument:
+    // - a frame is immutable once constructed, and its final fields are safely published with it
+
+    private void checkRep() {
+        assert this.time >= 0;
+        assert this.y.length == this.x.length && this.radius.length == this.x.length
+                && this.absorbed.length == this.x.length && this.colors.length == this.x.length;
+    }
+
+    private BoardFrame(double time, GridIndex gadgets, Color background, double[] x, double[] y, double[] radius,
+            boolean[] absorbed, Color[] colors) {
+        this.time = time;
+        this.gadgets = gadgets;
+        this.background = background;
+        this.x = x;
+        this.y = y;
+        this.radius = radius;
+        this.absorbed = absorbed;
+        this.colors = colors;
+        checkRep();
+    }
+
+    /**
+     * Capture the current state of a simulation. Must be called between steps, on the thread that steps engine.
+     * @param engine simulation to capture
+     * @return a frame of the board of engine as it is now
+     */
+    public static BoardFrame capture(SimulationEngine engine) {
+        Board board = engine.getBoard();
+        BallStore store = board.getBallStore();
+        int balls = store.size();
+        double[] x = new double[balls];
+        double[] y = new double[balls];
+        double[] radius = new double[balls];
+        boolean[] absorbed = new boolean[balls];
+        Color[] colors = new Color[balls];
+        for (int slot = 0; slot < balls; slot++) {
+            x[slot] = store.x(slot);
+            y[slot] = store.y(slot);
+            radius[slot] = store.radius(slot);
+            absorbed[slot] = store.absorbed(slot);
+            colors[slot] = store.ball(slot).getColor();
+        }
+        return new BoardFrame(engine.getTime(), board.getGridIndex(), board.getColor(), x, y, radius, absorbed,
+                colors);
+    }
+
+    /**
+     * @return simulated time of this frame, in seconds
+     */
+    public double getTime() {
+        return this.time;
+    }
+
+    /**
+     * @return index of the gadgets of the board, which also gives its width and height
+     */
+    public GridIndex getGadgets() {
+        return this.gadgets;
+    }
+
+    /**
+     * @return color of the background of the board
+     */
+    public Color getBackground() {
+        return this.background;
+    }
+
+    /**
+     * @return number of balls in this frame
+     */
+    public int size() {
+        return this.x.length;
+    }
+
+    /**
+     * @param slot slot of a ball, must be >= 0 and < size()
+     * @return x coordinate of the center of the ball
+     */
+    public double x(int slot) {
+        return this.x[slot];
+    }
+
+    /**
+     * @param slot slot of a ball, must be >= 0 and < size()
+     * @return y coordinate of the center of the ball
+     */
+    public double y(int slot) {
+        return this.y[slot];
+    }
+
+    /**
+     * @param slot slot of a ball, must be >= 0 and < size()
+     * @return radius of the ball
+     */
+    public double radius(int slot) {
+        return this.radius[slot];
+    }
+
+    /**
+     * @param slot slot of a ball, must be >= 0 and < size()
+     * @return true iff the ball is held in an absorber
+     */
+    public boolean absorbed(int slot) {
+        return this.absorbed[slot];
+    }
+
+    /**
+     * @param slot slot of a ball, must be >= 0 and < size()
+     * @return color of the ball
+     */
+    public Color color(int slot) {
+        return this.colors[slot];
+    }
+
+    @Override public String toString() {
+        return "BoardFrame(" + this.time + ", x=" + Arrays.toString(this.x) + ", y=" + Arrays.toString(this.y) + ")";
+    }
+}
@@ -0,0 +1,369 @@
+package flingball;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * A generator of random flingball boards, for testing and benchmarking the simulation at scale. A board is
+ * described by a seed, its size, how many gadgets it has and the relative numbers of each type, how many balls it
+ * has, and the density of its triggers, and the same description always gives the same board file.
+ *
+ * Every gadget is placed on its own cells of the board's grid, so no two gadgets overlap, and every ball starts at
+ * the center of a cell that no gadget covers, so no ball starts inside a gadget or touching another ball. Absorbers
+ * are placed first, 1L to MAX_ABSORBER_WIDTH wide and 1L or 2L high, leaving at least one free cell for every
+ * other gadget and ball, then bumpers and balls in free cells chosen without repeats, so a board may be filled up
+ * to every cell of its grid. Each gadget fires a trigger with
+ * probability equal to the trigger density, whose target is a random absorber if there are any (so that the
+ * action does something) and otherwise a random gadget; since absorbers trigger absorbers, triggers form chains.
+ */
+public class BoardGenerator {
+
+    /** Names of the types of gadgets, in the order of the weights of a mix. */
+    public static final List<String> GADGET_TYPES = List.of("squareBumper", "circleBumper", "triangleBumper",
+            "absorber");
+    /** Widest absorber placed, in L. */
+    public static final int MAX_ABSORBER_WIDTH = 6;
+    /** Largest speed of a ball along each axis, in L per second. */
+    public static final double MAX_BALL_SPEED = 20;
+
+    private static final int SQUARE = 0;
+    private static final int CIRCLE = 1;
+    private static final int TRIANGLE = 2;
+    private static final int ABSORBER = 3;
+    private static final int PLACEMENT_TRIES = 20; // per absorber, before it shrinks to a single free cell
+
+    private BoardGenerator() {
+        // nobody should be constructing a BoardGenerator
+    }
+
+    /**
+     * Generate a board file.
+     * Usage: BoardGenerator [--seed S] [--gadgets G] [--mix SQUARE,CIRCLE,TRIANGLE,ABSORBER] [--balls B]
+     *                       [--triggers D] [--width W] [--height H] FILE
+     * where S is the seed (default 0), G the number of gadgets (default 100), the mix the relative weights of each
+     * type of gadget (default 4,3,2,1), B the number of balls (default 10), D the trigger density (default 0.1),
+     * and W and H the size of the board in L (default the size given by defaultSize()).
+     * @param args command-line arguments as above
+     * @throws IOException if FILE cannot be written
+     */
+    public static void main(String[] args) throws IOException {
+        long seed = 0;
+        int gadgets = 100;
+        int[] mix = { 4, 3, 2, 1 };
+        int balls = 10;
+        double triggerDensity = 0.1;
+        int width = 0;
+        int height = 0;
+        List<String> paths = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--seed") && i + 1 < args.length) {
+                seed = Long.parseLong(args[++i]);
+            } else if (args[i].equals("--gadgets") && i + 1 < args.length) {
+                gadgets = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--mix") && i + 1 < args.length) {
+                String[] weights = args[++i].split(",");
+                mix = new int[weights.length];
+                for (int type = 0; type < weights.length; type++) {
+                    mix[type] = Integer.parseInt(weights[type].trim());
+                }
+            } else if (args[i].equals("--balls") && i + 1 < args.length) {
+                balls = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--triggers") && i + 1 < args.length) {
+                triggerDensity = Double.parseDouble(args[++i]);
+            } else if (args[i].equals("--width") && i + 1 < args.length) {
+                width = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--height") && i + 1 < args.length) {
+                height = Integer.parseInt(args[++i]);
+            } else {
+                paths.add(args[i]);
+            }
+        }
+        if (paths.size() != 1) {
+            System.err.println("usage: BoardGenerator [--seed S] [--gadgets G] "
+                    + "[--mix SQUARE,CIRCLE,TRIANGLE,ABSORBER] [--balls B] [--triggers D] [--width W] [--height H] "
+                    + "FILE");
+            return;
+        }
+        int size = defaultSize(gadgets, balls);
+        Path path = Paths.get(paths.get(0));
+        write(path, seed, width > 0 ? width : size, height > 0 ? height : size, gadgets, mix, balls, triggerDensity);
+        System.out.println(gadgets + " gadgets and " + balls + " balls written to " + path);
+    }
+
+    /**
+     * Find a size of square board that fits the given gadgets and balls with room to move: about half of its cells
+     * are left free, and it is never smaller than the default board.
+     * @param gadgets number of gadgets, must be >= 0
+     * @param balls number of balls, must be >= 0
+     * @return width and height of the board, in L
+     */
+    public static int defaultSize(int gadgets, int balls) {
+        return Math.max(OuterWall.DEFAULT_SIZE, (int) Math.ceil(Math.sqrt(2.0 * (gadgets + balls))));
+    }
+
+    /**
+     * Generate a board and write it to a file, replacing any file already there.
+     * @param path file to write the board to
+     * @param seed seed of the random choices
+     * @param width width of the board in L, must be > 0
+     * @param height height of the board in L, must be > 0
+     * @param gadgets number of gadgets, must be >= 0
+     * @param mix relative weights of the types of gadgets in GADGET_TYPES, in that order; all >= 0 and not all 0
+     *        if gadgets > 0
+     * @param balls number of balls, must be >= 0
+     * @param triggerDensity probability that a gadget fires a trigger, must be >= 0 and <= 1
+     * @throws IOException if the file cannot be written
+     * @throws IllegalArgumentException if there are more gadgets and balls than cells of the board
+     */
+    public static void write(Path path, long seed, int width, int height, int gadgets, int[] mix, int balls,
+            double triggerDensity) throws IOException {
+        try (Writer out = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            generate(out, seed, width, height, gadgets, mix, balls, triggerDensity);
+        }
+    }
+
+    /**
+     * Generate a board as text.
+     * @param seed seed of the random choices
+     * @param width width of the board in L, must be > 0
+     * @param height height of the board in L, must be > 0
+     * @param gadgets number of gadgets, must be >= 0
+     * @param mix relative weights of the types of gadgets in GADGET_TYPES, in that order; all >= 0 and not all 0
+     *        if gadgets > 0
+     * @param balls number of balls, must be >= 0
+     * @param triggerDensity probability that a gadget fires a trigger, must be >= 0 and <= 1
+     * @return the text of the board, in the language of Board.g
+     * @throws IllegalArgumentException if there are more gadgets and balls than cells of the board
+     */
+    public static String generate(long seed, int width, int height, int gadgets, int[] mix, int balls,
+            double triggerDensity) {
+        StringBuilder text = new StringBuilder();
+        try {
+            generate(text, seed, width, height, gadgets, mix, balls, triggerDensity);
+        } catch (IOException e) {
+            throw new AssertionError("a StringBuilder does not throw", e);
+        }
+        return text.toString();
+    }
+
+    /**
+     * Generate a board and append its text to out, one line at a time, so that a large board need not be held in
+     * memory as text.
+     * @param out where to append the text of the board, in the language of Board.g, such as a BufferedWriter
+     * @param seed seed of the random choices
+     * @param width width of the board in L, must be > 0
+     * @param height height of the board in L, must be > 0
+     * @param gadgets number of gadgets, must be >= 0
+     * @param mix relative weights of the types of gadgets in GADGET_TYPES, in that order; all >= 0 and not all 0
+     *        if gadgets > 0
+     * @param balls number of balls, must be >= 0
+     * @param triggerDensity probability that a gadget fires a trigger, must be >= 0 and <= 1
+     * @throws IOException if out cannot be appended to
+     * @throws IllegalArgumentException if there are more gadgets and balls than cells of the board
+     */
+    public static void generate(Appendable out, long seed, int width, int height, int gadgets, int[] mix, int balls,
+            double triggerDensity) throws IOException {
+        if (width <= 0 || height <= 0 || gadgets < 0 || balls < 0 || triggerDensity < 0 || triggerDensity > 1
+                || mix.length != GADGET_TYPES.size()) {
+            throw new IllegalArgumentException("bad board description");
+        }
+        int totalWeight = 0;
+        for (int weight : mix) {
+            if (weight < 0) {
+                throw new IllegalArgumentException("negative weight in mix");
+            }
+            totalWeight += weight;
+        }
+        if (gadgets > 0 && totalWeight == 0) {
+            throw new IllegalArgumentException("mix has no weight for any gadget");
+        }
+        if ((long) gadgets + balls > (long) width * height) {
+            throw new IllegalArgumentException(gadgets + " gadgets and " + balls + " balls do not fit on a board of "
+                    + width + "x" + height + " cells");
+        }
+        Random random = new Random(seed);
+
+        // choose the type of every gadget, in order of weight
+        int[] types = new int[gadgets];
+        for (int i = 0; i < gadgets; i++) {
+            int pick = random.nextInt(totalWeight);
+            int type = 0;
+            while (pick >= mix[type]) {
+                pick -= mix[type];
+                type++;
+            }
+            types[i] = type;
+        }
+
+        // place absorbers first, since they cover several cells, then take single free cells in random order
+        boolean[] occupied = new boolean[width * height];
+        int[] xs = new int[gadgets];
+        int[] ys = new int[gadgets];
+        int[] absorberWidths = new int[gadgets];
+        int[] absorberHeights = new int[gadgets];
+        List<Integer> absorbers = new ArrayList<>();
+        int freeCells = width * height;
+        int reserved = gadgets + balls; // cells still needed, at least one for everything not yet placed
+        for (int i = 0; i < gadgets; i++) {
+            if (types[i] == ABSORBER) {
+                absorbers.add(i);
+                reserved--;
+                for (int tries = 0; tries < PLACEMENT_TRIES && absorberWidths[i] == 0; tries++) {
+                    int w = 1 + random.nextInt(Math.min(MAX_ABSORBER_WIDTH, width));
+                    int h = 1 + random.nextInt(Math.min(2, height));
+                    int x = random.nextInt(width - w + 1);
+                    int y = random.nextInt(height - h + 1);
+                    if (freeCells - w*h >= reserved && isFree(occupied, width, x, y, w, h)) {
+                        occupy(occupied, width, x, y, w, h);
+                        freeCells -= w*h;
+                        xs[i] = x;
+                        ys[i] = y;
+                        absorberWidths[i] = w;
+                        absorberHeights[i] = h;
+                    }
+                }
+                if (absorberWidths[i] == 0) {
+                    reserved++; // it takes a single free cell with the bumpers instead
+                }
+            }
+        }
+        int[] free = new int[width * height];
+        int freeCount = 0;
+        for (int cell = 0; cell < occupied.length; cell++) {
+            if (!occupied[cell]) {
+                free[freeCount++] = cell;
+            }
+        }
+        int taken = 0;
+        for (int i = 0; i < gadgets; i++) {
+            if (types[i] != ABSORBER || absorberWidths[i] == 0) { // an absorber that found no room takes one cell
+                int cell = takeFree(free, taken++, freeCount, random);
+                xs[i] = cell % width;
+                ys[i] = cell / width;
+                if (types[i] == ABSORBER) {
+                    absorberWidths[i] = 1;
+                    absorberHeights[i] = 1;
+                }
+            }
+        }
+        assert taken + balls <= freeCount : "absorbers left too few free cells";
+
+        out.append("board name=Generated").append(Long.toUnsignedString(seed))
+                .append(" width=").append(Integer.toString(width)).append(" height=").append(Integer.toString(height))
+                .append('\n');
+        out.append("# ").append(Integer.toString(gadgets)).append(" gadgets and ").append(Integer.toString(balls))
+                .append(" balls generated by BoardGenerator\n");
+        for (int i = 0; i < balls; i++) {
+            int cell = takeFree(free, taken++, freeCount, random);
+            double xVelocity = (2*random.nextDouble() - 1) * MAX_BALL_SPEED;
+            double yVelocity = (2*random.nextDouble() - 1) * MAX_BALL_SPEED;
+            // formatted by hand, since String.format would take most of the time of a board of many balls
+            out.append("ball name=Ball").append(Integer.toString(i))
+                    .append(" x=").append(Integer.toString(cell % width)).append(".5")
+                    .append(" y=").append(Integer.toString(cell / width)).append(".5")
+                    .append(" xVelocity=");
+            appendMillis(out, xVelocity);
+            out.append(" yVelocity=");
+            appendMillis(out, yVelocity);
+            out.append('\n');
+        }
+        for (int i = 0; i < gadgets; i++) {
+            out.append(GADGET_TYPES.get(types[i])).append(" name=").append(gadgetName(types, i))
+                    .append(" x=").append(Integer.toString(xs[i])).append(" y=").append(Integer.toString(ys[i]));
+            if (types[i] == TRIANGLE) {
+                out.append(" orientation=").append(Integer.toString(90 * random.nextInt(4)));
+            } else if (types[i] == ABSORBER) {
+                out.append(" width=").append(Integer.toString(absorberWidths[i]))
+                        .append(" height=").append(Integer.toString(absorberHeights[i]));
+            }
+            out.append('\n');
+        }
+        for (int i = 0; i < gadgets; i++) {
+            if (random.nextDouble() < triggerDensity) {
+                int target = absorbers.isEmpty() ? random.nextInt(gadgets)
+                        : absorbers.get(random.nextInt(absorbers.size()));
+                out.append("fire trigger=").append(gadgetName(types, i))
+                        .append(" action=").append(gadgetName(types, target)).append('\n');
+            }
+        }
+    }
+
+    /**
+     * @param types types of the gadgets of a board
+     * @param i index of a gadget
+     * @return unique name of gadget i
+     */
+    private static String gadgetName(int[] types, int i) {
+        switch (types[i]) {
+        case SQUARE:
+            return "Square" + i;
+        case CIRCLE:
+            return "Circle" + i;
+        case TRIANGLE:
+            return "Triangle" + i;
+        default:
+            return "Absorber" + i;
+        }
+    }
+
+    /**
+     * Append a number rounded to three decimal places, in the FLOAT syntax of Board.g, which has no exponents.
+     * @param out where to append the number
+     * @param value number to append
+     * @throws IOException if out cannot be appended to
+     */
+    private static void appendMillis(Appendable out, double value) throws IOException {
+        long millis = Math.round(Math.abs(value) * 1000);
+        if (value < 0 && millis > 0) {
+            out.append('-');
+        }
+        String fraction = Long.toString(millis % 1000);
+        out.append(Long.toString(millis / 1000)).append('.');
+        for (int digits = fraction.length(); digits < 3; digits++) {
+            out.append('0');
+        }
+        out.append(fraction);
+    }
+
+    /**
+     * Take a random cell out of the cells not taken yet, by a step of a Fisher-Yates shuffle.
+     * @param free free cells, of which free[taken..count) have not been taken yet
+     * @param taken number of cells taken so far, must be < count
+     * @param count number of free cells
+     * @param random source of the choice
+     * @return the cell taken, which is moved to free[taken]
+     */
+    private static int takeFree(int[] free, int taken, int count, Random random) {
+        int pick = taken + random.nextInt(count - taken);
+        int cell = free[pick];
+        free[pick] = free[taken];
+        free[taken] = cell;
+        return cell;
+    }
+
+    private static boolean isFree(boolean[] occupied, int width, int x, int y, int w, int h) {
+        for (int row = y; row < y + h; row++) {
+            for (int column = x; column < x + w; column++) {
+                if (occupied[row*width + column]) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static void occupy(boolean[] occupied, int width, int x, int y, int w, int h) {
+        for (int row = y; row < y + h; row++) {
+            for (int column = x; column < x + w; column++) {
+                occupied[row*width + column] = true;
+            }
+        }
+    }
+}
@@ -21,14 +21,17 @@ import edu.mit.eecs.parserlib.Visualizer;
 public class BoardParser {
     
     /**
-     * Method used for testing to parse sample files
+     * Method used for testing to parse sample files, showing the parse tree in a browser
      * @param args additional arguments, should be empty
      * @throws UnableToParseException if file cannot be opened
+     * @throws IOException if file cannot be read
      */
-    public static void main(final String[] args) throws UnableToParseException {
+    public static void main(final String[] args) throws UnableToParseException, IOException {
         // saves as board object to instantiate all the objects and their locations
         File f = new File("test/flingball/default.fb");
         BoardParser.parse(f);
+        // show in browser parse tree
+        Visualizer.showInBrowser(parser.parse(f));
     }
     
     // the nonterminals of the grammar
@@ -37,7 +40,7 @@ public class BoardParser {
         ACTION, SQUAREBUMPER, TRIANGLEBUMPER, CIRCLEBUMPER, 
         ABSORBER, ORIENTATION,
         COMMENT, CONTENTTOSKIP, WHITESPACE, INTEGER, FLOAT,
-        NAME, GRAVITY, FRICTION1, FRICTION2
+        NAME, WIDTH, HEIGHT, BURST, GRAVITY, FRICTION1, FRICTION2
     }
     
     private static Parser<BoardGrammar> parser = makeParser();
@@ -71,17 +74,16 @@ public class BoardParser {
      * that board.
      * @param file is the file we pass in to initialize the board. File must have a board
      *      with properties that are grammatically correct. It may contain gadgets, ball,
-     *      and actions, but it must contain a non-zero length name. The file cannot fire trigger
-     *      more than once on the same cause of the trigger.
+     *      and actions, but it must contain a non-zero length name. The file may fire several
+     *      actions from the same cause of a trigger, which are performed in the order they appear.
      * @throws UnableToParseException if expression could not be made. This could include
      *      grammar errors or errors in this method
      */
-    public static GameExpression parse(final File file) throws UnableToParseException {
+    public static synchronized GameExpression parse(final File file) throws UnableToParseException {
+        // synchronized because the compiled parser is shared, and ParserLib does not promise it is thread-safe
         // parse the example into a parse tree
         try {
             final ParseTree<BoardGrammar> parseTree = parser.parse(file);
-            // show in browser parse tree
-            Visualizer.showInBrowser(parseTree);
             // make an AST from the parse tree
             final GameExpression expression = makeAbstractSyntaxTree(parseTree);
             
@@ -149,18 +151,27 @@ public class BoardParser {
     
     /**
      * Helper function to makeAbstractSyntaxTree in order to make an Absorber object
-     * from the given expression, specifically the name, x position, y position, width, and height.
+     * from the given expression, specifically the name, x position, y position, width, height, and burst.
      * @param parseTree is valid parse tree as defined by pset3 and given concrete syntax tree
      *        from ParserLib as well as specification of parseTree in makeSquareBumper.
      * @return Absorber based on information parsed in given the parse tree
+     * @throws UnableToParseException if the burst is not a positive integer
      */
-    private static GameExpression makeAbsorber(final ParseTree<BoardGrammar> parseTree) {
+    private static GameExpression makeAbsorber(final ParseTree<BoardGrammar> parseTree)
+            throws UnableToParseException {
         final List<ParseTree<BoardGrammar>> children = parseTree.children();
         String name = children.get(0).text();
         int x = Integer.parseInt(children.get(1).text());
         int y = Integer.parseInt(children.get(2).text());
         int width = Integer.parseInt(children.get(3).text());
         int height = Integer.parseInt(children.get(4).text());
+        if (children.size() > 5) {
+            int burst = Integer.parseInt(children.get(5).text().trim()); // the text includes skipped spaces
+            if (burst < 1) {
+                throw new UnableToParseException("absorber burst must be a positive integer, not " + burst);
+            }
+            return new Absorber(name, x, y, width, height, burst);
+        }
         return new Absorber(name, x, y, width, height);
     }
     
@@ -181,6 +192,38 @@ public class BoardParser {
         return new Ball(name, x, y, xVelocity, yVelocity);
     }
     
+    /**
+     * Give a new ball or gadget the next id in symbols.
+     * @param symbols names of the balls and gadgets made so far
+     * @param expression ball or gadget just made
+     * @throws UnableToParseException if the name of expression is already taken
+     */
+    private static void define(SymbolTable symbols, GameExpression expression) throws UnableToParseException {
+        if (symbols.id(expression.getName()) != SymbolTable.UNDEFINED) {
+            throw new UnableToParseException("name " + expression.getName() + " is already used");
+        }
+        symbols.define(expression);
+    }
+    
+    /**
+     * Parse the width or height of a board.
+     * @param text digits of the size
+     * @param dimension "width" or "height", for the error message
+     * @return the size in L
+     * @throws UnableToParseException if the size is 0 or too large for an int
+     */
+    private static int boardSize(String text, String dimension) throws UnableToParseException {
+        try {
+            int size = Integer.parseInt(text.trim()); // the text includes any spaces skipped after it
+            if (size > 0) {
+                return size;
+            }
+        } catch (NumberFormatException e) {
+            // fall through to report it
+        }
+        throw new UnableToParseException("board " + dimension + " must be a positive integer, not " + text.trim());
+    }
+    
     /**
      * Makes the Abstract Syntax Tree given a parsed concrete syntax tree. Ensures that all the gadgets in game
      * have unique identifiers.
@@ -188,8 +231,11 @@ public class BoardParser {
      *        from ParserLib as well as specification of parseTree in makeSquareBumper.
      * @return GameExpression the board object that contains all the information on what gadgets, balls,
      *        and relationships the objects on the board have with each other
+     * @throws UnableToParseException if two balls or gadgets have the same name, an action names a gadget
+     *         that does not exist, the board has a size of 0, or a ball or gadget does not fit on the board
      */
-    private static GameExpression makeAbstractSyntaxTree(final ParseTree<BoardGrammar> parseTree) {
+    private static GameExpression makeAbstractSyntaxTree(final ParseTree<BoardGrammar> parseTree)
+            throws UnableToParseException {
         switch(parseTree.name()) {
         case BOARD:
             {
@@ -198,11 +244,13 @@ public class BoardParser {
                 final List<ParseTree<BoardGrammar>> children = parseTree.children();
                 
                 String name = "";
+                int width = OuterWall.DEFAULT_SIZE;
+                int height = OuterWall.DEFAULT_SIZE;
                 double gravity = 25.0;
                 double friction1 = 0.025;
                 double friction2 = 0.025;
                 Set<GameExpression> gadgets = new HashSet<>();
-                Set<String> namesOfGadgets = new HashSet<>();
+                SymbolTable symbols = new SymbolTable(); // names of balls and gadgets, for unique ids and triggers
                 Set<GameExpression> balls = new HashSet<>();
                 
                 for(int index=0; index < children.size(); ++index) {
@@ -225,10 +273,9 @@ public class BoardParser {
                             {
                                 GameExpression squareBumper = makeSquareBumper(gadget);
                                 // check unique id
-                                assert !(namesOfGadgets.contains(squareBumper.getName()));
+                                define(symbols, squareBumper);
                                 // add to list of gadgets
                                 gadgets.add(squareBumper);
-                                namesOfGadgets.add(squareBumper.getName());
                                 break;
                                 // name, x, y
                             }
@@ -237,10 +284,9 @@ public class BoardParser {
                             {
                                 GameExpression circleBumper = makeCircleBumper(gadget);
                                 // check unique id
-                                assert !(namesOfGadgets.contains(circleBumper.getName()));
-                                // add to list of gadgets gadgets
+                                define(symbols, circleBumper);
+                                // add to list of gadgets
                                 gadgets.add(circleBumper);
-                                namesOfGadgets.add(circleBumper.getName());
                                 break;
                                 // name, x, y
                             }
@@ -249,30 +295,40 @@ public class BoardParser {
                             {
                                 GameExpression triangleBumper = makeTriangleBumper(gadget);
                                 // check unique id
-                                assert !(namesOfGadgets.contains(triangleBumper.getName()));
-                                // add to list of gadgets gadgets
+                                define(symbols, triangleBumper);
+                                // add to list of gadgets
                                 gadgets.add(triangleBumper);
-                                namesOfGadgets.add(triangleBumper.getName());
                                 break;
                                 // name, x, y
                             }
                             
-                            case ABSORBER: // absorber ::= 'absorber' 'name' '=' NAME 'x' '=' INTEGER 'y' '=' INTEGER 'width' '=' INTEGER 'height' '=' INTEGER [\n]+;
+                            case ABSORBER: // absorber ::= 'absorber' 'name' '=' NAME 'x' '=' INTEGER 'y' '=' INTEGER 'width' '=' INTEGER 'height' '=' INTEGER ('burst' '=' BURST)? [\n]+;
                             {
                                 GameExpression absorber = makeAbsorber(gadget);
                                 // check unique id
-                                assert !(namesOfGadgets.contains(absorber.getName()));
-                                // add to list of gadgets gadgets
+                                define(symbols, absorber);
+                                // add to list of gadgets
                                 gadgets.add(absorber);
-                                namesOfGadgets.add(absorber.getName());
                                 break;
-                                // name, x, y, width, height
+                                // name, x, y, width, height, burst
                             }
                             }
                         }
                         break;
                     }
                     
+                    case WIDTH: // WIDTH ::= INTEGER;
+                    {
+                        width = boardSize(children.get(index).text(), "width");
+                        break;
+                    }
+                    
+                    case HEIGHT: // HEIGHT ::= INTEGER;
+                    {
+                        height = boardSize(children.get(index).text(), "height");
+                        break;
+                    }
+                    
                     case GRAVITY: // GRAVITY ::=  FLOAT;
                     {
                         gravity = Double.parseDouble(children.get(index).text());
@@ -298,10 +354,9 @@ public class BoardParser {
                     {
                         GameExpression ballObject = makeBall(children.get(index));
                         // check unique id
-                        assert !(namesOfGadgets.contains(ballObject.getName()));
-                        // add to list of gadgets
+                        define(symbols, ballObject);
+                        // add to list of balls
                         balls.add(ballObject);
-                        namesOfGadgets.add(ballObject.getName());
                         break;
                         // name, x, y, xVelocity, yVelocity
                     }
@@ -312,17 +367,11 @@ public class BoardParser {
                         ParseTree<BoardGrammar> object1 = children.get(index).children().get(0);
                         // 2nd child of action = object affected by trigger
                         ParseTree<BoardGrammar> object2 = children.get(index).children().get(1);
-                        assert namesOfGadgets.contains(object1.text()) && namesOfGadgets.contains(object2.text());
-                        
-                        GameExpression gadget1 = null;
-                        GameExpression gadget2 = null;
-                        for (GameExpression x : gadgets) {
-                            if (x.getName().equals(object1.text())) {
-                                gadget1 = x;
-                            }
-                            if (x.getName().equals(object2.text())) {
-                                gadget2 = x;
-                            }
+                        GameExpression gadget1 = symbols.lookup(object1.text());
+                        GameExpression gadget2 = symbols.lookup(object2.text());
+                        if (gadget1 == null || gadget1 instanceof Ball || gadget2 == null || gadget2 instanceof Ball) {
+                            throw new UnableToParseException("no gadget named " + object1.text() + " or "
+                                    + object2.text());
                         }
                         // change state of cause
                         gadget1.setTrigger(gadget2);
@@ -333,7 +382,15 @@ public class BoardParser {
                         throw new AssertionError("should never get here");
                     }
                     }
-                return new Board(name, gravity, friction1, friction2, gadgets, balls);
+                // the size comes before every ball and gadget, so they can only be checked against it at the end
+                for (Set<GameExpression> expressions : List.of(balls, gadgets)) {
+                    for (GameExpression expression : expressions) {
+                        if (!Board.fits(expression, width, height)) {
+                            throw new UnableToParseException(expression.getName() + " does not fit on the board");
+                        }
+                    }
+                }
+                return new Board(name, width, height, gravity, friction1, friction2, gadgets, balls);
             }
         default:
             throw new AssertionError("should never get here");
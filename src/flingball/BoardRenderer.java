@@ -0,0 +1,279 @@
+package flingball;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Rectangle;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Path2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import physics.LineSegment;
+import physics.Vect;
+
+/**
+ * Draws a flingball board, either straight from the live board or from BoardFrame snapshots of it, blending two
+ * successive frames so that balls move smoothly between simulation steps. The gadgets never move, so they are
+ * rasterized into a cached image, the static layer, and every frame only copies that image and draws the balls
+ * on top of it. The layer is drawn again only when the gadgets of the board change, as when it is hot-reloaded,
+ * or when invalidate() is called.
+ *
+ * So that large boards cost no more to draw than the part of them that is visible, the layer is cut into square
+ * tiles of TILE_SIZE pixels, which are drawn only when they first overlap the clip of the graphics being painted,
+ * from the gadgets the grid index finds in them; the MAX_TILES most recently used tiles are kept. Balls outside
+ * the clip are skipped.
+ */
+public class BoardRenderer {
+
+    /** Width and height of a tile of the static layer, in pixels. */
+    public static final int TILE_SIZE = 512;
+    /** Largest number of tiles of the static layer kept at once. */
+    public static final int MAX_TILES = 64;
+
+    private final int pixelsPerL;
+    private final Map<Long, BufferedImage> tiles = new LinkedHashMap<Long, BufferedImage>(16, 0.75f, true) {
+        @Override protected boolean removeEldestEntry(Map.Entry<Long, BufferedImage> eldest) {
+            return size() > MAX_TILES;
+        }
+    };
+    private GridIndex layerGadgets = null;
+    private Color layerBackground = null;
+    private long layerRenders = 0;
+    private final Ellipse2D.Double ellipse = new Ellipse2D.Double();
+
+    // Abstraction function:
+    // AF(pixelsPerL, tiles, layerGadgets, layerBackground, layerRenders, ellipse) = a renderer that draws boards at
+    // pixelsPerL pixels per L, whose static layer is the image of the gadgets indexed by layerGadgets on a
+    // background of layerBackground, of which tiles holds the tiles drawn so far, in order of use: the tile in
+    // column tx and row ty, covering pixels [tx*TILE_SIZE, (tx+1)*TILE_SIZE) by [ty*TILE_SIZE, (ty+1)*TILE_SIZE)
+    // of the board, has key ty << 32 | tx. layerRenders tiles have been drawn. ellipse is scratch space for
+    // drawing balls.
+    //
+    // Rep invariant:
+    // - pixelsPerL > 0
+    // - layerGadgets and layerBackground are both null or both not null, and tiles is empty if they are null
+    // - tiles.size() <= MAX_TILES
+    // - layerRenders >= 0
+    //
+    // Safety from rep exposure argument:
+    // - all fields are private, and tiles and ellipse are never returned
+    // - layerGadgets is immutable, and only compared by identity with the gadgets being drawn
+    //
+    // Thread safety argument:
+    // - not threadsafe; a renderer must only be used by one thread, such as the Swing event dispatch thread
+
+    private void checkRep() {
+        assert this.pixelsPerL > 0;
+        assert (this.layerGadgets == null) == (this.layerBackground == null);
+        assert this.layerGadgets != null || this.tiles.isEmpty();
+        assert this.tiles.size() <= MAX_TILES;
+        assert this.layerRenders >= 0;
+    }
+
+    /**
+     * Make a renderer.
+     * @param pixelsPerL number of pixels per L, the side of a grid cell of the board, must be > 0
+     */
+    public BoardRenderer(int pixelsPerL) {
+        this.pixelsPerL = pixelsPerL;
+        checkRep();
+    }
+
+    /**
+     * Draw board, with its balls at their current locations.
+     * @param g graphics to draw on, whose origin is the top left corner of the board
+     * @param board board to draw; only read
+     */
+    public void paint(Graphics2D g, Board board) {
+        paintLayer(g, board.getGridIndex(), board.getColor());
+
+        // iterate through balls (moving gadgets), reading their state straight from the board's ball store
+        BallStore store = board.getBallStore();
+        Rectangle clip = g.getClipBounds();
+        for (int slot = 0; slot < store.size(); slot++) {
+            if (store.absorbed(slot)) { //absorbed balls are hidden inside their absorber
+                continue;
+            }
+            fillBall(g, clip, store.x(slot), store.y(slot), store.radius(slot), store.ball(slot).getColor());
+        }
+    }
+
+    /**
+     * Draw a board between two frames of its simulation, with each ball part of the way from where it was in
+     * previous to where it is in current. A ball that was absorbed or released between the frames is drawn as it
+     * is in current, since it did not move there continuously.
+     * @param g graphics to draw on, whose origin is the top left corner of the board
+     * @param previous earlier frame of the board
+     * @param current later frame of the same board, with the same balls as previous
+     * @param alpha how far to draw the balls from previous towards current, must be >= 0 and <= 1
+     */
+    public void paint(Graphics2D g, BoardFrame previous, BoardFrame current, double alpha) {
+        paintLayer(g, current.getGadgets(), current.getBackground());
+        Rectangle clip = g.getClipBounds();
+        for (int slot = 0; slot < current.size(); slot++) {
+            if (current.absorbed(slot)) { //absorbed balls are hidden inside their absorber
+                continue;
+            }
+            double x = current.x(slot);
+            double y = current.y(slot);
+            if (!previous.absorbed(slot)) {
+                x = previous.x(slot) + (x - previous.x(slot))*alpha;
+                y = previous.y(slot) + (y - previous.y(slot))*alpha;
+            }
+            fillBall(g, clip, x, y, current.radius(slot), current.color(slot));
+        }
+    }
+
+    /**
+     * Draw a ball, unless it lies outside clip.
+     * @param g graphics to draw on
+     * @param clip clip bounds of g, or null if it is not clipped
+     * @param x x coordinate of the center of the ball, in L
+     * @param y y coordinate of the center of the ball, in L
+     * @param radius radius of the ball, in L
+     * @param color color of the ball
+     */
+    private void fillBall(Graphics2D g, Rectangle clip, double x, double y, double radius, Color color) {
+        this.ellipse.setFrame((x - radius)*this.pixelsPerL, (y - radius)*this.pixelsPerL,
+                2*radius*this.pixelsPerL, 2*radius*this.pixelsPerL);
+        if (clip != null && !this.ellipse.intersects(clip)) {
+            return;
+        }
+        g.setColor(color);
+        g.fill(this.ellipse);
+    }
+
+    /**
+     * Copy the tiles of the static layer of gadgets that overlap the clip of g onto g, drawing any that are not
+     * cached first. The cached tiles are discarded if they are not of these gadgets.
+     * @param g graphics to draw on
+     * @param gadgets index of the gadgets of the board, which are only ever replaced together with the index
+     * @param background color of the background of the board
+     */
+    private void paintLayer(Graphics2D g, GridIndex gadgets, Color background) {
+        if (this.layerGadgets != gadgets || !background.equals(this.layerBackground)) {
+            this.tiles.clear();
+            this.layerGadgets = gadgets;
+            this.layerBackground = background;
+        }
+        int width = gadgets.getWidth()*this.pixelsPerL;
+        int height = gadgets.getHeight()*this.pixelsPerL;
+        Rectangle visible = new Rectangle(0, 0, width, height);
+        Rectangle clip = g.getClipBounds();
+        if (clip != null) {
+            visible = visible.intersection(clip);
+        }
+        if (visible.isEmpty()) {
+            return;
+        }
+        for (int ty = visible.y / TILE_SIZE; ty <= (visible.y + visible.height - 1) / TILE_SIZE; ty++) {
+            for (int tx = visible.x / TILE_SIZE; tx <= (visible.x + visible.width - 1) / TILE_SIZE; tx++) {
+                long key = (long) ty << 32 | tx;
+                BufferedImage tile = this.tiles.get(key);
+                if (tile == null) {
+                    tile = renderTile(g.getDeviceConfiguration(), tx, ty, width, height);
+                    this.tiles.put(key, tile);
+                }
+                g.drawImage(tile, tx*TILE_SIZE, ty*TILE_SIZE, null);
+            }
+        }
+        checkRep();
+    }
+
+    /**
+     * Discard the static layer, so that the gadgets are drawn again on the next paint, as after the appearance of
+     * a gadget has changed.
+     */
+    public void invalidate() {
+        this.tiles.clear();
+        this.layerGadgets = null;
+        this.layerBackground = null;
+        checkRep();
+    }
+
+    /**
+     * @return number of tiles of the static layer that have been drawn; a board that fits in one tile has its
+     *         layer drawn as a single tile
+     */
+    public long getLayerRenders() {
+        return this.layerRenders;
+    }
+
+    /**
+     * Draw the background and the gadgets of one tile of the static layer of layerGadgets.
+     * @param configuration configuration of the device being drawn on, or null if unknown
+     * @param tx column of the tile
+     * @param ty row of the tile
+     * @param width width of the whole layer, in pixels
+     * @param height height of the whole layer, in pixels
+     * @return a new image of the tile, cut off at the right and bottom of the layer
+     */
+    private BufferedImage renderTile(GraphicsConfiguration configuration, int tx, int ty, int width, int height) {
+        int left = tx*TILE_SIZE;
+        int top = ty*TILE_SIZE;
+        int tileWidth = Math.min(TILE_SIZE, width - left);
+        int tileHeight = Math.min(TILE_SIZE, height - top);
+        // an image compatible with the screen can be cached in video memory, and copied without conversion
+        BufferedImage tile = configuration != null ? configuration.createCompatibleImage(tileWidth, tileHeight)
+                : new BufferedImage(tileWidth, tileHeight, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = tile.createGraphics();
+        try {
+            g.setColor(this.layerBackground);
+            g.fill(new Rectangle2D.Double(0, 0, tileWidth, tileHeight));
+            g.translate(-left, -top);
+            // only the gadgets in the cells under the tile can be seen in it
+            double scale = 1.0 / this.pixelsPerL;
+            for (int id : this.layerGadgets.idsWithin(left*scale, top*scale, (left + tileWidth)*scale,
+                    (top + tileHeight)*scale)) {
+                drawGadget(g, this.layerGadgets.gadget(id));
+            }
+        } finally {
+            g.dispose();
+        }
+        this.layerRenders++;
+        return tile;
+    }
+
+    /**
+     * Draw a stationary gadget.
+     * @param g graphics to draw on
+     * @param gadget gadget to draw
+     */
+    private void drawGadget(Graphics2D g, GameExpression gadget) {
+        Vect location = gadget.getLocation();
+        g.setColor(gadget.getColor());
+        if (gadget instanceof CircleBumper) { // located by its center, with diameter 1L
+            g.fill(new Ellipse2D.Double((location.x() - .5)*this.pixelsPerL, (location.y() - .5)*this.pixelsPerL,
+                    this.pixelsPerL, this.pixelsPerL));
+        } else if (gadget instanceof Absorber) {
+            Absorber absorber = (Absorber) gadget;
+            g.fill(new Rectangle2D.Double(location.x()*this.pixelsPerL, location.y()*this.pixelsPerL,
+                    absorber.getWidth()*this.pixelsPerL, absorber.getHeight()*this.pixelsPerL));
+        } else if (gadget instanceof SquareBumper) {
+            g.fill(new Rectangle2D.Double(location.x()*this.pixelsPerL, location.y()*this.pixelsPerL,
+                    this.pixelsPerL, this.pixelsPerL));
+        } else { // a triangle bumper, whose three corners outline it in any order
+            Path2D.Double outline = new Path2D.Double();
+            List<Vect> corners = new ArrayList<>();
+            for (LineSegment side : gadget.getSides()) {
+                for (Vect corner : new Vect[] { side.p1(), side.p2() }) {
+                    if (!corners.contains(corner)) {
+                        corners.add(corner);
+                        if (corners.size() == 1) {
+                            outline.moveTo(corner.x()*this.pixelsPerL, corner.y()*this.pixelsPerL);
+                        } else {
+                            outline.lineTo(corner.x()*this.pixelsPerL, corner.y()*this.pixelsPerL);
+                        }
+                    }
+                }
+            }
+            outline.closePath();
+            g.fill(outline);
+        }
+    }
+}
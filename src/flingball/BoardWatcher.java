@@ -0,0 +1,225 @@
+package flingball;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import edu.mit.eecs.parserlib.UnableToParseException;
+
+/**
+ * Watches the file of a board being simulated and patches the live board whenever the file changes, so that a
+ * layout can be edited without restarting the game. A daemon thread waits on a WatchService over the directory of
+ * the file, and re-parses the file off the simulation thread each time it is written; the simulation thread then
+ * picks up the new layout between steps with applyPending().
+ *
+ * A reload only patches the gadgets: gadgets are matched by name, and only those that were added, removed, moved,
+ * or otherwise changed are replaced, along with any triggers that changed. Every other gadget keeps its state
+ * (such as the balls held by an absorber), and the balls, the simulated time, and the gravity and friction of the
+ * live board are kept as they are. A file that cannot be parsed is reported and leaves the live board unchanged.
+ */
+public class BoardWatcher implements Closeable {
+
+    private static final long SETTLE_MILLISECONDS = 20; // wait for an editor to finish writing the file
+
+    private final Path file;
+    private final WatchService service;
+    private final AtomicReference<Board> pending = new AtomicReference<>();
+    private final Thread thread;
+
+    // Abstraction function:
+    // AF(file, service, pending, thread) = a watch on file, whose directory is registered with service and
+    // waited on by thread; pending holds the board most recently parsed from file that has not yet been applied,
+    // or null if there is none
+    //
+    // Rep invariant:
+    // - file has a parent directory
+    //
+    // Safety from rep exposure argument:
+    // - all fields are private and final, and never returned
+    //
+    // Thread safety argument:
+    // - file is immutable, and service is thread-safe
+    // - pending is only handed between thread and the simulation thread through an AtomicReference, and a parsed
+    //   board is never touched by thread again once it is published
+    // - the live board is only patched by applyPending(), on the thread that simulates it
+
+    private void checkRep() {
+        assert this.file.getParent() != null;
+    }
+
+    /**
+     * Start watching a board file.
+     * @param file .fb or .fbb file of the board to watch
+     * @throws IOException if the directory of file cannot be watched
+     */
+    public BoardWatcher(Path file) throws IOException {
+        this.file = file.toAbsolutePath();
+        this.service = FileSystems.getDefault().newWatchService();
+        this.file.getParent().register(this.service, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY);
+        this.thread = new Thread(this::watch, "BoardWatcher " + this.file.getFileName());
+        this.thread.setDaemon(true);
+        this.thread.start();
+        checkRep();
+    }
+
+    /**
+     * Wait for changes to the file and parse it after each one, until this watcher is closed.
+     */
+    private void watch() {
+        try {
+            while (true) {
+                WatchKey key = this.service.take();
+                boolean changed = changesFile(key);
+                // an editor may write the file in several pieces, so wait until it has been quiet for a moment
+                while ((key = this.service.poll(SETTLE_MILLISECONDS, TimeUnit.MILLISECONDS)) != null) {
+                    changed |= changesFile(key);
+                }
+                if (changed) {
+                    try {
+                        this.pending.set(BoardCompiler.load(this.file.toFile()));
+                    } catch (UnableToParseException | IOException | IllegalArgumentException e) {
+                        System.err.println("can't reload " + this.file + ": " + e.getMessage());
+                    }
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            return; // closed
+        }
+    }
+
+    /**
+     * Consume the events of key.
+     * @return true iff one of them was a change to the watched file
+     */
+    private boolean changesFile(WatchKey key) {
+        boolean changed = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.context() instanceof Path && this.file.getFileName().equals(event.context())) {
+                changed = true;
+            }
+        }
+        key.reset();
+        return changed;
+    }
+
+    /**
+     * Patch the board of engine with the latest version of the watched file, if it has changed since the last
+     * call. Must be called between steps, on the thread that steps engine.
+     * @param engine simulation of the board of the watched file
+     * @return number of gadgets and triggers patched, 0 if the file has not changed
+     */
+    public int applyPending(SimulationEngine engine) {
+        Board parsed = this.pending.getAndSet(null);
+        return parsed == null ? 0 : patch(engine, parsed);
+    }
+
+    /**
+     * Patch the board of engine so that its gadgets and triggers are those of parsed. Gadgets are matched by name;
+     * a gadget that is missing from parsed is removed, one that is new in parsed is added, and one whose type,
+     * location, or shape differ is replaced by the one in parsed. Every trigger is then pointed at the gadgets of
+     * the same names as in parsed. Must be called between steps, on the thread that steps engine.
+     * @param engine simulation of a board
+     * @param parsed a newly parsed board, which must not be simulated; its gadgets may be moved onto the board of
+     *        engine
+     * @return number of gadgets added, removed, or replaced, plus the number of triggers changed
+     */
+    public static int patch(SimulationEngine engine, Board parsed) {
+        Map<String, GameExpression> live = byName(engine.getBoard().getGadgets());
+        Map<String, GameExpression> wanted = byName(parsed.getGadgets());
+        // by identity, since gadgets of different types can't be compared with equals()
+        Set<GameExpression> removed = Collections.newSetFromMap(new IdentityHashMap<>());
+        Set<GameExpression> added = Collections.newSetFromMap(new IdentityHashMap<>());
+        Set<String> changedNames = new HashSet<>();
+        for (GameExpression gadget : live.values()) {
+            GameExpression replacement = wanted.get(gadget.getName());
+            if (replacement == null || !sameLayout(gadget, replacement)) {
+                removed.add(gadget);
+                changedNames.add(gadget.getName());
+            }
+        }
+        for (GameExpression gadget : wanted.values()) {
+            GameExpression original = live.get(gadget.getName());
+            if (original == null || !sameLayout(original, gadget)) {
+                added.add(gadget);
+                changedNames.add(gadget.getName());
+            }
+        }
+        if (!removed.isEmpty() || !added.isEmpty()) {
+            engine.replaceGadgets(removed, added);
+        }
+
+        Map<String, GameExpression> patched = byName(engine.getBoard().getGadgets());
+        int changes = changedNames.size();
+        for (GameExpression gadget : patched.values()) {
+            List<GameExpression> targets = new ArrayList<>();
+            for (GameExpression wantedTarget : wanted.get(gadget.getName()).getTriggerTargets()) {
+                targets.add(patched.get(wantedTarget.getName()));
+            }
+            if (!sameTargets(gadget.getTriggerTargets(), targets)) {
+                gadget.clearTrigger();
+                for (GameExpression target : targets) {
+                    gadget.setTrigger(target);
+                }
+                changes++;
+            }
+        }
+        return changes;
+    }
+
+    /**
+     * @return true iff a and b hold the same gadgets, by identity, in the same order
+     */
+    private static boolean sameTargets(List<GameExpression> a, List<GameExpression> b) {
+        if (a.size() != b.size()) {
+            return false;
+        }
+        for (int i = 0; i < a.size(); i++) {
+            if (a.get(i) != b.get(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return true iff a and b are gadgets of the same type with the same name, location, and sides
+     */
+    private static boolean sameLayout(GameExpression a, GameExpression b) {
+        // equals() of a gadget assumes the other gadget has the same type
+        return a.getClass().equals(b.getClass()) && a.equals(b) && a.getSides().equals(b.getSides());
+    }
+
+    private static Map<String, GameExpression> byName(Set<GameExpression> gadgets) {
+        Map<String, GameExpression> byName = new HashMap<>();
+        for (GameExpression gadget : gadgets) {
+            byName.put(gadget.getName(), gadget);
+        }
+        return byName;
+    }
+
+    /**
+     * Stop watching the file. Changes that have been parsed but not applied are discarded.
+     * @throws IOException if the watch cannot be closed
+     */
+    @Override public void close() throws IOException {
+        this.service.close();
+        this.thread.interrupt();
+    }
+}
@@ -1,7 +1,10 @@
 package flingball;
 
 import java.awt.Color;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 import physics.Circle;
@@ -18,46 +21,41 @@ import physics.Vect;
  * references to other mutable objects and changing them accidentally) in the following strategies:
  *   - all getter methods that involve mutable objects make defensive copies of their inputs
  *   - all setter methods that involve returning mutable objects make defensive copies of the class's object
- *   - the mutable set trigger operation can only be performed once in the lifetime of the game 
- *     (for 1 object to trigger another object).
- * This is safe from threading and race conditions because our board parser requires as a precondition that
- * no object can set trigger to more than one object. Thus, since board and simulation handle objects one at a time,
- * we will not encounter any threading problems in this iteration. After discussion with TAs and Professor Goldman,
- * we will consider changing our design to encompass an immutable Trigger class that makes an immutable reference to the
- * 2 objects involved (1 cause, 1 effect) for the next iteration.
+ *   - the mutable set trigger operation only adds targets, each at most once, until they are all cleared
+ *     (for 1 object to trigger one or more other objects).
+ * A SimulationEngine does not call trigger() inside a collision: it queues the actions of the targets and performs
+ * them once the collisions of the step have been applied, on the thread that steps the board.
  */
 public class CircleBumper implements GameExpression {
     
     private final String name;
     private final Circle bumperCircle;
     private final double radius = 0.5;
-    private GameExpression triggerTarget = null;
+    private final List<GameExpression> triggerTargets = new ArrayList<>();
     private final Color color = Color.red;
     
     // Abstraction function:
-    // AF(name, bumperCircle, radius, triggerTarget, color) = a circular bumper gadget with the unique identifier name,
-    // radius length equal to radius, and whose color is color. When hit by a ball, the bumper causes the action of its
-    // triggerTarget to run, if it has a triggerTarget.
+    // AF(name, bumperCircle, radius, triggerTargets, color) = a circular bumper gadget with the unique identifier name,
+    // radius length equal to radius, and whose color is color. When hit by a ball, the bumper causes the actions of the
+    // gadgets in triggerTargets to run, in order.
     //
     // Rep invariant:
     // - name is not the empty string
     // - radius > 0
-    // - bumperCircle is located on the flingball board
+    // - bumperCircle has non-negative coordinates (the board the bumper is placed on checks that it fits within
+    //   the walls)
     //
     // Safety from rep exposure argument:
     // - name and radius are private, final, and immutable types
-    // - triggerTarget is private, but must remain mutable to maintain CircleBumper's functionality
+    // - triggerTargets is private and final, but must remain mutable to maintain CircleBumper's functionality;
+    //   only an unmodifiable view of it is returned
     // - getLocation returns defensive copy of ball's position Vect
     
-    private final int boardSize = 20; // constant as outlined by project spec
-    
     private void checkRep() {
         assert !this.name.equals("");
         assert this.radius > 0;
         assert this.bumperCircle.getCenter().x() >= 0 + this.radius;
-        assert this.bumperCircle.getCenter().y() <= boardSize - this.radius;
-        assert this.bumperCircle.getCenter().x() >= 0 + this.radius;
-        assert this.bumperCircle.getCenter().y() <= boardSize - this.radius;
+        assert this.bumperCircle.getCenter().y() >= 0 + this.radius;
     }
  
     
@@ -99,15 +97,30 @@ public class CircleBumper implements GameExpression {
         return Physics.timeUntilCircleCollision(this.bumperCircle, ball.getBallCircle(), ball.getVelocity());
     }
 
+    @Override public double timeUntilCollision(Ball ball, Contact contact) {
+        contact.clear();
+        contact.testCorner(this.bumperCircle, ball.getBallCircle(), ball.getVelocity());
+        return contact.resolve(ball.getBallCircle(), ball.getVelocity());
+    }
+
     @Override public void collision(Ball ball) {
         ball.setVelocity(Physics.reflectCircle(this.bumperCircle.getCenter(), ball.getLocation(), ball.getVelocity()));
         trigger();
         checkRep();
     }
 
+    @Override public void collision(Ball ball, Contact contact) {
+        localCollision(ball, contact);
+        collisionEffects(ball);
+        trigger();
+        checkRep();
+    }
+
     @Override public boolean trigger() {
-        if (this.triggerTarget != null) {
-            this.triggerTarget.action();
+        if (!this.triggerTargets.isEmpty()) {
+            for (GameExpression target : this.triggerTargets) {
+                target.action();
+            }
             checkRep();
             return true;
         }
@@ -115,12 +128,23 @@ public class CircleBumper implements GameExpression {
     }
 
     @Override public boolean setTrigger(GameExpression target) {
-        if (this.triggerTarget == null) {
-            this.triggerTarget = target;
-            checkRep();
-            return true;
+        for (GameExpression existing : this.triggerTargets) {
+            if (existing == target) { // by identity, since equals() assumes gadgets of the same type
+                return false;
+            }
         }
-        return false; 
+        this.triggerTargets.add(target);
+        checkRep();
+        return true;
+    }
+
+    @Override public List<GameExpression> getTriggerTargets() {
+        return Collections.unmodifiableList(this.triggerTargets);
+    }
+
+    @Override public void clearTrigger() {
+        this.triggerTargets.clear();
+        checkRep();
     }
     
     @Override public boolean action() {
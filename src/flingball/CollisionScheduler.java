@@ -0,0 +1,133 @@
+package flingball;
+
+import java.util.PriorityQueue;
+
+/**
+ * A mutable discrete-event scheduler of predicted collisions. Each event is a (ball, gadget, time) triple
+ * meaning that ball is predicted to hit gadget at the given absolute simulation time. Events are kept in a
+ * min-heap ordered by time, so the next collision on the board is found in O(log n) time rather than by
+ * scanning every gadget for every ball.
+ *
+ * Each ball has at most one current prediction, stored as the ball's next collision and next collision time.
+ * A prediction with no gadget but a finite time means that the ball hits nothing before that time, and must be
+ * predicted again once it gets there.
+ * When a ball's prediction is replaced, its old event is left in the heap and discarded lazily when it reaches
+ * the front of the queue.
+ */
+public class CollisionScheduler {
+
+    /**
+     * An immutable predicted collision between a ball and a gadget.
+     */
+    private static class Event implements Comparable<Event> {
+        private final double time;
+        private final long sequence;
+        private final Ball ball;
+        private final GameExpression gadget;
+
+        private Event(double time, long sequence, Ball ball, GameExpression gadget) {
+            this.time = time;
+            this.sequence = sequence;
+            this.ball = ball;
+            this.gadget = gadget;
+        }
+
+        @Override public int compareTo(Event that) {
+            int byTime = Double.compare(this.time, that.time);
+            return byTime != 0 ? byTime : Long.compare(this.sequence, that.sequence);
+        }
+    }
+
+    private final PriorityQueue<Event> events = new PriorityQueue<>();
+    private long sequence = 0;
+
+    // Abstraction function:
+    // AF(events, sequence) = the set of predicted collisions in events whose ball's current next collision and
+    // next collision time are still equal to the event's gadget and time; all other events in the heap are stale.
+    // Events with equal times are ordered by sequence, the order in which they were scheduled.
+    //
+    // Rep invariant:
+    // - every event in events has a sequence number < sequence
+    // - sequence >= 0
+    //
+    // Safety from rep exposure argument:
+    // - events and sequence are private and never returned to clients
+    // - Event is a private immutable type; clients only receive the balls and gadgets they scheduled
+
+    private void checkRep() {
+        assert this.sequence >= 0;
+    }
+
+    /**
+     * Predict that ball will next collide with gadget at the given time, replacing any previous prediction for
+     * ball. Records the prediction as the ball's next collision and next collision time.
+     * @param ball ball whose next collision is being predicted
+     * @param gadget gadget the ball will collide with next, or null if it hits nothing before time
+     * @param time absolute simulation time of the collision (or of the next prediction, if gadget is null),
+     *        must be >= 0; if infinite, the ball has no upcoming event
+     */
+    public void schedule(Ball ball, GameExpression gadget, double time) {
+        if (Double.isInfinite(time)) {
+            ball.setNextCollision(null);
+            ball.setNextCollisionTime(Long.MAX_VALUE/2);
+            return;
+        }
+        if (ball.getNextCollision() == gadget && ball.getNextCollisionTime() == time) {
+            return; // the event already in the heap is still current
+        }
+        ball.setNextCollision(gadget);
+        ball.setNextCollisionTime(time);
+        this.events.add(new Event(time, this.sequence++, ball, gadget));
+        checkRep();
+    }
+
+    /**
+     * Get the time of the earliest current prediction, discarding any stale events ahead of it.
+     * @return absolute time of the next collision, or Double.POSITIVE_INFINITY if none is scheduled
+     */
+    public double nextTime() {
+        discardStale();
+        return this.events.isEmpty() ? Double.POSITIVE_INFINITY : this.events.peek().time;
+    }
+
+    /**
+     * Get the ball involved in the earliest current prediction.
+     * @return the ball of the next collision; requires nextTime() is finite
+     */
+    public Ball nextBall() {
+        discardStale();
+        return this.events.peek().ball;
+    }
+
+    /**
+     * Remove the earliest current prediction from this scheduler. The ball's next collision is cleared, so the
+     * ball has no prediction until it is scheduled again.
+     * @return the gadget of the removed prediction, or null if it only marks the end of a ball's lookahead;
+     *         requires nextTime() is finite
+     */
+    public GameExpression pollGadget() {
+        discardStale();
+        Event event = this.events.poll();
+        event.ball.setNextCollision(null);
+        event.ball.setNextCollisionTime(Long.MAX_VALUE/2);
+        checkRep();
+        return event.gadget;
+    }
+
+    /**
+     * @return number of events (current or stale) held by this scheduler
+     */
+    public int size() {
+        return this.events.size();
+    }
+
+    private void discardStale() {
+        while (!this.events.isEmpty()) {
+            Event event = this.events.peek();
+            if (event.ball.getNextCollision() == event.gadget && event.ball.getNextCollisionTime() == event.time) {
+                return;
+            }
+            this.events.poll();
+        }
+    }
+}
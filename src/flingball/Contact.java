@@ -0,0 +1,241 @@
+package flingball;
+
+import physics.Circle;
+import physics.LineSegment;
+import physics.Physics;
+import physics.Vect;
+
+/**
+ * A mutable, reusable record of the earliest contact between a ball and one gadget: the time until the contact,
+ * the exact side or corner of the gadget that the ball touches, and the velocity the ball leaves with. A gadget
+ * fills in a contact while predicting a collision, and applies the same contact when the collision happens, so
+ * the search over its sides and corners only runs once per impact. A simulation reuses a few contacts for all
+ * its predictions instead of allocating one per test.
+ *
+ * A contact can also be set to search along the parabolic arc of a ball falling under gravity, in which case it
+ * only looks for contacts up to a horizon, and the reflection uses the ball's velocity at the moment of contact.
+ *
+ * A contact may instead be a passage: the moment a ball inside a gadget that it does not bounce off, such as the
+ * ball an absorber fired last, passes out of the gadget's area. A passage does not change the ball; it only tells
+ * the gadget, through GameExpression.exit(), that the ball has left.
+ */
+public class Contact {
+
+    private static final double NO_CONTACT = Double.MAX_VALUE/2;
+
+    private double time = NO_CONTACT;
+    private LineSegment side = null;
+    private Circle corner = null;
+    private Vect reflection = null;
+    private double gravity = 0;
+    private double horizon = NO_CONTACT;
+    private boolean passage = false;
+
+    // Abstraction function:
+    // AF(time, side, corner, reflection, gravity, horizon, passage) = if passage, the ball passing out of a gadget's
+    // area time seconds from now; otherwise a contact time seconds from now between a ball and side
+    // (if side is not null) or corner (if corner is not null), after which the ball moves at reflection; if both side
+    // and corner are null, a contact that was not found by a wall or corner search, such as a collision with a circle bumper or an
+    // absorber; and if time == NO_CONTACT, no contact at all. Searches follow the arc of a ball falling with
+    // acceleration gravity, up to horizon seconds ahead; for gravity == 0 the arc is a straight line.
+    //
+    // Rep invariant:
+    // - time >= 0
+    // - side and corner are not both non-null
+    // - if time == NO_CONTACT, then side, corner, and reflection are null, and passage is false
+    // - if passage, then side, corner, and reflection are null
+    // - gravity >= 0, horizon > 0
+    //
+    // Safety from rep exposure argument:
+    // - all fields are private
+    // - side, corner, and reflection have immutable types, so returning them does not expose the rep
+
+    private void checkRep() {
+        assert this.time >= 0;
+        assert this.side == null || this.corner == null;
+        assert this.gravity >= 0 && this.horizon > 0;
+        assert this.time != NO_CONTACT || (this.side == null && this.corner == null && this.reflection == null);
+        assert !this.passage || (this.time != NO_CONTACT && this.side == null && this.corner == null
+                && this.reflection == null);
+    }
+
+    /**
+     * Set how later searches follow the ball. Does not change the current contact.
+     * @param gravity downward acceleration of the ball between collisions, in L/s^2, must be >= 0; 0 for
+     *        straight-line motion
+     * @param horizon latest time at which to look for a contact when gravity > 0, in seconds, must be > 0 and finite
+     */
+    public void setArc(double gravity, double horizon) {
+        this.gravity = gravity;
+        this.horizon = horizon;
+        checkRep();
+    }
+
+    /**
+     * Forget the current contact, so that this records no contact at all. Keeps the settings from setArc().
+     */
+    public void clear() {
+        this.time = NO_CONTACT;
+        this.side = null;
+        this.corner = null;
+        this.reflection = null;
+        this.passage = false;
+        checkRep();
+    }
+
+    /**
+     * Record a contact found without a wall or corner search, replacing any current contact.
+     * @param time time until the contact, must be >= 0; Double.MAX_VALUE/2 or more for no contact
+     * @param reflection velocity of the ball after the contact, or null if the gadget does not deflect the ball
+     */
+    public void set(double time, Vect reflection) {
+        clear();
+        if (time < NO_CONTACT) {
+            this.time = time;
+            this.reflection = reflection;
+        }
+        checkRep();
+    }
+
+    /**
+     * Test a side of a gadget, and record it if the ball touches it before the current contact.
+     * @param side side to test
+     * @param ball the ball's circle
+     * @param velocity the ball's velocity
+     */
+    void testSide(LineSegment side, Circle ball, Vect velocity) {
+        double time = this.gravity == 0 ? Physics.timeUntilWallCollision(side, ball, velocity)
+                : ArcPhysics.timeUntilWallCollision(side, ball, velocity, this.gravity, this.horizon);
+        if (time < this.time) {
+            this.time = time;
+            this.side = side;
+            this.corner = null;
+        }
+    }
+
+    /**
+     * Test a corner (or any other fixed circle) of a gadget, and record it if the ball touches it before the
+     * current contact.
+     * @param corner corner to test
+     * @param ball the ball's circle
+     * @param velocity the ball's velocity
+     */
+    void testCorner(Circle corner, Circle ball, Vect velocity) {
+        double time = this.gravity == 0 ? Physics.timeUntilCircleCollision(corner, ball, velocity)
+                : ArcPhysics.timeUntilCircleCollision(corner, ball, velocity, this.gravity, this.horizon);
+        if (time < this.time) {
+            this.time = time;
+            this.side = null;
+            this.corner = corner;
+        }
+    }
+
+    /**
+     * Record the passage of the center of a ball out of a box that it is inside, replacing any current contact.
+     * The ball follows the arc set by setArc(), and a passage beyond the horizon is not recorded.
+     * @param xMin left of the box
+     * @param yMin top of the box
+     * @param xMax right of the box, must be > xMin
+     * @param yMax bottom of the box, must be > yMin
+     * @param center center of the ball, inside the box
+     * @param velocity velocity of the ball
+     */
+    void testExit(double xMin, double yMin, double xMax, double yMax, Vect center, Vect velocity) {
+        clear();
+        double vx = velocity.x();
+        double vy = velocity.y();
+        double time = NO_CONTACT;
+        if (vx > 0) {
+            time = (xMax - center.x()) / vx;
+        } else if (vx < 0) {
+            time = (xMin - center.x()) / vx;
+        }
+        // y(t) = y + vy*t + gravity*t^2/2 reaches the bottom if it moves down or falls, and the top if it rises
+        // high enough
+        double g = this.gravity;
+        double toBottom = yMax - center.y();
+        double toTop = center.y() - yMin;
+        if (g == 0) {
+            if (vy > 0) {
+                time = Math.min(time, toBottom / vy);
+            } else if (vy < 0) {
+                time = Math.min(time, toTop / -vy);
+            }
+        } else {
+            double rise = vy*vy - 2*g*toTop;
+            if (vy < 0 && rise >= 0) {
+                time = Math.min(time, (-vy - Math.sqrt(rise)) / g);
+            } else {
+                time = Math.min(time, (-vy + Math.sqrt(vy*vy + 2*g*toBottom)) / g);
+            }
+            if (time > this.horizon) {
+                time = NO_CONTACT;
+            }
+        }
+        if (time < NO_CONTACT) {
+            this.time = Math.max(0, time);
+            this.passage = true;
+        }
+        checkRep();
+    }
+
+    /**
+     * Finish a wall and corner search by computing the reflected velocity for the side or corner found.
+     * @param ball the ball's circle, as passed to testSide() and testCorner()
+     * @param velocity the ball's velocity, as passed to testSide() and testCorner()
+     * @return time until the contact, or Double.MAX_VALUE/2 if there is none
+     */
+    double resolve(Circle ball, Vect velocity) {
+        if (this.side == null && this.corner == null) {
+            this.time = NO_CONTACT;
+            this.reflection = null;
+            checkRep();
+            return this.time;
+        }
+        // the ball's velocity, and for a corner its location, at the moment it touches
+        Vect impactVelocity = ArcPhysics.velocityAt(velocity, this.gravity, this.time);
+        if (this.side != null) {
+            this.reflection = Physics.reflectWall(this.side, impactVelocity);
+        } else {
+            Vect center = ArcPhysics.locationAt(ball.getCenter(), velocity, this.gravity, this.time);
+            this.reflection = Physics.reflectCircle(this.corner.getCenter(), center, impactVelocity);
+        }
+        checkRep();
+        return this.time;
+    }
+
+    /**
+     * @return time until the contact, or Double.MAX_VALUE/2 if there is none
+     */
+    public double getTime() {
+        return this.time;
+    }
+
+    /**
+     * @return true iff this contact is the passage of a ball out of a gadget's area rather than a collision
+     */
+    public boolean isPassage() {
+        return this.passage;
+    }
+
+    /**
+     * @return the side of the gadget the ball touches, or null if the contact is not with a side
+     */
+    public LineSegment getSide() {
+        return this.side;
+    }
+
+    /**
+     * @return the corner of the gadget the ball touches, or null if the contact is not with a corner
+     */
+    public Circle getCorner() {
+        return this.corner;
+    }
+
+    /**
+     * @return velocity of the ball after the contact, or null if there is no contact or it does not deflect the ball
+     */
+    public Vect getReflection() {
+        return this.reflection;
+    }
+}
@@ -0,0 +1,143 @@
+package flingball;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The binary format of an event log of a flingball simulation, written by EventRecorder and read by EventReplay.
+ * All values are big-endian. A log starts with a header:
+ * <pre>
+ *   int MAGIC, short VERSION, int name length, UTF-8 board name, int ball count, int gadget count,
+ *   byte prediction mode ordinal, byte 1 if stepped in partitions or 0 if not
+ * </pre>
+ * followed by a record for each event, in the order the events happened. Each record is a type byte and:
+ * <pre>
+ *   COLLISION: double time, int ball slot, int id of the gadget, walls, or ball hit
+ *   ACTION:    double time, int id of the triggered gadget, int id of its target
+ *   STEP:      double time at the end of the step, double dt, long hash of the ball states after the step
+ * </pre>
+ * The collision and action records of a step come before its step record. A gadget is identified by its index
+ * among the gadgets of the board ordered by name, the walls by WALLS, and the ball in slot s by BALL_BASE - s.
+ */
+class EventLog {
+
+    static final int MAGIC = 0x46424c47; // "FBLG"
+    static final short VERSION = 1;
+    static final byte COLLISION = 1;
+    static final byte ACTION = 2;
+    static final byte STEP = 3;
+    static final int COLLISION_SIZE = 1 + 8 + 4 + 4;
+    static final int ACTION_SIZE = 1 + 8 + 4 + 4;
+    static final int STEP_SIZE = 1 + 8 + 8 + 8;
+    static final int WALLS = -1;
+    private static final int BALL_BASE = -2;
+
+    private final String name;
+    private final int ballCount;
+    private final SymbolTable gadgets;
+
+    // Abstraction function:
+    // AF(name, ballCount, gadgets) = the identifiers of the events of a board named name with ballCount balls,
+    // where each gadget of the board has its id in gadgets
+    //
+    // Rep invariant:
+    // - gadgets defines the gadgets of the board in order of name
+    // - ballCount >= 0
+    //
+    // Safety from rep exposure argument:
+    // - all fields are private and final, and gadgets is never returned
+
+    private void checkRep() {
+        assert this.ballCount >= 0;
+    }
+
+    /**
+     * Make the identifiers for the events of board.
+     * @param board board whose events are logged
+     */
+    EventLog(Board board) {
+        this.name = board.getName();
+        this.ballCount = board.getBallStore().size();
+        this.gadgets = SymbolTable.byName(board.getGadgets());
+        checkRep();
+    }
+
+    /**
+     * @param gadget a gadget or ball of the board, or its walls
+     * @return the id of gadget in records
+     */
+    int id(GameExpression gadget) {
+        if (gadget instanceof Ball) {
+            return BALL_BASE - ((Ball) gadget).getSlot();
+        } else if (gadget instanceof OuterWall) {
+            return WALLS;
+        }
+        return this.gadgets.id(gadget.getName());
+    }
+
+    /**
+     * Write the header of a log of the board.
+     * @param buffer buffer to write to, with room for the header
+     * @param prediction prediction mode of the recorded simulation
+     * @param partitioned true iff the recorded simulation stepped in partitions
+     */
+    void writeHeader(ByteBuffer buffer, SimulationEngine.Prediction prediction, boolean partitioned) {
+        byte[] nameBytes = this.name.getBytes(StandardCharsets.UTF_8);
+        buffer.putInt(MAGIC).putShort(VERSION).putInt(nameBytes.length).put(nameBytes);
+        buffer.putInt(this.ballCount).putInt(this.gadgets.size());
+        buffer.put((byte) prediction.ordinal()).put((byte) (partitioned ? 1 : 0));
+    }
+
+    /**
+     * @return number of bytes in the header of a log of the board
+     */
+    int headerSize() {
+        return 4 + 2 + 4 + this.name.getBytes(StandardCharsets.UTF_8).length + 4 + 4 + 1 + 1;
+    }
+
+    /**
+     * Read the header of a log, checking that it is a log of the board.
+     * @param buffer buffer positioned at the start of a log; on return, positioned after the header
+     * @return the prediction mode of the recorded simulation, and whether it stepped in partitions
+     * @throws IllegalArgumentException if buffer does not hold a log of the board in this version of the format
+     */
+    Header readHeader(ByteBuffer buffer) {
+        if (buffer.remaining() < 10 || buffer.getInt() != MAGIC) {
+            throw new IllegalArgumentException("not a flingball event log");
+        }
+        if (buffer.getShort() != VERSION) {
+            throw new IllegalArgumentException("unsupported event log version");
+        }
+        int nameLength = buffer.getInt();
+        if (nameLength < 0 || buffer.remaining() < nameLength + 10) {
+            throw new IllegalArgumentException("truncated event log header");
+        }
+        byte[] nameBytes = new byte[nameLength];
+        buffer.get(nameBytes);
+        String logName = new String(nameBytes, StandardCharsets.UTF_8);
+        int logBalls = buffer.getInt();
+        int logGadgets = buffer.getInt();
+        if (!logName.equals(this.name) || logBalls != this.ballCount || logGadgets != this.gadgets.size()) {
+            throw new IllegalArgumentException("event log of board " + logName + " with " + logBalls + " balls and "
+                    + logGadgets + " gadgets does not match board " + this.name);
+        }
+        int prediction = buffer.get();
+        if (prediction < 0 || prediction >= SimulationEngine.Prediction.values().length) {
+            throw new IllegalArgumentException("unknown prediction mode in event log");
+        }
+        return new Header(SimulationEngine.Prediction.values()[prediction], buffer.get() != 0);
+    }
+
+    /**
+     * The settings of a recorded simulation, as read from the header of its log.
+     */
+    static class Header {
+        final SimulationEngine.Prediction prediction;
+        final boolean partitioned;
+
+        Header(SimulationEngine.Prediction prediction, boolean partitioned) {
+            this.prediction = prediction;
+            this.partitioned = partitioned;
+        }
+    }
+}
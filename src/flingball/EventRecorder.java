@@ -0,0 +1,120 @@
+package flingball;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Records every collision, triggered action, and step of a SimulationEngine to a binary event log in the format
+ * of EventLog, so that the run can be replayed and checked with EventReplay. Records are collected in a direct
+ * buffer and written to the file in large blocks, so recording costs a few bytes of memory traffic per event.
+ * The log is only complete once the recorder is closed.
+ */
+public class EventRecorder implements SimulationListener, Closeable {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final EventLog log;
+    private final BallStore store;
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+    // Abstraction function:
+    // AF(log, store, channel, buffer) = a recorder of a simulation whose ball states are held in store, and whose
+    // events so far are the records written to channel followed by the records in buffer[0..position), each
+    // identifying gadgets as log does
+    //
+    // Rep invariant:
+    // - buffer always has room for the largest record after each write
+    //
+    // Safety from rep exposure argument:
+    // - all fields are private and final, and none are returned to clients
+
+    private void checkRep() {
+        assert this.buffer.remaining() >= EventLog.STEP_SIZE;
+    }
+
+    /**
+     * Start recording engine to a new log at path, replacing any file already there. The recorder becomes the
+     * listener of engine.
+     * @param engine simulation to record, which must not have been stepped yet
+     * @param path file to write the log to
+     * @throws IOException if the file cannot be created or written
+     */
+    public EventRecorder(SimulationEngine engine, Path path) throws IOException {
+        Board board = engine.getBoard();
+        this.log = new EventLog(board);
+        this.store = board.getBallStore();
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        ByteBuffer header = ByteBuffer.allocate(this.log.headerSize());
+        this.log.writeHeader(header, engine.getPrediction(), engine.isPartitioned());
+        header.flip();
+        write(header);
+        engine.setListener(this);
+        checkRep();
+    }
+
+    @Override public void collision(double time, Ball ball, GameExpression gadget) {
+        this.buffer.put(EventLog.COLLISION).putDouble(time).putInt(ball.getSlot()).putInt(this.log.id(gadget));
+        flushIfFull();
+    }
+
+    @Override public void action(double time, GameExpression trigger, GameExpression target) {
+        this.buffer.put(EventLog.ACTION).putDouble(time).putInt(this.log.id(trigger)).putInt(this.log.id(target));
+        flushIfFull();
+    }
+
+    @Override public void step(double time, double dt) {
+        this.buffer.put(EventLog.STEP).putDouble(time).putDouble(dt).putLong(this.store.stateHash());
+        flushIfFull();
+    }
+
+    /**
+     * Write the buffered records to the file once the buffer no longer has room for another record.
+     * @throws UncheckedIOException if the file cannot be written, since listeners cannot throw IOException
+     */
+    private void flushIfFull() {
+        if (this.buffer.remaining() < EventLog.STEP_SIZE) {
+            try {
+                flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException("can't write event log", e);
+            }
+        }
+        checkRep();
+    }
+
+    /**
+     * Write all buffered records to the file.
+     * @throws IOException if the file cannot be written
+     */
+    public void flush() throws IOException {
+        this.buffer.flip();
+        write(this.buffer);
+        this.buffer.clear();
+        checkRep();
+    }
+
+    private void write(ByteBuffer source) throws IOException {
+        while (source.hasRemaining()) {
+            this.channel.write(source);
+        }
+    }
+
+    /**
+     * Write all buffered records and close the log.
+     * @throws IOException if the file cannot be written
+     */
+    @Override public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            this.channel.close();
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package flingball;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Replays an event log written by EventRecorder: re-runs a freshly parsed board through the same steps as the
+ * recorded simulation, without rendering or waiting between steps, and checks that every collision, triggered
+ * action, and final ball state matches the log bit for bit. The log is memory-mapped, so it must be smaller
+ * than 2GB.
+ */
+public class EventReplay implements SimulationListener {
+
+    private final ByteBuffer records;
+    private final EventLog log;
+    private final BallStore store;
+    private long steps = 0;
+
+    // Abstraction function:
+    // AF(records, log, store, steps) = a replay that has checked steps steps of the simulation whose ball states
+    // are held in store, and whose next expected events are the records from the position of records onwards,
+    // identifying gadgets as log does
+    //
+    // Rep invariant:
+    // - steps >= 0
+    //
+    // Safety from rep exposure argument:
+    // - all fields are private, and none are returned to clients
+
+    private void checkRep() {
+        assert this.steps >= 0;
+    }
+
+    private EventReplay(ByteBuffer records, EventLog log, BallStore store) {
+        this.records = records;
+        this.log = log;
+        this.store = store;
+        checkRep();
+    }
+
+    /**
+     * Replay the log at path on board, which must be in the state the recorded simulation started from.
+     * @param board board to replay; mutated as the replay advances
+     * @param path event log of a simulation of an identical board
+     * @return number of steps replayed
+     * @throws IOException if the log cannot be read
+     * @throws IllegalArgumentException if path does not hold a complete event log of a board like board
+     * @throws IllegalStateException if the replay diverges from the log
+     */
+    public static long replay(Board board, Path path) throws IOException {
+        ByteBuffer records;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            records = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        EventLog log = new EventLog(board);
+        EventLog.Header header = log.readHeader(records);
+        SimulationEngine engine = new SimulationEngine(board, SimulationEngine.DEFAULT_TIMESTEP, header.prediction,
+                header.partitioned ? ForkJoinPool.commonPool() : null); // partitioned runs do not depend on the pool
+        EventReplay replay = new EventReplay(records, log, board.getBallStore());
+        engine.setListener(replay);
+        while (records.hasRemaining()) {
+            engine.step(replay.nextStepLength());
+        }
+        return replay.steps;
+    }
+
+    /**
+     * Find the length of the next recorded step, without consuming any records.
+     * @return dt of the next step record
+     * @throws IllegalArgumentException if the remaining records do not end with a step record
+     */
+    private double nextStepLength() {
+        int position = this.records.position();
+        while (position < this.records.limit()) {
+            byte type = this.records.get(position);
+            if (type == EventLog.STEP && position + EventLog.STEP_SIZE <= this.records.limit()) {
+                return this.records.getDouble(position + 1 + 8);
+            } else if (type == EventLog.COLLISION) {
+                position += EventLog.COLLISION_SIZE;
+            } else if (type == EventLog.ACTION) {
+                position += EventLog.ACTION_SIZE;
+            } else {
+                break;
+            }
+        }
+        throw new IllegalArgumentException("event log is truncated or corrupt at byte " + position);
+    }
+
+    /**
+     * Consume the next record, which must have the given type.
+     * @throws IllegalStateException if the next record has another type, since the replay then has an event the
+     *         recording did not, or is missing one
+     */
+    private void expect(byte type, double time, String event) {
+        if (!this.records.hasRemaining() || this.records.get(this.records.position()) != type) {
+            throw new IllegalStateException("replay diverged in step " + this.steps + " at time " + time
+                    + ": unexpected " + event);
+        }
+        this.records.get();
+    }
+
+    private void check(boolean matches, double time, String event) {
+        if (!matches) {
+            throw new IllegalStateException("replay diverged in step " + this.steps + " at time " + time
+                    + ": " + event + " does not match the log");
+        }
+    }
+
+    @Override public void collision(double time, Ball ball, GameExpression gadget) {
+        String event = "collision of " + ball.getName() + " with " + gadget.getName();
+        expect(EventLog.COLLISION, time, event);
+        long loggedTime = Double.doubleToLongBits(this.records.getDouble());
+        int loggedBall = this.records.getInt();
+        int loggedGadget = this.records.getInt();
+        check(loggedTime == Double.doubleToLongBits(time) && loggedBall == ball.getSlot()
+                && loggedGadget == this.log.id(gadget), time, event);
+    }
+
+    @Override public void action(double time, GameExpression trigger, GameExpression target) {
+        String event = "action of " + target.getName() + " triggered by " + trigger.getName();
+        expect(EventLog.ACTION, time, event);
+        long loggedTime = Double.doubleToLongBits(this.records.getDouble());
+        int loggedTrigger = this.records.getInt();
+        int loggedTarget = this.records.getInt();
+        check(loggedTime == Double.doubleToLongBits(time) && loggedTrigger == this.log.id(trigger)
+                && loggedTarget == this.log.id(target), time, event);
+    }
+
+    @Override public void step(double time, double dt) {
+        expect(EventLog.STEP, time, "end of step");
+        long loggedTime = Double.doubleToLongBits(this.records.getDouble());
+        long loggedDt = Double.doubleToLongBits(this.records.getDouble());
+        long loggedHash = this.records.getLong();
+        check(loggedTime == Double.doubleToLongBits(time) && loggedDt == Double.doubleToLongBits(dt)
+                && loggedHash == this.store.stateHash(), time, "ball state");
+        this.steps++;
+        checkRep();
+    }
+}
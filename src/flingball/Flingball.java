@@ -1,43 +1,64 @@
 package flingball;
-import java.awt.Color;
 import java.awt.Dimension;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
 import java.awt.event.ActionEvent;
-import java.awt.geom.Ellipse2D;
-import java.awt.geom.Rectangle2D;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
 import java.io.File;
-import java.util.ArrayList;
-import java.util.HashSet;
-import java.util.List;
-import java.util.Set;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 
+import javax.management.JMException;
 import javax.swing.JFrame;
 import javax.swing.JPanel;
+import javax.swing.JScrollPane;
 import javax.swing.Timer;
 
 import edu.mit.eecs.parserlib.UnableToParseException;
-import physics.LineSegment;
-import physics.Vect;
 
 /**
- * A Flingball game composed of gadgets (ball, bumpers, and absorbers) and a 20L by 20L playing area 
- * (with walls and physics) that interact with each other, displayed running as a graphical user interface 
- * that pops up in a new window.
+ * A Flingball game composed of gadgets (ball, bumpers, and absorbers) and a playing area (with walls and physics),
+ * 20L by 20L unless its file gives another size, that interact with each other, displayed running as a graphical
+ * user interface that pops up in a new window.
  */
 public class Flingball {
     
-    private static final int GAMEBOARD_SIZE = 20;
-    private static final int PIXELS_PER_L = 20;
-    private static final int DRAWING_AREA_SIZE_IN_PIXELS = GAMEBOARD_SIZE * PIXELS_PER_L;
-    private static final int TIMER_INTERVAL_MILLISECONDS = 40; // for ~25 frames per second
+    private static final int PIXELS_PER_L = 20; // for boards that fit in the window at this scale
+    private static final int MIN_PIXELS_PER_L = 4; // larger boards are shrunk down to this, then scrolled
+    private static final int MAX_VIEW_SIZE_IN_PIXELS = 800;
+    private static final int TIMER_INTERVAL_MILLISECONDS = 16; // for ~60 frames per second
+    private static final double TIMESTEP = 0.01; // seconds of simulated time per physics step
     
     /**
      * Simulates the board game setup by the .fb file specified in the command-line or 
-     * a default.fb file and animates the visualization of the game in a separate window
+     * a default.fb file and animates the visualization of the game in a separate window.
+     * With the arguments --record LOG FILE, the game of FILE is animated and its events are recorded to LOG.
+     * With the arguments --replay LOG FILE, the game of FILE is re-run from LOG without a window, as fast as
+     * possible, and checked against it.
+     * With the arguments --watch FILE, the game of FILE is animated and its gadgets are reloaded whenever FILE
+     * is saved.
+     * With the arguments --metrics SECONDS FILE, the game of FILE is animated and its SimulationMetrics are printed
+     * every SECONDS seconds. The metrics of every animated game can also be watched in JConsole.
      */
-    public static void main(String[] args) throws UnableToParseException{
-        if (args.length == 0) {
+    public static void main(String[] args) throws UnableToParseException, IOException {
+        if (args.length == 3 && args[0].equals("--record")) {
+            System.out.println(args[2]);
+            animate(args[2], Paths.get(args[1]));
+        } else if (args.length == 3 && args[0].equals("--replay")) {
+            long start = System.nanoTime();
+            long steps = EventReplay.replay((Board) initializeBoard(args[2]), Paths.get(args[1]));
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.println("replayed " + steps + " steps of " + args[2] + " in " + seconds + "s");
+        } else if (args.length == 2 && args[0].equals("--watch")) {
+            System.out.println(args[1]);
+            animate(args[1], null, true);
+        } else if (args.length == 3 && args[0].equals("--metrics")) {
+            System.out.println(args[2]);
+            animate(args[2], null, false, Math.round(Double.parseDouble(args[1]) * 1000));
+        } else if (args.length == 0) {
             String testFile = "test/flingball/default.fb";
             System.out.println(testFile);
             animate(testFile);
@@ -52,194 +73,146 @@ public class Flingball {
     
     /**
      * Display the running simulation of the board specified by file as a GUI in a new window that is redrawn
-     * approximately every 50 milliseconds (this implies the simulation is nondeterministic as the physics approximations
-     * differ depending on the exact timestep taken between redrawn frames)
+     * approximately every 16 milliseconds. The simulation is advanced in real time by a SimulationLoop on its own
+     * thread, in fixed timesteps, so the physics do not depend on how long each frame actually took to draw; each
+     * frame blends the two newest snapshots of the simulation, so balls move smoothly between steps.
      * @param file .fb file that specifies setup of the game board
      * @throws UnableToParseException if file cannot be opened
      */
     public static void animate(String file) throws UnableToParseException {
+        try {
+            animate(file, null);
+        } catch (IOException e) {
+            throw new AssertionError("nothing is recorded", e);
+        }
+    }
+    
+    /**
+     * Display the running simulation of the board specified by file, as animate(file) does, recording its events
+     * to an event log that EventReplay can replay. The log is completed when the window is closed.
+     * @param file .fb file that specifies setup of the game board
+     * @param record path to write the event log to, or null to not record the game
+     * @throws UnableToParseException if file cannot be opened
+     * @throws IOException if the event log cannot be created
+     */
+    public static void animate(String file, Path record) throws UnableToParseException, IOException {
+        animate(file, record, false);
+    }
+    
+    /**
+     * Display the running simulation of the board specified by file, as animate(file, record) does, optionally
+     * watching file and patching the running board with its gadgets each time it is saved. Balls and the
+     * simulated time carry on across reloads.
+     * @param file .fb file that specifies setup of the game board
+     * @param record path to write the event log to, or null to not record the game
+     * @param watch true to reload the gadgets of file whenever it changes
+     * @throws UnableToParseException if file cannot be opened
+     * @throws IOException if the event log cannot be created or file cannot be watched
+     */
+    public static void animate(String file, Path record, boolean watch) throws UnableToParseException, IOException {
+        animate(file, record, watch, 0);
+    }
+    
+    /**
+     * Display the running simulation of the board specified by file, as animate(file, record, watch) does. The
+     * timing and counts of the simulation and of drawing it are recorded in SimulationMetrics, which are registered
+     * with the platform MBean server to be watched in JConsole and optionally printed periodically.
+     * @param file .fb file that specifies setup of the game board
+     * @param record path to write the event log to, or null to not record the game
+     * @param watch true to reload the gadgets of file whenever it changes
+     * @param dumpMillis milliseconds between printing the metrics to standard output, or 0 to not print them
+     * @throws UnableToParseException if file cannot be opened
+     * @throws IOException if the event log cannot be created or file cannot be watched
+     */
+    public static void animate(String file, Path record, boolean watch, long dumpMillis)
+            throws UnableToParseException, IOException {
         final JFrame window = new JFrame("FlingBall!");
         window.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         
         //initialize the board/game from the specified file
         Board board = (Board)initializeBoard(file);
+        SimulationEngine engine = new SimulationEngine(board, TIMESTEP);
+        EventRecorder recorder = record != null ? new EventRecorder(engine, record) : null;
+        BoardWatcher watcher = watch ? new BoardWatcher(Paths.get(file)) : null;
+        final SimulationMetrics metrics = new SimulationMetrics();
+        engine.setMetrics(metrics);
+        try {
+            metrics.register(ManagementFactory.getPlatformMBeanServer(), board.getName());
+        } catch (JMException e) {
+            System.err.println("can't register metrics with JMX: " + e.getMessage());
+        }
+        if (dumpMillis > 0) {
+            metrics.dumpEvery(dumpMillis, System.out);
+        }
+        
+        // the simulation runs on its own thread, and hands a snapshot to the window after every step
+        final SimulationLoop loop = new SimulationLoop(engine, watcher);
+        window.addWindowListener(new WindowAdapter() {
+            @Override public void windowClosing(WindowEvent e) {
+                loop.close(); // stop stepping before the log is finished
+                if (recorder != null) {
+                    try {
+                        recorder.close();
+                    } catch (IOException ex) {
+                        System.err.println("can't finish event log: " + ex.getMessage());
+                    }
+                }
+            }
+        });
         
+        // the gadgets are drawn once into a cached layer, and each frame draws only the balls over it, part of the
+        // way between the previous snapshot and the newest one according to how long ago the newest one arrived
+        int boardSize = Math.max(board.getWalls().getWidth(), board.getWalls().getHeight());
+        int pixelsPerL = Math.max(MIN_PIXELS_PER_L, Math.min(PIXELS_PER_L, MAX_VIEW_SIZE_IN_PIXELS / boardSize));
+        final BoardRenderer renderer = new BoardRenderer(pixelsPerL);
         final JPanel drawingArea = new JPanel() {
+            private BoardFrame previous = loop.latestFrame();
+            private BoardFrame current = this.previous;
+            private long arrival = System.nanoTime();
+            
             @Override protected void paintComponent(Graphics g) {
-                draw(g,board);
+                BoardFrame latest = loop.latestFrame();
+                long now = System.nanoTime();
+                if (latest != this.current) {
+                    this.previous = this.current;
+                    this.current = latest;
+                    this.arrival = now;
+                }
+                double interval = (this.current.getTime() - this.previous.getTime()) * 1e9;
+                double alpha = interval > 0 ? Math.min(1, (now - this.arrival) / interval) : 1;
+                // every Graphics object is also a Graphics2D
+                renderer.paint((Graphics2D) g, this.previous, this.current, alpha);
+                metrics.record(SimulationMetrics.Phase.PAINT, System.nanoTime() - now);
             }
         };
-        drawingArea.setPreferredSize(new Dimension(DRAWING_AREA_SIZE_IN_PIXELS, DRAWING_AREA_SIZE_IN_PIXELS));
-        window.add(drawingArea);
+        Dimension drawingAreaSize = new Dimension(board.getWalls().getWidth()*pixelsPerL,
+                board.getWalls().getHeight()*pixelsPerL);
+        drawingArea.setPreferredSize(drawingAreaSize);
+        // a board too large for the window scrolls, and only its visible part is repainted
+        JScrollPane view = new JScrollPane(drawingArea);
+        view.getViewport().setPreferredSize(new Dimension(Math.min(drawingAreaSize.width, MAX_VIEW_SIZE_IN_PIXELS),
+                Math.min(drawingAreaSize.height, MAX_VIEW_SIZE_IN_PIXELS)));
+        window.add(view);
         window.pack();
         window.setVisible(true);
         
-        // redraw the board every 50 milliseconds
-        new Timer(TIMER_INTERVAL_MILLISECONDS, (ActionEvent e) -> {
-            drawingArea.repaint();
-        }).start();
+        // redraw the board every 16 milliseconds, while the simulation keeps its own pace
+        loop.start();
+        new Timer(TIMER_INTERVAL_MILLISECONDS, (ActionEvent e) -> drawingArea.repaint()).start();
     }
     
-    private static long timeOfLastDraw;
-    
     /**
      * Assembles a GameExpression object (Board) according to the specifications outlined in file
-     * @param file .fb file with board specifications
+     * @param file .fb file with board specifications, or .fbb file with a compiled board
      * @return GameExpression object that contains all of the components of the game outlined in file
      * @throws UnableToParseException if file cannot be opened
      */
     private static GameExpression initializeBoard(String file) throws UnableToParseException{
-        timeOfLastDraw = System.currentTimeMillis();
         File f = new File(file);
-        return BoardParser.parse(f);
-    }
-        
-    /**
-     * Specifies the layout of the board (how each of the individual components/gadgets should be drawn)
-     * at a single instance in time by storing instructions in (modifying) graphics g
-     * @param g graphics representation of the board
-     * @param board game with gadgets to be visualized
-     */
-    private static void draw(final Graphics g, Board board) {
-        Graphics2D g2 = (Graphics2D) g;  // every Graphics object is also a Graphics2D, which is a stronger spec
-        
-        // fill the background to erase everything
-        g2.setColor(Color.black);
-        g2.fill(new Rectangle2D.Double(0, 0, DRAWING_AREA_SIZE_IN_PIXELS, DRAWING_AREA_SIZE_IN_PIXELS));
-        
-        // compute timestep from clock time
-        final long now = System.currentTimeMillis();
-        long timeSinceLastDraw = now - timeOfLastDraw;
-        timeOfLastDraw = now;
-        
-        // iterate through all of the stationary gadgets and redraw each gadget (erased when the board was redrawn)
-        Set<GameExpression> gadgets = new HashSet<>(board.getGadgets());
-                
-        for(GameExpression gadget : gadgets) {
-            Set<LineSegment> sides = gadget.getSides();
-            int xMin = DRAWING_AREA_SIZE_IN_PIXELS;
-            int xMax = 0;
-            int yMin = DRAWING_AREA_SIZE_IN_PIXELS;
-            int yMax = 0;
-            
-            Set<Vect> points = new HashSet<>();
-            for (LineSegment side : sides) {
-                points.add(side.p1());
-                points.add(side.p2());
-            }
-            int[] x = new int[points.size()];
-            int[] y = new int[points.size()];
-            List<Vect> pointsList = new ArrayList<Vect>(points);
-            for (int index = 0; index < pointsList.size(); index ++) {
-                x[index] = (int)(pointsList.get(index).x()*PIXELS_PER_L);
-                //find minimum and maximum x coordinates for width
-                xMax = Math.max(x[index], xMax);
-                xMin = Math.min(x[index], xMin);
-                y[index] = (int)(pointsList.get(index).y()*PIXELS_PER_L);
-                //find minimum and maximum y coordinates for height
-                yMax = Math.max(y[index], yMax);
-                yMin = Math.min(y[index], yMin);
-            }
-            
-            int width = xMax - xMin;
-            int height = yMax - yMin;
-                        
-            g2.setColor(gadget.getColor());
-            if (sides.size() == 0) { //circle bumper
-                g2.fill(new Ellipse2D.Double((gadget.getLocation().x()-.5)*PIXELS_PER_L, (gadget.getLocation().y()-.5)*PIXELS_PER_L, 
-                        PIXELS_PER_L, PIXELS_PER_L)); //fixed width and height = 1L (given)
-            } else if (sides.size() == 4) { //square bumper or absorber
-                g2.fill(new Rectangle2D.Double(gadget.getLocation().x()*PIXELS_PER_L, gadget.getLocation().y()*PIXELS_PER_L, width, height));
-            } else { //triangle bumper
-                g2.fillPolygon(x,y,x.length);
-            }
-        }
-        
-        //include the walls of the board, which aren't drawn
-        gadgets.add(board.getWalls());
-    
-        // iterate through balls (moving gadgets)
-        Set<GameExpression> balls = board.getBalls();
-        for (GameExpression b : balls) {
-            Ball ball = (Ball) b; //only Ball objects, a variant of GameExpression, are stored in the set of balls
-            double radius = ball.getBallCircle().getRadius();
-            
-            if (!ball.getAbsorbed()) { //for balls that are not currently absorbed
-                boolean collide = false;
-                // collide repeatedly
-                if ((long)ball.getNextCollisionTime() <= timeOfLastDraw) {
-                    collide = true;
-                    GameExpression collisionGadget = ball.getNextCollision();
-                    collisionGadget.collision(ball);
-                    
-                    // move the ball according to time remaining after collision
-                    long timePastCollision = timeOfLastDraw - (long)ball.getNextCollisionTime(); //in milliseconds
-                    
-                    while (timePastCollision > 0 && !ball.getAbsorbed()) {
-                        //calculate next collision time
-                        long nextCollisionTime = Long.MAX_VALUE/2;
-                        GameExpression nextCollisionGadget = null;
-                        for (GameExpression gadget : gadgets) {
-                            double collision = gadget.timeUntilCollision(ball);
-                            if ((long)(collision*1000.) < nextCollisionTime && collision > 0) { //check for overflow with Infinity + Infinity
-                                nextCollisionTime = (long)(collision*1000.);
-                                nextCollisionGadget = gadget;
-                            }
-                        }
-                        if (nextCollisionTime < timePastCollision) { //another collision occurred within this timestep
-                            ball.setLocation(ball.getLocation().plus(ball.getVelocity().times(nextCollisionTime/1000.)));
-                            
-                            nextCollisionGadget.collision(ball);
-                            timePastCollision -= nextCollisionTime;
-
-                        } else { //no other collisions occur
-                            ball.setLocation(ball.getLocation().plus(ball.getVelocity().times(timePastCollision/1000.)));
-                            timePastCollision = 0;
-                        }
-                    }
-                   
-                }
-                
-                //update the velocity of the ball according to gravity
-                Vect velocity = ball.getVelocity();  
-                Vect tempVelocity = new Vect(velocity.x(),velocity.y()+board.getGravity()*timeSinceLastDraw/1000.);
-                double mu = board.getFriction1();
-                double mu2 = board.getFriction2();
-                //update velocity of the ball according to friction (use approximation equation provided in lab specification)
-                Vect newVelocity = tempVelocity.times(1-mu*timeSinceLastDraw/1000.-mu2*tempVelocity.length()*timeSinceLastDraw/1000.);
-                ball.setVelocity(newVelocity);
-                
-                
-                //calculate next collision time given current velocity
-                long mintime = Long.MAX_VALUE/2;
-                GameExpression collideGadget = null;
-                for (GameExpression gadget : gadgets) {
-                    double collision = gadget.timeUntilCollision(ball);
-                    //compute next collision time with this gadget, account for overflow
-                    if ((long)(collision*1000.) + timeOfLastDraw < mintime && (long)(collision*1000.) + timeOfLastDraw > 0 && collision > 0) { 
-                        mintime = (long)(collision*1000.) + timeOfLastDraw;
-                        collideGadget = gadget;
-                    }
-                }
-                //set the next collision time and collision gadget of the ball
-                ball.setNextCollisionTime(mintime);
-                ball.setNextCollision(collideGadget);
-               
-                if (!collide) {
-                    // check if ball will collide in next step
-                    if ((long)ball.getNextCollisionTime() - timeOfLastDraw < timeSinceLastDraw) {
-                        // move to collision point, do not overlap with gadget
-                        timeSinceLastDraw = (long)ball.getNextCollisionTime() - timeOfLastDraw; 
-                    }
-                    double X = Math.max(radius,Math.min(GAMEBOARD_SIZE-radius, ball.getLocation().plus(ball.getVelocity().times(timeSinceLastDraw/1000.)).x())); //convert to seconds
-                    double Y = Math.max(radius,Math.min(GAMEBOARD_SIZE-radius, ball.getLocation().plus(ball.getVelocity().times(timeSinceLastDraw/1000.)).y())); //convert to seconds
-                    Vect newLocation = new Vect(X,Y);
-                    ball.setLocation(newLocation);
-                }
-                // draw the ball
-                g2.setColor(ball.getColor());
-                g2.fill(new Ellipse2D.Double((ball.getLocation().x()-radius)*PIXELS_PER_L, (ball.getLocation().y()-radius)*PIXELS_PER_L, 2*radius*PIXELS_PER_L, 2*radius*PIXELS_PER_L));  
-            }
+        try {
+            return BoardCompiler.load(f);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("trouble reading file", e);
         }
     }
 }
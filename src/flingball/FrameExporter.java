@@ -0,0 +1,161 @@
+package flingball;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.imageio.ImageIO;
+
+import edu.mit.eecs.parserlib.UnableToParseException;
+
+/**
+ * A headless exporter that records a flingball simulation as a numbered sequence of PNG images, for making videos
+ * of boards without a display. The simulation is advanced in fixed timesteps on the calling thread, and each frame
+ * is drawn by the same BoardRenderer as the live window, so the images match what Flingball shows. Encoding a PNG
+ * takes much longer than a step, so frames are handed to a small pool of encoder threads and encoded while the
+ * simulation carries on. The frames are drawn into a fixed set of reusable images, one more than the number of
+ * encoders, and the simulation waits for an image to be free when the encoders fall behind.
+ */
+public class FrameExporter {
+
+    /** Default number of frames to export. */
+    public static final int DEFAULT_FRAMES = 250;
+    /** Default number of timesteps simulated between frames, for 25 frames per second with the default timestep. */
+    public static final int DEFAULT_STEPS_PER_FRAME = 4;
+    /** Default number of pixels per L, as in the live window. */
+    public static final int DEFAULT_PIXELS_PER_L = 20;
+
+    private FrameExporter() {
+        // nobody should be constructing a FrameExporter
+    }
+
+    /**
+     * Export frames of a board file to a directory, without opening a window.
+     * Usage: FrameExporter [--frames N] [--steps S] [--scale P] [--encoders E] FILE DIRECTORY
+     * where N is the number of frames (default DEFAULT_FRAMES), S the number of timesteps between frames (default
+     * DEFAULT_STEPS_PER_FRAME), P the number of pixels per L (default DEFAULT_PIXELS_PER_L), and E the number of
+     * encoder threads (default the number of available processors less one, at least one).
+     * @param args command-line arguments as above
+     * @throws UnableToParseException if FILE is not a valid board
+     * @throws IOException if FILE cannot be read or a frame cannot be written
+     * @throws InterruptedException if interrupted while waiting for the encoders
+     */
+    public static void main(String[] args) throws UnableToParseException, IOException, InterruptedException {
+        System.setProperty("java.awt.headless", "true");
+        int frames = DEFAULT_FRAMES;
+        int stepsPerFrame = DEFAULT_STEPS_PER_FRAME;
+        int pixelsPerL = DEFAULT_PIXELS_PER_L;
+        int encoders = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+        List<String> paths = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--frames") && i + 1 < args.length) {
+                frames = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--steps") && i + 1 < args.length) {
+                stepsPerFrame = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--scale") && i + 1 < args.length) {
+                pixelsPerL = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--encoders") && i + 1 < args.length) {
+                encoders = Integer.parseInt(args[++i]);
+            } else {
+                paths.add(args[i]);
+            }
+        }
+        if (paths.size() != 2) {
+            System.err.println("usage: FrameExporter [--frames N] [--steps S] [--scale P] [--encoders E] "
+                    + "FILE DIRECTORY");
+            return;
+        }
+        long start = System.nanoTime();
+        SimulationEngine engine = new SimulationEngine(BoardCompiler.load(new File(paths.get(0))));
+        export(engine, frames, stepsPerFrame, pixelsPerL, Paths.get(paths.get(1)), encoders);
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        System.out.println(frames + " frames of " + paths.get(0) + " written to " + paths.get(1) + " in "
+                + String.format("%.3f", elapsed) + "s with " + encoders + " encoders");
+    }
+
+    /**
+     * Get the name of the image file of a frame, numbered so that the files sort in order of frame.
+     * @param frame number of the frame, must be >= 0
+     * @return name of the PNG file of that frame
+     */
+    public static String fileName(int frame) {
+        return String.format("frame%05d.png", frame);
+    }
+
+    /**
+     * Simulate engine and write a PNG image of its board to directory before the first step and after every
+     * stepsPerFrame steps, named by fileName(). The first frame shows the board as it is when called.
+     * @param engine simulation to export; it is advanced by (frames - 1) * stepsPerFrame steps
+     * @param frames number of frames to write, must be >= 0
+     * @param stepsPerFrame number of timesteps to simulate between frames, must be >= 1
+     * @param pixelsPerL number of pixels per L in the images, must be > 0
+     * @param directory directory to write the images to, which is created if it does not exist
+     * @param encoders number of threads encoding images at once, must be >= 1
+     * @throws IOException if the directory cannot be created or an image cannot be written
+     * @throws InterruptedException if interrupted while waiting for the encoders
+     */
+    public static void export(SimulationEngine engine, int frames, int stepsPerFrame, int pixelsPerL, Path directory,
+            int encoders) throws IOException, InterruptedException {
+        Files.createDirectories(directory);
+        BoardRenderer renderer = new BoardRenderer(pixelsPerL);
+        GridIndex gadgets = engine.getBoard().getGridIndex();
+        int width = gadgets.getWidth() * pixelsPerL;
+        int height = gadgets.getHeight() * pixelsPerL;
+        // one image per encoder, and one more to draw the next frame into while they are all busy
+        BlockingQueue<BufferedImage> free = new ArrayBlockingQueue<>(encoders + 1);
+        for (int i = 0; i < encoders + 1; i++) {
+            free.add(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB));
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(encoders);
+        try {
+            List<Future<?>> written = new ArrayList<>();
+            for (int frame = 0; frame < frames; frame++) {
+                if (frame > 0) {
+                    engine.advance(stepsPerFrame);
+                }
+                BufferedImage image = free.take();
+                Graphics2D g = image.createGraphics();
+                try {
+                    renderer.paint(g, engine.getBoard());
+                } finally {
+                    g.dispose();
+                }
+                File file = directory.resolve(fileName(frame)).toFile();
+                written.add(pool.submit(() -> {
+                    try {
+                        if (!ImageIO.write(image, "png", file)) {
+                            throw new IOException("no PNG encoder");
+                        }
+                    } finally {
+                        free.add(image); // the image is only reused once its frame is encoded
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : written) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof IOException) {
+                        throw (IOException) e.getCause();
+                    }
+                    throw new RuntimeException("encoding failed", e.getCause());
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
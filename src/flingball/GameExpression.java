@@ -1,6 +1,8 @@
 package flingball;
 
 import java.awt.Color;
+import java.util.Collections;
+import java.util.List;
 import java.util.Set;
 
 import physics.LineSegment;
@@ -63,9 +65,69 @@ public interface GameExpression {
     public void collision(Ball ball);
     
     /**
-     * Trigger the action of this GameExpression's target gadget. If this GameExpression has no
-     * target, then do nothing.
-     * @return true if this GameExpression's target's action was triggered successfully,
+     * Calculate the amount of time until ball hits this GameExpression, recording in contact the side or corner
+     * that the ball hits and the velocity it leaves with, so that collision(ball, contact) can apply the collision
+     * without searching again. Replaces the previous contents of contact.
+     * @param ball the ball that may or may not collide with this GameExpression
+     * @param contact record to fill in with the earliest contact between ball and this GameExpression
+     * @return amount of time between now and the ball colliding with this GameExpression
+     *         or Double.MAX_VALUE/2 if no collision will occur
+     */
+    public default double timeUntilCollision(Ball ball, Contact contact) {
+        contact.set(timeUntilCollision(ball), null);
+        return contact.getTime();
+    }
+    
+    /**
+     * Updates ball's velocity after it collides with this gadget as recorded in contact. Requires that contact
+     * was filled in by timeUntilCollision(ball, contact) on this gadget, and that ball has since moved along its
+     * velocity to the time of the contact.
+     * @param ball the ball that collides with this gadget
+     * @param contact the contact between ball and this gadget
+     */
+    public default void collision(Ball ball, Contact contact) {
+        collision(ball);
+    }
+    
+    /**
+     * Apply the part of a collision recorded in contact that changes only ball itself, leaving any effects on
+     * state shared with other balls to collisionEffects(). Since it mutates nothing but ball, collisions of
+     * different balls can be applied concurrently. collision(ball, contact) must have the same effect as
+     * localCollision(ball, contact) followed by collisionEffects(ball) and then trigger().
+     * @param ball the ball that collides with this gadget
+     * @param contact the contact between ball and this gadget, as for collision(ball, contact)
+     */
+    public default void localCollision(Ball ball, Contact contact) {
+        if (contact.getReflection() != null) {
+            ball.setVelocity(contact.getReflection());
+        }
+    }
+    
+    /**
+     * Apply the effects of ball colliding with this gadget on state shared with other balls, such as the queue
+     * of balls held by an absorber, after localCollision(ball, contact) has been applied. Does not trigger this
+     * gadget's targets; the caller does that, either at once with trigger() or later by performing the actions of
+     * getTriggerTargets().
+     * @param ball the ball that collided with this gadget
+     */
+    public default void collisionEffects(Ball ball) {
+        return;
+    }
+    
+    /**
+     * Apply the effects of ball leaving the area of this gadget, at a passage (see Contact.isPassage()) found by
+     * timeUntilCollision(ball, contact). A passage is not a collision: it changes nothing about ball, and does not
+     * trigger this gadget's targets.
+     * @param ball the ball that left this gadget's area
+     */
+    public default void exit(Ball ball) {
+        return;
+    }
+    
+    /**
+     * Trigger the actions of this GameExpression's target gadgets at once, in the order the targets were set.
+     * If this GameExpression has no targets, then do nothing.
+     * @return true if this GameExpression has at least one target whose action was triggered,
      *         false otherwise.
      */
     public boolean trigger();
@@ -77,13 +139,40 @@ public interface GameExpression {
     public boolean action();
     
     /**
-     * Set the target of this GameExpression's trigger event. Target cannot be reset after
-     * it is set.
+     * Add a target to this GameExpression's trigger event, so that one trigger can fire the actions of several
+     * gadgets. A target can only be added once, and targets stay set until they are cleared with clearTrigger().
      * @param target GameExpression whose action occurs when this GameExpression is triggered
-     * @return true if target was set successfully, false otherwise
+     * @return true if target was added successfully, false if it was already a target or this GameExpression
+     *         cannot trigger anything
      */
     public boolean setTrigger(GameExpression target);
     
+    /**
+     * Get the targets of this GameExpression's trigger event.
+     * @return unmodifiable list of the GameExpressions whose actions occur when this GameExpression is triggered,
+     *         in the order they were set, empty if it has none
+     */
+    public default List<GameExpression> getTriggerTargets() {
+        return Collections.emptyList();
+    }
+    
+    /**
+     * Get the first target of this GameExpression's trigger event.
+     * @return the first of getTriggerTargets(), or null if it has none
+     */
+    public default GameExpression getTriggerTarget() {
+        List<GameExpression> targets = getTriggerTargets();
+        return targets.isEmpty() ? null : targets.get(0);
+    }
+    
+    /**
+     * Remove every target of this GameExpression's trigger event, so that new targets can be set, as when a
+     * board is reloaded while it is being simulated.
+     */
+    public default void clearTrigger() {
+        return;
+    }
+    
     /**
      * Get the color of the gadget for visualization purposes
      * @return Color object specifying the color of the gadget
@@ -0,0 +1,272 @@
+package flingball;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import physics.LineSegment;
+import physics.Vect;
+
+/**
+ * An immutable spatial index over the stationary gadgets of a flingball board. The board is divided into the
+ * 1Lx1L cells of its integer grid, and each cell holds the gadgets whose bounding boxes overlap it. A collision
+ * query for a ball walks only the cells along the ball's path (a DDA grid traversal), so its cost depends on
+ * how far ahead the ball looks rather than on how many gadgets are on the board, and a query for a region, such
+ * as the part of the board being drawn, likewise visits only the cells of that region.
+ */
+public class GridIndex {
+
+    private static final double CIRCLE_BUMPER_RADIUS = 0.5;
+
+    private final int width;
+    private final int height;
+    private final GameExpression[] gadgets;
+    private final int[][] cells;
+
+    // Abstraction function:
+    // AF(width, height, gadgets, cells) = an index of the gadgets in gadgets over a board of width by height cells,
+    // where gadgets[id] is the gadget with id id, and cells[y*width + x] lists the ids (in increasing order) of
+    // every gadget whose bounding box overlaps the cell with top-left corner (x, y), or is null if no gadget
+    // overlaps that cell.
+    //
+    // Rep invariant:
+    // - width > 0, height > 0
+    // - cells.length == width*height
+    // - every non-null cells[i] is sorted in increasing order and contains valid ids in gadgets
+    //
+    // Safety from rep exposure argument:
+    // - all fields are private and final
+    // - gadgets and cells are never returned to clients; candidates() returns a new list each call
+    // - gadgets may be mutable, but the index only reads their immutable positions and sides
+
+    private void checkRep() {
+        assert this.width > 0 && this.height > 0;
+        assert this.cells.length == this.width*this.height;
+    }
+
+    /**
+     * Construct an index of the given gadgets over a board of the given size, identifying them in order of name.
+     * @param gadgets stationary gadgets to index, with unique names; every gadget must lie on the board
+     * @param width width of the board in L, must be > 0
+     * @param height height of the board in L, must be > 0
+     */
+    public GridIndex(Collection<GameExpression> gadgets, int width, int height) {
+        this(SymbolTable.byName(gadgets), width, height);
+    }
+
+    /**
+     * Construct an index of the gadgets in a symbol table over a board of the given size, identifying each gadget
+     * by its id in the table.
+     * @param gadgets table of the stationary gadgets to index, which must not be changed while the index is in
+     *        use; every gadget must lie on the board
+     * @param width width of the board in L, must be > 0
+     * @param height height of the board in L, must be > 0
+     */
+    public GridIndex(SymbolTable gadgets, int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.gadgets = new GameExpression[gadgets.size()];
+        for (int id = 0; id < this.gadgets.length; id++) {
+            this.gadgets[id] = gadgets.get(id);
+        }
+        this.cells = new int[width*height][];
+        int[] cellSizes = new int[width*height];
+        double[][] allBounds = new double[this.gadgets.length][];
+        for (int id = 0; id < this.gadgets.length; id++) {
+            allBounds[id] = bounds(this.gadgets[id]);
+        }
+        for (int pass = 0; pass < 2; pass++) { // count gadgets per cell, then fill each cell in id order
+            for (int id = 0; id < this.gadgets.length; id++) {
+                double[] bounds = allBounds[id];
+                int xMin = Math.max(0, (int) Math.floor(bounds[0]));
+                int yMin = Math.max(0, (int) Math.floor(bounds[1]));
+                int xMax = Math.min(width - 1, (int) Math.ceil(bounds[2]) - 1);
+                int yMax = Math.min(height - 1, (int) Math.ceil(bounds[3]) - 1);
+                for (int y = yMin; y <= yMax; y++) {
+                    for (int x = xMin; x <= xMax; x++) {
+                        int cell = y*width + x;
+                        if (pass == 0) {
+                            cellSizes[cell]++;
+                        } else {
+                            this.cells[cell][this.cells[cell].length - cellSizes[cell]--] = id;
+                        }
+                    }
+                }
+            }
+            if (pass == 0) {
+                for (int cell = 0; cell < cellSizes.length; cell++) {
+                    if (cellSizes[cell] > 0) {
+                        this.cells[cell] = new int[cellSizes[cell]];
+                    }
+                }
+            }
+        }
+        checkRep();
+    }
+
+    /**
+     * @return width of the indexed board, in L
+     */
+    public int getWidth() {
+        return this.width;
+    }
+
+    /**
+     * @return height of the indexed board, in L
+     */
+    public int getHeight() {
+        return this.height;
+    }
+
+    /**
+     * @return number of gadgets in the index
+     */
+    public int size() {
+        return this.gadgets.length;
+    }
+
+    /**
+     * @param id id of a gadget in the index, must be >= 0 and < size()
+     * @return the gadget with that id
+     */
+    public GameExpression gadget(int id) {
+        return this.gadgets[id];
+    }
+
+    /**
+     * Find the gadgets whose bounding boxes overlap a region of the board. Only the cells of the region are
+     * visited, so the cost depends on the area of the region rather than on how many gadgets are on the board.
+     * @param xMin left of the region, in L
+     * @param yMin top of the region, in L
+     * @param xMax right of the region, in L, must be > xMin
+     * @param yMax bottom of the region, in L, must be > yMin
+     * @return the ids of the gadgets overlapping the cells that the region overlaps, without duplicates, in
+     *         increasing order
+     */
+    public int[] idsWithin(double xMin, double yMin, double xMax, double yMax) {
+        int cellXMin = clamp((int) Math.floor(xMin), this.width);
+        int cellYMin = clamp((int) Math.floor(yMin), this.height);
+        int cellXMax = clamp((int) Math.ceil(xMax) - 1, this.width);
+        int cellYMax = clamp((int) Math.ceil(yMax) - 1, this.height);
+        int[] found = new int[16];
+        int count = 0;
+        for (int y = cellYMin; y <= cellYMax; y++) {
+            for (int x = cellXMin; x <= cellXMax; x++) {
+                int[] cell = this.cells[y*this.width + x];
+                if (cell == null) {
+                    continue;
+                }
+                for (int id : cell) {
+                    if (count == found.length) {
+                        found = Arrays.copyOf(found, 2*count);
+                    }
+                    found[count++] = id;
+                }
+            }
+        }
+        Arrays.sort(found, 0, count);
+        int unique = 0;
+        for (int i = 0; i < count; i++) {
+            if (i == 0 || found[i] != found[i-1]) {
+                found[unique++] = found[i];
+            }
+        }
+        return Arrays.copyOf(found, unique);
+    }
+
+    /**
+     * Compute the axis-aligned bounding box of a stationary gadget.
+     * @param gadget gadget on the board
+     * @return {xMin, yMin, xMax, yMax} of the gadget's bounding box
+     */
+    private static double[] bounds(GameExpression gadget) {
+        if (gadget.getSides().isEmpty()) { // circle bumper, located by its center
+            Vect center = gadget.getLocation();
+            return new double[] { center.x() - CIRCLE_BUMPER_RADIUS, center.y() - CIRCLE_BUMPER_RADIUS,
+                    center.x() + CIRCLE_BUMPER_RADIUS, center.y() + CIRCLE_BUMPER_RADIUS };
+        }
+        double[] bounds = { Double.MAX_VALUE, Double.MAX_VALUE, -Double.MAX_VALUE, -Double.MAX_VALUE };
+        for (LineSegment side : gadget.getSides()) {
+            for (Vect point : Arrays.asList(side.p1(), side.p2())) {
+                bounds[0] = Math.min(bounds[0], point.x());
+                bounds[1] = Math.min(bounds[1], point.y());
+                bounds[2] = Math.max(bounds[2], point.x());
+                bounds[3] = Math.max(bounds[3], point.y());
+            }
+        }
+        return bounds;
+    }
+
+    /**
+     * Find the gadgets that a ball could hit while it travels up to distance L from its current location along
+     * its current velocity. Walks the grid cells along the path of the ball's center and collects the gadgets in
+     * each visited cell and its 8 neighbors, which covers every gadget within a ball radius (< 1L) of the path.
+     * @param ball ball whose path is queried, must lie on the board
+     * @param distance how far along its path to look, in L, must be >= 0
+     * @return the gadgets that the ball could collide with, without duplicates, in order of id
+     */
+    public List<GameExpression> candidates(Ball ball, double distance) {
+        Vect location = ball.getLocation();
+        Vect velocity = ball.getVelocity();
+        double speed = velocity.length();
+        int x = clamp((int) Math.floor(location.x()), this.width);
+        int y = clamp((int) Math.floor(location.y()), this.height);
+
+        // DDA traversal: tMaxX and tMaxY are the distances along the path at which it crosses the next vertical
+        // and horizontal grid lines, and tDeltaX and tDeltaY are the distances between successive crossings
+        int stepX = velocity.x() > 0 ? 1 : -1;
+        int stepY = velocity.y() > 0 ? 1 : -1;
+        double dirX = speed > 0 ? velocity.x() / speed : 0;
+        double dirY = speed > 0 ? velocity.y() / speed : 0;
+        double tDeltaX = dirX != 0 ? Math.abs(1 / dirX) : Double.POSITIVE_INFINITY;
+        double tDeltaY = dirY != 0 ? Math.abs(1 / dirY) : Double.POSITIVE_INFINITY;
+        double tMaxX = dirX != 0 ? ((stepX > 0 ? x + 1 : x) - location.x()) / dirX : Double.POSITIVE_INFINITY;
+        double tMaxY = dirY != 0 ? ((stepY > 0 ? y + 1 : y) - location.y()) / dirY : Double.POSITIVE_INFINITY;
+
+        int[] found = new int[16];
+        int count = 0;
+        while (true) {
+            for (int ny = Math.max(0, y - 1); ny <= Math.min(this.height - 1, y + 1); ny++) {
+                for (int nx = Math.max(0, x - 1); nx <= Math.min(this.width - 1, x + 1); nx++) {
+                    int[] cell = this.cells[ny*this.width + nx];
+                    if (cell == null) {
+                        continue;
+                    }
+                    for (int id : cell) {
+                        if (count == found.length) {
+                            found = Arrays.copyOf(found, 2*count);
+                        }
+                        found[count++] = id;
+                    }
+                }
+            }
+            if (Math.min(tMaxX, tMaxY) > distance) {
+                break;
+            }
+            if (tMaxX < tMaxY) {
+                x += stepX;
+                tMaxX += tDeltaX;
+            } else {
+                y += stepY;
+                tMaxY += tDeltaY;
+            }
+            if (x < 0 || x >= this.width || y < 0 || y >= this.height) {
+                break;
+            }
+        }
+
+        Arrays.sort(found, 0, count);
+        List<GameExpression> candidates = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            if (i == 0 || found[i] != found[i-1]) {
+                candidates.add(this.gadgets[found[i]]);
+            }
+        }
+        return candidates;
+    }
+
+    private static int clamp(int cell, int size) {
+        return Math.max(0, Math.min(size - 1, cell));
+    }
+}
@@ -0,0 +1,243 @@
+package flingball;
+
+import java.beans.ConstructorProperties;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A mutable histogram of latencies in nanoseconds, in the style of HdrHistogram: values are counted in log-linear
+ * buckets, SUB_BUCKETS/2 buckets per power of two above SUB_BUCKETS, so every recorded value is known to within
+ * about 1/16 of itself however large it is. The buckets are a fixed array of counters, so recording a value
+ * allocates nothing and takes a few instructions, and can be done on every step of a simulation.
+ *
+ * A histogram may be recorded on one thread while it is read on others, as by JConsole; a reader sees every value
+ * recorded before it started, and may or may not see values recorded while it reads.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int HALF_SUB_BUCKETS = SUB_BUCKETS / 2;
+    private static final int MAX_VALUE_BITS = 40; // about 18 minutes
+    /** Largest value that is counted exactly; larger values are counted as this one. */
+    public static final long MAX_VALUE = (1L << MAX_VALUE_BITS) - 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(index(MAX_VALUE) + 1);
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    // Abstraction function:
+    // AF(counts, total, max) = a multiset of latencies in nanoseconds, in which counts[i] values lie between
+    // lowest(i) and highest(i) inclusive; total is the sum of the values and max the largest of them, or 0 if
+    // there are none
+    //
+    // Rep invariant:
+    // - every count >= 0, total >= 0, 0 <= max <= MAX_VALUE
+    // - max lies in the highest bucket with a nonzero count, or is 0 if every count is 0
+    //
+    // Safety from rep exposure argument:
+    // - all fields are private and final, and none are returned to clients
+    //
+    // Thread safety argument:
+    // - counts, total, and max are atomic, so concurrent records are never lost and readers see each field
+    //   consistently; a reader that races a record may see it in some fields but not yet in others
+
+    private void checkRep() {
+        assert this.max.get() >= 0 && this.max.get() <= MAX_VALUE;
+        assert this.total.get() >= 0;
+    }
+
+    /**
+     * Make an empty histogram.
+     */
+    public LatencyHistogram() {
+        checkRep();
+    }
+
+    /**
+     * @param value latency in nanoseconds, >= 0 and <= MAX_VALUE
+     * @return index of the bucket that counts value
+     */
+    private static int index(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = (63 - Long.numberOfLeadingZeros(value)) - (SUB_BUCKET_BITS - 1);
+        return shift*HALF_SUB_BUCKETS + (int) (value >>> shift);
+    }
+
+    /**
+     * @param index index of a bucket
+     * @return smallest value counted by that bucket
+     */
+    private static long lowest(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / HALF_SUB_BUCKETS - 1;
+        return (long) (index % HALF_SUB_BUCKETS + HALF_SUB_BUCKETS) << shift;
+    }
+
+    /**
+     * @param index index of a bucket
+     * @return largest value counted by that bucket
+     */
+    private static long highest(int index) {
+        return index < SUB_BUCKETS ? index : lowest(index + 1) - 1;
+    }
+
+    /**
+     * Count one latency.
+     * @param nanos latency in nanoseconds; negative values are counted as 0, and values over MAX_VALUE as MAX_VALUE
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, Math.min(MAX_VALUE, nanos));
+        this.counts.incrementAndGet(index(value));
+        this.total.addAndGet(value);
+        this.max.accumulateAndGet(value, Math::max);
+    }
+
+    /**
+     * @return number of latencies counted
+     */
+    public long getCount() {
+        long count = 0;
+        for (int i = 0; i < this.counts.length(); i++) {
+            count += this.counts.get(i);
+        }
+        return count;
+    }
+
+    /**
+     * @return largest latency counted, in nanoseconds, or 0 if there are none
+     */
+    public long getMax() {
+        return this.max.get();
+    }
+
+    /**
+     * @return mean of the latencies counted, in nanoseconds, or 0 if there are none
+     */
+    public double getMean() {
+        long count = getCount();
+        return count == 0 ? 0 : (double) this.total.get() / count;
+    }
+
+    /**
+     * Find a latency that at least the given fraction of the counted latencies do not exceed.
+     * @param percentile percentage of latencies, must be >= 0 and <= 100
+     * @return the largest value of the bucket that holds the latency at that percentile, no more than getMax(),
+     *         in nanoseconds; within 1/16 of the exact percentile, or 0 if there are none
+     */
+    public long getPercentile(double percentile) {
+        long count = getCount();
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long seen = 0;
+        for (int i = 0; i < this.counts.length(); i++) {
+            seen += this.counts.get(i);
+            if (seen >= rank) {
+                return Math.min(highest(i), getMax());
+            }
+        }
+        return getMax();
+    }
+
+    /**
+     * Remove every counted latency.
+     */
+    public void reset() {
+        for (int i = 0; i < this.counts.length(); i++) {
+            this.counts.set(i, 0);
+        }
+        this.total.set(0);
+        this.max.set(0);
+        checkRep();
+    }
+
+    /**
+     * @return an immutable summary of the latencies counted so far
+     */
+    public Summary summarize() {
+        return new Summary(getCount(), getMean(), getPercentile(50), getPercentile(99), getPercentile(99.9),
+                getMax());
+    }
+
+    /**
+     * An immutable summary of a LatencyHistogram, in nanoseconds, which JMX shows as a composite value.
+     */
+    public static class Summary {
+        private final long count;
+        private final double mean;
+        private final long p50;
+        private final long p99;
+        private final long p999;
+        private final long max;
+
+        // Abstraction function:
+        // AF(count, mean, p50, p99, p999, max) = count latencies with mean mean, median p50, 99th and 99.9th
+        // percentiles p99 and p999, and largest max
+        //
+        // Rep invariant:
+        // - count >= 0, and 0 <= p50 <= p99 <= p999 <= max
+        //
+        // Safety from rep exposure argument:
+        // - all fields are private, final, and immutable
+
+        /**
+         * Make a summary.
+         * @param count number of latencies
+         * @param mean mean latency
+         * @param p50 median latency
+         * @param p99 99th percentile latency
+         * @param p999 99.9th percentile latency
+         * @param max largest latency
+         */
+        @ConstructorProperties({ "count", "mean", "p50", "p99", "p999", "max" })
+        public Summary(long count, double mean, long p50, long p99, long p999, long max) {
+            this.count = count;
+            this.mean = mean;
+            this.p50 = p50;
+            this.p99 = p99;
+            this.p999 = p999;
+            this.max = max;
+        }
+
+        /** @return number of latencies */
+        public long getCount() {
+            return this.count;
+        }
+
+        /** @return mean latency in nanoseconds */
+        public double getMean() {
+            return this.mean;
+        }
+
+        /** @return median latency in nanoseconds */
+        public long getP50() {
+            return this.p50;
+        }
+
+        /** @return 99th percentile latency in nanoseconds */
+        public long getP99() {
+            return this.p99;
+        }
+
+        /** @return 99.9th percentile latency in nanoseconds */
+        public long getP999() {
+            return this.p999;
+        }
+
+        /** @return largest latency in nanoseconds */
+        public long getMax() {
+            return this.max;
+        }
+
+        @Override public String toString() {
+            return String.format("n=%d mean=%.1fus p50=%.1fus p99=%.1fus p99.9=%.1fus max=%.1fus", this.count,
+                    this.mean / 1e3, this.p50 / 1e3, this.p99 / 1e3, this.p999 / 1e3, this.max / 1e3);
+        }
+    }
+}
@@ -8,7 +8,6 @@ import java.util.Set;
 
 import physics.Circle;
 import physics.LineSegment;
-import physics.Physics;
 import physics.Vect;
 
 /**
@@ -16,6 +15,9 @@ import physics.Vect;
  */
 public class OuterWall implements GameExpression {
 
+    /** Width and height of a board whose file does not give them, in L. */
+    public static final int DEFAULT_SIZE = 20;
+
     private final String name = "outerwalls";
     private final LineSegment top;
     private final LineSegment left;
@@ -29,8 +31,8 @@ public class OuterWall implements GameExpression {
     private final Set<Circle> cornerCircles;
     private final double origin = 0;
     private final double cornerCircleRadius = 0;
-    private final int width = 20;
-    private final int height = 20;
+    private final int width;
+    private final int height;
     private final int numberOfCircles = 4;
     private final int numberOfSides = 4;
     private final Color color = Color.black;
@@ -46,7 +48,8 @@ public class OuterWall implements GameExpression {
     //
     // Rep invariant:
     // - name is not the empty string
-    // - length of top, left, bottom, and right are equal
+    // - width > 0, height > 0
+    // - length of top and bottom is width, and length of left and right is height
     // - topLeft, topRight, bottomLeft, bottomRight are all located at the corners of the box formed by top, left, bottom, and right
     // - size of cornerCircles = 4
     // - cornerCircles contains topLeft, topRight, bottomLeft, bottomRight
@@ -64,6 +67,17 @@ public class OuterWall implements GameExpression {
      * Construct the outer walls (i.e. bounding edges) of the flingball board with default dimensions 20Lx20L.
      */
     public OuterWall() {
+        this(DEFAULT_SIZE, DEFAULT_SIZE);
+    }
+    
+    /**
+     * Construct the outer walls (i.e. bounding edges) of a flingball board of the given dimensions.
+     * @param width width of the board in L, must be > 0
+     * @param height height of the board in L, must be > 0
+     */
+    public OuterWall(int width, int height) {
+        this.width = width;
+        this.height = height;
         this.top = new LineSegment(origin, origin, origin+width, origin);
         this.left = new LineSegment(origin, origin, origin, origin+height);
         this.right = new LineSegment(origin+width, origin, origin+width, origin+height);
@@ -80,9 +94,9 @@ public class OuterWall implements GameExpression {
     
     private void checkRep() {
         assert name.length()>0;
-        assert top.length() == bottom.length()
-                && bottom.length() == left.length() 
-                && left.length() == right.length();
+        assert width > 0 && height > 0;
+        assert top.length() == width && bottom.length() == width
+                && left.length() == height && right.length() == height;
         // check corners
         assert topLeft.getCenter().equals(new Vect(Math.min(left.p1().x(),  left.p2().x()), Math.min(top.p1().y(), top.p2().y())));
         assert topRight.getCenter().equals(new Vect(Math.max(top.p1().x(),  top.p2().x()), Math.min(right.p1().y(), right.p2().y())));
@@ -105,6 +119,22 @@ public class OuterWall implements GameExpression {
         return new Vect(origin, origin); // should never be called
     }
     
+    /**
+     * Get the width of the playing area bounded by these walls.
+     * @return width of the board in L
+     */
+    public int getWidth() {
+        return this.width;
+    }
+    
+    /**
+     * Get the height of the playing area bounded by these walls.
+     * @return height of the board in L
+     */
+    public int getHeight() {
+        return this.height;
+    }
+    
     @Override public Set<LineSegment> getSides() {
         checkRep();
         return Collections.unmodifiableSet(this.sides);
@@ -126,44 +156,38 @@ public class OuterWall implements GameExpression {
     }
 
     @Override public double timeUntilCollision(Ball ball) {
-        double minTime = Double.MAX_VALUE/2;
+        return timeUntilCollision(ball, new Contact());
+    }
+
+    @Override public double timeUntilCollision(Ball ball, Contact contact) {
+        Circle ballCircle = ball.getBallCircle();
+        Vect velocity = ball.getVelocity();
+        contact.clear();
         for (LineSegment side : this.sides) {
-            double collisionTime = Physics.timeUntilWallCollision(side, ball.getBallCircle(), ball.getVelocity());
-            if (collisionTime < minTime) {
-                minTime = collisionTime;
-            }
+            contact.testSide(side, ballCircle, velocity);
         }
         for (Circle circle : this.cornerCircles) {
-            double collisionTime = Physics.timeUntilCircleCollision(circle, ball.getBallCircle(), ball.getVelocity());
-            if (collisionTime < minTime) {
-                minTime = collisionTime;
-            }
+            contact.testCorner(circle, ballCircle, velocity);
         }
         checkRep();
-        return minTime;
+        return contact.resolve(ballCircle, velocity);
     }
 
     @Override public void collision(Ball ball) {
-        double minTime = Double.MAX_VALUE/2;
-        Vect reflectionVelocity = null;
-        for (LineSegment side : this.sides) {
-            double collisionTime = Physics.timeUntilWallCollision(side, ball.getBallCircle(), ball.getVelocity());
-            if (collisionTime < minTime) {
-                minTime = collisionTime;
-                reflectionVelocity = Physics.reflectWall(side, ball.getVelocity());
-            }
-        }
-        for (Circle circle : this.cornerCircles) {
-            double collisionTime = Physics.timeUntilCircleCollision(circle, ball.getBallCircle(), ball.getVelocity());
-            if (collisionTime < minTime) {
-                minTime = collisionTime;
-                reflectionVelocity = Physics.reflectCircle(circle.getCenter(), ball.getLocation(), ball.getVelocity());
-            }
-        }
-        ball.setVelocity(reflectionVelocity);
+        Contact contact = new Contact();
+        timeUntilCollision(ball, contact);
+        collision(ball, contact);
+    }
+
+    @Override public void collision(Ball ball, Contact contact) {
+        localCollision(ball, contact);
         checkRep();
     }
 
+    @Override public void collisionEffects(Ball ball) {
+        // walls have no effect on anything but the ball
+    }
+
     @Override public boolean trigger() {
         return false;
     }
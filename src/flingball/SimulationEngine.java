@@ -0,0 +1,679 @@
+package flingball;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import physics.Circle;
+import physics.Physics;
+import physics.Vect;
+
+/**
+ * A headless simulation of a flingball board. The engine owns a Board and advances its balls through time
+ * in fixed timesteps, resolving collisions with gadgets and walls and applying gravity and friction. It has
+ * no dependency on AWT or Swing, so a board can be simulated without a window and independently of how often
+ * (or whether) it is drawn. Renderers should only read the state of the board between steps.
+ * 
+ * Collisions are processed as discrete events: the engine keeps a CollisionScheduler holding the predicted next
+ * collision of every moving ball, and only recomputes the prediction of a ball whose velocity or absorbed state
+ * has changed. Within a step, balls are moved lazily, each one only up to the time of its own next event.
+ * Predictions only test the gadgets that the board's GridIndex finds within a fixed distance along the ball's
+ * path; if none of them is hit, the ball is predicted again once it has travelled that distance. The Contact found
+ * by a prediction is kept with the ball, and the collision applies it without searching the gadget again.
+ * Besides collisions, a prediction may find a passage, such as an absorber's last fired ball leaving it, which
+ * tells the gadget through exit() without touching the ball or triggering anything.
+ * A collision never performs the action of a gadget it triggers: the ids of the targets of the trigger are posted to
+ * an ActionQueue, and the queued actions are performed in order once every ball has reached the end of the step, so
+ * a trigger fires the same way however many targets it has and however long a chain of collisions led to it.
+ * In PARABOLIC prediction mode, paths are the arcs of balls falling under gravity instead of straight lines, and
+ * each prediction looks only as far ahead as the arc stays close to the straight path searched by the GridIndex.
+ * Balls also collide with each other. Candidate pairs come from a sort-and-sweep BallBroadphase over the boxes the
+ * balls sweep during the current step, so ball-to-ball predictions only look as far as the end of the step.
+ *
+ * An engine constructed with a ForkJoinPool runs the same events, but whenever many balls need new predictions at
+ * once, as they all do at the start of every step, it finds their next gadget collisions in partitions on the pool.
+ * Predicting a ball's gadget collision reads the gadgets and changes nothing but the ball's own contact, so the
+ * partitions are independent; ball-to-ball predictions, scheduling, and every collision still run one at a time, in
+ * the same order. A run therefore gives exactly the same result as the event-driven engine, on a pool of any size.
+ *
+ * An engine given SimulationMetrics times the phases of every step into them, and counts its collisions, triggers,
+ * and actions; without metrics it does not read the clock at all, except to keep advanceWithin() to its budget.
+ */
+public class SimulationEngine {
+
+    /**
+     * How the engine predicts the path of a ball between collisions.
+     */
+    public enum Prediction {
+        /** Balls move in straight lines within a step, and gravity is applied to their velocities at its end. */
+        LINEAR,
+        /**
+         * Balls fall along parabolic arcs under the board's gravity, so collision times are exact regardless of
+         * the length of a step. Friction is still applied at the end of each step.
+         */
+        PARABOLIC
+    }
+
+    /** Default length of one fixed timestep, in seconds. */
+    public static final double DEFAULT_TIMESTEP = 0.01;
+
+    private static final int MAX_COLLISIONS_PER_STEP = 100; // per ball, guards against zero-time collision loops
+    private static final double LOOKAHEAD_DISTANCE = 4; // in L, how far along its path each prediction searches
+    private static final double MAX_ARC_DEVIATION = 0.5; // in L, how far an arc may fall below the searched path
+    private static final int PARTITION_SIZE = 64; // balls predicted by one task in partitioned mode
+    private static final double SUBSTEP_SLACK = 1e-9; // in timesteps, rounding error ignored by advanceWithin()
+
+    private final Board board;
+    private final double timestep;
+    private final Prediction prediction;
+    private final double arcGravity;
+    private GridIndex gadgets;
+    private final OuterWall walls;
+    private final BallStore store;
+    private final List<Ball> balls;
+    private final double width;
+    private final double height;
+    private final CollisionScheduler scheduler = new CollisionScheduler();
+    private final BallBroadphase broadphase;
+    private final ForkJoinPool pool;
+    private final Predictor predictor = new Predictor();
+    private double[] lookaheads = new double[0];
+    private double[] gadgetTimes = new double[0];
+    private GameExpression[] nextGadgets = new GameExpression[0];
+    private double time = 0;
+    private double stepEnd = 0;
+    private long collisions = 0;
+    private final ActionQueue actions = new ActionQueue();
+    private SimulationListener listener = null;
+    private SimulationMetrics metrics = null;
+    private final long[] phaseNanos = new long[SimulationMetrics.Phase.values().length];
+
+    // Abstraction function:
+    // AF(board, timestep, prediction, arcGravity, gadgets, walls, store, balls, width, height, scheduler, broadphase,
+    //    pool, predictor, lookaheads, gadgetTimes, nextGadgets, time, stepEnd, collisions, actions, listener, metrics,
+    //    phaseNanos) = the simulation of board after time seconds of simulated time, advanced in steps of timestep
+    // seconds by default, with ball paths predicted as set by prediction; between collisions, balls fall with
+    // acceleration arcGravity. The
+    // stationary gadgets of board are indexed by gadgets and bounded by walls, and its balls are balls, whose state is
+    // held in store; gadgets and balls are both ordered by name so that every run of the same board resolves
+    // simultaneous collisions in the same order. The playing area is width by height L. The location of each ball is
+    // its location at its store time, and scheduler holds its next predicted collision unless the ball is marked as
+    // changed in store, in which case its prediction must be recomputed.
+    // broadphase holds the boxes swept by the balls until stepEnd, the end of the step in progress. predictor
+    // finds the next gadget collision of each changed ball. If pool is not null, large batches of changed balls
+    // are instead predicted in partitions on pool, and lookaheads[i], gadgetTimes[i], and nextGadgets[i] hold the
+    // prediction of the i-th changed ball of the batch in progress. collisions is the number of
+    // collisions applied so far. actions holds the ids in gadgets of the targets triggered during the step in
+    // progress, in the order they were triggered. listener, if not null, observes the events of the simulation.
+    // metrics, if not null, records the simulation, and phaseNanos[phase.ordinal()] is the time spent in phase so
+    // far in the step in progress.
+    //
+    // Rep invariant:
+    // - timestep > 0
+    // - arcGravity is the gravity of board if prediction is PARABOLIC, and 0 otherwise
+    // - time >= 0
+    // - gadgets is the grid index of board and walls are the walls of board
+    // - store is the ball store of board, and balls contains its balls in slot order
+    // - the store time of every ball in balls is <= stepEnd
+    // - time <= stepEnd
+    // - collisions >= 0
+    // - actions is empty between steps
+    // - every phaseNanos is 0 between steps
+    // - lookaheads, gadgetTimes, and nextGadgets have the same length
+    //
+    // Safety from rep exposure argument:
+    // - all fields are private; all but gadgets, lookaheads, gadgetTimes, nextGadgets, time, stepEnd, collisions,
+    //   listener, and metrics are final
+    // - store, balls, scheduler, broadphase, predictor, lookaheads, gadgetTimes, nextGadgets, actions, and
+    //   phaseNanos are never returned to clients;
+    //   gadgets and walls are immutable; pool, listener, and metrics are shared with the client that passed them
+    //   in, but the engine keeps no state in them
+    // - getBoard() returns the board itself, since the engine exists to mutate the state of that board and
+    //   renderers must observe those mutations
+
+    private void checkRep() {
+        assert this.timestep > 0;
+        assert this.time >= 0;
+        assert this.time <= this.stepEnd;
+        assert this.collisions >= 0;
+        assert this.actions.isEmpty();
+        for (long nanos : this.phaseNanos) {
+            assert nanos == 0;
+        }
+        assert this.gadgets != null && this.walls != null;
+        assert this.lookaheads.length == this.gadgetTimes.length && this.gadgetTimes.length == this.nextGadgets.length;
+    }
+
+    /**
+     * Construct a simulation of board that advances in steps of DEFAULT_TIMESTEP seconds.
+     * @param board the board to simulate; the engine mutates the balls and gadgets of this board
+     */
+    public SimulationEngine(Board board) {
+        this(board, DEFAULT_TIMESTEP);
+    }
+
+    /**
+     * Construct a simulation of board that advances in fixed steps of timestep seconds, predicting the paths of
+     * balls as straight lines within each step.
+     * @param board the board to simulate; the engine mutates the balls and gadgets of this board
+     * @param timestep length of one step in seconds, must be > 0
+     */
+    public SimulationEngine(Board board, double timestep) {
+        this(board, timestep, Prediction.LINEAR);
+    }
+
+    /**
+     * Construct a simulation of board that advances in fixed steps of timestep seconds.
+     * @param board the board to simulate; the engine mutates the balls and gadgets of this board
+     * @param timestep length of one step in seconds, must be > 0
+     * @param prediction how to predict the paths of balls between collisions
+     */
+    public SimulationEngine(Board board, double timestep, Prediction prediction) {
+        this(board, timestep, prediction, null);
+    }
+
+    /**
+     * Construct a simulation of board that advances in fixed steps of timestep seconds, predicting the gadget
+     * collisions of many balls at once in partitions on pool. The result is identical to the simulation of the
+     * other constructors, whatever the parallelism of pool.
+     * @param board the board to simulate; the engine mutates the balls and gadgets of this board
+     * @param timestep length of one step in seconds, must be > 0
+     * @param prediction how to predict the paths of balls between collisions
+     * @param pool pool to predict partitions of the balls on, or null to predict them one at a time
+     */
+    public SimulationEngine(Board board, double timestep, Prediction prediction, ForkJoinPool pool) {
+        this.board = board;
+        this.timestep = timestep;
+        this.prediction = prediction;
+        this.pool = pool;
+        this.arcGravity = prediction == Prediction.PARABOLIC ? board.getGravity() : 0;
+        this.broadphase = new BallBroadphase(this.arcGravity);
+        this.gadgets = board.getGridIndex();
+        this.walls = board.getWalls();
+        this.store = board.getBallStore();
+        this.balls = new ArrayList<>();
+        for (int slot = 0; slot < this.store.size(); slot++) {
+            this.balls.add(this.store.ball(slot)); // the board keeps its balls in order of name
+        }
+        this.store.setAllTimes(this.time);
+        this.store.markAllChanged();
+        this.width = board.getWalls().getWidth();
+        this.height = board.getWalls().getHeight();
+        checkRep();
+    }
+
+    /**
+     * Get the board simulated by this engine. The board is mutated as the simulation advances.
+     * @return the board simulated by this engine
+     */
+    public Board getBoard() {
+        return this.board;
+    }
+
+    /**
+     * Get the length of one fixed step of this engine.
+     * @return timestep in seconds
+     */
+    public double getTimestep() {
+        return this.timestep;
+    }
+
+    /**
+     * Get how this engine predicts the paths of balls between collisions.
+     * @return prediction mode of this engine
+     */
+    public Prediction getPrediction() {
+        return this.prediction;
+    }
+
+    /**
+     * @return true iff this engine predicts the balls in partitions on a ForkJoinPool
+     */
+    public boolean isPartitioned() {
+        return this.pool != null;
+    }
+
+    /**
+     * Get the amount of simulated time that has passed since this engine was constructed.
+     * @return simulated time in seconds
+     */
+    public double getTime() {
+        return this.time;
+    }
+
+    /**
+     * Get the number of candidate ball pairs the broadphase has produced so far, each of which costs one exact
+     * ball-to-ball collision test.
+     * @return number of ball pairs tested
+     */
+    public long getBallPairTests() {
+        return this.broadphase.getPairTests();
+    }
+
+    /**
+     * Get the number of collisions of balls with gadgets, walls, and each other that have been applied so far.
+     * @return number of collisions since this engine was constructed
+     */
+    public long getCollisionCount() {
+        return this.collisions;
+    }
+
+    /**
+     * Set the listener that observes the collisions, triggered actions, and steps of this simulation, replacing
+     * any previous listener.
+     * @param listener listener to call as the simulation advances, or null for none
+     */
+    public void setListener(SimulationListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Set the metrics that record the timing and counts of this simulation, replacing any previous metrics.
+     * @param metrics metrics to record the simulation into, or null to record nothing
+     */
+    public void setMetrics(SimulationMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Continue the simulation from the current state of the board as if time seconds had passed, discarding every
+     * prediction, as after the state of the board has been restored from a snapshot.
+     * @param time simulated time of the current state of the board, in seconds, must be >= 0
+     */
+    void restart(double time) {
+        this.time = time;
+        this.stepEnd = time;
+        this.store.setAllTimes(time);
+        this.store.markAllChanged();
+        checkRep();
+    }
+
+    /**
+     * Replace some of the gadgets of the board between steps, as when its file is reloaded, keeping the state of
+     * its balls and the simulated time. Balls held by a removed absorber are released where they are, at rest.
+     * Every prediction is discarded, since it may refer to a removed gadget or miss an added one.
+     * @param removed gadgets of the board to take off it
+     * @param added gadgets to place on the board; the gadgets that remain must not overlap each other
+     */
+    void replaceGadgets(Set<GameExpression> removed, Set<GameExpression> added) {
+        for (GameExpression gadget : removed) {
+            if (gadget instanceof Absorber) {
+                for (Ball ball : ((Absorber) gadget).getAbsorbedBalls()) {
+                    ball.setAbsorbed(false);
+                    ball.setVelocity(Vect.ZERO);
+                }
+            }
+        }
+        this.board.replaceGadgets(removed, added);
+        this.gadgets = this.board.getGridIndex();
+        restart(this.time);
+    }
+
+    /**
+     * Advance the simulation by the given number of fixed timesteps.
+     * @param steps number of steps to take, must be >= 0
+     */
+    public void advance(int steps) {
+        for (int i = 0; i < steps; i++) {
+            step(this.timestep);
+        }
+    }
+
+    /**
+     * Advance the simulation by up to elapsed seconds within a budget of real time, as a real-time loop does once
+     * per frame. The time is split into substeps no longer than the fixed timestep, so however much time has passed,
+     * as after a pause for garbage collection, no ball moves further in one step than it would in a timestep. Once
+     * the substeps have taken budgetNanos of real time, the rest of elapsed is dropped rather than simulated, so a
+     * board that takes longer to step than the time it simulates slows down instead of falling further and further
+     * behind; each such overrun is counted, with the time dropped, in the metrics of the engine.
+     * @param elapsed amount of simulated time to advance, in seconds, must be >= 0
+     * @param budgetNanos real time that the substeps may take, in nanoseconds; at least one substep is always taken
+     * @return amount of simulated time actually advanced, in seconds, elapsed unless the budget ran out
+     */
+    public double advanceWithin(double elapsed, long budgetNanos) {
+        final long start = System.nanoTime();
+        final double slack = this.timestep * SUBSTEP_SLACK;
+        double advanced = 0;
+        while (elapsed - advanced > slack) {
+            double dt = Math.min(this.timestep, elapsed - advanced);
+            if (elapsed - advanced - dt <= slack) { // take a rounding error with the last substep
+                dt = elapsed - advanced;
+            }
+            step(dt);
+            advanced += dt;
+            if (elapsed - advanced > slack && System.nanoTime() - start >= budgetNanos) {
+                if (this.metrics != null) {
+                    this.metrics.overrun(elapsed - advanced);
+                }
+                break;
+            }
+        }
+        return advanced;
+    }
+
+    /**
+     * Advance the simulation by dt seconds. Every ball that is not absorbed moves for dt seconds, colliding with
+     * any gadgets or walls in its path along the way, and then has gravity and friction applied to its velocity.
+     * @param dt amount of simulated time to advance, in seconds, must be >= 0
+     */
+    public void step(double dt) {
+        final double end = this.time + dt;
+        final long start = lap(null, 0);
+        this.stepEnd = end;
+        this.broadphase.rebuild(this.balls, dt);
+        predictBallPairs(this.time);
+        predictChangedBalls(this.time);
+        long mark = lap(SimulationMetrics.Phase.PREDICTION, start);
+        
+        // process collisions in time order, recomputing predictions only for the balls they affect
+        int collisionsLeft = MAX_COLLISIONS_PER_STEP * Math.max(1, this.balls.size());
+        while (this.scheduler.nextTime() <= end && collisionsLeft > 0) {
+            double eventTime = this.scheduler.nextTime();
+            double collisionTime = Math.max(this.time, eventTime);
+            Ball ball = this.scheduler.nextBall();
+            GameExpression gadget = this.scheduler.pollGadget();
+            moveTo(ball, collisionTime);
+            if (gadget instanceof Ball) {
+                Ball other = (Ball) gadget;
+                // the other ball may have changed course since, in which case there is nothing to hit
+                if (other.getNextCollision() == ball && other.getNextCollisionTime() == eventTime) {
+                    moveTo(other, collisionTime);
+                    ball.collision(other);
+                    collided(collisionTime, ball, other);
+                }
+            } else if (gadget != null && this.store.contact(ball.getSlot()).isPassage()) {
+                gadget.exit(ball);
+            } else if (gadget != null) {
+                gadget.localCollision(ball, this.store.contact(ball.getSlot()));
+                gadget.collisionEffects(ball);
+                collided(collisionTime, ball, gadget);
+            } // otherwise the ball has reached the end of its lookahead and just needs a new prediction
+            this.store.markChanged(ball.getSlot());
+            mark = lap(SimulationMetrics.Phase.RESOLUTION, mark);
+            predictChangedBalls(collisionTime);
+            mark = lap(SimulationMetrics.Phase.PREDICTION, mark);
+            collisionsLeft--;
+        }
+        
+        this.store.finishStep(end, this.width, this.height, this.board.getGravity(), this.arcGravity > 0,
+                this.board.getFriction1(), this.board.getFriction2(), dt);
+        mark = lap(SimulationMetrics.Phase.UPDATE, mark);
+        performActions();
+        lap(SimulationMetrics.Phase.RESOLUTION, mark);
+        recordStep(start);
+        this.time = end;
+        if (this.listener != null) {
+            this.listener.step(end, dt);
+        }
+        checkRep();
+    }
+
+    /**
+     * Count a collision that has just been applied, post the action of every target it triggered, and report it
+     * and those actions to the listener.
+     * @param time simulation time of the collision
+     * @param ball ball that collided
+     * @param gadget gadget, walls, or ball that it collided with
+     */
+    private void collided(double time, Ball ball, GameExpression gadget) {
+        this.collisions++;
+        if (this.listener != null) {
+            this.listener.collision(time, ball, gadget);
+        }
+        if (this.metrics != null) {
+            this.metrics.collision(gadget);
+            if (!gadget.getTriggerTargets().isEmpty()) {
+                this.metrics.trigger();
+            }
+        }
+        for (GameExpression target : gadget.getTriggerTargets()) {
+            int id = this.board.getGadgetId(target.getName());
+            assert id != SymbolTable.UNDEFINED : "trigger target " + target.getName() + " is not on the board";
+            this.actions.post(id);
+            if (this.listener != null) {
+                this.listener.action(time, gadget, target);
+            }
+        }
+    }
+
+    /**
+     * Perform the actions triggered during the step, in the order they were triggered, leaving the queue empty.
+     * Requires that every ball is located at its position for the end of the step, so that a ball fired by an
+     * absorber moves off from there in the next step.
+     */
+    private void performActions() {
+        while (!this.actions.isEmpty()) {
+            this.gadgets.gadget(this.actions.poll()).action();
+            if (this.metrics != null) {
+                this.metrics.action();
+            }
+        }
+    }
+
+    /**
+     * Add the time since a mark to the time spent in a phase of the step in progress, if the engine has metrics.
+     * @param phase phase that has run since the mark, or null to only read the clock
+     * @param since value of System.nanoTime() at the mark
+     * @return System.nanoTime() now, to mark the start of the next phase, or 0 if the engine has no metrics
+     */
+    private long lap(SimulationMetrics.Phase phase, long since) {
+        if (this.metrics == null) {
+            return 0;
+        }
+        long now = System.nanoTime();
+        if (phase != null) {
+            this.phaseNanos[phase.ordinal()] += now - since;
+        }
+        return now;
+    }
+
+    /**
+     * Record the phases of the step that has just finished, and the balls at its end, into the metrics of the
+     * engine if it has any, and reset the time spent in each phase for the next step.
+     * @param start value of System.nanoTime() at the start of the step
+     */
+    private void recordStep(long start) {
+        if (this.metrics == null) {
+            return;
+        }
+        this.metrics.record(SimulationMetrics.Phase.STEP, System.nanoTime() - start);
+        for (SimulationMetrics.Phase phase : SimulationMetrics.Phase.values()) {
+            if (phase != SimulationMetrics.Phase.STEP && phase != SimulationMetrics.Phase.PAINT) {
+                this.metrics.record(phase, this.phaseNanos[phase.ordinal()]);
+            }
+            this.phaseNanos[phase.ordinal()] = 0;
+        }
+        int absorbed = 0;
+        for (int slot = 0; slot < this.store.size(); slot++) {
+            absorbed += this.store.absorbed(slot) ? 1 : 0;
+        }
+        this.metrics.balls(this.store.size() - absorbed, absorbed);
+    }
+    
+    /**
+     * Predict collisions between pairs of balls whose motion has not changed, found by sweeping the broadphase at
+     * the start of a step. A pair is only scheduled if it collides before either ball's current prediction;
+     * otherwise the ball with the earlier event will find the pair again when it is predicted next. Requires that
+     * every ball is located at its position for simulation time now.
+     * @param now simulation time at the start of the step
+     */
+    private void predictBallPairs(double now) {
+        for (Ball[] pair : this.broadphase.overlappingPairs()) {
+            if (this.store.isChanged(pair[0].getSlot()) || this.store.isChanged(pair[1].getSlot())) {
+                continue; // changed balls query the broadphase themselves when they are predicted
+            }
+            double collisionTime = now + pair[0].timeUntilCollision(pair[1]);
+            if (collisionTime > now && collisionTime <= this.stepEnd
+                    && collisionTime < pair[0].getNextCollisionTime() && collisionTime < pair[1].getNextCollisionTime()) {
+                this.scheduler.schedule(pair[0], pair[1], collisionTime);
+                this.scheduler.schedule(pair[1], pair[0], collisionTime);
+            }
+        }
+    }
+    
+    /**
+     * Recompute the next collision of every ball whose velocity or absorbed state has changed. Requires that
+     * every such ball is located at its position for simulation time now.
+     * @param now current simulation time of the changed balls
+     */
+    private void predictChangedBalls(double now) {
+        final int changed = this.store.changedCount();
+        final boolean predicted = this.pool != null && changed > PARTITION_SIZE;
+        if (predicted) {
+            predictGadgetsInPartitions(now, changed);
+        }
+        for (int i = 0; i < changed; i++) {
+            Ball ball = this.store.ball(this.store.changedSlot(i));
+            this.store.setTime(ball.getSlot(), now);
+            this.broadphase.update(ball, this.stepEnd - now);
+            if (!isMoving(ball)) {
+                this.scheduler.schedule(ball, null, Double.POSITIVE_INFINITY);
+                continue;
+            }
+            double lookahead;
+            double minTime;
+            GameExpression nextGadget;
+            if (predicted) {
+                lookahead = this.lookaheads[i];
+                minTime = this.gadgetTimes[i];
+                nextGadget = this.nextGadgets[i];
+            } else {
+                this.predictor.predict(ball);
+                lookahead = this.predictor.lookahead;
+                minTime = this.predictor.time;
+                nextGadget = this.predictor.gadget;
+            }
+            for (Ball other : this.broadphase.overlapping(ball)) {
+                double collisionTime = timeUntilBallCollision(ball, other, now);
+                if (collisionTime < minTime && collisionTime > 0 && now + collisionTime <= this.stepEnd) {
+                    minTime = collisionTime;
+                    nextGadget = other;
+                }
+            }
+            if (minTime > lookahead) { // gadgets beyond the lookahead were not checked, so predict again there
+                this.scheduler.schedule(ball, null, now + lookahead);
+            } else {
+                this.scheduler.schedule(ball, nextGadget, now + minTime);
+                if (nextGadget instanceof Ball && now + minTime < ((Ball) nextGadget).getNextCollisionTime()) {
+                    this.scheduler.schedule((Ball) nextGadget, ball, now + minTime);
+                }
+            }
+        }
+        this.store.clearChanged();
+    }
+
+    /**
+     * Find the next gadget collision of each of the first count changed balls in partitions on pool, leaving the
+     * prediction of the i-th changed ball in lookaheads[i], gadgetTimes[i], and nextGadgets[i], as found by
+     * Predictor.predict(), and its contact in its slot of the store. Each task writes only to the slots of its own
+     * balls and its own entries of those arrays, so the predictions are the same as if they were found one by one.
+     * @param now current simulation time of the changed balls
+     * @param count number of changed balls, must be <= store.changedCount()
+     */
+    private void predictGadgetsInPartitions(double now, int count) {
+        if (this.gadgetTimes.length < count) {
+            this.lookaheads = new double[count];
+            this.gadgetTimes = new double[count];
+            this.nextGadgets = new GameExpression[count];
+        }
+        List<ForkJoinTask<?>> tasks = new ArrayList<>();
+        for (int first = 0; first < count; first += PARTITION_SIZE) {
+            final int from = first;
+            final int to = Math.min(first + PARTITION_SIZE, count);
+            tasks.add(this.pool.submit(() -> {
+                Predictor predictor = new Predictor();
+                for (int i = from; i < to; i++) {
+                    Ball ball = this.store.ball(this.store.changedSlot(i));
+                    this.store.setTime(ball.getSlot(), now);
+                    if (isMoving(ball)) {
+                        predictor.predict(ball);
+                        this.lookaheads[i] = predictor.lookahead;
+                        this.gadgetTimes[i] = predictor.time;
+                        this.nextGadgets[i] = predictor.gadget;
+                    }
+                }
+            }));
+        }
+        for (ForkJoinTask<?> task : tasks) {
+            task.join();
+        }
+    }
+
+    /**
+     * @param ball a ball
+     * @return true iff ball is not absorbed and is moving, or falling along its arc
+     */
+    private boolean isMoving(Ball ball) {
+        return !ball.getAbsorbed() && (this.arcGravity > 0 || ball.getVelocity().length() > 0);
+    }
+
+    /**
+     * Finds the next collision of a ball with the stationary gadgets and walls of the board. A predictor reuses
+     * one scratch contact to test each candidate gadget, so every thread that predicts collisions needs its own.
+     */
+    private class Predictor {
+        private Contact scratch = new Contact();
+        private GameExpression gadget = null;
+        private double time = Double.MAX_VALUE/2;
+        private double lookahead = 0;
+
+        /**
+         * Find the first gadget or wall that ball hits within one lookahead, leaving the length of the lookahead
+         * in lookahead, the gadget in gadget and the time until the hit in time (or null and Double.MAX_VALUE/2 if
+         * there is none), and its contact in the ball's slot of the store. Changes no other state of the engine.
+         * Requires that ball is moving.
+         * @param ball ball to predict, located at its position for its store time
+         */
+        void predict(Ball ball) {
+            this.lookahead = LOOKAHEAD_DISTANCE / ball.getVelocity().length();
+            if (arcGravity > 0) { // keep the arc close enough to the straight path that candidates cover it
+                this.lookahead = Math.min(this.lookahead, Math.sqrt(2*MAX_ARC_DEVIATION / arcGravity));
+            }
+            List<GameExpression> candidates = gadgets.candidates(ball, LOOKAHEAD_DISTANCE);
+            candidates.add(walls);
+            this.time = Double.MAX_VALUE/2;
+            this.gadget = null;
+            for (GameExpression candidate : candidates) {
+                // after a hit, scratch is the contact swapped out of the ball's slot, with an arc of its own
+                this.scratch.setArc(arcGravity, this.lookahead);
+                double collisionTime = candidate.timeUntilCollision(ball, this.scratch);
+                if (collisionTime < this.time && collisionTime > 0) {
+                    this.time = collisionTime;
+                    this.gadget = candidate;
+                    this.scratch = store.swapContact(ball.getSlot(), this.scratch);
+                }
+            }
+        }
+    }
+
+    /**
+     * Compute the time until ball collides with other, where ball is located at its position for simulation time
+     * now and other may not yet have been moved up to now.
+     * @param ball ball located at its position for time now
+     * @param other ball to test against
+     * @param now current simulation time
+     * @return time after now until the two balls collide, or Double.MAX_VALUE/2 if they do not
+     */
+    private double timeUntilBallCollision(Ball ball, Ball other, double now) {
+        // both balls fall with the same acceleration, so their motion relative to each other is a straight line
+        Circle otherCircle = other.getBallCircle();
+        double dt = now - this.store.time(other.getSlot());
+        Vect otherLocation = ArcPhysics.locationAt(otherCircle.getCenter(), other.getVelocity(), this.arcGravity, dt);
+        Vect otherVelocity = ArcPhysics.velocityAt(other.getVelocity(), this.arcGravity, dt);
+        double time = Physics.timeUntilBallBallCollision(ball.getBallCircle(), ball.getVelocity(), 
+                new Circle(otherLocation, otherCircle.getRadius()), otherVelocity);
+        return Double.isInfinite(time) ? Double.MAX_VALUE/2 : time;
+    }
+
+    /**
+     * Move ball along its current path from its last updated time to simulation time t, keeping it inside
+     * the walls of the board.
+     * @param ball ball to move
+     * @param t simulation time to move the ball to
+     */
+    private void moveTo(Ball ball, double t) {
+        this.store.moveTo(ball.getSlot(), t, this.width, this.height, this.arcGravity);
+    }
+}
@@ -0,0 +1,32 @@
+package flingball;
+
+/**
+ * An observer of the events of a SimulationEngine, called on the thread that steps the engine in the order the
+ * events are applied. A listener must not mutate the board.
+ */
+public interface SimulationListener {
+
+    /**
+     * Called when a ball collides with a gadget, a wall, or another ball.
+     * @param time simulation time of the collision, in seconds
+     * @param ball the ball that collided
+     * @param gadget the gadget, walls, or other ball that ball collided with
+     */
+    public void collision(double time, Ball ball, GameExpression gadget);
+
+    /**
+     * Called when a collision with trigger fires the action of target, just after the collision. The action itself
+     * is performed at the end of the step, after every collision of the step.
+     * @param time simulation time of the collision that fired the trigger, in seconds
+     * @param trigger the gadget that was triggered
+     * @param target the gadget whose action was fired
+     */
+    public void action(double time, GameExpression trigger, GameExpression target);
+
+    /**
+     * Called at the end of every step, once gravity and friction have been applied.
+     * @param time simulation time at the end of the step, in seconds
+     * @param dt length of the step, in seconds
+     */
+    public void step(double time, double dt);
+}
@@ -0,0 +1,139 @@
+package flingball;
+
+import java.io.Closeable;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs a simulation on its own thread in real time, waking once every fixed timestep, and publishes an immutable
+ * BoardFrame after every frame of steps through a lock-free TripleBuffer. A renderer on another thread, such as the
+ * Swing event dispatch thread, takes the newest frame whenever it draws, so drawing never waits for the physics and the
+ * physics never wait for drawing; the renderer can blend the last two frames it took to draw at any rate.
+ *
+ * Each frame advances the simulation by the real time that has passed since the last one, in substeps of at most a
+ * timestep, with SimulationEngine.advanceWithin(). If the simulation falls behind real time, as after a pause or
+ * when the machine is busy, it catches up only as far as a budget of real time per frame allows, and the time it
+ * could not simulate is dropped, so a board that is too slow to step in real time runs in slow motion rather than
+ * spiraling further behind. Overruns of the budget are counted in the metrics of the engine, if it has any.
+ */
+public class SimulationLoop implements Closeable {
+
+    /** Default budget of a frame, as a fraction of the real time of a timestep. */
+    public static final double DEFAULT_BUDGET = 0.8;
+
+    private final SimulationEngine engine;
+    private final BoardWatcher watcher;
+    private final TripleBuffer<BoardFrame> frames = new TripleBuffer<>();
+    private final Thread thread;
+    private final long budgetNanos;
+    private volatile boolean running = true;
+
+    // Abstraction function:
+    // AF(engine, watcher, frames, thread, budgetNanos, running) = a real-time loop that steps engine on thread while
+    // running, for at most budgetNanos nanoseconds per frame, applying changes from watcher (if it is not null)
+    // between frames, and whose newest frame is frames.latest()
+    //
+    // Rep invariant:
+    // - engine, frames, and thread are not null
+    // - budgetNanos >= 0
+    //
+    // Safety from rep exposure argument:
+    // - all fields are private, and only frames are returned, which are immutable
+    // - engine and watcher are shared with the client, who must not use engine while the loop is running
+    //
+    // Thread safety argument:
+    // - once start() is called, engine and watcher are only used by thread, until close() has joined it
+    // - frames are handed from thread to the single consumer through the TripleBuffer
+    // - running is volatile, so close() is seen by thread
+
+    private void checkRep() {
+        assert this.engine != null && this.frames != null && this.thread != null;
+        assert this.budgetNanos >= 0;
+    }
+
+    /**
+     * Make a loop that simulates engine in real time once started. A frame of engine as it is now is published
+     * at once, so that the board can be drawn before the first step.
+     * @param engine simulation to run; must not be used by the client until the loop is closed
+     * @param watcher watcher of the file of the board of engine whose changes to apply between steps, or null
+     */
+    public SimulationLoop(SimulationEngine engine, BoardWatcher watcher) {
+        this(engine, watcher, Math.round(DEFAULT_BUDGET * engine.getTimestep() * 1e9));
+    }
+
+    /**
+     * Make a loop that simulates engine in real time once started, spending at most budgetNanos of real time on
+     * the steps of each frame. A frame of engine as it is now is published at once, so that the board can be drawn
+     * before the first step.
+     * @param engine simulation to run; must not be used by the client until the loop is closed
+     * @param watcher watcher of the file of the board of engine whose changes to apply between steps, or null
+     * @param budgetNanos real time that the steps of one frame may take, in nanoseconds, must be >= 0; a frame
+     *        always takes at least one step
+     */
+    public SimulationLoop(SimulationEngine engine, BoardWatcher watcher, long budgetNanos) {
+        this.engine = engine;
+        this.watcher = watcher;
+        this.thread = new Thread(this::run, "SimulationLoop " + engine.getBoard().getName());
+        this.thread.setDaemon(true);
+        this.budgetNanos = budgetNanos;
+        this.frames.publish(BoardFrame.capture(engine));
+        checkRep();
+    }
+
+    /**
+     * Start simulating on the loop's thread. Must be called at most once.
+     */
+    public void start() {
+        this.thread.start();
+    }
+
+    /**
+     * Get the newest frame of the simulation. Must only be called by one consumer thread.
+     * @return the frame published after the latest step
+     */
+    public BoardFrame latestFrame() {
+        return this.frames.latest();
+    }
+
+    /**
+     * Advance the simulation by the real time that has passed whenever a timestep of it has, until closed.
+     */
+    private void run() {
+        final long stepNanos = Math.round(this.engine.getTimestep() * 1e9);
+        long next = System.nanoTime() + stepNanos;
+        while (this.running) {
+            long wait = next - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+                continue; // woken early, or closed
+            }
+            if (this.watcher != null) {
+                this.watcher.applyPending(this.engine);
+            }
+            // every timestep that is due is simulated, unless the budget runs out first and drops the rest
+            long due = -wait / stepNanos + 1;
+            this.engine.advanceWithin(due * this.engine.getTimestep(), this.budgetNanos);
+            next += due * stepNanos;
+            this.frames.publish(BoardFrame.capture(this.engine));
+        }
+    }
+
+    /**
+     * Stop simulating, and wait for the loop's thread to finish its current step. Afterwards the client may use
+     * the engine again.
+     */
+    @Override public void close() {
+        this.running = false;
+        LockSupport.unpark(this.thread);
+        boolean interrupted = false;
+        while (this.thread.isAlive()) {
+            try {
+                this.thread.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
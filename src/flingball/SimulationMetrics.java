@@ -0,0 +1,305 @@
+package flingball;
+
+import java.io.Closeable;
+import java.io.PrintStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Instrumentation of a running simulation: latency histograms of the phases of each step and of painting, counts
+ * of collisions by type of gadget and of triggers and actions, the number of balls in play and absorbed, and the
+ * frames whose steps overran their budget of real time, with the simulated time they dropped. A
+ * SimulationEngine records into the metrics set with setMetrics(), and a window records how long it takes to paint.
+ * Recording allocates nothing, so metrics can stay on for a whole run.
+ *
+ * The metrics can be registered with an MBeanServer as a SimulationMetricsMXBean, to be watched live in JConsole,
+ * and dumped as text, once with dump() or periodically with dumpEvery().
+ */
+public class SimulationMetrics implements SimulationMetricsMXBean {
+
+    /**
+     * A timed part of the simulation.
+     */
+    public enum Phase {
+        /** A whole step. */
+        STEP,
+        /** Predicting the next collisions of balls, in partitions in partitioned mode. */
+        PREDICTION,
+        /** Applying collisions and their effects, and performing triggered actions. */
+        RESOLUTION,
+        /** Moving every ball to the end of the step and applying gravity and friction. */
+        UPDATE,
+        /** Painting a frame of the board. */
+        PAINT
+    }
+
+    private static final String[] GADGET_TYPES = {
+        "SquareBumper", "CircleBumper", "TriangleBumper", "Absorber", "OuterWall", "Ball", "Other"
+    };
+
+    private final LatencyHistogram[] latencies = new LatencyHistogram[Phase.values().length];
+    private final AtomicLongArray collisions = new AtomicLongArray(GADGET_TYPES.length);
+    private final AtomicLong triggers = new AtomicLong();
+    private final AtomicLong actions = new AtomicLong();
+    private final AtomicLong overruns = new AtomicLong();
+    private final AtomicLong droppedNanos = new AtomicLong();
+    private volatile int activeBalls = 0;
+    private volatile int absorbedBalls = 0;
+
+    // Abstraction function:
+    // AF(latencies, collisions, triggers, actions, overruns, droppedNanos, activeBalls, absorbedBalls) = metrics of a
+    // simulation in which latencies[phase.ordinal()] holds the recorded latencies of phase, collisions[i] collisions
+    // with gadgets of type GADGET_TYPES[i] have been applied, triggers collisions have fired a trigger, actions
+    // triggered actions have been performed, overruns frames ran out of their budget and dropped droppedNanos
+    // nanoseconds of simulated time between them, and activeBalls balls were in play and absorbedBalls absorbed at
+    // the end of the last recorded step
+    //
+    // Rep invariant:
+    // - latencies has one non-null histogram per phase
+    // - every count >= 0
+    //
+    // Safety from rep exposure argument:
+    // - all fields are private and final or immutable, and only immutable summaries and copies of the counts
+    //   are returned
+    //
+    // Thread safety argument:
+    // - the histograms and counters are thread safe, and the ball counts are volatile, so one thread may record
+    //   the simulation and another its painting while any number of threads, such as JMX connections, read them
+    // - the ball counts of a step are written one after the other, so a reader may see one from a later step
+
+    private void checkRep() {
+        assert this.latencies.length == Phase.values().length;
+        assert this.triggers.get() >= 0 && this.actions.get() >= 0;
+        assert this.overruns.get() >= 0 && this.droppedNanos.get() >= 0;
+        assert this.activeBalls >= 0 && this.absorbedBalls >= 0;
+    }
+
+    /**
+     * Make metrics with nothing recorded.
+     */
+    public SimulationMetrics() {
+        for (int i = 0; i < this.latencies.length; i++) {
+            this.latencies[i] = new LatencyHistogram();
+        }
+        checkRep();
+    }
+
+    /**
+     * Record the latency of one phase.
+     * @param phase part of the simulation that was timed
+     * @param nanos how long it took, in nanoseconds
+     */
+    public void record(Phase phase, long nanos) {
+        this.latencies[phase.ordinal()].record(nanos);
+    }
+
+    /**
+     * Count a collision with a gadget.
+     * @param gadget gadget, walls, or ball that a ball collided with
+     */
+    public void collision(GameExpression gadget) {
+        this.collisions.incrementAndGet(typeIndex(gadget));
+    }
+
+    /**
+     * Count a collision that fired a trigger.
+     */
+    public void trigger() {
+        this.triggers.incrementAndGet();
+    }
+
+    /**
+     * Count a triggered action that was performed.
+     */
+    public void action() {
+        this.actions.incrementAndGet();
+    }
+
+    /**
+     * Count a frame whose steps ran out of their budget of real time.
+     * @param dropped simulated time that the frame left unsimulated, in seconds, must be >= 0
+     */
+    public void overrun(double dropped) {
+        this.overruns.incrementAndGet();
+        this.droppedNanos.addAndGet(Math.round(dropped * 1e9));
+        checkRep();
+    }
+
+    /**
+     * Record the balls of the board at the end of a step.
+     * @param active number of balls that are not absorbed, must be >= 0
+     * @param absorbed number of balls that are absorbed, must be >= 0
+     */
+    public void balls(int active, int absorbed) {
+        this.activeBalls = active;
+        this.absorbedBalls = absorbed;
+        checkRep();
+    }
+
+    /**
+     * @param gadget a gadget
+     * @return index in GADGET_TYPES of the type of gadget
+     */
+    private static int typeIndex(GameExpression gadget) {
+        if (gadget instanceof SquareBumper) {
+            return 0;
+        } else if (gadget instanceof CircleBumper) {
+            return 1;
+        } else if (gadget instanceof TriangleBumper) {
+            return 2;
+        } else if (gadget instanceof Absorber) {
+            return 3;
+        } else if (gadget instanceof OuterWall) {
+            return 4;
+        } else if (gadget instanceof Ball) {
+            return 5;
+        }
+        return GADGET_TYPES.length - 1;
+    }
+
+    /**
+     * @param phase part of the simulation
+     * @return the histogram of the latencies of phase, which the caller must not reset
+     */
+    public LatencyHistogram getLatency(Phase phase) {
+        return this.latencies[phase.ordinal()];
+    }
+
+    @Override public long getSteps() {
+        return getLatency(Phase.STEP).getCount();
+    }
+
+    @Override public LatencyHistogram.Summary getStepLatency() {
+        return getLatency(Phase.STEP).summarize();
+    }
+
+    @Override public LatencyHistogram.Summary getPredictionLatency() {
+        return getLatency(Phase.PREDICTION).summarize();
+    }
+
+    @Override public LatencyHistogram.Summary getResolutionLatency() {
+        return getLatency(Phase.RESOLUTION).summarize();
+    }
+
+    @Override public LatencyHistogram.Summary getUpdateLatency() {
+        return getLatency(Phase.UPDATE).summarize();
+    }
+
+    @Override public LatencyHistogram.Summary getPaintLatency() {
+        return getLatency(Phase.PAINT).summarize();
+    }
+
+    @Override public long getCollisions() {
+        long total = 0;
+        for (int i = 0; i < this.collisions.length(); i++) {
+            total += this.collisions.get(i);
+        }
+        return total;
+    }
+
+    @Override public Map<String, Long> getCollisionsByGadgetType() {
+        Map<String, Long> byType = new LinkedHashMap<>();
+        for (int i = 0; i < GADGET_TYPES.length; i++) {
+            byType.put(GADGET_TYPES[i], this.collisions.get(i));
+        }
+        return byType;
+    }
+
+    @Override public long getTriggers() {
+        return this.triggers.get();
+    }
+
+    @Override public long getActions() {
+        return this.actions.get();
+    }
+
+    @Override public long getBudgetOverruns() {
+        return this.overruns.get();
+    }
+
+    @Override public double getDroppedTime() {
+        return this.droppedNanos.get() / 1e9;
+    }
+
+    @Override public int getActiveBalls() {
+        return this.activeBalls;
+    }
+
+    @Override public int getAbsorbedBalls() {
+        return this.absorbedBalls;
+    }
+
+    @Override public void reset() {
+        for (LatencyHistogram histogram : this.latencies) {
+            histogram.reset();
+        }
+        for (int i = 0; i < this.collisions.length(); i++) {
+            this.collisions.set(i, 0);
+        }
+        this.triggers.set(0);
+        this.actions.set(0);
+        this.overruns.set(0);
+        this.droppedNanos.set(0);
+        checkRep();
+    }
+
+    /**
+     * Register these metrics with a JMX server, named after a board.
+     * @param server server to register with, such as ManagementFactory.getPlatformMBeanServer()
+     * @param board name of the board whose simulation these metrics record
+     * @return the name the metrics were registered under, of the form flingball:type=SimulationMetrics,board=B
+     * @throws JMException if the metrics cannot be registered, as when metrics for a board of the same name
+     *         already are
+     */
+    public ObjectName register(MBeanServer server, String board) throws JMException {
+        ObjectName name = new ObjectName("flingball:type=SimulationMetrics,board=" + ObjectName.quote(board));
+        server.registerMBean(this, name);
+        return name;
+    }
+
+    /**
+     * Describe the metrics as text, one line per phase followed by the counts and the budget overruns.
+     * @return a multi-line text dump of the metrics, with latencies in microseconds
+     */
+    public String dump() {
+        StringBuilder text = new StringBuilder();
+        for (Phase phase : Phase.values()) {
+            text.append(String.format("%-10s %s%n", phase.name().toLowerCase(), getLatency(phase).summarize()));
+        }
+        text.append("collisions ").append(getCollisions());
+        for (Map.Entry<String, Long> entry : getCollisionsByGadgetType().entrySet()) {
+            if (entry.getValue() > 0) {
+                text.append(' ').append(entry.getKey()).append('=').append(entry.getValue());
+            }
+        }
+        text.append(String.format("%ntriggers %d actions %d%nballs active %d absorbed %d%n", getTriggers(),
+                getActions(), getActiveBalls(), getAbsorbedBalls()));
+        text.append(String.format("overruns %d dropped %.3fs%n", getBudgetOverruns(), getDroppedTime()));
+        return text.toString();
+    }
+
+    /**
+     * Print dump() to out every period milliseconds on a daemon thread, until the returned handle is closed.
+     * @param period milliseconds between dumps, must be > 0
+     * @param out stream to print the dumps to
+     * @return handle that stops the dumps when closed
+     */
+    public Closeable dumpEvery(long period, PrintStream out) {
+        ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "SimulationMetrics dump");
+            thread.setDaemon(true);
+            return thread;
+        });
+        timer.scheduleAtFixedRate(() -> out.print(dump()), period, period, TimeUnit.MILLISECONDS);
+        return timer::shutdownNow;
+    }
+}
@@ -0,0 +1,85 @@
+package flingball;
+
+import java.util.Map;
+
+/**
+ * The management interface of SimulationMetrics, through which JMX clients such as JConsole read the timing and
+ * counts of a running simulation. Latencies are in nanoseconds.
+ */
+public interface SimulationMetricsMXBean {
+
+    /**
+     * @return number of steps recorded
+     */
+    public long getSteps();
+
+    /**
+     * @return latencies of whole steps
+     */
+    public LatencyHistogram.Summary getStepLatency();
+
+    /**
+     * @return latencies of predicting collisions, per step
+     */
+    public LatencyHistogram.Summary getPredictionLatency();
+
+    /**
+     * @return latencies of resolving collisions and performing triggered actions, per step
+     */
+    public LatencyHistogram.Summary getResolutionLatency();
+
+    /**
+     * @return latencies of moving balls to the end of the step and applying gravity and friction, per step
+     */
+    public LatencyHistogram.Summary getUpdateLatency();
+
+    /**
+     * @return latencies of painting the board, per frame
+     */
+    public LatencyHistogram.Summary getPaintLatency();
+
+    /**
+     * @return number of collisions of balls with gadgets, walls, and each other
+     */
+    public long getCollisions();
+
+    /**
+     * @return number of collisions with each type of gadget, by the simple name of its class
+     */
+    public Map<String, Long> getCollisionsByGadgetType();
+
+    /**
+     * @return number of collisions that fired a trigger
+     */
+    public long getTriggers();
+
+    /**
+     * @return number of triggered actions performed
+     */
+    public long getActions();
+
+    /**
+     * @return number of frames whose steps ran out of their budget of real time, and so slowed the simulation
+     */
+    public long getBudgetOverruns();
+
+    /**
+     * @return simulated time dropped by frames that ran out of their budget, in seconds
+     */
+    public double getDroppedTime();
+
+    /**
+     * @return number of balls that were not absorbed at the end of the last step
+     */
+    public int getActiveBalls();
+
+    /**
+     * @return number of balls that were absorbed at the end of the last step
+     */
+    public int getAbsorbedBalls();
+
+    /**
+     * Forget every latency and count recorded so far.
+     */
+    public void reset();
+}
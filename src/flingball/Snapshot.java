@@ -0,0 +1,194 @@
+package flingball;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Saves and restores the mutable state of a running simulation as a versioned binary snapshot, so that a long
+ * run can be checkpointed and resumed later on a board parsed from the same .fb file. A snapshot holds the
+ * simulated time, the location, velocity, and absorbed state of every ball, and the queue, last fired ball, and
+ * burst in progress of every absorber; everything else about a board is fixed by its file. Predicted collisions
+ * are not saved, since the engine recomputes them from the restored state.
+ *
+ * All values are big-endian. A snapshot is:
+ * <pre>
+ *   int MAGIC, short VERSION, int name length, UTF-8 board name, int ball count, int absorber count,
+ *   double simulated time,
+ *   for each ball in slot order: double x, double y, double vx, double vy, byte 1 if absorbed or 0 if not,
+ *   for each absorber in order of name: int number of balls still to fire in its burst, int slot of the ball it
+ *       fired last if it has not left the absorber or -1, int number of absorbed balls, int slot of each absorbed
+ *       ball in the order they will be fired
+ * </pre>
+ * Snapshots are written and read through memory-mapped files in a single pass.
+ */
+public class Snapshot {
+
+    private static final int MAGIC = 0x46425353; // "FBSS"
+    private static final short VERSION = 2; // 2 replaced the triggerable flag of an absorber with its burst
+    private static final int NO_BALL = -1;
+    private static final int BALL_SIZE = 4*8 + 1;
+
+    private Snapshot() {
+        // nobody should be constructing a Snapshot
+    }
+
+    /**
+     * Save the state of the simulation to a snapshot at path, replacing any file already there. The file is only
+     * replaced once the snapshot is complete, so an interrupted save leaves the previous snapshot intact.
+     * Must be called between steps.
+     * @param engine simulation to save
+     * @param path file to write the snapshot to
+     * @throws IOException if the snapshot cannot be written
+     */
+    public static void save(SimulationEngine engine, Path path) throws IOException {
+        Board board = engine.getBoard();
+        BallStore store = board.getBallStore();
+        List<Absorber> absorbers = absorbers(board);
+        byte[] name = board.getName().getBytes(StandardCharsets.UTF_8);
+        long size = 4 + 2 + 4 + name.length + 4 + 4 + 8 + (long) store.size()*BALL_SIZE;
+        for (Absorber absorber : absorbers) {
+            size += 4 + 4 + 4 + 4*absorber.getAbsorbedBalls().size();
+        }
+
+        Path partial = path.resolveSibling(path.getFileName() + ".partial");
+        try (FileChannel channel = FileChannel.open(partial, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.putInt(MAGIC).putShort(VERSION).putInt(name.length).put(name);
+            buffer.putInt(store.size()).putInt(absorbers.size()).putDouble(engine.getTime());
+            for (int slot = 0; slot < store.size(); slot++) {
+                buffer.putDouble(store.x(slot)).putDouble(store.y(slot));
+                buffer.putDouble(store.vx(slot)).putDouble(store.vy(slot));
+                buffer.put((byte) (store.absorbed(slot) ? 1 : 0));
+            }
+            for (Absorber absorber : absorbers) {
+                List<Ball> absorbed = absorber.getAbsorbedBalls();
+                buffer.putInt(absorber.getBurstLeft());
+                buffer.putInt(absorber.getReleased() == null ? NO_BALL : absorber.getReleased().getSlot());
+                buffer.putInt(absorbed.size());
+                for (Ball ball : absorbed) {
+                    buffer.putInt(ball.getSlot());
+                }
+            }
+        }
+        Files.move(partial, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Restore the state of the simulation from a snapshot at path, so that it continues from the saved time.
+     * Must be called between steps.
+     * @param engine simulation of a board parsed from the same file as the saved one; its balls and absorbers
+     *        are mutated to the saved state
+     * @param path snapshot written by save()
+     * @throws IOException if the snapshot cannot be read
+     * @throws IllegalArgumentException if path does not hold a snapshot of a board like the board of engine, in
+     *         this version of the format; the simulation is unchanged in that case
+     */
+    public static void restore(SimulationEngine engine, Path path) throws IOException {
+        Board board = engine.getBoard();
+        BallStore store = board.getBallStore();
+        List<Absorber> absorbers = absorbers(board);
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        if (buffer.remaining() < 10 || buffer.getInt() != MAGIC) {
+            throw new IllegalArgumentException("not a flingball snapshot");
+        }
+        if (buffer.getShort() != VERSION) {
+            throw new IllegalArgumentException("unsupported snapshot version");
+        }
+        int nameLength = buffer.getInt();
+        if (nameLength < 0 || buffer.remaining() < nameLength + 16) {
+            throw new IllegalArgumentException("truncated snapshot");
+        }
+        byte[] name = new byte[nameLength];
+        buffer.get(name);
+        String savedName = new String(name, StandardCharsets.UTF_8);
+        int ballCount = buffer.getInt();
+        int absorberCount = buffer.getInt();
+        if (!savedName.equals(board.getName()) || ballCount != store.size() || absorberCount != absorbers.size()) {
+            throw new IllegalArgumentException("snapshot of board " + savedName + " with " + ballCount + " balls and "
+                    + absorberCount + " absorbers does not match board " + board.getName());
+        }
+        double time = buffer.getDouble();
+        if (buffer.remaining() < (long) ballCount*BALL_SIZE) {
+            throw new IllegalArgumentException("truncated snapshot");
+        }
+        int ballsStart = buffer.position();
+
+        // read and check the absorbers before changing anything, so that a bad snapshot leaves the board alone
+        buffer.position(ballsStart + ballCount*BALL_SIZE);
+        List<List<Ball>> queues = new ArrayList<>();
+        List<Ball> released = new ArrayList<>();
+        List<Integer> burstsLeft = new ArrayList<>();
+        for (int i = 0; i < absorberCount; i++) {
+            if (buffer.remaining() < 12) {
+                throw new IllegalArgumentException("truncated snapshot");
+            }
+            int burstLeft = buffer.getInt();
+            int releasedSlot = buffer.getInt();
+            if (burstLeft < 0 || burstLeft >= absorbers.get(i).getBurst()
+                    || (releasedSlot == NO_BALL && burstLeft > 0)) {
+                throw new IllegalArgumentException("bad burst of absorber " + absorbers.get(i).getName());
+            }
+            burstsLeft.add(burstLeft);
+            released.add(releasedSlot == NO_BALL ? null : ball(store, releasedSlot));
+            int queueLength = buffer.getInt();
+            if (queueLength < 0 || buffer.remaining() < 4L*queueLength) {
+                throw new IllegalArgumentException("truncated snapshot");
+            }
+            List<Ball> queue = new ArrayList<>();
+            for (int j = 0; j < queueLength; j++) {
+                queue.add(ball(store, buffer.getInt()));
+            }
+            queues.add(queue);
+        }
+
+        buffer.position(ballsStart);
+        for (int slot = 0; slot < ballCount; slot++) {
+            store.setLocation(slot, buffer.getDouble(), buffer.getDouble());
+            store.setVelocity(slot, buffer.getDouble(), buffer.getDouble());
+            store.setAbsorbed(slot, buffer.get() != 0);
+        }
+        for (int i = 0; i < absorberCount; i++) {
+            absorbers.get(i).restore(queues.get(i), released.get(i), burstsLeft.get(i));
+        }
+        engine.restart(time);
+    }
+
+    /**
+     * @return the absorbers of board, in order of name
+     */
+    private static List<Absorber> absorbers(Board board) {
+        List<Absorber> absorbers = new ArrayList<>();
+        for (GameExpression gadget : board.getGadgets()) {
+            if (gadget instanceof Absorber) {
+                absorbers.add((Absorber) gadget);
+            }
+        }
+        absorbers.sort(Comparator.comparing(Absorber::getName));
+        return absorbers;
+    }
+
+    /**
+     * @return the ball in slot of store
+     * @throws IllegalArgumentException if store has no such slot
+     */
+    private static Ball ball(BallStore store, int slot) {
+        if (slot < 0 || slot >= store.size()) {
+            throw new IllegalArgumentException("snapshot refers to a ball that does not exist");
+        }
+        return store.ball(slot);
+    }
+}
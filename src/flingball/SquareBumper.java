@@ -1,9 +1,11 @@
 package flingball;
 
 import java.awt.Color;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 import physics.Circle;
@@ -20,41 +22,41 @@ import physics.Vect;
  * references to other mutable objects and changing them accidentally) in the following strategies:
  *   - all getter methods that involve mutable objects make defensive copies of their inputs
  *   - all setter methods that involve returning mutable objects make defensive copies of the class's object
- *   - the mutable set trigger operation can only be performed once in the lifetime of the game 
- *     (for 1 object to trigger another object).
- * This is safe from threading and race conditions because our board parser requires as a precondition that
- * no object can set trigger to more than one object. Thus, since board and simulation handle objects one at a time,
- * we will not encounter any threading problems in this iteration. After discussion with TAs and Professor Goldman,
- * we will consider changing our design to encompass an immutable Trigger class that makes an immutable reference to the
- * 2 objects involved (1 cause, 1 effect) for the next iteration.
+ *   - the mutable set trigger operation only adds targets, each at most once, until they are all cleared
+ *     (for 1 object to trigger one or more other objects).
+ * A SimulationEngine does not call trigger() inside a collision: it queues the actions of the targets and performs
+ * them once the collisions of the step have been applied, on the thread that steps the board.
  */
 public class SquareBumper implements GameExpression {
     
     private final String name;
     private final Set<LineSegment> sides;
     private final Set<Vect> endpoints;
+    private final Set<Circle> corners;
     private final Vect origin;
     private final int sideLength = 1;
-    private GameExpression triggerTarget = null;
+    private final List<GameExpression> triggerTargets = new ArrayList<>();
     private final Color color = Color.red;
     
     // Abstraction function:
-    // AF(name, sides, endpoints, origin, sideLength, triggerTarget, color) = a square bumper gadget with
+    // AF(name, sides, endpoints, corners, origin, sideLength, triggerTargets, color) = a square bumper gadget with
     // the unique identifier name, sides corresponding to the LineSegments in sides, which are of length sideLength,
     // and have endpoints corresponding to the Vects in endpoints. The bumper is spatially located on the flingball 
-    // board in the bounding box whose top left corner is at origin. The bumper triggers the gadget triggerTarget 
-    // if it has one, otherwise it does nothing when hit by a ball. It has the color color.
+    // board in the bounding box whose top left corner is at origin. The bumper triggers the gadgets in triggerTargets 
+    // in order, and does nothing else when hit by a ball. It has the color color.
     // 
     // Rep invariant:
     // - name is not the empty string
     // - sides is of size 4
     // - endpoints is of size 4
+    // - corners holds a zero-radius circle at each of the Vects in endpoints
     // - the endpoints of the LineSegments in size all correspond to Vects in endpoints
-    // - origin is on the board
+    // - origin has non-negative coordinates (the board the gadget is placed on checks that it fits within the
+    //   walls)
     //
     // Safety from rep exposure argument:
-    // - all instance fields are private and final, apart from triggerTarget, which must be resettable to compatible
-    //   with our parser
+    // - all instance fields are private and final; triggerTargets must stay mutable so that targets can be added
+    //   and cleared, but only an unmodifiable view of it is returned
     // - name and origin are immutable, so public getter methods cannot mutate them
     // - getter method for sides returns an unmodifiable view of that set
     // - getter method for location returns defensive copy of location
@@ -63,8 +65,8 @@ public class SquareBumper implements GameExpression {
         assert !this.name.equals("");
         assert this.sides.size()==4;
         assert this.endpoints.size()==4;
-        assert 0 <= this.origin.x() && this.origin.x() <= 20;
-        assert 0 <= this.origin.y() && this.origin.y() <= 20;
+        assert this.corners.size()==this.endpoints.size();
+        assert 0 <= this.origin.x() && 0 <= this.origin.y();
         for (LineSegment l : this.sides) {
             assert this.endpoints.contains(l.p1());
             assert this.endpoints.contains(l.p2());
@@ -92,45 +94,39 @@ public class SquareBumper implements GameExpression {
             this.endpoints.add(side.p1());
             this.endpoints.add(side.p2());
         }
+        this.corners = new HashSet<>();
+        for (Vect endpoint : this.endpoints) { // built once, rather than for every collision test
+            this.corners.add(new Circle(endpoint, 0));
+        }
         checkRep();
     }
     
     @Override public double timeUntilCollision(Ball ball) {
-        double minTime = Double.MAX_VALUE/2;
-        for (LineSegment side : this.sides) {
-            double collisionTime = Physics.timeUntilWallCollision(side, ball.getBallCircle(), ball.getVelocity());
-            if (collisionTime < minTime) {
-                minTime = collisionTime;
-            }
-        }
-        for (Vect endpoint : this.endpoints) {
-            double collisionTime = Physics.timeUntilCircleCollision(new Circle(endpoint,0), ball.getBallCircle(), ball.getVelocity());
-            if (collisionTime < minTime) {
-                minTime = collisionTime;
-            }
-        }
-        return minTime;
+        return timeUntilCollision(ball, new Contact());
     }
     
-    @Override public void collision(Ball ball) {
-        System.out.println(ball.getName() + " collided with square bumper " + this.getName());
-        double minTime = Double.MAX_VALUE/2;
-        Vect reflectionVelocity = null;
+    @Override public double timeUntilCollision(Ball ball, Contact contact) {
+        Circle ballCircle = ball.getBallCircle();
+        Vect velocity = ball.getVelocity();
+        contact.clear();
         for (LineSegment side : this.sides) {
-            double collisionTime = Physics.timeUntilWallCollision(side, ball.getBallCircle(), ball.getVelocity());
-            if (collisionTime < minTime) {
-                minTime = collisionTime;
-                reflectionVelocity = Physics.reflectWall(side, ball.getVelocity());
-            }
+            contact.testSide(side, ballCircle, velocity);
         }
-        for (Vect endpoint : this.endpoints) {
-            double collisionTime = Physics.timeUntilCircleCollision(new Circle(endpoint,0), ball.getBallCircle(), ball.getVelocity());
-            if (collisionTime < minTime) {
-                minTime = collisionTime;
-                reflectionVelocity = Physics.reflectCircle(endpoint, ball.getLocation(), ball.getVelocity());
-            }
+        for (Circle corner : this.corners) {
+            contact.testCorner(corner, ballCircle, velocity);
         }
-        ball.setVelocity(reflectionVelocity);
+        return contact.resolve(ballCircle, velocity);
+    }
+
+    @Override public void collision(Ball ball) {
+        Contact contact = new Contact();
+        timeUntilCollision(ball, contact);
+        collision(ball, contact);
+    }
+    
+    @Override public void collision(Ball ball, Contact contact) {
+        localCollision(ball, contact);
+        collisionEffects(ball);
         trigger();
     }
 
@@ -143,20 +139,33 @@ public class SquareBumper implements GameExpression {
     }
     
     @Override public boolean trigger() {
-        if (this.triggerTarget != null) {
-            this.triggerTarget.action();
+        if (!this.triggerTargets.isEmpty()) {
+            for (GameExpression target : this.triggerTargets) {
+                target.action();
+            }
             return true;
         }
         return false;
     }
     
     @Override public boolean setTrigger(GameExpression target) {
-        if (this.triggerTarget == null) {
-            this.triggerTarget = target;
-            checkRep();
-            return true;
+        for (GameExpression existing : this.triggerTargets) {
+            if (existing == target) { // by identity, since equals() assumes gadgets of the same type
+                return false;
+            }
         }
-        return false; 
+        this.triggerTargets.add(target);
+        checkRep();
+        return true;
+    }
+
+    @Override public List<GameExpression> getTriggerTargets() {
+        return Collections.unmodifiableList(this.triggerTargets);
+    }
+
+    @Override public void clearTrigger() {
+        this.triggerTargets.clear();
+        checkRep();
     }
     
     @Override public boolean equals(Object that) {
@@ -0,0 +1,586 @@
+package flingball;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashSet;
+import java.util.Set;
+
+import edu.mit.eecs.parserlib.UnableToParseException;
+
+/**
+ * A hand-written parser for the flingball board language of Board.g, which reads a board in a single pass over a
+ * stream of characters. Every construct of the language can be told apart by its next character, so the parser
+ * never backtracks, and it builds each ball and gadget as soon as its line has been read instead of first
+ * building a parse tree. Errors are reported with the line and column where they were found.
+ *
+ * It accepts the same language as BoardParser, which remains as a reference implementation: spaces, tabs,
+ * carriage returns, and comments (from # up to and including the end of the line) may appear between any two
+ * tokens; each board line ends with one or more newlines; and the file is read as if it ended with a newline.
+ */
+public class StreamingBoardParser {
+
+    private static final int EOF = -1;
+    private static final double DEFAULT_GRAVITY = 25.0;
+    private static final double DEFAULT_FRICTION = 0.025;
+
+    // which lines of a board may still come, since balls come before gadgets, which come before actions
+    private static final int BALLS = 0;
+    private static final int GADGETS = 1;
+    private static final int ACTIONS = 2;
+
+    private final Reader reader;
+    private int next;
+    private int line = 1;
+    private int column = 1;
+    private boolean endsWithNewline = false;
+
+    private int width = OuterWall.DEFAULT_SIZE;
+    private int height = OuterWall.DEFAULT_SIZE;
+    private final SymbolTable symbols = new SymbolTable();
+    private final Set<GameExpression> gadgets = new HashSet<>();
+    private final Set<GameExpression> balls = new HashSet<>();
+
+    // Abstraction function:
+    // AF(reader, next, line, column, endsWithNewline, width, height, symbols, gadgets, balls) = a parse in progress
+    // of the characters next followed by the rest of reader (or by a newline, if reader is exhausted and
+    // endsWithNewline is false), where next is at the given line and column of the input; the board being read is
+    // width by height L, the lines read so far have made the balls in balls and the gadgets in gadgets, and
+    // symbols gives each of them an id
+    //
+    // Rep invariant:
+    // - line >= 1, column >= 1
+    // - width > 0, height > 0
+    // - every ball in balls and gadget in gadgets fits on a board of width by height
+    // - symbols defines exactly the balls in balls and the gadgets in gadgets
+    //
+    // Safety from rep exposure argument:
+    // - all fields are private, and instances never leave this class
+
+    private void checkRep() {
+        assert this.line >= 1 && this.column >= 1;
+        assert this.width > 0 && this.height > 0;
+        assert this.symbols.size() == this.balls.size() + this.gadgets.size();
+    }
+
+    private StreamingBoardParser(Reader reader) throws IOException {
+        this.reader = reader instanceof BufferedReader ? reader : new BufferedReader(reader);
+        this.next = read();
+        checkRep();
+    }
+
+    /**
+     * Parse a board file.
+     * @param file file containing a board in the language of Board.g, encoded in UTF-8
+     * @return the board described by file
+     * @throws IOException if file cannot be read
+     * @throws UnableToParseException if file is not a valid board, with the line and column of the error
+     */
+    public static Board parse(File file) throws IOException, UnableToParseException {
+        try (Reader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            return parse(reader);
+        }
+    }
+
+    /**
+     * Parse a board from a channel, reading it to the end. Does not close the channel.
+     * @param channel channel containing a board in the language of Board.g, encoded in UTF-8
+     * @return the board described by channel
+     * @throws IOException if channel cannot be read
+     * @throws UnableToParseException if the input is not a valid board, with the line and column of the error
+     */
+    public static Board parse(ReadableByteChannel channel) throws IOException, UnableToParseException {
+        return parse(Channels.newReader(channel, StandardCharsets.UTF_8.newDecoder(), -1));
+    }
+
+    /**
+     * Parse a board from a reader, reading it to the end. Does not close the reader.
+     * @param reader reader containing a board in the language of Board.g
+     * @return the board described by reader
+     * @throws IOException if reader cannot be read
+     * @throws UnableToParseException if the input is not a valid board, with the line and column of the error
+     */
+    public static Board parse(Reader reader) throws IOException, UnableToParseException {
+        return new StreamingBoardParser(reader).board();
+    }
+
+    /**
+     * Read the next character of input, supplying a final newline if the input does not end with one.
+     */
+    private int read() throws IOException {
+        int c = this.reader.read();
+        if (c == EOF && !this.endsWithNewline) {
+            this.endsWithNewline = true;
+            return '\n';
+        }
+        this.endsWithNewline = c == '\n';
+        return c;
+    }
+
+    /**
+     * Consume the next character.
+     */
+    private void advance() throws IOException {
+        if (this.next == '\n') {
+            this.line++;
+            this.column = 1;
+        } else {
+            this.column++;
+        }
+        this.next = read();
+    }
+
+    private UnableToParseException error(String message) {
+        return error(this.line, this.column, message);
+    }
+
+    private static UnableToParseException error(int line, int column, String message) {
+        return new UnableToParseException("line " + line + ", column " + column + ": " + message);
+    }
+
+    private static String describe(int c) {
+        return c == EOF ? "end of input" : c == '\n' ? "end of line" : "'" + (char) c + "'";
+    }
+
+    /**
+     * Skip spaces, tabs, carriage returns, and comments.
+     */
+    private void skip() throws IOException {
+        while (true) {
+            if (this.next == ' ' || this.next == '\t' || this.next == '\r') {
+                advance();
+            } else if (this.next == '#') {
+                while (this.next != '\n' && this.next != EOF) {
+                    advance();
+                }
+                if (this.next == '\n') {
+                    advance(); // a comment includes the end of its line
+                }
+            } else {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Skip to the next token, and consume it if it is the given literal.
+     * @throws UnableToParseException if the input does not continue with literal
+     */
+    private void expect(String literal) throws IOException, UnableToParseException {
+        skip();
+        int startLine = this.line;
+        int startColumn = this.column;
+        for (int i = 0; i < literal.length(); i++) {
+            if (this.next != literal.charAt(i)) {
+                throw error(startLine, startColumn, "expected '" + literal + "'");
+            }
+            advance();
+        }
+    }
+
+    /**
+     * Skip to the next token, and consume it if it is a NAME.
+     * @return the name
+     */
+    private String name() throws IOException, UnableToParseException {
+        skip();
+        if (!isLetter(this.next)) {
+            throw error("expected a name but found " + describe(this.next));
+        }
+        StringBuilder name = new StringBuilder();
+        while (isLetter(this.next) || isDigit(this.next)) {
+            name.append((char) this.next);
+            advance();
+        }
+        return name.toString();
+    }
+
+    /**
+     * Skip to the next token, and consume it if it is an INTEGER.
+     * @return the value of the integer
+     */
+    private int integer() throws IOException, UnableToParseException {
+        skip();
+        int startLine = this.line;
+        int startColumn = this.column;
+        StringBuilder digits = new StringBuilder();
+        while (isDigit(this.next)) {
+            digits.append((char) this.next);
+            advance();
+        }
+        if (digits.length() == 0) {
+            throw error("expected an integer but found " + describe(this.next));
+        }
+        try {
+            return Integer.parseInt(digits.toString());
+        } catch (NumberFormatException e) {
+            throw error(startLine, startColumn, "integer " + digits + " is too large");
+        }
+    }
+
+    /**
+     * Skip to the next token, and consume it if it is a run of digits.
+     * @return the orientation the digits spell, if they are exactly one of 0, 90, 180, or 270; otherwise -1, as for
+     *         a leading zero or any other angle
+     */
+    private int orientation() throws IOException {
+        skip();
+        StringBuilder digits = new StringBuilder();
+        while (isDigit(this.next)) {
+            digits.append((char) this.next);
+            advance();
+        }
+        switch (digits.toString()) {
+        case "0":
+            return 0;
+        case "90":
+            return 90;
+        case "180":
+            return 180;
+        case "270":
+            return 270;
+        default:
+            return -1;
+        }
+    }
+
+    /**
+     * Skip to the next token, and consume it if it is a FLOAT.
+     * @return the value of the number
+     */
+    private double number() throws IOException, UnableToParseException {
+        skip();
+        StringBuilder number = new StringBuilder();
+        if (this.next == '-') {
+            number.append('-');
+            advance();
+        }
+        boolean hasDigits = false;
+        while (isDigit(this.next)) {
+            number.append((char) this.next);
+            advance();
+            hasDigits = true;
+        }
+        if (this.next == '.') {
+            number.append('.');
+            advance();
+            while (isDigit(this.next)) {
+                number.append((char) this.next);
+                advance();
+                hasDigits = true;
+            }
+        }
+        if (!hasDigits) {
+            throw error("expected a number but found " + describe(this.next));
+        }
+        return Double.parseDouble(number.toString());
+    }
+
+    /**
+     * Consume the end of a line, which is one or more newlines, possibly separated by anything skip() skips.
+     */
+    private void endOfLine() throws IOException, UnableToParseException {
+        skip();
+        if (this.next != '\n') {
+            throw error("expected end of line but found " + describe(this.next));
+        }
+        while (this.next == '\n') {
+            advance();
+            skip();
+        }
+    }
+
+    private static boolean isLetter(int c) {
+        return (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || c == '_';
+    }
+
+    private static boolean isDigit(int c) {
+        return c >= '0' && c <= '9';
+    }
+
+    /**
+     * Give a new ball or gadget the next id.
+     * @throws UnableToParseException if its name is already taken
+     */
+    private void define(GameExpression expression, int line, int column) throws UnableToParseException {
+        if (this.symbols.id(expression.getName()) != SymbolTable.UNDEFINED) {
+            throw error(line, column, "name " + expression.getName() + " is already used");
+        }
+        this.symbols.define(expression);
+    }
+
+    /**
+     * Skip to the next token, and consume it if it is the NAME of a gadget.
+     * @return the gadget
+     */
+    private GameExpression gadgetName() throws IOException, UnableToParseException {
+        skip();
+        int startLine = this.line;
+        int startColumn = this.column;
+        GameExpression gadget = this.symbols.lookup(name());
+        if (gadget == null || gadget instanceof Ball) {
+            throw error(startLine, startColumn, "no gadget with this name");
+        }
+        return gadget;
+    }
+
+    /**
+     * Parse the whole input as a board.
+     */
+    private Board board() throws IOException, UnableToParseException {
+        expect("board");
+        expect("name");
+        expect("=");
+        String name = name();
+        double gravity = DEFAULT_GRAVITY;
+        double friction1 = DEFAULT_FRICTION;
+        double friction2 = DEFAULT_FRICTION;
+        skip();
+        if (this.next == 'w') {
+            this.width = boardSize("width");
+            skip();
+        }
+        if (this.next == 'h') {
+            this.height = boardSize("height");
+            skip();
+        }
+        if (this.next == 'g') {
+            expect("gravity");
+            expect("=");
+            gravity = number();
+            skip();
+        }
+        if (this.next == 'f') {
+            skip();
+            int keyLine = this.line;
+            int keyColumn = this.column;
+            int coefficient = frictionKey();
+            if (coefficient == 1) {
+                expect("=");
+                friction1 = number();
+                skip();
+                if (this.next == 'f') {
+                    keyLine = this.line;
+                    keyColumn = this.column;
+                    coefficient = frictionKey();
+                    if (coefficient != 2) {
+                        throw error(keyLine, keyColumn, "expected 'friction2'");
+                    }
+                }
+            }
+            if (coefficient == 2) {
+                expect("=");
+                friction2 = number();
+            }
+        }
+        endOfLine();
+
+        int section = BALLS;
+        while (this.next != EOF) {
+            int startLine = this.line;
+            int startColumn = this.column;
+            int lineSection = this.next == 'b' ? BALLS : this.next == 'f' ? ACTIONS : GADGETS;
+            if (lineSection < section) {
+                throw error(lineSection == BALLS ? "balls must come before gadgets and actions"
+                        : "gadgets must come before actions");
+            }
+            section = lineSection;
+            switch (this.next) {
+            case 'b':
+                ball(startLine, startColumn);
+                break;
+            case 's':
+            case 'c':
+            case 't':
+            case 'a':
+                gadget(startLine, startColumn);
+                break;
+            case 'f':
+                action();
+                break;
+            default:
+                throw error("expected a ball, gadget, or action but found " + describe(this.next));
+            }
+            endOfLine();
+        }
+        checkRep();
+        return new Board(name, this.width, this.height, gravity, friction1, friction2, this.gadgets, this.balls);
+    }
+
+    /**
+     * Skip to the next token, and consume it if it is the literal friction1 or friction2, with nothing between the
+     * word and its digit.
+     * @return 1 or 2, the coefficient of friction that the literal names
+     * @throws UnableToParseException if the input does not continue with either literal
+     */
+    private int frictionKey() throws IOException, UnableToParseException {
+        skip();
+        int startLine = this.line;
+        int startColumn = this.column;
+        expect("friction");
+        if (this.next != '1' && this.next != '2') {
+            throw error(startLine, startColumn, "expected 'friction1' or 'friction2'");
+        }
+        int coefficient = this.next - '0';
+        advance();
+        return coefficient;
+    }
+
+    /**
+     * Parse a "width = INTEGER" or "height = INTEGER" pair of a board.
+     * @param dimension "width" or "height"
+     * @return the integer
+     */
+    private int boardSize(String dimension) throws IOException, UnableToParseException {
+        expect(dimension);
+        expect("=");
+        skip();
+        int sizeLine = this.line;
+        int sizeColumn = this.column;
+        int size = integer();
+        if (size == 0) {
+            throw error(sizeLine, sizeColumn, "board " + dimension + " must be positive");
+        }
+        return size;
+    }
+
+    /**
+     * Check that a new ball or gadget fits on the board.
+     * @throws UnableToParseException if it crosses the bottom or right wall
+     */
+    private void checkFits(GameExpression expression, int line, int column) throws UnableToParseException {
+        if (!Board.fits(expression, this.width, this.height)) {
+            throw error(line, column, expression.getName() + " does not fit on the board");
+        }
+    }
+
+    /**
+     * Parse a ball line, up to its end of line.
+     */
+    private void ball(int line, int column) throws IOException, UnableToParseException {
+        expect("ball");
+        expect("name");
+        expect("=");
+        String name = name();
+        expect("x=");
+        double x = number();
+        expect("y=");
+        double y = number();
+        expect("xVelocity=");
+        double xVelocity = number();
+        expect("yVelocity=");
+        double yVelocity = number();
+        Ball ball = new Ball(name, x, y, xVelocity, yVelocity);
+        checkFits(ball, line, column);
+        define(ball, line, column);
+        this.balls.add(ball);
+    }
+
+    /**
+     * Parse a gadget line, up to its end of line.
+     */
+    private void gadget(int line, int column) throws IOException, UnableToParseException {
+        GameExpression gadget;
+        switch (this.next) {
+        case 's':
+            {
+                expect("squareBumper");
+                expect("name=");
+                String name = name();
+                int x = coordinate("x");
+                int y = coordinate("y");
+                gadget = new SquareBumper(name, x, y);
+                break;
+            }
+        case 'c':
+            {
+                expect("circleBumper");
+                expect("name=");
+                String name = name();
+                int x = coordinate("x");
+                int y = coordinate("y");
+                gadget = new CircleBumper(name, x, y);
+                break;
+            }
+        case 't':
+            {
+                expect("triangleBumper");
+                expect("name=");
+                String name = name();
+                int x = coordinate("x");
+                int y = coordinate("y");
+                int orientation = 0;
+                skip();
+                if (this.next == 'o') {
+                    expect("orientation");
+                    expect("=");
+                    skip();
+                    int orientationLine = this.line;
+                    int orientationColumn = this.column;
+                    orientation = orientation();
+                    if (orientation < 0) {
+                        throw error(orientationLine, orientationColumn, "orientation must be 0, 90, 180, or 270");
+                    }
+                }
+                gadget = new TriangleBumper(name, x, y, orientation);
+                break;
+            }
+        default:
+            {
+                expect("absorber");
+                expect("name");
+                expect("=");
+                String name = name();
+                int x = coordinate("x");
+                int y = coordinate("y");
+                int width = coordinate("width");
+                int height = coordinate("height");
+                int burst = 1;
+                skip();
+                if (this.next == 'b') {
+                    expect("burst");
+                    expect("=");
+                    skip();
+                    int burstLine = this.line;
+                    int burstColumn = this.column;
+                    burst = integer();
+                    if (burst < 1) {
+                        throw error(burstLine, burstColumn, "burst must be a positive integer");
+                    }
+                }
+                gadget = new Absorber(name, x, y, width, height, burst);
+                break;
+            }
+        }
+        checkFits(gadget, line, column);
+        define(gadget, line, column);
+        this.gadgets.add(gadget);
+    }
+
+    /**
+     * Parse a "key = INTEGER" pair of a gadget.
+     * @return the integer
+     */
+    private int coordinate(String key) throws IOException, UnableToParseException {
+        expect(key);
+        expect("=");
+        return integer();
+    }
+
+    /**
+     * Parse an action line, up to its end of line, and set the trigger it describes.
+     */
+    private void action() throws IOException, UnableToParseException {
+        expect("fire trigger");
+        expect("=");
+        GameExpression trigger = gadgetName();
+        expect("action=");
+        GameExpression target = gadgetName();
+        trigger.setTrigger(target);
+    }
+}
@@ -0,0 +1,112 @@
+package flingball;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A mutable table of the named balls and gadgets of a board, which gives each name a dense integer id: the first
+ * name defined has id 0, the next id 1, and so on. Looking up a name or an id takes constant time, so parsers can
+ * check that names are unique and wire up triggers without searching every gadget, and the simulation can refer
+ * to gadgets by id in arrays.
+ */
+public class SymbolTable {
+
+    /** Id returned for a name that is not in the table. */
+    public static final int UNDEFINED = -1;
+
+    private final Map<String, Integer> ids = new HashMap<>();
+    private final List<GameExpression> expressions = new ArrayList<>();
+
+    // Abstraction function:
+    // AF(ids, expressions) = the table that gives expressions.get(i) the id i, for every i, and maps the name of
+    // each expression to its id in ids
+    //
+    // Rep invariant:
+    // - ids.size() == expressions.size()
+    // - ids.get(expressions.get(i).getName()) == i for every 0 <= i < expressions.size()
+    //
+    // Safety from rep exposure argument:
+    // - all fields are private and final, and never returned; get() returns the expressions themselves, which
+    //   the table does not own
+
+    private void checkRep() {
+        assert this.ids.size() == this.expressions.size();
+    }
+
+    /**
+     * Make an empty table.
+     */
+    public SymbolTable() {
+        checkRep();
+    }
+
+    /**
+     * Make a table of the given expressions, with ids in order of name.
+     * @param expressions balls or gadgets with unique names
+     * @return a table defining every expression in expressions, in order of name
+     * @throws IllegalArgumentException if two expressions have the same name
+     */
+    public static SymbolTable byName(Collection<GameExpression> expressions) {
+        List<GameExpression> sorted = new ArrayList<>(expressions);
+        sorted.sort(Comparator.comparing(GameExpression::getName));
+        SymbolTable table = new SymbolTable();
+        for (GameExpression expression : sorted) {
+            table.define(expression);
+        }
+        return table;
+    }
+
+    /**
+     * Give the name of expression the next id.
+     * @param expression ball or gadget to define
+     * @return the id of expression, which is the number of expressions defined before it
+     * @throws IllegalArgumentException if the name of expression is already defined
+     */
+    public int define(GameExpression expression) {
+        int id = this.expressions.size();
+        Integer previous = this.ids.putIfAbsent(expression.getName(), id);
+        if (previous != null) {
+            throw new IllegalArgumentException("name " + expression.getName() + " is already defined");
+        }
+        this.expressions.add(expression);
+        checkRep();
+        return id;
+    }
+
+    /**
+     * @param name a name
+     * @return the id of name, or UNDEFINED if it has not been defined
+     */
+    public int id(String name) {
+        Integer id = this.ids.get(name);
+        return id == null ? UNDEFINED : id;
+    }
+
+    /**
+     * @param id id of a defined expression, must be >= 0 and < size()
+     * @return the expression with that id
+     */
+    public GameExpression get(int id) {
+        return this.expressions.get(id);
+    }
+
+    /**
+     * @param name a name
+     * @return the expression named name, or null if it has not been defined
+     */
+    public GameExpression lookup(String name) {
+        int id = id(name);
+        return id == UNDEFINED ? null : this.expressions.get(id);
+    }
+
+    /**
+     * @return number of expressions defined, which is one more than the largest id
+     */
+    public int size() {
+        return this.expressions.size();
+    }
+}
@@ -0,0 +1,68 @@
+package flingball;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A lock-free triple buffer that hands values from one producer thread to one consumer thread. The producer
+ * publishes into a back slot and swaps it with a middle slot; the consumer swaps the middle slot into its front
+ * slot when something newer has been published. Neither side ever waits for the other: the producer can publish
+ * at its own rate, and the consumer always reads the newest published value, skipping any it was too slow to see.
+ *
+ * @param <T> type of the values handed over
+ */
+public class TripleBuffer<T> {
+
+    private static final int INDEX = 0b11;
+    private static final int FRESH = 0b100; // set when the middle slot holds a value the consumer has not taken
+
+    private final Object[] slots = new Object[3];
+    private final AtomicInteger middle = new AtomicInteger(2);
+    private int back = 0;
+    private int front = 1;
+
+    // Abstraction function:
+    // AF(slots, middle, back, front) = a buffer whose newest published value is slots[middle & INDEX] if middle
+    // has the FRESH bit set, and otherwise slots[front], the value the consumer took last (or null before
+    // anything was published); slots[back] is the producer's to overwrite
+    //
+    // Rep invariant:
+    // - back, front, and middle & INDEX are 0, 1, and 2 in some order
+    //
+    // Safety from rep exposure argument:
+    // - all fields are private, and slots is never returned; the values in it belong to the client
+    //
+    // Thread safety argument:
+    // - back is only accessed by the producer, and front only by the consumer
+    // - the slots are only exchanged through atomic swaps of middle, so each slot is owned by one thread at a
+    //   time; a value written to the back slot before a swap happens-before the consumer reads it after taking
+    //   that slot with its own swap
+
+    // each thread only checks the slot it owns, since it may not read the other's
+    private static void checkSlot(int slot) {
+        assert slot >= 0 && slot < 3;
+    }
+
+    /**
+     * Publish a value, replacing any value published before that the consumer has not taken yet. Must only be
+     * called by the producer thread.
+     * @param value value to publish
+     */
+    public void publish(T value) {
+        this.slots[this.back] = value;
+        this.back = this.middle.getAndSet(this.back | FRESH) & INDEX;
+        checkSlot(this.back);
+    }
+
+    /**
+     * Get the newest published value. Must only be called by the consumer thread.
+     * @return the value published last, or null if nothing has been published
+     */
+    @SuppressWarnings("unchecked")
+    public T latest() {
+        if ((this.middle.get() & FRESH) != 0) {
+            this.front = this.middle.getAndSet(this.front) & INDEX;
+            checkSlot(this.front);
+        }
+        return (T) this.slots[this.front];
+    }
+}
@@ -0,0 +1,72 @@
+package flingball;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class ActionQueueTest {
+
+    // Testing strategy:
+    // Partition the inputs and outputs of ActionQueue as follows:
+    //      actions waiting: 0, 1, > 1, more than the initial capacity
+    //      buffer: contents contiguous, wrapped around the end of the buffer
+    //      operations: post(), poll(), clear()
+    //      Out: ids in the order they were posted, the same id posted more than once, error when empty
+
+    @Test(expected=AssertionError.class)
+    public void testAssertionsEnabled() {
+        assert false; // make sure assertions are enabled with VM argument: -ea
+    }
+
+    // Partitions covered by this test:
+    // 0 waiting, poll(); error when empty
+    @Test(expected=IllegalStateException.class)
+    public void testPollEmpty() {
+        ActionQueue actions = new ActionQueue();
+        assertTrue("expected a new queue to be empty", actions.isEmpty());
+        actions.poll();
+    }
+
+    // Partitions covered by this test:
+    // 1 and > 1 waiting, contiguous, post() and poll(); ids in order, an id posted more than once
+    @Test
+    public void testPostPollInOrder() {
+        ActionQueue actions = new ActionQueue();
+        actions.post(4);
+        assertEquals("expected one action", 1, actions.size());
+        actions.post(0);
+        actions.post(4);
+        assertEquals("expected three actions", 3, actions.size());
+        assertEquals("expected the oldest action", 4, actions.poll());
+        assertEquals("expected the next action", 0, actions.poll());
+        assertEquals("expected the repeated action", 4, actions.poll());
+        assertTrue("expected the queue to be empty", actions.isEmpty());
+    }
+
+    // Partitions covered by this test:
+    // more than the initial capacity, wrapped around the end of the buffer, post(), poll(), and clear(); ids in
+    // order across growing
+    @Test
+    public void testGrowWhileWrapped() {
+        ActionQueue actions = new ActionQueue();
+        for (int i = 0; i < 10; i++) {
+            actions.post(i);
+        }
+        for (int i = 0; i < 10; i++) {
+            assertEquals("expected ids in order", i, actions.poll());
+        }
+        // the next ids wrap around the end of the buffer before it grows
+        for (int i = 0; i < 1000; i++) {
+            actions.post(i);
+        }
+        assertEquals("expected every action", 1000, actions.size());
+        for (int i = 0; i < 1000; i++) {
+            assertEquals("expected ids in order", i, actions.poll());
+        }
+        actions.post(7);
+        actions.clear();
+        assertTrue("expected clear() to empty the queue", actions.isEmpty());
+        actions.post(8);
+        assertEquals("expected the queue to be usable after clear()", 8, actions.poll());
+    }
+}
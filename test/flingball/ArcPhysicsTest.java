@@ -0,0 +1,75 @@
+package flingball;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import physics.Circle;
+import physics.Physics;
+import physics.Vect;
+
+public class ArcPhysicsTest {
+
+    // Testing strategy:
+    // Partition the inputs and outputs of ArcPhysics.timeUntilCircleCollision() as follows:
+    //      gravity: 0, > 0
+    //      path: misses the circle, hits it head on, grazes it for a small fraction of the horizon
+    //      Out: no collision, the time the ball first touches the circle
+
+    @Test(expected=AssertionError.class)
+    public void testAssertionsEnabled() {
+        assert false; // make sure assertions are enabled with VM argument: -ea
+    }
+
+    private static final double NO_COLLISION = Double.MAX_VALUE/2;
+
+    // Partitions covered by this test:
+    // gravity 0; path misses the circle, hits it head on; no collision, time of first touch
+    @Test
+    public void testStraightPath() {
+        Circle circle = new Circle(new Vect(10, 10), 0.5);
+        Circle ball = new Circle(new Vect(2, 10), 0.25);
+        assertEquals("expected the time the ball touches the circle",
+                Physics.timeUntilCircleCollision(circle, ball, new Vect(1, 0)),
+                ArcPhysics.timeUntilCircleCollision(circle, ball, new Vect(1, 0), 0, 20), 1e-9);
+        assertEquals("expected no collision", NO_COLLISION,
+                ArcPhysics.timeUntilCircleCollision(circle, ball, new Vect(0, 1), 0, 20), 0);
+    }
+
+    // Partitions covered by this test:
+    // gravity 0; path grazes the circle for a small fraction of the horizon; time of first touch
+    @Test
+    public void testGrazeStraightPath() {
+        Circle corner = new Circle(new Vect(0, 0), 0);
+        Circle ball = new Circle(new Vect(-50.5, 0.249), 0.25);
+        Vect velocity = new Vect(10, 0);
+        double expected = Physics.timeUntilCircleCollision(corner, ball, velocity);
+        assertTrue("expected the grazing collision to exist", expected < 10);
+        assertEquals("expected the time the ball grazes the corner", expected,
+                ArcPhysics.timeUntilCircleCollision(corner, ball, velocity, 0, 10), 1e-9);
+    }
+
+    // Partitions covered by this test:
+    // gravity > 0; path grazes the circle at the top of its arc, for a small fraction of the horizon, and hits it
+    // head on; time of first touch
+    @Test
+    public void testGrazeArc() {
+        double gravity = 25;
+        double apex = 5.05;
+        Circle circle = new Circle(new Vect(0, 0), 0.5);
+        // the ball's arc peaks at time apex, 0.749 L above the center of the circle, just within contact distance
+        Circle ball = new Circle(new Vect(-10*apex, -0.749 + gravity/2*apex*apex), 0.25);
+        Vect velocity = new Vect(10, -gravity*apex);
+        double time = ArcPhysics.timeUntilCircleCollision(circle, ball, velocity, gravity, 10);
+        assertTrue("expected a collision just before the top of the arc, got " + time,
+                time < apex && time > apex - 0.01);
+        Vect location = ArcPhysics.locationAt(ball.getCenter(), velocity, gravity, time);
+        assertEquals("expected the ball to touch the circle", 0.75, location.length(), 1e-6);
+
+        Circle below = new Circle(new Vect(0, 5), 0.5);
+        Circle falling = new Circle(new Vect(0, 0), 0.25);
+        // falls 4.25 L from rest: 12.5*t^2 = 4.25
+        assertEquals("expected the time the falling ball hits the circle", Math.sqrt(4.25/12.5),
+                ArcPhysics.timeUntilCircleCollision(below, falling, Vect.ZERO, gravity, 10), 1e-9);
+    }
+}
@@ -0,0 +1,119 @@
+package flingball;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import physics.Vect;
+
+public class BallStoreTest {
+
+    // Testing strategy:
+    // Partition the inputs and outputs of the BallStore methods as follows:
+    // adopt():
+    //      In: ball from its own store, ball already in this store, ball from a store with other balls
+    //          store: has room, must grow
+    //      Out: ball reads the same state from its new slot; balls left behind keep their state
+    // setVelocity() through a Ball view:
+    //      Out: ball marked as changed once, in order of first change
+    // finishStep():
+    //      In: absorbed ball, moving ball, ball pushed against a wall
+    //          gravity: applied after a straight move, applied along the way (parabolic)
+    //      Out: ball moved and velocity updated, absorbed ball unchanged, ball clamped inside the walls
+
+    @Test(expected=AssertionError.class)
+    public void testAssertionsEnabled() {
+        assert false; // make sure assertions are enabled with VM argument: -ea
+    }
+
+    // Partitions covered by this test:
+    // adopt(): ball from its own store, ball already in this store, store must grow; same state
+    @Test
+    public void testAdoptKeepsState() {
+        BallStore store = new BallStore(1);
+        Ball first = new Ball("first", 1, 2, 3, 4);
+        Ball second = new Ball("second", 5, 6, 7, 8);
+        second.setAbsorbed(true);
+        store.adopt(first);
+        store.adopt(second);
+        store.adopt(second);
+        assertEquals("expected two balls", 2, store.size());
+        assertSame("expected ball in its own slot", second, store.ball(1));
+        assertSame("expected ball to view the store", store, second.getStore());
+        assertEquals("expected same location", new Vect(1, 2), first.getLocation());
+        assertEquals("expected same velocity", new Vect(7, 8), second.getVelocity());
+        assertTrue("expected same absorbed state", second.getAbsorbed());
+    }
+
+    // Partitions covered by this test:
+    // adopt(): ball from a store with other balls; balls left behind keep their state
+    @Test
+    public void testAdoptFromSharedStore() {
+        BallStore shared = new BallStore();
+        Ball a = new Ball("a", 1, 1, 1, 0);
+        Ball b = new Ball("b", 2, 2, 2, 0);
+        Ball c = new Ball("c", 3, 3, 3, 0);
+        shared.adopt(a);
+        shared.adopt(b);
+        shared.adopt(c);
+        BallStore other = new BallStore();
+        other.adopt(a);
+        assertEquals("expected one ball left in the first store", 2, shared.size());
+        assertSame("expected the moved ball to view its new slot", c, shared.ball(c.getSlot()));
+        assertEquals("expected the moved ball to keep its state", new Vect(3, 3), c.getLocation());
+        assertEquals("expected the adopted ball to keep its state", new Vect(1, 0), a.getVelocity());
+    }
+
+    // Partitions covered by this test:
+    // setVelocity(): ball marked as changed once, in order of first change
+    @Test
+    public void testChangedOrder() {
+        BallStore store = new BallStore();
+        Ball a = new Ball("a", 1, 1, 0, 0);
+        Ball b = new Ball("b", 2, 2, 0, 0);
+        store.adopt(a);
+        store.adopt(b);
+        b.setVelocity(new Vect(1, 1));
+        a.setVelocity(new Vect(1, 1));
+        b.setVelocity(new Vect(2, 2));
+        assertEquals("expected each changed ball once", 2, store.changedCount());
+        assertEquals("expected the first ball to change first", b.getSlot(), store.changedSlot(0));
+        assertEquals("expected the second ball to change second", a.getSlot(), store.changedSlot(1));
+        store.clearChanged();
+        assertEquals("expected no changed balls", 0, store.changedCount());
+        assertFalse("expected no changed balls", store.isChanged(a.getSlot()));
+    }
+
+    // Partitions covered by this test:
+    // finishStep(): absorbed ball, moving ball, ball pushed against a wall; gravity applied after a straight move
+    @Test
+    public void testFinishStep() {
+        BallStore store = new BallStore();
+        Ball moving = new Ball("moving", 5, 5, 1, 0);
+        Ball absorbed = new Ball("absorbed", 10, 10, 0, 0);
+        Ball wall = new Ball("wall", 19.7, 5, 10, 0);
+        absorbed.setAbsorbed(true);
+        store.adopt(moving);
+        store.adopt(absorbed);
+        store.adopt(wall);
+        store.finishStep(1, 20, 20, 10, false, 0, 0, 1);
+        assertEquals("expected ball to move", new Vect(6, 5), moving.getLocation());
+        assertEquals("expected gravity to act", new Vect(1, 10), moving.getVelocity());
+        assertEquals("expected absorbed ball to stay", new Vect(10, 10), absorbed.getLocation());
+        assertEquals("expected absorbed ball to stay", new Vect(0, 0), absorbed.getVelocity());
+        assertEquals("expected ball to stay inside the walls", 19.75, wall.getLocation().x(), 1e-9);
+    }
+
+    // Partitions covered by this test:
+    // finishStep(): moving ball; gravity applied along the way
+    @Test
+    public void testFinishStepParabolic() {
+        BallStore store = new BallStore();
+        Ball ball = new Ball("ball", 5, 5, 1, -5);
+        store.adopt(ball);
+        store.finishStep(1, 20, 20, 10, true, 0, 0, 1);
+        assertEquals("expected ball to rise and fall back along its arc", new Vect(6, 5), ball.getLocation());
+        assertEquals("expected gravity to act along the way", new Vect(1, 5), ball.getVelocity());
+        assertEquals("expected the fall to be part of the motion, not a change", 0, store.changedCount());
+    }
+}
@@ -0,0 +1,58 @@
+package flingball;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class BatchRunnerTest {
+
+    // Testing strategy:
+    // Partition the inputs and outputs of BatchRunner.run() as follows:
+    //      files: 1, > 1; a file that cannot be read
+    //      threads: 1, > 1
+    //      seconds: 0, > 0
+    //      Out: results in the order of files, each with its ball states, collision count, and step count;
+    //           an error result for a bad file; identical results for any number of threads
+
+    @Test(expected=AssertionError.class)
+    public void testAssertionsEnabled() {
+        assert false; // make sure assertions are enabled with VM argument: -ea
+    }
+
+    // Partitions covered by this test:
+    // files > 1, threads 1 and > 1, seconds > 0; results in order, identical for any number of threads
+    @Test
+    public void testResultsInOrderForAnyThreads() throws InterruptedException {
+        List<File> files = Arrays.asList(new File("boards/absorber.fb"), new File("test/flingball/default.fb"),
+                new File("test/flingball/example.fb"));
+        List<BatchRunner.Result> sequential = BatchRunner.run(files, 2, 1);
+        List<BatchRunner.Result> parallel = BatchRunner.run(files, 2, 3);
+        assertEquals("expected a result per file", 3, parallel.size());
+        for (int i = 0; i < files.size(); i++) {
+            assertEquals("expected results in order of files", files.get(i).getPath(), parallel.get(i).getFile());
+            assertNull("expected the board to be simulated", parallel.get(i).getError());
+            assertEquals("expected two seconds of steps", 200, parallel.get(i).getSteps());
+            assertEquals("expected identical ball states", sequential.get(i).getBalls(), parallel.get(i).getBalls());
+            assertEquals("expected identical collision counts", sequential.get(i).getCollisions(),
+                    parallel.get(i).getCollisions());
+        }
+        assertEquals("expected a state for each ball", 3, parallel.get(0).getBalls().size());
+        assertTrue("expected the balls to hit something", parallel.get(0).getCollisions() > 0);
+        assertTrue("expected a report line for each ball", parallel.get(0).toString().contains("BallA"));
+    }
+
+    // Partitions covered by this test:
+    // files 1, a file that cannot be read, seconds 0; error result
+    @Test
+    public void testBadFileGivesError() throws InterruptedException {
+        List<BatchRunner.Result> results = BatchRunner.run(Arrays.asList(new File("test/flingball/missing.fb")),
+                0, 1);
+        assertEquals("expected a result for the file", 1, results.size());
+        assertNotNull("expected an error", results.get(0).getError());
+        assertEquals("expected no steps", 0, results.get(0).getSteps());
+    }
+}
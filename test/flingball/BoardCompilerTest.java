@@ -0,0 +1,152 @@
+package flingball;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import edu.mit.eecs.parserlib.UnableToParseException;
+
+public class BoardCompilerTest {
+
+    // Testing strategy:
+    // Partition the inputs and outputs of BoardCompiler.compile() and load() as follows:
+    //      board: each type of gadget, triangle orientations 0 and not 0, absorbers of width and height > 1,
+    //             burst 1 and > 1; 0, 1, > 1 balls; 0, > 1 triggers including a gadget that triggers itself and
+    //             a gadget that triggers several gadgets; default and set gravity and friction; default and set
+    //             width and height
+    //      compiled board: valid, truncated, not a compiled board
+    //      Out: board equal to the parsed board with the same triggers, compiling again gives the same bytes,
+    //           malformed input reported
+
+    @Test(expected=AssertionError.class)
+    public void testAssertionsEnabled() {
+        assert false; // make sure assertions are enabled with VM argument: -ea
+    }
+
+    /**
+     * @return names of the targets of gadget's trigger, in order
+     */
+    private static List<String> targetNames(GameExpression gadget) {
+        List<String> names = new ArrayList<>();
+        for (GameExpression target : gadget.getTriggerTargets()) {
+            names.add(target.getName());
+        }
+        return names;
+    }
+
+    /**
+     * Assert that compiling the board in file and loading it gives back the same board.
+     */
+    private static void assertRoundTrip(String file) throws UnableToParseException {
+        Board parsed = (Board) BoardParser.parse(new File(file));
+        ByteBuffer compiled = BoardCompiler.compile(parsed);
+        Board loaded = BoardCompiler.load(compiled.duplicate());
+        assertEquals("expected the same board from " + file, parsed, loaded);
+        for (GameExpression gadget : parsed.getGadgets()) {
+            for (GameExpression other : loaded.getGadgets()) {
+                if (gadget.getName().equals(other.getName())) {
+                    assertEquals("expected the same triggers for " + gadget.getName(),
+                            targetNames(gadget), targetNames(other));
+                    if (gadget instanceof TriangleBumper) {
+                        assertEquals("expected the same orientation", ((TriangleBumper) gadget).getOrientation(),
+                                ((TriangleBumper) other).getOrientation());
+                    }
+                }
+            }
+        }
+        assertEquals("expected compiling the loaded board to give the same bytes", compiled,
+                BoardCompiler.compile(loaded));
+    }
+
+    // Partitions covered by this test:
+    // each type of gadget except absorbers, orientation not 0, 1 ball, 0 triggers, set gravity and friction
+    @Test
+    public void testRoundTripDefault() throws UnableToParseException {
+        assertRoundTrip("test/flingball/default.fb");
+        assertRoundTrip("boards/default.fb");
+    }
+
+    // Partitions covered by this test:
+    // absorbers of width and height > 1, > 1 balls, > 1 triggers including a gadget that triggers itself
+    @Test
+    public void testRoundTripTriggers() throws UnableToParseException {
+        assertRoundTrip("boards/absorber.fb");
+        assertRoundTrip("test/flingball/absorberBoard.fb");
+    }
+
+    // Partitions covered by this test:
+    // a gadget that triggers several gadgets, including itself; targets kept in order
+    @Test
+    public void testRoundTripFanOut() throws UnableToParseException {
+        assertRoundTrip("test/flingball/fanout.fb");
+        Board loaded = BoardCompiler.load(BoardCompiler.compile(
+                (Board) BoardParser.parse(new File("test/flingball/fanout.fb"))));
+        assertEquals("expected both targets of the square, in order", List.of("Left", "Right"),
+                targetNames(loaded.getGadget(loaded.getGadgetId("Square"))));
+        assertEquals("expected both targets of the absorber, in order", List.of("Left", "Right"),
+                targetNames(loaded.getGadget(loaded.getGadgetId("Left"))));
+    }
+
+    // Partitions covered by this test:
+    // absorber with burst > 1
+    @Test
+    public void testRoundTripBurst() throws UnableToParseException {
+        assertRoundTrip("test/flingball/burst.fb");
+        Board loaded = BoardCompiler.load(BoardCompiler.compile(
+                (Board) BoardParser.parse(new File("test/flingball/burst.fb"))));
+        assertEquals("expected the burst of the absorber", 3,
+                ((Absorber) loaded.getGadget(loaded.getGadgetId("Abs"))).getBurst());
+    }
+
+    // Partitions covered by this test:
+    // set width and height, absorber as wide as the board
+    @Test
+    public void testRoundTripSize() throws UnableToParseException {
+        assertRoundTrip("boards/wide.fb");
+        Board loaded = BoardCompiler.load(BoardCompiler.compile((Board) BoardParser.parse(new File("boards/wide.fb"))));
+        assertEquals("expected the width of the board", 60, loaded.getWalls().getWidth());
+        assertEquals("expected the height of the board", 30, loaded.getWalls().getHeight());
+    }
+
+    // Partitions covered by this test:
+    // 0 balls, default gravity and friction
+    @Test
+    public void testRoundTripEmpty() throws UnableToParseException {
+        assertRoundTrip("test/flingball/empty.fb");
+    }
+
+    // Partitions covered by this test:
+    // valid compiled board written to and loaded from a .fbb file
+    @Test
+    public void testLoadFile() throws UnableToParseException, IOException {
+        Path path = Files.createTempFile("flingball", ".fbb");
+        path.toFile().deleteOnExit();
+        Board parsed = (Board) BoardParser.parse(new File("boards/absorber.fb"));
+        BoardCompiler.write(parsed, path);
+        assertEquals("expected the same board", parsed, BoardCompiler.load(path.toFile()));
+    }
+
+    // Partitions covered by this test:
+    // truncated compiled board; malformed input reported
+    @Test(expected=IllegalArgumentException.class)
+    public void testLoadTruncated() throws UnableToParseException {
+        ByteBuffer compiled = BoardCompiler.compile((Board) BoardParser.parse(new File("boards/absorber.fb")));
+        compiled.limit(compiled.limit() - 5);
+        BoardCompiler.load(compiled);
+    }
+
+    // Partitions covered by this test:
+    // not a compiled board; malformed input reported
+    @Test(expected=IllegalArgumentException.class)
+    public void testLoadNotCompiled() {
+        BoardCompiler.load(ByteBuffer.wrap("board name=Empty\n".getBytes()));
+    }
+}
@@ -0,0 +1,142 @@
+package flingball;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Test;
+
+import edu.mit.eecs.parserlib.UnableToParseException;
+
+public class BoardGeneratorTest {
+
+    // Testing strategy:
+    // Partition the inputs and outputs of BoardGenerator.generate() and write() as follows:
+    //      seed: same as another board, different
+    //      gadgets: 0, > 0, filling most of the board; mix: every type, a type with weight 0, only absorbers
+    //      balls: 0, > 0; trigger density: 0, between 0 and 1, 1
+    //      board size: default, larger than the default, too small for the gadgets and balls
+    //      Out: a valid board with the requested gadgets of the requested types, balls, and triggers, and no
+    //           overlapping gadgets or balls; the same text for the same description; error if they do not fit
+
+    private static final int[] EVERY_TYPE = { 4, 3, 2, 1 };
+
+    @Test(expected=AssertionError.class)
+    public void testAssertionsEnabled() {
+        assert false; // make sure assertions are enabled with VM argument: -ea
+    }
+
+    private static Board parse(String text) throws IOException, UnableToParseException {
+        return StreamingBoardParser.parse(new StringReader(text));
+    }
+
+    /**
+     * Assert that no two gadgets of board cover the same cell, and no ball starts in a cell that a gadget covers.
+     */
+    private static void assertNoOverlap(Board board) {
+        int width = board.getWalls().getWidth();
+        int height = board.getWalls().getHeight();
+        boolean[] covered = new boolean[width * height];
+        for (GameExpression gadget : board.getGadgets()) {
+            int x = (int) gadget.getLocation().x();
+            int y = (int) gadget.getLocation().y();
+            int w = gadget instanceof Absorber ? ((Absorber) gadget).getWidth() : 1;
+            int h = gadget instanceof Absorber ? ((Absorber) gadget).getHeight() : 1;
+            if (gadget instanceof CircleBumper) { // located by its center
+                x = (int) Math.floor(gadget.getLocation().x());
+                y = (int) Math.floor(gadget.getLocation().y());
+            }
+            for (int row = y; row < y + h; row++) {
+                for (int column = x; column < x + w; column++) {
+                    assertFalse("expected " + gadget.getName() + " not to overlap another gadget",
+                            covered[row*width + column]);
+                    covered[row*width + column] = true;
+                }
+            }
+        }
+        boolean[] balls = new boolean[width * height];
+        for (GameExpression ball : board.getBalls()) {
+            int cell = (int) ball.getLocation().y() * width + (int) ball.getLocation().x();
+            assertFalse("expected " + ball.getName() + " outside every gadget", covered[cell]);
+            assertFalse("expected " + ball.getName() + " alone in its cell", balls[cell]);
+            balls[cell] = true;
+        }
+    }
+
+    // Partitions covered by this test:
+    // same and different seeds, gadgets > 0 of every type, balls > 0, density between 0 and 1, default size;
+    // a valid board with the requested counts, the same text for the same description
+    @Test
+    public void testGenerateValidBoard() throws IOException, UnableToParseException {
+        String text = BoardGenerator.generate(42, 20, 20, 60, EVERY_TYPE, 15, 0.5);
+        assertEquals("expected the same board for the same seed", text,
+                BoardGenerator.generate(42, 20, 20, 60, EVERY_TYPE, 15, 0.5));
+        assertNotEquals("expected another board for another seed", text,
+                BoardGenerator.generate(43, 20, 20, 60, EVERY_TYPE, 15, 0.5));
+        Board board = parse(text);
+        assertEquals("expected the same board from the reference parser", board,
+                BoardParser.parse(Files.write(Files.createTempFile("flingball", ".fb"), text.getBytes()).toFile()));
+        assertEquals("expected every gadget", 60, board.getGadgets().size());
+        assertEquals("expected every ball", 15, board.getBalls().size());
+        int[] counts = new int[4];
+        int triggers = 0;
+        for (GameExpression gadget : board.getGadgets()) {
+            counts[BoardGenerator.GADGET_TYPES.indexOf(gadget instanceof SquareBumper ? "squareBumper"
+                    : gadget instanceof CircleBumper ? "circleBumper"
+                    : gadget instanceof TriangleBumper ? "triangleBumper" : "absorber")]++;
+            triggers += gadget.getTriggerTargets().size();
+            for (GameExpression target : gadget.getTriggerTargets()) {
+                assertTrue("expected triggers to fire absorbers", target instanceof Absorber);
+            }
+        }
+        for (int type = 0; type < counts.length; type++) {
+            assertTrue("expected some " + BoardGenerator.GADGET_TYPES.get(type), counts[type] > 0);
+        }
+        assertTrue("expected about half of the gadgets to fire triggers, got " + triggers,
+                triggers > 10 && triggers < 50);
+        assertNoOverlap(board);
+    }
+
+    // Partitions covered by this test:
+    // a type with weight 0, only absorbers, gadgets filling most of the board, 0 balls, densities 0 and 1, board
+    // larger than the default; no gadgets of the unweighted type, no overlaps
+    @Test
+    public void testMixAndDensity() throws IOException, UnableToParseException {
+        Board noTriangles = parse(BoardGenerator.generate(1, 30, 25, 700, new int[] { 1, 1, 0, 1 }, 0, 0));
+        assertEquals("expected the size of the board", 30, noTriangles.getWalls().getWidth());
+        assertEquals("expected the size of the board", 25, noTriangles.getWalls().getHeight());
+        for (GameExpression gadget : noTriangles.getGadgets()) {
+            assertFalse("expected no triangles", gadget instanceof TriangleBumper);
+            assertTrue("expected no triggers", gadget.getTriggerTargets().isEmpty());
+        }
+        assertNoOverlap(noTriangles);
+        Board absorbers = parse(BoardGenerator.generate(2, 20, 20, 40, new int[] { 0, 0, 0, 1 }, 5, 1));
+        for (GameExpression gadget : absorbers.getGadgets()) {
+            assertTrue("expected only absorbers", gadget instanceof Absorber);
+            assertEquals("expected every gadget to fire a trigger", 1, gadget.getTriggerTargets().size());
+        }
+        assertNoOverlap(absorbers);
+    }
+
+    // Partitions covered by this test:
+    // 0 gadgets, write(); a valid board in the file
+    @Test
+    public void testWriteEmpty() throws IOException, UnableToParseException {
+        Path path = Files.createTempFile("flingball", ".fb");
+        path.toFile().deleteOnExit();
+        BoardGenerator.write(path, 3, 20, 20, 0, EVERY_TYPE, 3, 0.5);
+        Board board = StreamingBoardParser.parse(path.toFile());
+        assertTrue("expected no gadgets", board.getGadgets().isEmpty());
+        assertEquals("expected every ball", 3, board.getBalls().size());
+    }
+
+    // Partitions covered by this test:
+    // board too small for the gadgets and balls; error
+    @Test(expected=IllegalArgumentException.class)
+    public void testTooManyForBoard() {
+        BoardGenerator.generate(4, 20, 20, 300, EVERY_TYPE, 101, 0);
+    }
+}
@@ -0,0 +1,190 @@
+package flingball;
+
+import static org.junit.Assert.*;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+
+import org.junit.Test;
+
+import edu.mit.eecs.parserlib.UnableToParseException;
+
+public class BoardRendererTest {
+
+    // Testing strategy:
+    // Partition the inputs and outputs of BoardRenderer.paint() as follows:
+    //      board: each type of gadget, balls absorbed and not absorbed
+    //      paint: first, again with the same gadgets, after the gadgets were replaced, after invalidate()
+    //      frames: alpha 0, between 0 and 1, 1; ball absorbed between the frames
+    //      board size: one tile, several tiles; clip: none, part of the board
+    //      Out: gadgets, balls, and background drawn in their colors; static layer drawn again or reused
+
+    private static final int PIXELS_PER_L = 20;
+    private static final String BOARD = "board name=Render\n"
+            + "ball name=B x=10.5 y=5.5 xVelocity=0 yVelocity=0\n"
+            + "squareBumper name=S x=3 y=4\n"
+            + "circleBumper name=C x=7 y=7\n"
+            + "triangleBumper name=T x=12 y=2\n"
+            + "absorber name=A x=0 y=18 width=20 height=2\n";
+
+    @Test(expected=AssertionError.class)
+    public void testAssertionsEnabled() {
+        assert false; // make sure assertions are enabled with VM argument: -ea
+    }
+
+    private static BufferedImage paint(BoardRenderer renderer, Board board) {
+        BufferedImage image = new BufferedImage(20*PIXELS_PER_L, 20*PIXELS_PER_L, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        renderer.paint(g, board);
+        g.dispose();
+        return image;
+    }
+
+    /**
+     * Assert the color of the pixel at (x, y) L of the board.
+     */
+    private static void assertColor(String message, Color expected, BufferedImage image, double x, double y) {
+        assertEquals(message, expected.getRGB(),
+                image.getRGB((int) (x*PIXELS_PER_L), (int) (y*PIXELS_PER_L)));
+    }
+
+    private static Board parse(String board) throws IOException, UnableToParseException {
+        return StreamingBoardParser.parse(new StringReader(board));
+    }
+
+    // Partitions covered by this test:
+    // each type of gadget, ball not absorbed, first paint; everything drawn in its color, layer drawn
+    @Test
+    public void testPaintEachGadget() throws IOException, UnableToParseException {
+        BoardRenderer renderer = new BoardRenderer(PIXELS_PER_L);
+        BufferedImage image = paint(renderer, parse(BOARD));
+        assertColor("expected the square", Color.red, image, 3.5, 4.5);
+        assertColor("expected the circle", Color.red, image, 7.5, 7.5);
+        assertColor("expected the triangle", Color.orange, image, 12.2, 2.2);
+        assertColor("expected the absorber", Color.green, image, 10, 19);
+        assertColor("expected the ball", Color.blue, image, 10.5, 5.5);
+        assertColor("expected the background", Color.black, image, 15.5, 10.5);
+        assertColor("expected the background beside the triangle", Color.black, image, 12.8, 2.8);
+        assertEquals("expected the layer to be drawn once", 1, renderer.getLayerRenders());
+    }
+
+    // Partitions covered by this test:
+    // paint again with the same gadgets, after the gadgets were replaced, after invalidate(); layer reused or
+    // drawn again
+    @Test
+    public void testLayerCached() throws IOException, UnableToParseException {
+        BoardRenderer renderer = new BoardRenderer(PIXELS_PER_L);
+        SimulationEngine engine = new SimulationEngine(parse(BOARD));
+        paint(renderer, engine.getBoard());
+        engine.advance(40);
+        BufferedImage image = paint(renderer, engine.getBoard());
+        assertEquals("expected the layer to be reused", 1, renderer.getLayerRenders());
+        assertColor("expected the ball to have fallen", Color.black, image, 10.5, 5.5);
+
+        BoardWatcher.patch(engine, parse(BOARD.replace("squareBumper name=S x=3 y=4", "squareBumper name=S x=5 y=4")));
+        image = paint(renderer, engine.getBoard());
+        assertEquals("expected the layer to be drawn again", 2, renderer.getLayerRenders());
+        assertColor("expected the old square to be gone", Color.black, image, 3.5, 4.5);
+        assertColor("expected the moved square", Color.red, image, 5.5, 4.5);
+
+        renderer.invalidate();
+        paint(renderer, engine.getBoard());
+        assertEquals("expected the layer to be drawn again", 3, renderer.getLayerRenders());
+    }
+
+    // Partitions covered by this test:
+    // ball absorbed; ball hidden
+    @Test
+    public void testAbsorbedBallHidden() throws IOException, UnableToParseException {
+        SimulationEngine engine = new SimulationEngine(parse("board name=Render\n"
+                + "ball name=B x=10.5 y=15.5 xVelocity=0 yVelocity=0\n"
+                + "absorber name=A x=0 y=18 width=20 height=2\n"));
+        Ball ball = engine.getBoard().getBallStore().ball(0);
+        for (int i = 0; i < 500 && !ball.getAbsorbed(); i++) {
+            engine.advance(1);
+        }
+        BufferedImage image = paint(new BoardRenderer(PIXELS_PER_L), engine.getBoard());
+        assertColor("expected the absorber over the hidden ball", Color.green, image, ball.getLocation().x(),
+                ball.getLocation().y());
+    }
+
+    // Partitions covered by this test:
+    // frames, alpha 0, between 0 and 1, and 1; ball drawn part of the way between the frames
+    @Test
+    public void testPaintInterpolated() throws IOException, UnableToParseException {
+        SimulationEngine engine = new SimulationEngine(parse("board name=Render\n"
+                + "ball name=B x=2.5 y=10.5 xVelocity=100 yVelocity=0\n"), 0.04);
+        BoardFrame previous = BoardFrame.capture(engine);
+        engine.advance(1);
+        BoardFrame current = BoardFrame.capture(engine);
+        assertEquals("expected the ball to move 4L", 6.5, current.x(0), 0.01);
+        BoardRenderer renderer = new BoardRenderer(PIXELS_PER_L);
+        for (double alpha : new double[] { 0, .5, 1 }) {
+            BufferedImage image = new BufferedImage(20*PIXELS_PER_L, 20*PIXELS_PER_L, BufferedImage.TYPE_INT_RGB);
+            Graphics2D g = image.createGraphics();
+            renderer.paint(g, previous, current, alpha);
+            g.dispose();
+            double x = 2.5 + 4*alpha;
+            assertColor("expected the ball at " + x, Color.blue, image, x, current.y(0));
+            assertColor("expected the background beside the ball", Color.black, image, x + 1.5, current.y(0));
+        }
+        assertEquals("expected the layer to be drawn once", 1, renderer.getLayerRenders());
+    }
+
+    // Partitions covered by this test:
+    // frames, ball absorbed between the frames; ball hidden
+    @Test
+    public void testPaintFramesAbsorbedBallHidden() throws IOException, UnableToParseException {
+        SimulationEngine engine = new SimulationEngine(parse("board name=Render\n"
+                + "ball name=B x=10.5 y=15.5 xVelocity=0 yVelocity=0\n"
+                + "absorber name=A x=0 y=18 width=20 height=2\n"));
+        Ball ball = engine.getBoard().getBallStore().ball(0);
+        BoardFrame previous = BoardFrame.capture(engine);
+        for (int i = 0; i < 500 && !ball.getAbsorbed(); i++) {
+            previous = BoardFrame.capture(engine);
+            engine.advance(1);
+        }
+        BoardFrame current = BoardFrame.capture(engine);
+        assertFalse("expected the ball free in the previous frame", previous.absorbed(0));
+        assertTrue("expected the ball absorbed in the current frame", current.absorbed(0));
+        BufferedImage image = new BufferedImage(20*PIXELS_PER_L, 20*PIXELS_PER_L, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        new BoardRenderer(PIXELS_PER_L).paint(g, previous, current, .5);
+        g.dispose();
+        assertColor("expected the absorber over the hidden ball", Color.green, image, current.x(0), current.y(0));
+    }
+
+    // Partitions covered by this test:
+    // several tiles, clip of part of the board and none; only the tiles under the clip drawn, gadgets and balls
+    // past the default board size drawn
+    @Test
+    public void testPaintTiles() throws IOException, UnableToParseException {
+        Board board = StreamingBoardParser.parse(new File("boards/wide.fb"));
+        BoardRenderer renderer = new BoardRenderer(PIXELS_PER_L);
+        BufferedImage image = new BufferedImage(60*PIXELS_PER_L, 30*PIXELS_PER_L, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        g.setColor(Color.white);
+        g.fillRect(0, 0, image.getWidth(), image.getHeight());
+        g.setClip(45*PIXELS_PER_L, 10*PIXELS_PER_L, 2*PIXELS_PER_L, 4*PIXELS_PER_L);
+        renderer.paint(g, board);
+        g.dispose();
+        assertEquals("expected only the tile under the clip", 1, renderer.getLayerRenders());
+        assertColor("expected the square in the clip", Color.red, image, 45.5, 12.5);
+        assertColor("expected nothing outside the clip", Color.white, image, 25.5, 12.5);
+
+        g = image.createGraphics();
+        renderer.paint(g, board);
+        g.dispose();
+        int columns = (60*PIXELS_PER_L - 1) / BoardRenderer.TILE_SIZE + 1;
+        int rows = (30*PIXELS_PER_L - 1) / BoardRenderer.TILE_SIZE + 1;
+        assertEquals("expected every other tile drawn once", columns*rows, renderer.getLayerRenders());
+        assertColor("expected the other square", Color.red, image, 25.5, 12.5);
+        assertColor("expected the ball past the default board", Color.blue, image, 57.25, 20.25);
+        assertColor("expected the triangle in the far corner", Color.orange, image, 59.8, 0.2);
+        assertColor("expected the absorber across the board", Color.green, image, 50, 29);
+    }
+}
@@ -0,0 +1,142 @@
+package flingball;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Test;
+
+import edu.mit.eecs.parserlib.UnableToParseException;
+
+public class BoardWatcherTest {
+
+    // Testing strategy:
+    // Partition the inputs and outputs of BoardWatcher.patch() and applyPending() as follows:
+    //      change: none, gadget moved, gadget added, absorber holding balls removed, trigger changed, target added
+    //      time: 0, > 0
+    //      file: written while watched, not written
+    //      Out: 0, > 0 changes; unchanged gadgets kept, balls and time kept, released balls fall
+
+    @Test(expected=AssertionError.class)
+    public void testAssertionsEnabled() {
+        assert false; // make sure assertions are enabled with VM argument: -ea
+    }
+
+    private static GameExpression gadget(Board board, String name) {
+        for (GameExpression gadget : board.getGadgets()) {
+            if (gadget.getName().equals(name)) {
+                return gadget;
+            }
+        }
+        return null;
+    }
+
+    private static Board parse(String board) throws IOException, UnableToParseException {
+        return StreamingBoardParser.parse(new StringReader(board));
+    }
+
+    // Partitions covered by this test:
+    // no change, time > 0; 0 changes, gadgets, balls, and time kept
+    @Test
+    public void testPatchUnchanged() throws IOException, UnableToParseException {
+        SimulationEngine engine = new SimulationEngine(StreamingBoardParser.parse(new File("boards/absorber.fb")));
+        engine.advance(300);
+        GameExpression abs1 = gadget(engine.getBoard(), "Abs1");
+        long balls = engine.getBoard().getBallStore().stateHash();
+        double time = engine.getTime();
+        assertEquals("expected no changes", 0,
+                BoardWatcher.patch(engine, StreamingBoardParser.parse(new File("boards/absorber.fb"))));
+        assertSame("expected the same absorber", abs1, gadget(engine.getBoard(), "Abs1"));
+        assertEquals("expected the same balls", balls, engine.getBoard().getBallStore().stateHash());
+        assertEquals("expected the same time", time, engine.getTime(), 0);
+    }
+
+    // Partitions covered by this test:
+    // gadget moved and trigger changed, time > 0; > 0 changes, unchanged gadgets, balls, and time kept
+    @Test
+    public void testPatchMovedAndRetriggered() throws IOException, UnableToParseException {
+        String original = new String(Files.readAllBytes(new File("boards/absorber.fb").toPath()),
+                StandardCharsets.UTF_8);
+        String edited = original.replace("triangleBumper name=Tri x=19 y=0", "triangleBumper name=Tri x=17 y=0")
+                .replace("fire trigger=CircleA action=Abs1", "fire trigger=CircleA action=Abs2");
+        SimulationEngine engine = new SimulationEngine(parse(original));
+        engine.advance(300);
+        GameExpression circleB = gadget(engine.getBoard(), "CircleB");
+        long balls = engine.getBoard().getBallStore().stateHash();
+        double time = engine.getTime();
+        assertEquals("expected a moved gadget and a changed trigger", 2, BoardWatcher.patch(engine, parse(edited)));
+        Board board = engine.getBoard();
+        assertEquals("expected the triangle to move", 17, gadget(board, "Tri").getLocation().x(), 0);
+        assertSame("expected the trigger to point at the live absorber", gadget(board, "Abs2"),
+                gadget(board, "CircleA").getTriggerTarget());
+        assertSame("expected an unchanged gadget to be kept", circleB, gadget(board, "CircleB"));
+        assertEquals("expected the same balls", balls, board.getBallStore().stateHash());
+        assertEquals("expected the same time", time, engine.getTime(), 0);
+        engine.advance(100); // the simulation carries on with the new index
+    }
+
+    // Partitions covered by this test:
+    // target added to a trigger, time 0; > 0 changes, live targets in the order of the file
+    @Test
+    public void testPatchTargetAdded() throws IOException, UnableToParseException {
+        String original = new String(Files.readAllBytes(new File("boards/absorber.fb").toPath()),
+                StandardCharsets.UTF_8);
+        String edited = original + "\nfire trigger=CircleA action=Abs2\n";
+        SimulationEngine engine = new SimulationEngine(parse(original));
+        assertEquals("expected one changed trigger", 1, BoardWatcher.patch(engine, parse(edited)));
+        Board board = engine.getBoard();
+        assertEquals("expected both live absorbers, in order", 2,
+                gadget(board, "CircleA").getTriggerTargets().size());
+        assertSame("expected the original target first", gadget(board, "Abs1"),
+                gadget(board, "CircleA").getTriggerTargets().get(0));
+        assertSame("expected the added target second", gadget(board, "Abs2"),
+                gadget(board, "CircleA").getTriggerTargets().get(1));
+        assertEquals("expected no more changes", 0, BoardWatcher.patch(engine, parse(edited)));
+    }
+
+    // Partitions covered by this test:
+    // absorber holding balls removed; > 0 changes, released balls fall
+    @Test
+    public void testPatchRemovedAbsorber() throws IOException, UnableToParseException {
+        SimulationEngine engine = new SimulationEngine(parse("board name=B\n"
+                + "ball name=A x=5.5 y=2 xVelocity=0 yVelocity=0\n"
+                + "absorber name=Abs x=0 y=10 width=20 height=2\n"));
+        Ball ball = engine.getBoard().getBallStore().ball(0);
+        for (int i = 0; i < 500 && !ball.getAbsorbed(); i++) {
+            engine.advance(1);
+        }
+        assertTrue("expected the ball to be absorbed", ball.getAbsorbed());
+        double y = ball.getLocation().y();
+        assertEquals("expected a removed absorber", 1, BoardWatcher.patch(engine, parse("board name=B\n")));
+        assertTrue("expected no gadgets", engine.getBoard().getGadgets().isEmpty());
+        assertFalse("expected the ball to be released", ball.getAbsorbed());
+        engine.advance(5);
+        assertTrue("expected the ball to fall", ball.getLocation().y() > y);
+    }
+
+    // Partitions covered by this test:
+    // file written while watched, gadget added, time 0; > 0 changes
+    @Test
+    public void testWatchFile() throws IOException, UnableToParseException, InterruptedException {
+        Path path = Files.createTempFile("flingball", ".fb");
+        path.toFile().deleteOnExit();
+        Files.write(path, "board name=B\n".getBytes(StandardCharsets.UTF_8));
+        SimulationEngine engine = new SimulationEngine(StreamingBoardParser.parse(path.toFile()));
+        try (BoardWatcher watcher = new BoardWatcher(path)) {
+            assertEquals("expected no changes before the file is written", 0, watcher.applyPending(engine));
+            Files.write(path, "board name=B\nsquareBumper name=S x=3 y=4\n".getBytes(StandardCharsets.UTF_8));
+            int changes = 0;
+            for (int i = 0; i < 500 && changes == 0; i++) {
+                Thread.sleep(10);
+                changes = watcher.applyPending(engine);
+            }
+            assertEquals("expected an added gadget", 1, changes);
+            assertNotNull("expected the square on the board", gadget(engine.getBoard(), "S"));
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package flingball;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import physics.Circle;
+import physics.LineSegment;
+import physics.Vect;
+
+public class ContactTest {
+
+    // Testing strategy:
+    // Partition the inputs and outputs of timeUntilCollision(Ball, Contact) and collision(Ball, Contact) as follows:
+    //      In: gadget: triangle bumper, square bumper, circle bumper, outer walls
+    //          ball path: hits a side, hits a corner, hits nothing
+    //          contact: empty, already holding an earlier contact
+    //      Out: contact with a side, contact with a corner, no contact;
+    //           collision sets the recorded reflection, or leaves the velocity unchanged for no contact
+
+    @Test(expected=AssertionError.class)
+    public void testAssertionsEnabled() {
+        assert false; // make sure assertions are enabled with VM argument: -ea
+    }
+
+    // Partitions covered by this test:
+    // triangle bumper; hits a side; empty contact; contact with a side; collision sets the reflection
+    @Test
+    public void testTriangleHypotenuse() {
+        TriangleBumper triangle = new TriangleBumper("triangle", 5, 5, 0);
+        Ball ball = new Ball("ball", 5.25, 8, 0, -1);
+        Contact contact = new Contact();
+        double time = triangle.timeUntilCollision(ball, contact);
+        assertEquals("expected the same time as without a contact", triangle.timeUntilCollision(ball), time, 1e-9);
+        assertEquals("expected the hypotenuse", new LineSegment(5, 6, 6, 5), contact.getSide());
+        assertNull("expected no corner", contact.getCorner());
+        ball.setLocation(ball.getLocation().plus(ball.getVelocity().times(time)));
+        triangle.collision(ball, contact);
+        assertEquals("expected the ball to be deflected to the right", 1, ball.getVelocity().x(), 1e-9);
+        assertEquals("expected the ball to be deflected to the right", 0, ball.getVelocity().y(), 1e-9);
+    }
+
+    // Partitions covered by this test:
+    // square bumper; hits a corner; contact already holding an earlier contact; contact with a corner
+    @Test
+    public void testSquareCorner() {
+        SquareBumper square = new SquareBumper("square", 5, 5);
+        OuterWall walls = new OuterWall();
+        Ball ball = new Ball("ball", 4, 4, 1, 1);
+        Contact contact = new Contact();
+        walls.timeUntilCollision(ball, contact);
+        square.timeUntilCollision(ball, contact);
+        assertEquals("expected the top left corner", new Circle(5, 5, 0), contact.getCorner());
+        assertNull("expected no side", contact.getSide());
+        assertEquals("expected the ball to bounce straight back", -1, contact.getReflection().x(), 1e-9);
+        assertEquals("expected the ball to bounce straight back", -1, contact.getReflection().y(), 1e-9);
+    }
+
+    // Partitions covered by this test:
+    // circle bumper; hits nothing; no contact; collision leaves the velocity unchanged
+    @Test
+    public void testNoContact() {
+        CircleBumper circle = new CircleBumper("circle", 5, 5);
+        Ball ball = new Ball("ball", 10, 10, 1, 0);
+        Contact contact = new Contact();
+        assertEquals("expected no collision", Double.MAX_VALUE/2, circle.timeUntilCollision(ball, contact), 0);
+        assertNull("expected no reflection", contact.getReflection());
+        circle.collision(ball, contact);
+        assertEquals("expected velocity to be unchanged", new Vect(1, 0), ball.getVelocity());
+    }
+}
@@ -0,0 +1,97 @@
+package flingball;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+import edu.mit.eecs.parserlib.UnableToParseException;
+import physics.Vect;
+
+public class EventReplayTest {
+
+    // Testing strategy:
+    // Partition the inputs and outputs of EventRecorder and EventReplay.replay() as follows:
+    //      recorded simulation: event-driven, partitioned; with collisions and triggered actions; 0 steps, > 1 steps
+    //      log: complete log of the same board, log of a board whose balls start differently, not an event log
+    //      Out: number of steps replayed, divergence reported, malformed log reported
+
+    @Test(expected=AssertionError.class)
+    public void testAssertionsEnabled() {
+        assert false; // make sure assertions are enabled with VM argument: -ea
+    }
+
+    /**
+     * Record the given number of steps of the board in file to a temporary log.
+     */
+    private static Path record(String file, int steps, ForkJoinPool pool) throws IOException, UnableToParseException {
+        Path log = Files.createTempFile("flingball", ".fbl");
+        log.toFile().deleteOnExit();
+        SimulationEngine engine = new SimulationEngine((Board) BoardParser.parse(new File(file)),
+                SimulationEngine.DEFAULT_TIMESTEP, SimulationEngine.Prediction.LINEAR, pool);
+        EventRecorder recorder = new EventRecorder(engine, log);
+        try {
+            engine.advance(steps);
+        } finally {
+            recorder.close();
+        }
+        return log;
+    }
+
+    // Partitions covered by this test:
+    // event-driven, collisions and triggered actions, > 1 steps; complete log; number of steps replayed
+    @Test
+    public void testReplayMatchesRecording() throws IOException, UnableToParseException {
+        Path log = record("boards/absorber.fb", 1000, null);
+        Board board = (Board) BoardParser.parse(new File("boards/absorber.fb"));
+        assertEquals("expected every step to be replayed", 1000, EventReplay.replay(board, log));
+    }
+
+    // Partitions covered by this test:
+    // partitioned, collisions and triggered actions, > 1 steps; complete log; number of steps replayed
+    @Test
+    public void testReplayPartitioned() throws IOException, UnableToParseException {
+        ForkJoinPool pool = new ForkJoinPool(2);
+        Path log;
+        try {
+            log = record("test/flingball/absorber.fb", 500, pool);
+        } finally {
+            pool.shutdown();
+        }
+        Board board = (Board) BoardParser.parse(new File("test/flingball/absorber.fb"));
+        assertEquals("expected every step to be replayed", 500, EventReplay.replay(board, log));
+    }
+
+    // Partitions covered by this test:
+    // 0 steps; complete log; 0 steps replayed
+    @Test
+    public void testReplayEmpty() throws IOException, UnableToParseException {
+        Path log = record("test/flingball/default.fb", 0, null);
+        Board board = (Board) BoardParser.parse(new File("test/flingball/default.fb"));
+        assertEquals("expected no steps", 0, EventReplay.replay(board, log));
+    }
+
+    // Partitions covered by this test:
+    // > 1 steps; log of a board whose balls start differently; divergence reported
+    @Test(expected=IllegalStateException.class)
+    public void testReplayDiverges() throws IOException, UnableToParseException {
+        Path log = record("test/flingball/default.fb", 200, null);
+        Board board = (Board) BoardParser.parse(new File("test/flingball/default.fb"));
+        Ball ball = board.getBallStore().ball(0);
+        ball.setVelocity(ball.getVelocity().plus(new Vect(1e-9, 0)));
+        EventReplay.replay(board, log);
+    }
+
+    // Partitions covered by this test:
+    // not an event log; malformed log reported
+    @Test(expected=IllegalArgumentException.class)
+    public void testReplayNotALog() throws IOException, UnableToParseException {
+        Board board = (Board) BoardParser.parse(new File("test/flingball/default.fb"));
+        EventReplay.replay(board, new File("test/flingball/default.fb").toPath());
+    }
+}
@@ -166,6 +166,31 @@ public class FlingballSimulationTest {
     }
     
     
+    // Partitions covered by this test:
+    // collision(): In: gadget type: Absorber
+    //              Out: ball's velocity is updated to zero (absorbed by absorber)
+    // action(): In: gadget is an absorber and performs no action (previous ball hasn't fully exited yet)
+    //               gadget is an absorber and fires a ball (previous ball has left without exit() being called)
+    //           Out: gadget is absorber but performed no action; true: action performed
+    @Test
+    public void testAbsorberFiresAgainAfterBallLeaves() {
+        Absorber absorber = new Absorber("absorber", 17, 18, 2, 1);
+        Ball ball1 = new Ball("ball1", 18, 17, 0, 1);
+        absorber.collision(ball1);
+        Ball ball2 = new Ball("ball2", 18, 17, 0, 1);
+        absorber.collision(ball2);
+        
+        assertTrue("expected ball1 to be fired", absorber.action());
+        assertFalse("expected no fire while ball1 is still inside the absorber", absorber.action());
+        assertEquals("expected ball2 to stay absorbed", new Vect(0, 0), ball2.getVelocity());
+        
+        ball1.setLocation(new Vect(18.75, 10));
+        assertTrue("expected ball2 to be fired once ball1 has left", absorber.action());
+        assertEquals("expected ball2 to be fired upwards", new Vect(0, -50), ball2.getVelocity());
+        assertFalse("expected ball2 to be fired", ball2.getAbsorbed());
+    }
+    
+    
     // Partitions covered by this test:
     // collision(): In: gadget type: OuterWall (ball hits wall)
     //              Out: ball's velocity is updated to appropriate reflectionVelocity
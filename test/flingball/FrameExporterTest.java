@@ -0,0 +1,93 @@
+package flingball;
+
+import static org.junit.Assert.*;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Test;
+
+import edu.mit.eecs.parserlib.UnableToParseException;
+
+public class FrameExporterTest {
+
+    // Testing strategy:
+    // Partition the inputs and outputs of FrameExporter.export() as follows:
+    //      frames: 0, 1, > number of encoders + 1
+    //      encoders: 1, > 1
+    //      directory: exists, does not exist
+    //      Out: a PNG per frame, numbered in order, each identical to the live view after the same steps
+
+    private static final int PIXELS_PER_L = 10;
+
+    @Test(expected=AssertionError.class)
+    public void testAssertionsEnabled() {
+        assert false; // make sure assertions are enabled with VM argument: -ea
+    }
+
+    private static SimulationEngine engine() throws IOException, UnableToParseException {
+        return new SimulationEngine(StreamingBoardParser.parse(new File("boards/absorber.fb")));
+    }
+
+    /**
+     * Assert that the image written for frame matches the board of engine drawn directly.
+     */
+    private static void assertFrame(Path directory, int frame, SimulationEngine engine) throws IOException {
+        BufferedImage written = ImageIO.read(directory.resolve(FrameExporter.fileName(frame)).toFile());
+        assertNotNull("expected frame " + frame, written);
+        BufferedImage expected = new BufferedImage(written.getWidth(), written.getHeight(),
+                BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = expected.createGraphics();
+        new BoardRenderer(PIXELS_PER_L).paint(g, engine.getBoard());
+        g.dispose();
+        for (int y = 0; y < expected.getHeight(); y++) {
+            for (int x = 0; x < expected.getWidth(); x++) {
+                assertEquals("expected frame " + frame + " to match the live view at " + x + "," + y,
+                        expected.getRGB(x, y), written.getRGB(x, y));
+            }
+        }
+    }
+
+    // Partitions covered by this test:
+    // frames > encoders + 1, encoders > 1, directory does not exist; a PNG per frame matching the live view
+    @Test
+    public void testExportMatchesLiveView() throws IOException, UnableToParseException, InterruptedException {
+        Path directory = Files.createTempDirectory("flingball").resolve("frames");
+        FrameExporter.export(engine(), 12, 5, PIXELS_PER_L, directory, 2);
+        assertEquals("expected a file per frame", 12, directory.toFile().list().length);
+        BufferedImage first = ImageIO.read(directory.resolve(FrameExporter.fileName(0)).toFile());
+        assertEquals("expected the width of the board", 20*PIXELS_PER_L, first.getWidth());
+        assertEquals("expected the height of the board", 20*PIXELS_PER_L, first.getHeight());
+        SimulationEngine engine = engine();
+        for (int frame = 0; frame < 12; frame++) {
+            if (frame > 0) {
+                engine.advance(5);
+            }
+            assertFrame(directory, frame, engine);
+        }
+        for (File file : directory.toFile().listFiles()) {
+            file.delete();
+        }
+    }
+
+    // Partitions covered by this test:
+    // frames 0 and 1, encoders 1, directory exists; no files, one file of the initial board
+    @Test
+    public void testExportFew() throws IOException, UnableToParseException, InterruptedException {
+        Path directory = Files.createTempDirectory("flingball");
+        SimulationEngine engine = engine();
+        FrameExporter.export(engine, 0, 5, PIXELS_PER_L, directory, 1);
+        assertEquals("expected no files", 0, directory.toFile().list().length);
+        FrameExporter.export(engine, 1, 5, PIXELS_PER_L, directory, 1);
+        assertEquals("expected one file", 1, directory.toFile().list().length);
+        assertEquals("expected no steps", 0, engine.getTime(), 0);
+        assertFrame(directory, 0, engine);
+        directory.resolve(FrameExporter.fileName(0)).toFile().delete();
+    }
+}
@@ -0,0 +1,83 @@
+package flingball;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class GridIndexTest {
+
+    // Testing strategy:
+    // Partition the inputs and outputs of candidates() as follows:
+    //      In: ball velocity: zero, axis-aligned, diagonal
+    //          gadget position: on the ball's path within distance, on the path beyond distance,
+    //                           in a cell next to the path, far from the path
+    //          gadget size: one cell, several cells (absorber)
+    //      Out: empty list, list of one gadget, list of several gadgets in order of name
+    // Partition the inputs and outputs of idsWithin() as follows:
+    //      In: region: inside the board, crossing its edge; within one cell, across several cells
+    //          gadget: inside the region, partly inside, outside
+    //      Out: no ids, ids in increasing order without duplicates
+
+    @Test(expected=AssertionError.class)
+    public void testAssertionsEnabled() {
+        assert false; // make sure assertions are enabled with VM argument: -ea
+    }
+
+    // Partitions covered by this test:
+    // velocity zero; gadget in a cell next to the path and far from the path; one cell; list of one gadget
+    @Test
+    public void testStationaryBallFindsNeighbors() {
+        SquareBumper near = new SquareBumper("near", 6, 5);
+        SquareBumper far = new SquareBumper("far", 15, 15);
+        GridIndex index = new GridIndex(Arrays.asList(near, far), 20, 20);
+        List<GameExpression> candidates = index.candidates(new Ball("ball", 5.5, 5.5, 0, 0), 4);
+        assertEquals("expected only the adjacent bumper", Arrays.asList(near), candidates);
+    }
+
+    // Partitions covered by this test:
+    // velocity axis-aligned; gadgets on the path within and beyond distance; several gadgets in order of name
+    @Test
+    public void testAxisAlignedPath() {
+        CircleBumper b = new CircleBumper("b", 5, 8);
+        TriangleBumper a = new TriangleBumper("a", 4, 7, 0);
+        SquareBumper beyond = new SquareBumper("beyond", 5, 15);
+        GridIndex index = new GridIndex(Arrays.asList(b, a, beyond), 20, 20);
+        List<GameExpression> candidates = index.candidates(new Ball("ball", 5.5, 5.5, 0, 1), 4);
+        assertEquals("expected the bumpers within 4L in order of name", Arrays.asList(a, b), candidates);
+    }
+
+    // Partitions covered by this test:
+    // velocity diagonal; gadget covering several cells on the path; empty list for a path away from it
+    @Test
+    public void testDiagonalPathAbsorber() {
+        Absorber absorber = new Absorber("abs", 10, 10, 5, 2);
+        GridIndex index = new GridIndex(Arrays.asList(absorber), 20, 20);
+        assertEquals("expected to find the absorber ahead of the ball", Arrays.asList(absorber),
+                index.candidates(new Ball("ball", 11.5, 7.5, 1, 1), 4));
+        assertEquals("expected nothing behind the ball", Arrays.asList(),
+                index.candidates(new Ball("ball", 11.5, 7.5, -1, -1), 4));
+    }
+
+    // Partitions covered by this test:
+    // region inside the board across several cells, crossing its edge, and within one cell; gadgets inside,
+    // partly inside, and outside; no ids, ids in increasing order without duplicates
+    @Test
+    public void testIdsWithin() {
+        Absorber absorber = new Absorber("a", 0, 98, 200, 2);
+        SquareBumper square = new SquareBumper("b", 150, 40);
+        CircleBumper circle = new CircleBumper("c", 151, 41);
+        GridIndex index = new GridIndex(Arrays.asList(circle, square, absorber), 200, 100);
+        assertEquals("expected the width of the board", 200, index.getWidth());
+        assertEquals("expected the bumpers in order of id", Arrays.toString(new int[] { 1, 2 }),
+                Arrays.toString(index.idsWithin(149.5, 39.5, 152, 42)));
+        assertEquals("expected the absorber once, from a region past the edge", Arrays.toString(new int[] { 0 }),
+                Arrays.toString(index.idsWithin(-10, 95, 300, 120)));
+        assertEquals("expected the circle overlapping the cell", Arrays.toString(new int[] { 2 }),
+                Arrays.toString(index.idsWithin(151.2, 41.2, 151.4, 41.4)));
+        assertEquals("expected nothing", Arrays.toString(new int[0]),
+                Arrays.toString(index.idsWithin(10, 10, 20, 20)));
+    }
+}
@@ -0,0 +1,80 @@
+package flingball;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+    // Testing strategy:
+    // Partition the inputs and outputs of LatencyHistogram as follows:
+    //      values recorded: none, 1, > 1; values < 32, >= 32, negative, > MAX_VALUE
+    //      percentile: 0, between 0 and 100, 100
+    //      operations: record(), reset(), summarize()
+    //      Out: counts, mean, and max exact; percentiles within 1/16 of the exact value and no more than the max
+
+    @Test(expected=AssertionError.class)
+    public void testAssertionsEnabled() {
+        assert false; // make sure assertions are enabled with VM argument: -ea
+    }
+
+    // Partitions covered by this test:
+    // none recorded; every statistic 0
+    @Test
+    public void testEmpty() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals("expected no values", 0, histogram.getCount());
+        assertEquals("expected no max", 0, histogram.getMax());
+        assertEquals("expected no mean", 0, histogram.getMean(), 0);
+        assertEquals("expected no median", 0, histogram.getPercentile(50));
+    }
+
+    // Partitions covered by this test:
+    // 1 value < 32, percentile 0 and 100; exact
+    @Test
+    public void testSmallValueExact() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(17);
+        assertEquals("expected one value", 1, histogram.getCount());
+        assertEquals("expected the value as the 0th percentile", 17, histogram.getPercentile(0));
+        assertEquals("expected the value as the 100th percentile", 17, histogram.getPercentile(100));
+        assertEquals("expected the value as the mean", 17, histogram.getMean(), 0);
+    }
+
+    // Partitions covered by this test:
+    // > 1 values >= 32, percentiles between 0 and 100; within 1/16, no more than the max
+    @Test
+    public void testPercentilesWithinPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 1; value <= 10000; value++) {
+            histogram.record(value * 1000);
+        }
+        assertEquals("expected every value", 10000, histogram.getCount());
+        assertEquals("expected the exact max", 10000000, histogram.getMax());
+        assertEquals("expected the exact mean", 5000500, histogram.getMean(), 1e-6);
+        for (double percentile : new double[] { 1, 50, 90, 99, 99.9 }) {
+            long exact = Math.round(percentile * 100) * 1000;
+            long found = histogram.getPercentile(percentile);
+            assertTrue("expected percentile " + percentile + " near " + exact + ", got " + found,
+                    found >= exact && found <= exact + exact / 16);
+        }
+        assertEquals("expected the max as the 100th percentile", 10000000, histogram.getPercentile(100));
+    }
+
+    // Partitions covered by this test:
+    // negative and > MAX_VALUE values, reset(), summarize(); values clamped, nothing left after reset
+    @Test
+    public void testClampAndReset() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+        histogram.record(Long.MAX_VALUE);
+        assertEquals("expected the negative value counted as 0", 0, histogram.getPercentile(50));
+        assertEquals("expected the large value clamped", LatencyHistogram.MAX_VALUE, histogram.getMax());
+        LatencyHistogram.Summary summary = histogram.summarize();
+        assertEquals("expected both values summarized", 2, summary.getCount());
+        assertEquals("expected the clamped max summarized", LatencyHistogram.MAX_VALUE, summary.getMax());
+        histogram.reset();
+        assertEquals("expected no values after reset", 0, histogram.getCount());
+        assertEquals("expected no max after reset", 0, histogram.getMax());
+    }
+}
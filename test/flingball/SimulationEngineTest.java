@@ -0,0 +1,621 @@
+package flingball;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+import physics.Vect;
+
+public class SimulationEngineTest {
+
+    // Testing strategy:
+    // Partition the inputs and outputs of the SimulationEngine methods as follows:
+    // step(), advance():
+    //      In: board gravity: 0, > 0
+    //          ball path: hits nothing during the step, hits a bumper, hits an absorber, hits a wall,
+    //                     hits several gadgets within one step
+    //          triggers: none, a collision triggers an absorber that fires a ball, an absorber that triggers
+    //                    itself, a trigger with several targets
+    //          absorber: holds 1, > 4 balls; burst 1, > 1; triggered while a fired ball is still inside
+    //          other balls: none, a ball on a collision course, many balls that stay apart
+    //          number of steps: 0, 1, > 1
+    //          board size: default, larger than the default
+    //      Out: ball moves freely, ball is deflected, ball is absorbed, ball stays inside the walls,
+    //           balls exchange velocities; triggered actions performed at the end of the step, not during
+    //           the collision; a burst fires each ball once the one before it has left the absorber
+    // advanceWithin():
+    //      elapsed: 0, a whole number of timesteps, not a whole number of timesteps
+    //      budget: ample, exhausted by the first substep
+    //      Out: every substep no longer than the timestep; all of elapsed advanced, or one substep advanced and the
+    //           rest dropped and counted as an overrun
+    // getBallPairTests():
+    //      Out: 0, grows linearly with the number of balls when balls are spread out
+    //          prediction: linear, parabolic with steps much longer than a collision
+    // getTime():
+    //      Out: 0, > 0
+    // determinism:
+    //      two engines simulating identical boards with identical steps end in identical states
+    // partitioned stepping:
+    //      pool parallelism: 1, > 1, more threads than balls
+    //      changed balls: fewer than one partition, several partitions
+    //      collisions: ball-to-ball contacts, triggers and absorber queues; ball-to-ball and gadget collisions
+    //                  within the same step
+    //      Out: identical to the event-driven engine for any parallelism
+
+    @Test(expected=AssertionError.class)
+    public void testAssertionsEnabled() {
+        assert false; // make sure assertions are enabled with VM argument: -ea
+    }
+
+    /**
+     * Make a board containing a single ball and the given gadgets.
+     */
+    private static Board makeBoard(double gravity, Ball ball, GameExpression... gadgets) {
+        Set<GameExpression> gadgetSet = new HashSet<>();
+        for (GameExpression gadget : gadgets) {
+            gadgetSet.add(gadget);
+        }
+        Set<GameExpression> balls = new HashSet<>();
+        balls.add(ball);
+        return new Board("test", gravity, 0, 0, gadgetSet, balls);
+    }
+
+    // Partitions covered by this test:
+    // advance(): gravity 0, hits nothing, 0 and > 1 steps
+    // getTime(): 0, > 0
+    @Test
+    public void testFreeMotionNoGravity() {
+        Ball ball = new Ball("ball", 5, 5, 2, 0);
+        SimulationEngine engine = new SimulationEngine(makeBoard(0, ball), 0.01);
+        engine.advance(0);
+        assertEquals("expected no time to pass", 0, engine.getTime(), 1e-9);
+        engine.advance(100);
+        assertEquals("expected one second to pass", 1, engine.getTime(), 1e-9);
+        assertEquals("expected ball to travel 2L to the right", 7, ball.getLocation().x(), 1e-6);
+        assertEquals("expected ball to stay at the same height", 5, ball.getLocation().y(), 1e-6);
+    }
+
+    // Partitions covered by this test:
+    // step(): gravity > 0, hits nothing, 1 step
+    @Test
+    public void testGravityAcceleratesBall() {
+        Ball ball = new Ball("ball", 5, 5, 0, 0);
+        SimulationEngine engine = new SimulationEngine(makeBoard(25, ball));
+        engine.step(0.1);
+        assertEquals("expected gravity to accelerate the ball downwards", 2.5, ball.getVelocity().y(), 1e-6);
+    }
+
+    // Partitions covered by this test:
+    // advance(): gravity 0, hits a bumper, > 1 steps
+    @Test
+    public void testBallBouncesOffSquareBumper() {
+        Ball ball = new Ball("ball", 5.5, 2, 0, 10);
+        SquareBumper square = new SquareBumper("square", 5, 5);
+        SimulationEngine engine = new SimulationEngine(makeBoard(0, ball, square));
+        engine.advance(50);
+        assertEquals("expected ball to bounce straight back up off the top of the bumper",
+                new Vect(0, -10), ball.getVelocity());
+        assertTrue("expected ball to stay above the bumper", ball.getLocation().y() < 5);
+    }
+
+    // Partitions covered by this test:
+    // advance(): gravity > 0, hits an absorber, > 1 steps
+    @Test
+    public void testBallFallsIntoAbsorber() {
+        Ball ball = new Ball("ball", 10, 10, 0, 0);
+        Absorber absorber = new Absorber("absorber", 0, 19, 20, 1);
+        SimulationEngine engine = new SimulationEngine(makeBoard(25, ball, absorber));
+        engine.advance(300);
+        assertTrue("expected ball to be absorbed", ball.getAbsorbed());
+        assertEquals("expected absorbed ball to be stationary", new Vect(0, 0), ball.getVelocity());
+    }
+
+    // Partitions covered by this test:
+    // advance(): gravity 0, hits a wall, > 1 steps
+    @Test
+    public void testBallStaysInsideWalls() {
+        Ball ball = new Ball("ball", 1, 1, -30, -40);
+        SimulationEngine engine = new SimulationEngine(makeBoard(0, ball));
+        engine.advance(500);
+        assertTrue("expected ball to stay on the board", ball.getLocation().x() >= 0.25 && ball.getLocation().x() <= 19.75);
+        assertTrue("expected ball to stay on the board", ball.getLocation().y() >= 0.25 && ball.getLocation().y() <= 19.75);
+        assertEquals("expected walls to preserve the ball's speed", 50, ball.getVelocity().length(), 1e-6);
+    }
+
+    // Partitions covered by this test:
+    // advance(): gravity 0, board larger than the default, hits a wall, > 1 steps
+    @Test
+    public void testBallCrossesLargeBoard() {
+        Ball ball = new Ball("ball", 1, 1, 30, 0);
+        Set<GameExpression> balls = new HashSet<>();
+        balls.add(ball);
+        Board board = new Board("large", 100, 40, 0, 0, 0, new HashSet<>(), balls);
+        SimulationEngine engine = new SimulationEngine(board);
+        engine.advance(200);
+        assertEquals("expected the ball to pass where a default board ends", 61, ball.getLocation().x(), 1e-6);
+        engine.advance(200);
+        assertTrue("expected the ball to bounce off the far wall", ball.getVelocity().x() < 0);
+        assertEquals("expected the ball back after bouncing at x=99.75", 100 - 0.25 - (121 - 99.75),
+                ball.getLocation().x(), 1e-6);
+    }
+
+    // Partitions covered by this test:
+    // determinism: identical boards and steps give identical states
+    @Test
+    public void testDeterministic() {
+        Ball ball1 = new Ball("ball", 1.8, 4.5, -3.4, -2.3);
+        Ball ball2 = new Ball("ball", 1.8, 4.5, -3.4, -2.3);
+        SimulationEngine engine1 = new SimulationEngine(makeBoard(25, ball1, new CircleBumper("circle", 4, 3),
+                new TriangleBumper("tri", 1, 1, 270)));
+        SimulationEngine engine2 = new SimulationEngine(makeBoard(25, ball2, new CircleBumper("circle", 4, 3),
+                new TriangleBumper("tri", 1, 1, 270)));
+        engine1.advance(1000);
+        engine2.advance(1000);
+        assertEquals("expected identical locations", ball1.getLocation(), ball2.getLocation());
+        assertEquals("expected identical velocities", ball1.getVelocity(), ball2.getVelocity());
+    }
+
+    // Partitions covered by this test:
+    // step(): gravity 0, hits several gadgets within one step, 1 step
+    @Test
+    public void testManyCollisionsInOneStep() {
+        Ball ball = new Ball("ball", 5.5, 6.5, 0, 10);
+        SimulationEngine engine = new SimulationEngine(makeBoard(0, ball, new SquareBumper("top", 5, 4),
+                new SquareBumper("bottom", 5, 8)));
+        engine.step(2);
+        assertTrue("expected ball to bounce between the bumpers for the whole step",
+                ball.getLocation().y() > 5 && ball.getLocation().y() < 8);
+        assertEquals("expected bumpers to preserve the ball's speed", 10, ball.getVelocity().length(), 1e-6);
+    }
+
+    // Partitions covered by this test:
+    // advance(): gravity 0, hits a bumper that triggers an absorber that fires a ball, > 1 steps
+    @Test
+    public void testTriggeredAbsorberFiresBall() {
+        Absorber absorber = new Absorber("absorber", 0, 19, 20, 1);
+        SquareBumper square = new SquareBumper("square", 5, 5);
+        square.setTrigger(absorber);
+        Ball absorbed = new Ball("absorbed", 10, 10, 0, 0);
+        absorber.collision(absorbed);
+        Ball ball = new Ball("ball", 5.5, 2, 0, 10);
+        Set<GameExpression> gadgets = new HashSet<>();
+        gadgets.add(absorber);
+        gadgets.add(square);
+        Set<GameExpression> balls = new HashSet<>();
+        balls.add(absorbed);
+        balls.add(ball);
+        SimulationEngine engine = new SimulationEngine(new Board("test", 0, 0, 0, gadgets, balls));
+        engine.advance(40);
+        assertFalse("expected the absorbed ball to be fired", absorbed.getAbsorbed());
+        assertTrue("expected the fired ball to move up out of the absorber", absorbed.getLocation().y() < 19);
+    }
+
+    // Partitions covered by this test:
+    // advance(): gravity 0, hits an absorber that triggers itself, > 1 steps; action performed at the end of the
+    //            step, not during the collision
+    @Test
+    public void testSelfTriggeredAbsorberFiresAfterCollisions() {
+        Absorber absorber = new Absorber("absorber", 0, 19, 20, 1);
+        absorber.setTrigger(absorber);
+        Ball ball = new Ball("ball", 10.5, 15, 0, 10);
+        SimulationEngine engine = new SimulationEngine(makeBoard(0, ball, absorber));
+        boolean[] absorbedWhenCollided = { false };
+        int[] actions = { 0 };
+        engine.setListener(new SimulationListener() {
+            @Override public void collision(double time, Ball collided, GameExpression gadget) {
+                if (gadget == absorber) {
+                    absorbedWhenCollided[0] = collided.getAbsorbed();
+                }
+            }
+            @Override public void action(double time, GameExpression trigger, GameExpression target) {
+                actions[0]++;
+            }
+            @Override public void step(double time, double dt) {}
+        });
+        for (int i = 0; i < 100 && actions[0] == 0; i++) {
+            engine.step(engine.getTimestep());
+        }
+        assertEquals("expected the absorber to trigger itself once", 1, actions[0]);
+        assertTrue("expected the ball to be held while the collision was reported", absorbedWhenCollided[0]);
+        assertFalse("expected the ball to be fired by the end of the step", ball.getAbsorbed());
+        assertEquals("expected the ball to be fired upwards", new Vect(0, -50), ball.getVelocity());
+    }
+
+    // Partitions covered by this test:
+    // advance(): gravity 0, hits a bumper whose trigger has several targets, > 1 steps; every target fires
+    @Test
+    public void testTriggerFanOut() {
+        Absorber left = new Absorber("left", 0, 19, 8, 1);
+        Absorber right = new Absorber("right", 12, 19, 8, 1);
+        SquareBumper square = new SquareBumper("square", 5, 5);
+        Ball leftBall = new Ball("leftBall", 3, 10, 0, 0);
+        Ball rightBall = new Ball("rightBall", 13, 10, 0, 0);
+        left.collision(leftBall);
+        right.collision(rightBall);
+        assertTrue("expected the square to take a first target", square.setTrigger(left));
+        assertTrue("expected the square to take a second target", square.setTrigger(right));
+        assertFalse("expected the same target not to be added twice", square.setTrigger(left));
+        Ball ball = new Ball("ball", 5.5, 2, 0, 10);
+        Set<GameExpression> gadgets = new HashSet<>();
+        gadgets.add(left);
+        gadgets.add(right);
+        gadgets.add(square);
+        Set<GameExpression> balls = new HashSet<>();
+        balls.add(leftBall);
+        balls.add(rightBall);
+        balls.add(ball);
+        SimulationEngine engine = new SimulationEngine(new Board("test", 0, 0, 0, gadgets, balls));
+        engine.advance(40);
+        assertFalse("expected the left absorber to fire", leftBall.getAbsorbed());
+        assertFalse("expected the right absorber to fire", rightBall.getAbsorbed());
+        assertTrue("expected both fired balls to move up", leftBall.getVelocity().y() < 0
+                && rightBall.getVelocity().y() < 0);
+    }
+
+    // Partitions covered by this test:
+    // advance(): gravity 0, absorber holds 1 ball, burst 1, triggered while the fired ball is still inside
+    @Test
+    public void testAbsorberWaitsForFiredBallToLeave() {
+        Absorber absorber = new Absorber("absorber", 0, 17, 20, 3);
+        Ball first = new Ball("first", 10, 10, 0, 0);
+        Ball second = new Ball("second", 12, 10, 0, 0);
+        absorber.collision(first);
+        absorber.collision(second);
+        Set<GameExpression> balls = new HashSet<>();
+        balls.add(first);
+        balls.add(second);
+        Set<GameExpression> gadgets = new HashSet<>();
+        gadgets.add(absorber);
+        SimulationEngine engine = new SimulationEngine(new Board("test", 0, 0, 0, gadgets, balls));
+        assertTrue("expected the absorber to fire the first ball", absorber.action());
+        assertFalse("expected the first ball to be fired", first.getAbsorbed());
+        assertFalse("expected the absorber to hold fire while the first ball is inside", absorber.action());
+        engine.step(engine.getTimestep());
+        assertTrue("expected the first ball still inside", first.getLocation().y() > 17);
+        assertFalse("expected the absorber to hold fire while the first ball is inside", absorber.action());
+        for (int i = 0; i < 10 && first.getLocation().y() > 17; i++) {
+            engine.step(engine.getTimestep());
+        }
+        assertTrue("expected the first ball to leave", first.getLocation().y() <= 17);
+        assertTrue("expected the second ball to be held", second.getAbsorbed());
+        assertTrue("expected the absorber to fire again once the first ball left", absorber.action());
+        assertFalse("expected the second ball to be fired", second.getAbsorbed());
+    }
+
+    // Partitions covered by this test:
+    // advance(): gravity 0, absorber holds > 4 balls, burst > 1; a burst fires each ball once the one before it
+    //            has left the absorber
+    @Test
+    public void testAbsorberBurst() {
+        Absorber absorber = new Absorber("absorber", 0, 19, 20, 1, 3);
+        Set<GameExpression> balls = new HashSet<>();
+        Ball[] held = new Ball[6];
+        for (int i = 0; i < held.length; i++) {
+            held[i] = new Ball("ball" + i, 2*i + 1, 10, 0, 0);
+            absorber.collision(held[i]);
+            balls.add(held[i]);
+        }
+        assertEquals("expected every ball held", held.length, absorber.getAbsorbedBalls().size());
+        for (int i = 0; i < held.length; i++) {
+            assertSame("expected the balls held in order", held[i], absorber.getAbsorbedBalls().get(i));
+        }
+        Set<GameExpression> gadgets = new HashSet<>();
+        gadgets.add(absorber);
+        SimulationEngine engine = new SimulationEngine(new Board("test", 0, 0, 0, gadgets, balls));
+        assertTrue("expected the absorber to start a burst", absorber.action());
+        assertFalse("expected no second burst while the first is firing", absorber.action());
+        for (int i = 0; i < 20; i++) {
+            engine.step(engine.getTimestep());
+        }
+        for (int i = 0; i < held.length; i++) {
+            assertEquals("expected only the first 3 balls fired", i >= 3, held[i].getAbsorbed());
+        }
+        assertTrue("expected the fired balls to be staggered", held[0].getLocation().y() < held[1].getLocation().y()
+                && held[1].getLocation().y() < held[2].getLocation().y());
+        assertTrue("expected the absorber to start another burst", absorber.action());
+        assertFalse("expected the next ball to be fired", held[3].getAbsorbed());
+    }
+
+    // Partitions covered by this test:
+    // advance(): gravity 0, a ball on a collision course, > 1 steps, balls exchange velocities
+    // getBallPairTests(): > 0
+    @Test
+    public void testHeadOnBallsBounce() {
+        Ball left = new Ball("left", 5, 10, 4, 0);
+        Ball right = new Ball("right", 15, 10, -4, 0);
+        Set<GameExpression> balls = new HashSet<>();
+        balls.add(left);
+        balls.add(right);
+        SimulationEngine engine = new SimulationEngine(new Board("test", 0, 0, 0, new HashSet<>(), balls));
+        engine.advance(150);
+        assertEquals("expected equal balls to exchange velocities", new Vect(-4, 0), left.getVelocity());
+        assertEquals("expected equal balls to exchange velocities", new Vect(4, 0), right.getVelocity());
+        assertTrue("expected balls to separate", left.getLocation().x() < 9.75 && right.getLocation().x() > 10.25);
+        assertTrue("expected the balls to be tested against each other", engine.getBallPairTests() > 0);
+    }
+
+    // Partitions covered by this test:
+    // advance(): gravity 0, many balls that stay apart, > 1 steps
+    // getBallPairTests(): 0 for spread-out balls
+    @Test
+    public void testSpreadOutBallsAreNotPaired() {
+        Set<GameExpression> balls = new HashSet<>();
+        for (int x = 0; x < 10; x++) {
+            for (int y = 0; y < 10; y++) {
+                balls.add(new Ball("ball" + x + "_" + y, 2*x + 1, 2*y + 1, 1, 0));
+            }
+        }
+        SimulationEngine engine = new SimulationEngine(new Board("test", 0, 0, 0, new HashSet<>(), balls));
+        engine.advance(10);
+        assertEquals("expected no candidate pairs among 100 balls that never come close", 0,
+                engine.getBallPairTests());
+    }
+
+    /**
+     * @return the number of candidate pairs tested in 10 steps of a board with the given number of rows of ten
+     *         pairs of balls, each pair close enough for their swept boxes to overlap but moving in parallel
+     */
+    private static long pairTestsOfParallelPairs(int rows) {
+        Set<GameExpression> balls = new HashSet<>();
+        for (int x = 0; x < 10; x++) {
+            for (int y = 0; y < rows; y++) {
+                balls.add(new Ball("ball" + x + "_" + y, 2*x + 0.5, 2*y + 0.5, 1, 0));
+                balls.add(new Ball("partner" + x + "_" + y, 2*x + 0.95, 2*y + 0.95, 1, 0));
+            }
+        }
+        SimulationEngine engine = new SimulationEngine(new Board("test", 0, 0, 0, new HashSet<>(), balls));
+        engine.advance(10);
+        return engine.getBallPairTests();
+    }
+
+    // Partitions covered by this test:
+    // advance(): gravity 0, many balls that stay apart, > 1 steps
+    // getBallPairTests(): grows linearly with the number of balls when balls are spread out
+    @Test
+    public void testPairTestsGrowLinearly() {
+        long pairTests = pairTestsOfParallelPairs(4);
+        assertTrue("expected the close pairs to be tested", pairTests > 0);
+        assertEquals("expected twice as many pair tests for twice as many balls", 2*pairTests,
+                pairTestsOfParallelPairs(8));
+    }
+
+    // Partitions covered by this test:
+    // advance(): gravity > 0, hits a bumper, > 1 steps, parabolic with steps much longer than a collision
+    @Test
+    public void testParabolicBounceKeepsHeight() {
+        Ball ball = new Ball("ball", 5.5, 2, 0, 0);
+        SquareBumper square = new SquareBumper("square", 5, 10);
+        // the ball falls 7.75L onto the bumper in sqrt(2*7.75/25) seconds, and rises back up in as long again
+        double period = 2*Math.sqrt(2*7.75/25);
+        SimulationEngine engine = new SimulationEngine(makeBoard(25, ball, square), period/10,
+                SimulationEngine.Prediction.PARABOLIC);
+        engine.advance(10);
+        assertEquals("expected ball to bounce back up to where it started", 2, ball.getLocation().y(), 1e-6);
+        assertEquals("expected ball to be at the top of its bounce", 0, ball.getVelocity().y(), 1e-6);
+        assertEquals("expected ball to bounce straight up", 5.5, ball.getLocation().x(), 1e-9);
+    }
+
+    // Partitions covered by this test:
+    // advance(): gravity > 0, hits several gadgets within one step, > 1 steps, parabolic with a later candidate hit
+    //            before an earlier one
+    @Test
+    public void testParabolicEarlierHitOnLaterCandidate() {
+        // the ball falls onto the top of below at about 0.11s, before it would reach the side of ahead at 0.125s,
+        // whichever of the two is tested first
+        for (String[] names : new String[][] {{"a", "b"}, {"z", "b"}}) {
+            Ball ball = new Ball("ball", 2.5, 2.6, 10, 0);
+            SquareBumper ahead = new SquareBumper(names[0], 4, 2);
+            SquareBumper below = new SquareBumper(names[1], 3, 3);
+            new SimulationEngine(makeBoard(25, ball, ahead, below), 0.01, SimulationEngine.Prediction.PARABOLIC)
+                    .advance(12);
+            assertEquals("expected ball to keep moving right after bouncing off " + names[1], 10,
+                    ball.getVelocity().x(), 1e-9);
+            assertTrue("expected ball to bounce up off the top of " + names[1] + ", got " + ball.getVelocity(),
+                    ball.getVelocity().y() < 0);
+            assertTrue("expected ball to stay above " + names[1] + ", got " + ball.getLocation(),
+                    ball.getLocation().y() + 0.25 <= 3 + 1e-9);
+        }
+    }
+
+    /**
+     * Make a board with a 9 by 9 grid of balls moving in different directions among bumpers, over an absorber
+     * that a bumper and the absorber itself trigger.
+     */
+    private static Board makeCrowdedBoard() {
+        Set<GameExpression> gadgets = new HashSet<>();
+        Absorber absorber = new Absorber("absorber", 0, 19, 20, 1);
+        absorber.setTrigger(absorber);
+        SquareBumper square = new SquareBumper("square", 3, 3);
+        square.setTrigger(absorber);
+        gadgets.add(absorber);
+        gadgets.add(square);
+        gadgets.add(new CircleBumper("circle", 9, 9));
+        gadgets.add(new TriangleBumper("triangle", 15, 7, 90));
+        Set<GameExpression> balls = new HashSet<>();
+        for (int x = 0; x < 9; x++) {
+            for (int y = 0; y < 9; y++) {
+                balls.add(new Ball("ball" + x + "_" + y, 2*x + 0.5, 2*y + 0.5, (x*7 + y*3) % 11 - 5, (x*5 + y) % 9 - 4));
+            }
+        }
+        return new Board("crowded", 25, 0.025, 0.025, gadgets, balls);
+    }
+
+    // Partitions covered by this test:
+    // partitioned stepping: parallelism > 1; fewer than one partition; ball-to-ball contacts
+    @Test
+    public void testPartitionedBallsBounce() {
+        Ball left = new Ball("left", 5, 10, 4, 0);
+        Ball right = new Ball("right", 15, 10, -4, 0);
+        Set<GameExpression> balls = new HashSet<>();
+        balls.add(left);
+        balls.add(right);
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            new SimulationEngine(new Board("test", 0, 0, 0, new HashSet<>(), balls), 0.01,
+                    SimulationEngine.Prediction.LINEAR, pool).advance(150);
+        } finally {
+            pool.shutdown();
+        }
+        assertEquals("expected equal balls to exchange velocities", new Vect(-4, 0), left.getVelocity());
+        assertEquals("expected equal balls to exchange velocities", new Vect(4, 0), right.getVelocity());
+    }
+
+    // Partitions covered by this test:
+    // partitioned stepping: parallelism 1; fewer than one partition; a collision triggers an absorber that fires a
+    //                       ball at the end of the step
+    @Test
+    public void testPartitionedTriggerFiresBall() {
+        Absorber absorber = new Absorber("absorber", 0, 19, 20, 1);
+        SquareBumper square = new SquareBumper("square", 5, 5);
+        square.setTrigger(absorber);
+        Ball absorbed = new Ball("absorbed", 10, 10, 0, 0);
+        absorber.collision(absorbed);
+        Ball ball = new Ball("ball", 5.5, 2, 0, 10);
+        Set<GameExpression> gadgets = new HashSet<>();
+        gadgets.add(absorber);
+        gadgets.add(square);
+        Set<GameExpression> balls = new HashSet<>();
+        balls.add(absorbed);
+        balls.add(ball);
+        ForkJoinPool pool = new ForkJoinPool(1);
+        try {
+            new SimulationEngine(new Board("test", 0, 0, 0, gadgets, balls), 0.01,
+                    SimulationEngine.Prediction.LINEAR, pool).advance(40);
+        } finally {
+            pool.shutdown();
+        }
+        assertFalse("expected the absorbed ball to be fired", absorbed.getAbsorbed());
+        assertTrue("expected the fired ball to move up out of the absorber", absorbed.getLocation().y() < 19);
+        assertEquals("expected the ball to bounce off the bumper", new Vect(0, -10), ball.getVelocity());
+    }
+
+    /**
+     * A listener that counts the steps with both a ball-to-ball collision and a collision with a gadget.
+     */
+    private static class MixedSteps implements SimulationListener {
+        private boolean ballHit = false;
+        private boolean gadgetHit = false;
+        private int mixed = 0;
+
+        @Override public void collision(double time, Ball ball, GameExpression gadget) {
+            if (gadget instanceof Ball) {
+                this.ballHit = true;
+            } else {
+                this.gadgetHit = true;
+            }
+        }
+
+        @Override public void action(double time, GameExpression trigger, GameExpression target) {}
+
+        @Override public void step(double time, double dt) {
+            this.mixed += this.ballHit && this.gadgetHit ? 1 : 0;
+            this.ballHit = false;
+            this.gadgetHit = false;
+        }
+    }
+
+    // Partitions covered by this test:
+    // partitioned stepping: parallelism 1, > 1, more threads than balls; several partitions; ball-to-ball contacts,
+    //                       triggers and absorber queues; ball-to-ball and gadget collisions within the same step;
+    //                       identical to the event-driven engine
+    @Test
+    public void testPartitionedMatchesEventDriven() {
+        Board eventDriven = makeCrowdedBoard();
+        SimulationEngine engine = new SimulationEngine(eventDriven);
+        MixedSteps mixed = new MixedSteps();
+        engine.setListener(mixed);
+        engine.advance(300);
+        assertTrue("expected steps with both ball-to-ball and gadget collisions", mixed.mixed > 0);
+        BallStore expected = eventDriven.getBallStore();
+        assertTrue("expected more changed balls at the start of a step than fit in one partition",
+                expected.size() > 64);
+        int absorbed = 0;
+        for (int slot = 0; slot < expected.size(); slot++) {
+            absorbed += expected.ball(slot).getAbsorbed() ? 1 : 0;
+        }
+        assertTrue("expected some balls to be waiting in the absorber", absorbed > 0);
+        // every ball is predicted afresh at the start of the first step, in two partitions of 64 and 17 balls
+        for (int parallelism : new int[] {1, 4, 2*expected.size()}) {
+            Board partitioned = makeCrowdedBoard();
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            try {
+                new SimulationEngine(partitioned, SimulationEngine.DEFAULT_TIMESTEP, SimulationEngine.Prediction.LINEAR,
+                        pool).advance(300);
+            } finally {
+                pool.shutdown();
+            }
+            BallStore actual = partitioned.getBallStore();
+            assertEquals("expected the same balls", expected.size(), actual.size());
+            for (int slot = 0; slot < expected.size(); slot++) {
+                Ball expectedBall = expected.ball(slot);
+                Ball actualBall = actual.ball(slot);
+                assertEquals("expected the same ball in each slot", expectedBall.getName(), actualBall.getName());
+                assertEquals("expected identical locations", expectedBall.getLocation(), actualBall.getLocation());
+                assertEquals("expected identical velocities", expectedBall.getVelocity(), actualBall.getVelocity());
+                assertEquals("expected identical absorbed states", expectedBall.getAbsorbed(),
+                        actualBall.getAbsorbed());
+            }
+        }
+    }
+
+    /**
+     * A listener that records the length of every step.
+     */
+    private static class StepLengths implements SimulationListener {
+        private final List<Double> lengths = new ArrayList<>();
+
+        @Override public void collision(double time, Ball ball, GameExpression gadget) {}
+
+        @Override public void action(double time, GameExpression trigger, GameExpression target) {}
+
+        @Override public void step(double time, double dt) {
+            this.lengths.add(dt);
+        }
+    }
+
+    // Partitions covered by this test:
+    // advanceWithin(): elapsed 0, a whole number of timesteps, not a whole number of timesteps; ample budget;
+    // substeps no longer than the timestep, all of elapsed advanced
+    @Test
+    public void testAdvanceWithinSubsteps() {
+        Ball ball = new Ball("ball", 10, 2, 0, 0);
+        SimulationEngine engine = new SimulationEngine(makeBoard(25, ball), 0.01);
+        StepLengths steps = new StepLengths();
+        engine.setListener(steps);
+        assertEquals("expected nothing to advance", 0, engine.advanceWithin(0, Long.MAX_VALUE), 0);
+        assertEquals("expected no steps", 0, steps.lengths.size());
+        assertEquals("expected all of the time advanced", 0.03, engine.advanceWithin(0.03, Long.MAX_VALUE), 1e-12);
+        assertEquals("expected one step per timestep", 3, steps.lengths.size());
+        assertEquals("expected all of the time advanced", 0.035, engine.advanceWithin(0.035, Long.MAX_VALUE),
+                1e-12);
+        assertEquals("expected a shorter last substep", 7, steps.lengths.size());
+        assertEquals("expected a shorter last substep", 0.005, steps.lengths.get(6), 1e-12);
+        for (double dt : steps.lengths) {
+            assertTrue("expected no substep longer than the timestep, got " + dt, dt <= 0.01);
+        }
+        assertEquals("expected the time of the engine to add up", 0.065, engine.getTime(), 1e-12);
+    }
+
+    // Partitions covered by this test:
+    // advanceWithin(): elapsed a whole number of timesteps; budget exhausted by the first substep;
+    // one substep advanced and the rest dropped and counted as an overrun
+    @Test
+    public void testAdvanceWithinOverBudget() {
+        Ball ball = new Ball("ball", 10, 2, 0, 0);
+        SimulationEngine engine = new SimulationEngine(makeBoard(25, ball), 0.01);
+        SimulationMetrics metrics = new SimulationMetrics();
+        engine.setMetrics(metrics);
+        assertEquals("expected only one substep", 0.01, engine.advanceWithin(1, 0), 1e-12);
+        assertEquals("expected only one substep", 0.01, engine.getTime(), 1e-12);
+        assertEquals("expected an overrun", 1, metrics.getBudgetOverruns());
+        assertEquals("expected the rest of the time dropped", 0.99, metrics.getDroppedTime(), 1e-9);
+        assertEquals("expected no overrun without time left over", 0.01, engine.advanceWithin(0.01, 0), 1e-12);
+        assertEquals("expected no overrun without time left over", 1, metrics.getBudgetOverruns());
+    }
+}
@@ -0,0 +1,88 @@
+package flingball;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import org.junit.Test;
+
+import edu.mit.eecs.parserlib.UnableToParseException;
+
+public class SimulationLoopTest {
+
+    // Testing strategy:
+    // Partition the inputs and outputs of SimulationLoop as follows:
+    //      loop: not started, started, closed
+    //      budget: default, 0
+    //      Out: frame at time 0, frames at increasing times with moving balls; engine stops when closed
+
+    @Test(expected=AssertionError.class)
+    public void testAssertionsEnabled() {
+        assert false; // make sure assertions are enabled with VM argument: -ea
+    }
+
+    private static SimulationEngine engine() throws IOException, UnableToParseException {
+        return new SimulationEngine(StreamingBoardParser.parse(new StringReader("board name=Loop\n"
+                + "ball name=B x=10.5 y=2.5 xVelocity=0 yVelocity=0\n")));
+    }
+
+    // Partitions covered by this test:
+    // not started, closed; frame at time 0
+    @Test
+    public void testFirstFrame() throws IOException, UnableToParseException {
+        SimulationEngine engine = engine();
+        try (SimulationLoop loop = new SimulationLoop(engine, null)) {
+            BoardFrame frame = loop.latestFrame();
+            assertEquals("expected time 0", 0, frame.getTime(), 0);
+            assertEquals("expected one ball", 1, frame.size());
+            assertEquals("expected the ball where it starts", 2.5, frame.y(0), 0);
+            assertSame("expected the gadgets of the board", engine.getBoard().getGridIndex(), frame.getGadgets());
+        }
+    }
+
+    // Partitions covered by this test:
+    // started, closed; frames at increasing times with moving balls, engine stops when closed
+    @Test
+    public void testRunning() throws IOException, UnableToParseException, InterruptedException {
+        SimulationEngine engine = engine();
+        BoardFrame first;
+        BoardFrame last;
+        try (SimulationLoop loop = new SimulationLoop(engine, null)) {
+            first = loop.latestFrame();
+            loop.start();
+            last = first;
+            for (int i = 0; i < 500 && last.getTime() < 0.1; i++) {
+                Thread.sleep(10);
+                last = loop.latestFrame();
+            }
+        }
+        assertTrue("expected time to pass", last.getTime() >= 0.1);
+        assertTrue("expected the ball to fall", last.y(0) > first.y(0));
+        assertEquals("expected the first frame unchanged", 2.5, first.y(0), 0);
+        double time = engine.getTime();
+        Thread.sleep(50);
+        assertEquals("expected the engine to stop once closed", time, engine.getTime(), 0);
+    }
+
+    // Partitions covered by this test:
+    // started, closed; budget 0; frames at increasing times with moving balls, no faster than real time
+    @Test
+    public void testNoBudget() throws IOException, UnableToParseException, InterruptedException {
+        SimulationEngine engine = engine();
+        long start = System.nanoTime();
+        BoardFrame last;
+        try (SimulationLoop loop = new SimulationLoop(engine, null, 0)) {
+            loop.start();
+            last = loop.latestFrame();
+            for (int i = 0; i < 500 && last.getTime() < 0.1; i++) {
+                Thread.sleep(10);
+                last = loop.latestFrame();
+            }
+        }
+        assertTrue("expected time to pass", last.getTime() >= 0.1);
+        assertTrue("expected the ball to fall", last.y(0) > 2.5);
+        assertTrue("expected no more simulated time than real time",
+                engine.getTime() <= (System.nanoTime() - start) / 1e9 + engine.getTimestep());
+    }
+}
@@ -0,0 +1,143 @@
+package flingball;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+
+import org.junit.Test;
+
+import edu.mit.eecs.parserlib.UnableToParseException;
+
+public class SimulationMetricsTest {
+
+    // Testing strategy:
+    // Partition the inputs and outputs of SimulationMetrics as follows:
+    //      engine: sequential, partitioned; no metrics, metrics set
+    //      board: collisions with bumpers, absorbers, and walls; triggers; balls absorbed
+    //      operations: recorded by an engine, overrun(), reset(), dump(), registered with an MBeanServer
+    //      Out: one latency per step for each phase of a step, counts of collisions by gadget type that add up to
+    //           the engine's collisions, triggers and actions, balls active and absorbed, overruns and the time
+    //           they dropped; attributes read over JMX
+
+    @Test(expected=AssertionError.class)
+    public void testAssertionsEnabled() {
+        assert false; // make sure assertions are enabled with VM argument: -ea
+    }
+
+    private static SimulationEngine engine(String file) throws UnableToParseException {
+        return new SimulationEngine((Board) BoardParser.parse(new File(file)));
+    }
+
+    // Partitions covered by this test:
+    // sequential engine, metrics set; collisions with bumpers, absorbers, and walls, triggers, balls absorbed;
+    // recorded by an engine; latencies per step, counts add up
+    @Test
+    public void testRecordedByEngine() throws UnableToParseException {
+        SimulationEngine engine = engine("boards/absorber.fb");
+        SimulationMetrics metrics = new SimulationMetrics();
+        engine.setMetrics(metrics);
+        engine.advance(500);
+        assertEquals("expected one step latency per step", 500, metrics.getSteps());
+        for (SimulationMetrics.Phase phase : SimulationMetrics.Phase.values()) {
+            long expected = phase == SimulationMetrics.Phase.PAINT ? 0 : 500;
+            assertEquals("expected one latency per step for " + phase, expected,
+                    metrics.getLatency(phase).getCount());
+        }
+        assertEquals("expected every collision counted", engine.getCollisionCount(), metrics.getCollisions());
+        Map<String, Long> byType = metrics.getCollisionsByGadgetType();
+        long total = 0;
+        for (long count : byType.values()) {
+            total += count;
+        }
+        assertEquals("expected the types to add up", metrics.getCollisions(), total);
+        assertTrue("expected absorber collisions", byType.get("Absorber") > 0);
+        assertTrue("expected triggers", metrics.getTriggers() > 0);
+        assertEquals("expected one action per trigger on this board", metrics.getTriggers(), metrics.getActions());
+        assertEquals("expected every ball counted", engine.getBoard().getBallStore().size(),
+                metrics.getActiveBalls() + metrics.getAbsorbedBalls());
+    }
+
+    // Partitions covered by this test:
+    // partitioned engine, no metrics then metrics set, reset(), dump(); counts from the time metrics were set
+    @Test
+    public void testPartitionedAndReset() throws UnableToParseException {
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            SimulationEngine engine = new SimulationEngine((Board) BoardParser.parse(new File("boards/absorber.fb")),
+                    SimulationEngine.DEFAULT_TIMESTEP, SimulationEngine.Prediction.LINEAR, pool);
+            engine.advance(50);
+            SimulationMetrics metrics = new SimulationMetrics();
+            engine.setMetrics(metrics);
+            engine.advance(100);
+            assertEquals("expected only the steps after the metrics were set", 100, metrics.getSteps());
+            assertEquals("expected one prediction latency per step", 100,
+                    metrics.getLatency(SimulationMetrics.Phase.PREDICTION).getCount());
+            String dump = metrics.dump();
+            assertTrue("expected every phase in the dump, got " + dump, dump.contains("prediction")
+                    && dump.contains("resolution") && dump.contains("update") && dump.contains("paint"));
+            assertTrue("expected the ball counts in the dump, got " + dump, dump.contains("balls active"));
+            metrics.reset();
+            assertEquals("expected no steps after reset", 0, metrics.getSteps());
+            assertEquals("expected no collisions after reset", 0, metrics.getCollisions());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    // Partitions covered by this test:
+    // registered with an MBeanServer; attributes read over JMX
+    @Test
+    public void testReadOverJmx() throws UnableToParseException, JMException {
+        SimulationEngine engine = engine("boards/absorber.fb");
+        SimulationMetrics metrics = new SimulationMetrics();
+        engine.setMetrics(metrics);
+        engine.advance(100);
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = metrics.register(server, "SimulationMetricsTest");
+        try {
+            assertEquals("expected the steps over JMX", 100L, server.getAttribute(name, "Steps"));
+            CompositeData latency = (CompositeData) server.getAttribute(name, "StepLatency");
+            assertEquals("expected the step latency over JMX", 100L, latency.get("count"));
+            assertEquals("expected the collisions over JMX", metrics.getCollisions(),
+                    server.getAttribute(name, "Collisions"));
+            assertNotNull("expected the collisions by type over JMX",
+                    server.getAttribute(name, "CollisionsByGadgetType"));
+        } finally {
+            server.unregisterMBean(name);
+        }
+    }
+
+    // Partitions covered by this test:
+    // overrun(), reset(), dump(), registered with an MBeanServer; overruns and the time they dropped; attributes
+    // read over JMX
+    @Test
+    public void testOverruns() throws JMException {
+        SimulationMetrics metrics = new SimulationMetrics();
+        metrics.overrun(0.25);
+        metrics.overrun(0.5);
+        assertEquals("expected two overruns", 2, metrics.getBudgetOverruns());
+        assertEquals("expected the dropped time to add up", 0.75, metrics.getDroppedTime(), 1e-9);
+        String dump = metrics.dump();
+        assertTrue("expected the overruns in the dump, got " + dump, dump.contains("overruns 2"));
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = metrics.register(server, "SimulationMetricsTest overruns");
+        try {
+            assertEquals("expected the overruns over JMX", 2L, server.getAttribute(name, "BudgetOverruns"));
+            assertEquals("expected the dropped time over JMX", 0.75,
+                    (Double) server.getAttribute(name, "DroppedTime"), 1e-9);
+        } finally {
+            server.unregisterMBean(name);
+        }
+        metrics.reset();
+        assertEquals("expected no overruns after reset", 0, metrics.getBudgetOverruns());
+        assertEquals("expected no dropped time after reset", 0, metrics.getDroppedTime(), 0);
+    }
+}
@@ -0,0 +1,128 @@
+package flingball;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Test;
+
+import edu.mit.eecs.parserlib.UnableToParseException;
+
+public class SnapshotTest {
+
+    // Testing strategy:
+    // Partition the inputs and outputs of Snapshot.save() and restore() as follows:
+    //      board: absorbers holding 0, > 1 balls; absorber with a recently fired ball, in the middle
+    //             of a burst; no absorbers
+    //      time: 0, > 0
+    //      snapshot: of the same board, of a different board, not a snapshot
+    //      Out: restored simulation continues like the saved one, mismatch reported and board unchanged
+
+    @Test(expected=AssertionError.class)
+    public void testAssertionsEnabled() {
+        assert false; // make sure assertions are enabled with VM argument: -ea
+    }
+
+    private static Path tempFile() throws IOException {
+        Path path = Files.createTempFile("flingball", ".fbs");
+        path.toFile().deleteOnExit();
+        return path;
+    }
+
+    private static SimulationEngine engine(String file) throws UnableToParseException {
+        return new SimulationEngine((Board) BoardParser.parse(new File(file)));
+    }
+
+    // Partitions covered by this test:
+    // absorbers holding > 1 balls and a recently fired ball, time > 0, snapshot of the same board; continues alike
+    @Test
+    public void testRestoreContinuesRun() throws IOException, UnableToParseException {
+        Path path = tempFile();
+        SimulationEngine original = engine("boards/absorber.fb");
+        original.advance(700);
+        Snapshot.save(original, path);
+        SimulationEngine restored = engine("boards/absorber.fb");
+        Snapshot.restore(restored, path);
+        assertEquals("expected the saved time", original.getTime(), restored.getTime(), 0);
+        assertEquals("expected the saved balls", original.getBoard().getBallStore().stateHash(),
+                restored.getBoard().getBallStore().stateHash());
+        original.advance(500);
+        restored.advance(500);
+        BallStore expected = original.getBoard().getBallStore();
+        BallStore actual = restored.getBoard().getBallStore();
+        for (int slot = 0; slot < expected.size(); slot++) {
+            assertEquals("expected the same location", expected.ball(slot).getLocation(),
+                    actual.ball(slot).getLocation());
+            assertEquals("expected the same absorbed state", expected.ball(slot).getAbsorbed(),
+                    actual.ball(slot).getAbsorbed());
+        }
+    }
+
+    // Partitions covered by this test:
+    // absorber in the middle of a burst, time > 0, snapshot of the same board; continues alike
+    @Test
+    public void testRestoreMidBurst() throws IOException, UnableToParseException {
+        Path path = tempFile();
+        SimulationEngine original = engine("test/flingball/burst.fb");
+        Board board = original.getBoard();
+        Absorber absorber = (Absorber) board.getGadget(board.getGadgetId("Abs"));
+        for (int i = 0; i < 1000 && absorber.getBurstLeft() == 0; i++) {
+            original.advance(1);
+        }
+        assertTrue("expected a burst in progress", absorber.getBurstLeft() > 0);
+        Snapshot.save(original, path);
+        SimulationEngine restored = engine("test/flingball/burst.fb");
+        Snapshot.restore(restored, path);
+        original.advance(300);
+        restored.advance(300);
+        BallStore expected = original.getBoard().getBallStore();
+        BallStore actual = restored.getBoard().getBallStore();
+        for (int slot = 0; slot < expected.size(); slot++) {
+            assertEquals("expected the same location", expected.ball(slot).getLocation(),
+                    actual.ball(slot).getLocation());
+            assertEquals("expected the same absorbed state", expected.ball(slot).getAbsorbed(),
+                    actual.ball(slot).getAbsorbed());
+        }
+    }
+
+    // Partitions covered by this test:
+    // no absorbers, time 0, snapshot of the same board; restored state equal
+    @Test
+    public void testRestoreAtStart() throws IOException, UnableToParseException {
+        Path path = tempFile();
+        SimulationEngine original = engine("test/flingball/default.fb");
+        Snapshot.save(original, path);
+        SimulationEngine restored = engine("test/flingball/default.fb");
+        restored.advance(50);
+        Snapshot.restore(restored, path);
+        assertEquals("expected the saved time", 0, restored.getTime(), 0);
+        assertEquals("expected the saved balls", original.getBoard().getBallStore().stateHash(),
+                restored.getBoard().getBallStore().stateHash());
+    }
+
+    // Partitions covered by this test:
+    // snapshot of a different board; mismatch reported and board unchanged
+    @Test
+    public void testRestoreOtherBoard() throws IOException, UnableToParseException {
+        Path path = tempFile();
+        Snapshot.save(engine("boards/absorber.fb"), path);
+        SimulationEngine engine = engine("test/flingball/default.fb");
+        long before = engine.getBoard().getBallStore().stateHash();
+        try {
+            Snapshot.restore(engine, path);
+            fail("expected a mismatched snapshot to be rejected");
+        } catch (IllegalArgumentException e) {
+            assertEquals("expected the board to be unchanged", before, engine.getBoard().getBallStore().stateHash());
+        }
+    }
+
+    // Partitions covered by this test:
+    // not a snapshot; mismatch reported
+    @Test(expected=IllegalArgumentException.class)
+    public void testRestoreNotASnapshot() throws IOException, UnableToParseException {
+        Snapshot.restore(engine("test/flingball/default.fb"), new File("test/flingball/default.fb").toPath());
+    }
+}
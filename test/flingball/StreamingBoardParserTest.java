@@ -0,0 +1,257 @@
+package flingball;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import edu.mit.eecs.parserlib.UnableToParseException;
+
+public class StreamingBoardParserTest {
+
+    // Testing strategy:
+    // Partition the inputs and outputs of StreamingBoardParser.parse() as follows:
+    //      input: from a file, a reader, a channel
+    //      board: each type of gadget, with and without triggers, with one trigger firing several gadgets; 0, 1,
+    //             > 1 balls; default and set gravity and friction; default and set width and height; final newline
+    //             present or missing; comments and blank lines between lines; unusual but valid spacing and numbers
+    //      invalid board: syntax error on the first line, on a later line; lines out of order; unknown trigger
+    //                     name; duplicate name; orientation not a multiple of 90, with a leading zero; width or
+    //                     height 0; absorber burst 0; ball or gadget that does not fit on the board; friction key
+    //                     split by a space
+    //      Out: board equal to the one BoardParser makes, with the same triggers; error reported with the line
+    //           and column where it was found, exactly when BoardParser rejects the board
+
+    @Test(expected=AssertionError.class)
+    public void testAssertionsEnabled() {
+        assert false; // make sure assertions are enabled with VM argument: -ea
+    }
+
+    /**
+     * @return names of the targets of gadget's trigger, in order
+     */
+    private static List<String> targetNames(GameExpression gadget) {
+        List<String> names = new ArrayList<>();
+        for (GameExpression target : gadget.getTriggerTargets()) {
+            names.add(target.getName());
+        }
+        return names;
+    }
+
+    /**
+     * Assert that both parsers give equal boards with the same triggers.
+     */
+    private static void assertSameBoard(Board expected, Board actual) {
+        assertEquals("expected the same board", expected, actual);
+        for (GameExpression gadget : expected.getGadgets()) {
+            for (GameExpression other : actual.getGadgets()) {
+                if (gadget.getName().equals(other.getName())) {
+                    assertEquals("expected the same triggers for " + gadget.getName(),
+                            targetNames(gadget), targetNames(other));
+                }
+            }
+        }
+    }
+
+    /**
+     * Assert that both parsers give the same board for the file.
+     */
+    private static void assertSameAsReference(File file) throws IOException, UnableToParseException {
+        assertSameBoard((Board) BoardParser.parse(file), StreamingBoardParser.parse(file));
+    }
+
+    private static File write(String board) throws IOException {
+        Path path = Files.createTempFile("flingball", ".fb");
+        path.toFile().deleteOnExit();
+        Files.write(path, board.getBytes(StandardCharsets.UTF_8));
+        return path.toFile();
+    }
+
+    /**
+     * Assert that both parsers reject board, and return the streaming parser's error message.
+     */
+    private static String assertBothReject(String board) throws IOException {
+        File file = write(board);
+        try {
+            BoardParser.parse(file);
+            fail("expected the reference parser to reject " + board);
+        } catch (UnableToParseException e) {
+            // expected
+        }
+        try {
+            StreamingBoardParser.parse(file);
+            fail("expected a parse error for " + board);
+        } catch (UnableToParseException e) {
+            return e.getMessage();
+        }
+        throw new AssertionError("unreachable");
+    }
+
+    // Partitions covered by this test:
+    // from a file; each type of gadget with and without triggers, one trigger firing several gadgets, 0, 1, > 1
+    // balls, default and set gravity and friction; same as BoardParser
+    @Test
+    public void testSameAsReferenceOnBoards() throws IOException, UnableToParseException {
+        for (String directory : new String[] { "boards", "test/flingball" }) {
+            for (File file : new File(directory).listFiles()) {
+                if (file.getName().endsWith(".fb")) {
+                    assertSameAsReference(file);
+                }
+            }
+        }
+    }
+
+    // Partitions covered by this test:
+    // final newline missing, comments and blank lines between lines, unusual but valid spacing and numbers;
+    // same as BoardParser
+    @Test
+    public void testSameAsReferenceOnEdgeCases() throws IOException, UnableToParseException {
+        String[] boards = {
+            "board name=A",
+            "  # leading comment\nboardname=A gravity=-0 friction1 = 1. friction2=.5\r\n",
+            "board name=A friction2=0.5\n\n  \n# comment\n\nball name = B x=1.5 y=.5 xVelocity=-.5 yVelocity=2.\n"
+                + "ball name=C x=3 y=3 xVelocity=0 yVelocity=0\n"
+                + "squareBumper name=S x = 01 y= 2\n"
+                + "triangleBumper name=T x=5 y=5 orientation = 270\n"
+                + "triangleBumper name=U x=6 y=5\n"
+                + "circleBumper name=O x=7 y=7\n"
+                + "absorber name = Abs x=0 y=18 width=20 height=2\n"
+                + "fire trigger = S action=Abs\n"
+                + "fire trigger=Abs action=Abs\n# trailing comment",
+            "board name=Big width=1000 height = 500 gravity=10\n"
+                + "ball name=B x=999.5 y=499.5 xVelocity=-1 yVelocity=0\n"
+                + "squareBumper name=S x=998 y=0\n"
+                + "circleBumper name=O x=500 y=250\n"
+                + "absorber name=Abs x=0 y=498 width=1000 height=2\n",
+            "board name=Burst\nabsorber name=Abs x=0 y=18 width=20 height=2 burst = 04\n",
+            "board name=Tall height=40\ntriangleBumper name=T x=19 y=39 orientation=90\n",
+        };
+        for (String board : boards) {
+            assertSameAsReference(write(board));
+        }
+    }
+
+    // Partitions covered by this test:
+    // from a reader and from a channel; same board as from a file
+    @Test
+    public void testReaderAndChannel() throws IOException, UnableToParseException {
+        String board = "board name=A gravity=10\nball name=B x=1 y=1 xVelocity=0 yVelocity=0\n"
+                + "squareBumper name=S x=2 y=2\nfire trigger=S action=S\n";
+        Board expected = (Board) BoardParser.parse(write(board));
+        assertSameBoard(expected, StreamingBoardParser.parse(new StringReader(board)));
+        assertSameBoard(expected, StreamingBoardParser.parse(
+                Channels.newChannel(new ByteArrayInputStream(board.getBytes(StandardCharsets.UTF_8)))));
+    }
+
+    // Partitions covered by this test:
+    // syntax error on the first line; error reported at its line and column
+    @Test
+    public void testErrorOnFirstLine() throws IOException {
+        String message = assertBothReject("\nboard name=A\n");
+        assertTrue("expected the position of the error, got " + message, message.startsWith("line 1, column 1:"));
+        message = assertBothReject("board name=A gravity=x\n");
+        assertTrue("expected the position of the error, got " + message, message.startsWith("line 1, column 22:"));
+    }
+
+    // Partitions covered by this test:
+    // syntax error on a later line, including an inline comment that ends the last line; error reported at its
+    // line and column
+    @Test
+    public void testErrorOnLaterLine() throws IOException {
+        String message = assertBothReject("board name=A\n\nsquareBumper name = S x=1 y=1\n");
+        assertTrue("expected the position of the error, got " + message, message.startsWith("line 3, column 14:"));
+        message = assertBothReject("board name=A\nsquareBumper name=S x=1 y=1 # comment");
+        assertTrue("expected the position of the error, got " + message, message.startsWith("line 3, column 1:"));
+    }
+
+    // Partitions covered by this test:
+    // lines out of order; error reported at the line that is out of order
+    @Test
+    public void testErrorOutOfOrder() throws IOException {
+        String message = assertBothReject("board name=A\nsquareBumper name=S x=1 y=1\n"
+                + "ball name=B x=1 y=1 xVelocity=0 yVelocity=0\n");
+        assertTrue("expected the position of the error, got " + message, message.startsWith("line 3, column 1:"));
+        message = assertBothReject("board name=A friction2=1 friction1=1\n");
+        assertTrue("expected the position of the error, got " + message, message.startsWith("line 1, column 26:"));
+    }
+
+    // Partitions covered by this test:
+    // orientation not a multiple of 90, with a leading zero; error reported at the orientation
+    @Test
+    public void testErrorOrientation() throws IOException {
+        String message = assertBothReject("board name=A\ntriangleBumper name=T x=1 y=1 orientation=45\n");
+        assertTrue("expected the position of the error, got " + message, message.startsWith("line 2, column 43:"));
+        message = assertBothReject("board name=A\ntriangleBumper name=T x=1 y=1 orientation=090\n");
+        assertTrue("expected the position of the error, got " + message, message.startsWith("line 2, column 43:"));
+        message = assertBothReject("board name=A\ntriangleBumper name=T x=1 y=1 orientation=00\n");
+        assertTrue("expected the position of the error, got " + message, message.startsWith("line 2, column 43:"));
+    }
+
+    // Partitions covered by this test:
+    // friction key split by a space; error reported at the key
+    @Test
+    public void testErrorFriction() throws IOException {
+        String message = assertBothReject("board name=A friction 2=0.2\n");
+        assertTrue("expected the position of the error, got " + message, message.startsWith("line 1, column 14:"));
+        message = assertBothReject("board name=A friction 1=0.2\n");
+        assertTrue("expected the position of the error, got " + message, message.startsWith("line 1, column 14:"));
+        message = assertBothReject("board name=A friction1=0.2 friction 2=0.2\n");
+        assertTrue("expected the position of the error, got " + message, message.startsWith("line 1, column 28:"));
+        message = assertBothReject("board name=A friction1=0.2 friction1=0.2\n");
+        assertTrue("expected the position of the error, got " + message, message.startsWith("line 1, column 28:"));
+    }
+
+    // Partitions covered by this test:
+    // absorber burst 0; error reported at the burst
+    @Test
+    public void testErrorBurst() throws IOException {
+        String message = assertBothReject("board name=A\nabsorber name=Abs x=0 y=18 width=20 height=2 burst=0\n");
+        assertTrue("expected the position of the error, got " + message, message.startsWith("line 2, column 52:"));
+    }
+
+    // Partitions covered by this test:
+    // unknown trigger name, including the name of a ball; error reported at the name
+    @Test
+    public void testErrorUnknownTrigger() throws IOException {
+        String message = assertBothReject("board name=A\nsquareBumper name=S x=1 y=1\nfire trigger=S action=T\n");
+        assertTrue("expected the position of the error, got " + message, message.startsWith("line 3, column 23:"));
+        message = assertBothReject("board name=A\nball name=B x=1 y=1 xVelocity=0 yVelocity=0\n"
+                + "squareBumper name=S x=1 y=1\nfire trigger=B action=S\n");
+        assertTrue("expected the position of the error, got " + message, message.startsWith("line 4, column 14:"));
+    }
+
+    // Partitions covered by this test:
+    // duplicate name; error reported at the line that reuses it
+    @Test
+    public void testErrorDuplicateName() throws IOException {
+        String message = assertBothReject("board name=A\nball name=S x=1 y=1 xVelocity=0 yVelocity=0\n"
+                + "squareBumper name=S x=1 y=1\n");
+        assertTrue("expected the position of the error, got " + message, message.startsWith("line 3, column 1:"));
+    }
+
+    // Partitions covered by this test:
+    // width or height 0, ball or gadget that does not fit on the board; error reported at the size or the line
+    @Test
+    public void testErrorBoardSize() throws IOException {
+        String message = assertBothReject("board name=A width=0\n");
+        assertTrue("expected the position of the error, got " + message, message.startsWith("line 1, column 20:"));
+        message = assertBothReject("board name=A width=30 height=0\n");
+        assertTrue("expected the position of the error, got " + message, message.startsWith("line 1, column 30:"));
+        message = assertBothReject("board name=A\nsquareBumper name=S x=20 y=1\n");
+        assertTrue("expected the position of the error, got " + message, message.startsWith("line 2, column 1:"));
+        message = assertBothReject("board name=A width=10 height=30\nball name=B x=9.9 y=25 xVelocity=0 yVelocity=0\n");
+        assertTrue("expected the position of the error, got " + message, message.startsWith("line 2, column 1:"));
+        message = assertBothReject("board name=A height=30\nabsorber name=Abs x=10 y=28 width=11 height=2\n");
+        assertTrue("expected the position of the error, got " + message, message.startsWith("line 2, column 1:"));
+    }
+}
@@ -0,0 +1,75 @@
+package flingball;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+import org.junit.Test;
+
+public class SymbolTableTest {
+
+    // Testing strategy:
+    // Partition the inputs and outputs of SymbolTable and of the gadget ids of Board as follows:
+    //      table: empty, 1, > 1 names; made by define() or byName()
+    //      name: defined, undefined, already defined
+    //      Out: dense ids in order of definition or of name, UNDEFINED, duplicate rejected
+
+    @Test(expected=AssertionError.class)
+    public void testAssertionsEnabled() {
+        assert false; // make sure assertions are enabled with VM argument: -ea
+    }
+
+    // Partitions covered by this test:
+    // empty table; undefined name; UNDEFINED
+    @Test
+    public void testEmpty() {
+        SymbolTable table = new SymbolTable();
+        assertEquals("expected no names", 0, table.size());
+        assertEquals("expected an undefined name", SymbolTable.UNDEFINED, table.id("A"));
+        assertNull("expected no expression", table.lookup("A"));
+    }
+
+    // Partitions covered by this test:
+    // > 1 names made by define(), defined and undefined names; dense ids in order of definition
+    @Test
+    public void testDefine() {
+        SymbolTable table = new SymbolTable();
+        GameExpression square = new SquareBumper("Z", 1, 1);
+        Ball ball = new Ball("A", 5, 5, 0, 0);
+        assertEquals("expected the first id", 0, table.define(square));
+        assertEquals("expected the next id", 1, table.define(ball));
+        assertEquals("expected two names", 2, table.size());
+        assertEquals("expected the id of Z", 0, table.id("Z"));
+        assertSame("expected the ball", ball, table.get(1));
+        assertSame("expected the square", square, table.lookup("Z"));
+        assertEquals("expected an undefined name", SymbolTable.UNDEFINED, table.id("B"));
+    }
+
+    // Partitions covered by this test:
+    // 1 name, already defined; duplicate rejected
+    @Test(expected=IllegalArgumentException.class)
+    public void testDefineDuplicate() {
+        SymbolTable table = new SymbolTable();
+        table.define(new SquareBumper("S", 1, 1));
+        table.define(new CircleBumper("S", 2, 2));
+    }
+
+    // Partitions covered by this test:
+    // > 1 names made by byName(), and the gadgets of a board; ids in order of name
+    @Test
+    public void testByName() {
+        GameExpression b = new SquareBumper("B", 1, 1);
+        GameExpression a = new CircleBumper("A", 3, 3);
+        GameExpression c = new Absorber("C", 0, 18, 20, 2);
+        SymbolTable table = SymbolTable.byName(Arrays.asList(b, c, a));
+        assertSame("expected A first", a, table.get(0));
+        assertSame("expected B second", b, table.get(1));
+        assertSame("expected C last", c, table.get(2));
+
+        Board board = new Board("Ids", 25, 0.025, 0.025, new HashSet<>(Arrays.asList(c, a, b)), new HashSet<>());
+        assertEquals("expected the id of B on the board", 1, board.getGadgetId("B"));
+        assertSame("expected C on the board", c, board.getGadget(2));
+        assertEquals("expected no gadget", SymbolTable.UNDEFINED, board.getGadgetId("D"));
+    }
+}
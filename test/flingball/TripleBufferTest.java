@@ -0,0 +1,69 @@
+package flingball;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class TripleBufferTest {
+
+    // Testing strategy:
+    // Partition the inputs and outputs of TripleBuffer as follows:
+    //      values published since latest() was last called: 0, 1, > 1
+    //      values published in total: 0, > 0
+    //      threads: one, a producer and a consumer running concurrently
+    //      Out: null, the newest value, the same value again
+
+    @Test(expected=AssertionError.class)
+    public void testAssertionsEnabled() {
+        assert false; // make sure assertions are enabled with VM argument: -ea
+    }
+
+    // Partitions covered by this test:
+    // 0 published in total; null
+    @Test
+    public void testLatestEmpty() {
+        assertNull("expected nothing published", new TripleBuffer<String>().latest());
+    }
+
+    // Partitions covered by this test:
+    // 1 and > 1 published since latest(), 0 since latest(), one thread; the newest value, the same value again
+    @Test
+    public void testLatestNewest() {
+        TripleBuffer<String> buffer = new TripleBuffer<>();
+        buffer.publish("a");
+        assertEquals("expected the only value", "a", buffer.latest());
+        assertEquals("expected the same value again", "a", buffer.latest());
+        for (String value : new String[] { "b", "c", "d", "e" }) {
+            buffer.publish(value);
+        }
+        assertEquals("expected the newest value, skipping the rest", "e", buffer.latest());
+        buffer.publish("f");
+        assertEquals("expected the newest value", "f", buffer.latest());
+        assertEquals("expected the same value again", "f", buffer.latest());
+    }
+
+    // Partitions covered by this test:
+    // a producer and a consumer running concurrently; values seen in order, the last one seen at the end
+    @Test
+    public void testProducerConsumer() throws InterruptedException {
+        final int count = 200_000;
+        TripleBuffer<int[]> buffer = new TripleBuffer<>();
+        Thread producer = new Thread(() -> {
+            for (int i = 1; i <= count; i++) {
+                buffer.publish(new int[] { i, -i }); // a torn value would have mismatched halves
+            }
+        });
+        producer.start();
+        int seen = 0;
+        while (seen < count) {
+            int[] value = buffer.latest();
+            if (value != null) {
+                assertTrue("expected values in order", value[0] >= seen);
+                assertEquals("expected a whole value", -value[0], value[1]);
+                seen = value[0];
+            }
+        }
+        producer.join();
+        assertEquals("expected the last value", count, buffer.latest()[0]);
+    }
+}